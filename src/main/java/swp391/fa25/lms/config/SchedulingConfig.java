@@ -0,0 +1,12 @@
+package swp391.fa25.lms.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Bật các job định kỳ (@Scheduled), vd: trả lại giữ chỗ tồn kho quá hạn
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -52,7 +52,12 @@ public class SecurityConfig {
                                 "/payment/repay-return",
                                 "/payment/seller-return",
                                 "/payment/seller-registration-return",
-                                "/payment/license-renew-return"
+                                "/payment/license-renew-return",
+                                "/api/licenses/verify",
+                                "/api/licenses/public-key",
+                                "/api/licenses/revocations", "/api/licenses/revocations/**",
+                                "/api/licenses/leases", "/api/licenses/leases/**",
+                                "/api/licenses/usage"
                         ).permitAll()
 
 
@@ -0,0 +1,24 @@
+package swp391.fa25.lms.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import swp391.fa25.lms.service.ToolSummaryService;
+
+/**
+ * Job chạy một lần khi khởi động: đối soát cột tổng hợp giá/rating của Tool.
+ * Bật bằng app.tool-summary.rebuild-on-startup=true
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.tool-summary.rebuild-on-startup", havingValue = "true")
+public class ToolSummaryRebuildRunner implements CommandLineRunner {
+
+    private final ToolSummaryService toolSummaryService;
+
+    @Override
+    public void run(String... args) {
+        toolSummaryService.rebuildAll();
+    }
+}
@@ -11,9 +11,12 @@ import swp391.fa25.lms.model.Role;
 import swp391.fa25.lms.model.SellerSubscription;
 import swp391.fa25.lms.repository.AccountRepository;
 import swp391.fa25.lms.repository.SellerSubscriptionRepository;
+import swp391.fa25.lms.service.CatalogSnapshotService;
+import swp391.fa25.lms.service.TypeaheadService;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Objects;
 import java.util.Optional;
 
 @Component
@@ -22,11 +25,17 @@ public class CustomAuthenticationSuccessHandler
 
     private final AccountRepository accountRepository;
     private final SellerSubscriptionRepository subscriptionRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final TypeaheadService typeaheadService;
 
     public CustomAuthenticationSuccessHandler(AccountRepository accountRepository,
-                                              SellerSubscriptionRepository subscriptionRepository) {
+                                              SellerSubscriptionRepository subscriptionRepository,
+                                              CatalogSnapshotService catalogSnapshotService,
+                                              TypeaheadService typeaheadService) {
         this.accountRepository = accountRepository;
         this.subscriptionRepository = subscriptionRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.typeaheadService = typeaheadService;
     }
 
     @Override
@@ -59,28 +68,28 @@ public class CustomAuthenticationSuccessHandler
             return;
         }
 
-        SellerSubscription activeSub = subscriptionRepository.findByAccountOrderByStartDateDesc(account)
-                .stream()
-                .filter(SellerSubscription::isActive)
-                .filter(sub -> sub.getEndDate().isAfter(LocalDateTime.now()))
-                .findFirst()
+        // Gói còn hạn xa nhất (top-1), chỉ ghi Account khi cờ seller thực sự thay đổi
+        SellerSubscription activeSub = subscriptionRepository
+                .findFirstByAccountAndActiveTrueAndEndDateAfterOrderByEndDateDesc(account, LocalDateTime.now())
                 .orElse(null);
 
-        if (activeSub == null) {
+        boolean active = activeSub != null;
+        LocalDateTime expiry = active ? activeSub.getEndDate() : null;
+        boolean wasActive = Boolean.TRUE.equals(account.getSellerActive());
 
-            account.setSellerActive(false);
-            account.setSellerExpiryDate(null);
+        if (wasActive != active || !Objects.equals(account.getSellerExpiryDate(), expiry)) {
+            account.setSellerActive(active);
+            account.setSellerExpiryDate(expiry);
             accountRepository.save(account);
-            request.getSession().setAttribute("loggedInAccount", account);
-            response.sendRedirect("/seller/renew");
-            return;
+            if (wasActive != active) {
+                catalogSnapshotService.invalidate();
+                typeaheadService.invalidate();
+            }
         }
-        // ========== SELLER CÒN HẠN ==========
-        account.setSellerActive(true);
-        account.setSellerExpiryDate(activeSub.getEndDate());
-        accountRepository.save(account);
         request.getSession().setAttribute("loggedInAccount", account);
-        response.sendRedirect("/dashboard");
+
+        // Còn hạn -> dashboard, hết hạn -> trang gia hạn gói
+        response.sendRedirect(active ? "/dashboard" : "/seller/renew");
     }
 
     private void redirectByRole(
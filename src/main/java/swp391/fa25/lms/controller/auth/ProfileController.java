@@ -72,12 +72,7 @@ public class ProfileController {
         }
 
         Account acc = profileService.getByEmail(auth.getName());
-        acc.setFullName(fullName);
-        acc.setPhone(phone);
-        acc.setAddress(address);
-        acc.setUpdatedAt(LocalDateTime.now());
-
-        profileService.save(acc);
+        profileService.updateInfo(acc, fullName, phone, address);
         return "redirect:/profile?updated=true";
     }
 
@@ -64,7 +64,8 @@ public class BlogController {
             categoryId = categoryDTO.getCategoryId();
             blogs = blogService.getBlogsByCategory(categoryId, pageable);
         } else if (keyword != null && !keyword.trim().isEmpty()) {
-            blogs = blogService.searchBlogs(keyword, pageable);
+            // Tìm kiếm: xếp theo độ liên quan (không truyền sort)
+            blogs = blogService.searchBlogs(keyword, PageRequest.of(page, size));
         } else {
             blogs = blogService.getPublishedBlogs(pageable);
         }
@@ -136,47 +137,10 @@ public class BlogController {
         }
 
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        
-        Page<BlogListItemDTO> blogs = blogService.getBlogsByAuthor(moderator.getAccountId(), pageable);
-        
-        // Check if any filter is applied
-        boolean hasFilter = (categoryId != null) || (keyword != null && !keyword.trim().isEmpty()) || (status != null && !status.trim().isEmpty());
-        
-        if (hasFilter) {
-            // If filtering, get ALL blogs from author first to calculate correct total
-            List<BlogListItemDTO> allBlogs = blogService.getBlogsByAuthor(moderator.getAccountId(), 
-                    PageRequest.of(0, Integer.MAX_VALUE, Sort.by(Sort.Direction.DESC, "createdAt"))).getContent();
-            
-            // Apply filters
-            if (categoryId != null) {
-                allBlogs = allBlogs.stream()
-                        .filter(blog -> blog.getCategoryId() != null && blog.getCategoryId().equals(categoryId))
-                        .collect(java.util.stream.Collectors.toList());
-            }
-            
-            if (keyword != null && !keyword.trim().isEmpty()) {
-                String searchLower = keyword.toLowerCase();
-                allBlogs = allBlogs.stream()
-                        .filter(blog -> (blog.getTitle() != null && blog.getTitle().toLowerCase().contains(searchLower)) ||
-                                       (blog.getShortSummary() != null && blog.getShortSummary().toLowerCase().contains(searchLower)))
-                        .collect(java.util.stream.Collectors.toList());
-            }
-            
-            if (status != null && !status.trim().isEmpty()) {
-                String statusUpper = status.toUpperCase();
-                allBlogs = allBlogs.stream()
-                        .filter(blog -> blog.getStatus() != null && blog.getStatus().equals(statusUpper))
-                        .collect(java.util.stream.Collectors.toList());
-            }
-            
-            // Manual pagination on filtered list
-            int start = page * size;
-            int end = Math.min(start + size, allBlogs.size());
-            List<BlogListItemDTO> pageContent = (start < allBlogs.size()) ? allBlogs.subList(start, end) : new java.util.ArrayList<>();
-            
-            blogs = new org.springframework.data.domain.PageImpl<>(pageContent, pageable, allBlogs.size());
-        }
-        // else: use original Page from service (already paginated correctly)
+
+        // Lọc category / keyword / status + phân trang trong 1 query (không tải toàn bộ blog của author)
+        Page<BlogListItemDTO> blogs = blogService.getAuthorBlogList(
+                moderator.getAccountId(), categoryId, status, keyword, pageable);
 
         model.addAttribute("blogs", blogs.getContent());
         model.addAttribute("selectedStatus", status);
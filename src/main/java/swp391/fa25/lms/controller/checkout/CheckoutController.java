@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.*;
 import swp391.fa25.lms.model.*;
 import swp391.fa25.lms.repository.*;
 import swp391.fa25.lms.service.CartService;
+import swp391.fa25.lms.service.InventoryService;
 import swp391.fa25.lms.service.OrderService;
 import swp391.fa25.lms.util.VNPayUtil;
 
@@ -26,6 +27,7 @@ public class CheckoutController {
 
     private final CartService cartService;
     private final OrderService orderService;
+    private final InventoryService inventoryService;
     private final PaymentTransactionRepository transactionRepo;
     private final VNPayUtil vnPayUtil;
 
@@ -217,6 +219,14 @@ public class CheckoutController {
                 transaction.setUserAgent(request.getHeader("User-Agent"));
                 transaction = transactionRepo.save(transaction);
 
+                // Giữ chỗ tồn kho cho tới khi VNPay trả kết quả (hoặc hết hạn giữ chỗ)
+                if (!inventoryService.reserve(transaction, Map.of(toolId, qty))) {
+                    transaction.setStatus(PaymentTransaction.TransactionStatus.FAILED);
+                    transactionRepo.save(transaction);
+                    response.sendRedirect("/tool/" + toolId + "?error=out_of_stock");
+                    return;
+                }
+
                 orderService.createOrderFromBuyNow(account, tool, license, qty, transaction);
 
                 String orderInfo = "CHECKOUT_" + transaction.getTransactionId();
@@ -229,6 +239,7 @@ public class CheckoutController {
                 );
 
                 if (paymentUrl == null) {
+                    inventoryService.release(transaction);
                     response.sendRedirect("/checkout/buy-now/confirm?error=create_url_failed");
                     return;
                 }
@@ -286,6 +297,18 @@ public class CheckoutController {
 
             transaction = transactionRepo.save(transaction);
 
+            // Giữ chỗ tồn kho cho mọi tool trong payItems (all-or-nothing)
+            Map<Long, Integer> qtyByTool = new HashMap<>();
+            for (CartItem ci : payItems) {
+                qtyByTool.merge(ci.getTool().getToolId(), ci.getQuantity() != null ? ci.getQuantity() : 1, Integer::sum);
+            }
+            if (!inventoryService.reserve(transaction, qtyByTool)) {
+                transaction.setStatus(PaymentTransaction.TransactionStatus.FAILED);
+                transactionRepo.save(transaction);
+                response.sendRedirect("/cart/view?error=out_of_stock");
+                return;
+            }
+
             // ✅ tạo order đúng payItems
             orderService.createOrdersFromCartItems(account, payItems, transaction);
 
@@ -299,6 +322,7 @@ public class CheckoutController {
             );
 
             if (paymentUrl == null) {
+                inventoryService.release(transaction);
                 response.sendRedirect("/checkout?error=create_url_failed");
                 return;
             }
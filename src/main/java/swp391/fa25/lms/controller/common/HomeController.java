@@ -3,6 +3,8 @@ package swp391.fa25.lms.controller.common;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
@@ -10,13 +12,16 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import swp391.fa25.lms.model.Account;
 import swp391.fa25.lms.model.LicenseAccount;
 import swp391.fa25.lms.model.Tool;
 import swp391.fa25.lms.repository.LicenseAccountRepository;
 import swp391.fa25.lms.service.CategoryService;
 import swp391.fa25.lms.service.ToolService;
+import swp391.fa25.lms.service.TypeaheadService;
 
+import java.time.Duration;
 import java.util.List;
 
 @Controller
@@ -26,6 +31,7 @@ public class HomeController {
     private final CategoryService categoryService;
     private final ToolService toolService;
     private final LicenseAccountRepository licenseAccountRepository;
+    private final TypeaheadService typeaheadService;
 
     @GetMapping("/")
     public String root() {
@@ -82,6 +88,18 @@ public class HomeController {
         return "common/home :: toolList";
     }
 
+    // Gợi ý cho ô search (tool / category / seller), trả JSON
+    @GetMapping("/home/suggest")
+    @ResponseBody
+    public ResponseEntity<List<TypeaheadService.Suggestion>> suggest(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "limit", defaultValue = "8") int limit
+    ) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(30)).cachePublic())
+                .body(typeaheadService.suggest(q, limit));
+    }
+
     private void bindToolPage(Model model,
                               Page<Tool> toolPage,
                               String keyword,
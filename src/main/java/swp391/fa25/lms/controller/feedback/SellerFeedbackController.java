@@ -13,10 +13,8 @@ import swp391.fa25.lms.model.Account;
 import swp391.fa25.lms.model.Feedback;
 import swp391.fa25.lms.model.FeedbackReply;
 import swp391.fa25.lms.model.Tool;
-import swp391.fa25.lms.repository.ToolRepository;
 import swp391.fa25.lms.service.FeedbackReplyService;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,7 +25,6 @@ import java.util.Map;
 public class SellerFeedbackController {
 
     private final FeedbackReplyService feedbackReplyService;
-    private final ToolRepository toolRepo;
 
     @GetMapping
     @Transactional(readOnly = true)
@@ -46,13 +43,11 @@ public class SellerFeedbackController {
         Page<Feedback> feedbacks = feedbackReplyService.getSellerToolFeedbacks(
                 seller.getAccountId(), page, size, toolId, hasReply, minRating);
 
-        List<Tool> sellerTools = toolRepo.findAll().stream()
-                .filter(t -> t.getSeller().getAccountId().equals(seller.getAccountId()))
-                .toList();
+        List<Tool> sellerTools = feedbackReplyService.getSellerTools(seller.getAccountId());
 
         long unrepliedCount = feedbackReplyService.countUnrepliedFeedbacks(seller.getAccountId());
 
-        Map<Long, FeedbackReply> repliesMap = loadReplies(feedbacks);
+        Map<Long, FeedbackReply> repliesMap = feedbackReplyService.getRepliesByFeedback(feedbacks.getContent());
 
         model.addAttribute("feedbacks", feedbacks);
         model.addAttribute("repliesMap", repliesMap);
@@ -126,13 +121,4 @@ public class SellerFeedbackController {
 
         return "redirect:/seller/feedbacks";
     }
-
-    private Map<Long, FeedbackReply> loadReplies(Page<Feedback> feedbacks) {
-        Map<Long, FeedbackReply> repliesMap = new HashMap<>();
-        for (Feedback fb : feedbacks.getContent()) {
-            feedbackReplyService.getReplyByFeedbackId(fb.getFeedbackId())
-                    .ifPresent(reply -> repliesMap.put(fb.getFeedbackId(), reply));
-        }
-        return repliesMap;
-    }
 }
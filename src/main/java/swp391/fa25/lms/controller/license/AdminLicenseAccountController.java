@@ -0,0 +1,104 @@
+package swp391.fa25.lms.controller.license;
+
+import jakarta.servlet.http.HttpSession;
+import jakarta.validation.Valid;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import swp391.fa25.lms.dto.LicenseAccountFormDTO;
+import swp391.fa25.lms.model.Account;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.service.LicenseAccountService;
+
+/**
+ * Admin tạo / sửa License_Account (ngày, trạng thái, credential, số thiết bị tối đa).
+ */
+@Controller
+@RequestMapping("/admin/license-accounts")
+public class AdminLicenseAccountController {
+
+    private final LicenseAccountService licenseAccountService;
+
+    public AdminLicenseAccountController(LicenseAccountService licenseAccountService) {
+        this.licenseAccountService = licenseAccountService;
+    }
+
+    @GetMapping("/create")
+    public String createForm(HttpSession session, Model model, RedirectAttributes ra) {
+        Account admin = (Account) session.getAttribute("loggedInAccount");
+        if (admin == null) {
+            ra.addFlashAttribute("error", "Vui lòng đăng nhập");
+            return "redirect:/login";
+        }
+        LicenseAccountFormDTO form = new LicenseAccountFormDTO();
+        form.setStatus(LicenseAccount.Status.ACTIVE);
+        form.setMaxDevices(1);
+        prepareForm(model, admin, form, null, null);
+        return "admin/license-account-form";
+    }
+
+    @PostMapping("/create")
+    public String create(@Valid @ModelAttribute("form") LicenseAccountFormDTO form,
+                         BindingResult br,
+                         HttpSession session,
+                         Model model,
+                         RedirectAttributes ra) {
+        Account admin = (Account) session.getAttribute("loggedInAccount");
+        if (br.hasErrors()) {
+            prepareForm(model, admin, form, null, "Vui lòng kiểm tra lại thông tin.");
+            return "admin/license-account-form";
+        }
+        try {
+            licenseAccountService.adminCreate(form);
+            ra.addFlashAttribute("success", "Tạo license account thành công!");
+            return "redirect:/admin/license-accounts/create";
+        } catch (IllegalArgumentException ex) {
+            prepareForm(model, admin, form, null, ex.getMessage());
+            return "admin/license-account-form";
+        }
+    }
+
+    @GetMapping("/{id}/edit")
+    public String editForm(@PathVariable Long id, HttpSession session, Model model, RedirectAttributes ra) {
+        Account admin = (Account) session.getAttribute("loggedInAccount");
+        if (admin == null) {
+            ra.addFlashAttribute("error", "Vui lòng đăng nhập");
+            return "redirect:/login";
+        }
+        prepareForm(model, admin, licenseAccountService.toForm(id), id, null);
+        return "admin/license-account-form";
+    }
+
+    @PostMapping("/{id}/edit")
+    public String update(@PathVariable Long id,
+                         @Valid @ModelAttribute("form") LicenseAccountFormDTO form,
+                         BindingResult br,
+                         HttpSession session,
+                         Model model,
+                         RedirectAttributes ra) {
+        Account admin = (Account) session.getAttribute("loggedInAccount");
+        if (br.hasErrors()) {
+            prepareForm(model, admin, form, id, "Vui lòng kiểm tra lại thông tin.");
+            return "admin/license-account-form";
+        }
+        try {
+            licenseAccountService.adminUpdate(id, form);
+            ra.addFlashAttribute("success", "Cập nhật license account thành công!");
+            return "redirect:/admin/license-accounts/" + id + "/edit";
+        } catch (IllegalArgumentException ex) {
+            prepareForm(model, admin, form, id, ex.getMessage());
+            return "admin/license-account-form";
+        }
+    }
+
+    private void prepareForm(Model model, Account admin, LicenseAccountFormDTO form, Long id, String error) {
+        model.addAttribute("account", admin);
+        model.addAttribute("form", form);
+        model.addAttribute("licenseAccountId", id);
+        model.addAttribute("licenses", licenseAccountService.getAllLicenses());
+        model.addAttribute("statuses", LicenseAccount.Status.values());
+        if (error != null) model.addAttribute("error", error);
+    }
+}
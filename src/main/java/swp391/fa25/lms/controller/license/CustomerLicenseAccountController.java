@@ -224,6 +224,21 @@ public class CustomerLicenseAccountController {
         return "license/history";
     }
 
+    // Tạo / tạo lại client secret cho API license, secret gốc chỉ hiện 1 lần qua flash attribute
+    @PostMapping("/{licenseAccountId}/client-secret")
+    public String regenerateClientSecret(@PathVariable Long licenseAccountId,
+                                         Authentication auth,
+                                         RedirectAttributes ra) {
+        Long accountId = currentAccountId(auth);
+        try {
+            ra.addFlashAttribute("clientSecret", laService.regenerateClientSecret(accountId, licenseAccountId));
+            ra.addFlashAttribute("success", "Đã tạo client secret mới, secret cũ không còn dùng được.");
+        } catch (IllegalArgumentException ex) {
+            ra.addFlashAttribute("error", ex.getMessage());
+        }
+        return "redirect:/customer/license-accounts/" + licenseAccountId;
+    }
+
     // ✅ USE: nên để Transactional để chắc chắn save + update đồng bộ
     @PostMapping("/{licenseAccountId}/use")
     @Transactional
@@ -1,4 +1,234 @@
 package swp391.fa25.lms.controller.license;
 
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import swp391.fa25.lms.dto.LicenseLeaseRequestDTO;
+import swp391.fa25.lms.dto.LicenseLeaseResponseDTO;
+import swp391.fa25.lms.dto.LicenseVerifyRequestDTO;
+import swp391.fa25.lms.dto.LicenseVerifyResponseDTO;
+import swp391.fa25.lms.dto.UsageBatchRequestDTO;
+import swp391.fa25.lms.service.LicenseApiThrottle;
+import swp391.fa25.lms.service.LicenseCertificateService;
+import swp391.fa25.lms.service.LicenseIndexService;
+import swp391.fa25.lms.service.LicenseLeaseService;
+import swp391.fa25.lms.service.LicenseRevocationFeedService;
+import swp391.fa25.lms.service.UsageTelemetryService;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * API cho tool đã cài ở máy khách kiểm tra license (không cần đăng nhập web).
+ * Đọc từ LicenseIndexService trong RAM, không chạm DB; kèm certificate để các lần sau tool tự kiểm tra offline.
+ * verify / leases / usage đi qua LicenseApiThrottle (429 + Retry-After); sai credential và license hết hạn
+ * trả cùng 1 kết quả INVALID_CREDENTIALS để không dò được account nào tồn tại.
+ */
+@Controller
+@RequiredArgsConstructor
 public class LicenseController {
+
+    private final LicenseIndexService licenseIndexService;
+    private final LicenseCertificateService licenseCertificateService;
+    private final LicenseRevocationFeedService licenseRevocationFeedService;
+    private final LicenseLeaseService licenseLeaseService;
+    private final UsageTelemetryService usageTelemetryService;
+    private final LicenseApiThrottle licenseApiThrottle;
+
+    @PostMapping("/api/licenses/verify")
+    @ResponseBody
+    public ResponseEntity<LicenseVerifyResponseDTO> verify(@RequestBody LicenseVerifyRequestDTO req,
+                                                           HttpServletRequest http) {
+        if (req.getToolId() == null || !hasCredentials(req)) {
+            return ResponseEntity.badRequest()
+                    .body(new LicenseVerifyResponseDTO(false, "BAD_REQUEST", req.getToolId(), null, null));
+        }
+        long wait = admit(req, http);
+        if (wait > 0) {
+            return throttled(wait, new LicenseVerifyResponseDTO(false, THROTTLED, req.getToolId(), null, null));
+        }
+
+        LicenseIndexService.Verification v = authenticate(req, http);
+        LicenseVerifyResponseDTO body = v.valid()
+                ? new LicenseVerifyResponseDTO(true, v.result().name(), v.toolId(), v.endDate(), v.certificate())
+                : new LicenseVerifyResponseDTO(false, LicenseIndexService.Result.INVALID_CREDENTIALS.name(),
+                req.getToolId(), null, null);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(body);
+    }
+
+    // Public key kiểm tra certificate (LicenseCertificateVerifier.fromBase64), client tải 1 lần rồi lưu lại;
+    // gặp certificate có kid lạ thì tải lại, previousKeys là khóa cũ trong lúc đổi khóa
+    @GetMapping("/api/licenses/public-key")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> publicKey() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("alg", "RS256");
+        body.put("kid", licenseCertificateService.getVerifier().getKeyId());
+        body.put("publicKey", licenseCertificateService.getPublicKeyBase64());
+        body.put("previousKeys", licenseCertificateService.getPreviousPublicKeys());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePublic())
+                .body(body);
+    }
+
+    // Snapshot Bloom filter các certificate bị thu hồi (RevocationBloomFilter.fromBytes); If-None-Match -> 304
+    @GetMapping("/api/licenses/revocations/snapshot")
+    @ResponseBody
+    public ResponseEntity<byte[]> revocationSnapshot(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        LicenseRevocationFeedService.Snapshot snap = licenseRevocationFeedService.snapshot(ifNoneMatch);
+        if (snap == null) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ifNoneMatch).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snap.etag())
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(60)).cachePublic())
+                .header("X-Revocation-Seq", String.valueOf(snap.throughSeq()))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(snap.bytes());
+    }
+
+    // Certificate bị thu hồi sau seq since (since = throughSeq của snapshot / lần đồng bộ trước)
+    @GetMapping("/api/licenses/revocations")
+    @ResponseBody
+    public ResponseEntity<LicenseRevocationFeedService.DeltaPage> revocationDeltas(
+            @RequestParam(value = "since", defaultValue = "0") long since) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(10)).cachePublic())
+                .body(licenseRevocationFeedService.deltasSince(since));
+    }
+
+    // ================== DEVICE LEASE ==================
+
+    // Xin seat cho thiết bị; hết seat (maxDevices) -> 409 SEATS_EXHAUSTED
+    @PostMapping("/api/licenses/leases")
+    @ResponseBody
+    public ResponseEntity<LicenseLeaseResponseDTO> acquireLease(@RequestBody LicenseLeaseRequestDTO req,
+                                                                HttpServletRequest http) {
+        if (req.getToolId() == null || !StringUtils.hasText(req.getDeviceId()) || req.getDeviceId().length() > 100
+                || !hasCredentials(req)) {
+            return ResponseEntity.badRequest().body(leaseBody(null, "BAD_REQUEST"));
+        }
+        long wait = admit(req, http);
+        if (wait > 0) return throttled(wait, leaseBody(null, THROTTLED));
+
+        LicenseLeaseService.LeaseResult r =
+                licenseLeaseService.acquire(authenticate(req, http), req.getDeviceId().trim(), req.getDeviceInfo());
+        return leaseResponse(r);
+    }
+
+    @PostMapping("/api/licenses/leases/{leaseId}/heartbeat")
+    @ResponseBody
+    public ResponseEntity<LicenseLeaseResponseDTO> heartbeat(@PathVariable String leaseId) {
+        return leaseResponse(licenseLeaseService.heartbeat(leaseId));
+    }
+
+    // Tool thoát bình thường thì trả seat ngay, không chờ hết ttl
+    @DeleteMapping("/api/licenses/leases/{leaseId}")
+    @ResponseBody
+    public ResponseEntity<Void> releaseLease(@PathVariable String leaseId) {
+        return licenseLeaseService.release(leaseId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    // ================== USAGE TELEMETRY ==================
+
+    // Lô sự kiện sử dụng; 202 = đã nhận vào hàng đợi, dropped > 0 = server đang quá tải, client gửi lại sau
+    @PostMapping("/api/licenses/usage")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> usage(@RequestBody UsageBatchRequestDTO req, HttpServletRequest http) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        if (req.getToolId() == null || req.getEvents() == null
+                || req.getEvents().size() > usageTelemetryService.getMaxBatch()
+                || !hasCredentials(req)) {
+            body.put("result", "BAD_REQUEST");
+            body.put("maxBatch", usageTelemetryService.getMaxBatch());
+            return ResponseEntity.badRequest().body(body);
+        }
+        long wait = admit(req, http);
+        if (wait > 0) {
+            body.put("result", THROTTLED);
+            return throttled(wait, body);
+        }
+
+        UsageTelemetryService.IngestResult r = usageTelemetryService.ingest(authenticate(req, http), req.getEvents());
+        body.put("result", r.result().name());
+        body.put("accepted", r.accepted());
+        body.put("rejected", r.rejected());
+        body.put("dropped", r.dropped());
+        HttpStatus status = r.result() == UsageTelemetryService.Result.ACCEPTED ? HttpStatus.ACCEPTED : HttpStatus.FORBIDDEN;
+        return ResponseEntity.status(status).cacheControl(CacheControl.noStore()).body(body);
+    }
+
+    // ================== AUTH ==================
+
+    private static final String THROTTLED = "TOO_MANY_REQUESTS";
+
+    private static boolean hasCredentials(LicenseVerifyRequestDTO req) {
+        return StringUtils.hasText(req.getClientSecret()) || StringUtils.hasText(req.getUsername());
+    }
+
+    // null khi xác thực bằng client secret (không có bộ đếm theo username)
+    private static String loginName(LicenseVerifyRequestDTO req) {
+        return StringUtils.hasText(req.getClientSecret()) ? null : req.getUsername().trim();
+    }
+
+    private long admit(LicenseVerifyRequestDTO req, HttpServletRequest http) {
+        return licenseApiThrottle.admit(http.getRemoteAddr(), req.getToolId(), loginName(req));
+    }
+
+    private LicenseIndexService.Verification authenticate(LicenseVerifyRequestDTO req, HttpServletRequest http) {
+        String username = loginName(req);
+        LicenseIndexService.Verification v = username == null
+                ? licenseIndexService.verifySecret(req.getToolId(), req.getClientSecret().trim())
+                : licenseIndexService.verifyLogin(req.getToolId(), username, req.getPassword());
+        if (v.valid()) licenseApiThrottle.recordSuccess(req.getToolId(), username);
+        else licenseApiThrottle.recordFailure(http.getRemoteAddr(), req.getToolId(), username);
+        return v;
+    }
+
+    private static <T> ResponseEntity<T> throttled(long retryAfterSeconds, T body) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .cacheControl(CacheControl.noStore())
+                .body(body);
+    }
+
+    private ResponseEntity<LicenseLeaseResponseDTO> leaseResponse(LicenseLeaseService.LeaseResult r) {
+        HttpStatus status = switch (r.result()) {
+            case GRANTED -> HttpStatus.OK;
+            case SEATS_EXHAUSTED -> HttpStatus.CONFLICT;
+            case LEASE_NOT_FOUND -> HttpStatus.NOT_FOUND;
+            case LICENSE_INVALID -> HttpStatus.FORBIDDEN;
+        };
+        return ResponseEntity.status(status)
+                .cacheControl(CacheControl.noStore())
+                .body(leaseBody(r, r.result().name()));
+    }
+
+    private LicenseLeaseResponseDTO leaseBody(LicenseLeaseService.LeaseResult r, String result) {
+        long ttl = licenseLeaseService.getTtlSeconds();
+        return r == null
+                ? new LicenseLeaseResponseDTO(false, result, null, 0, ttl, 0, 0)
+                : new LicenseLeaseResponseDTO(r.granted(), result, r.leaseId(), r.expiresAtMillis(), ttl,
+                r.activeDevices(), r.maxDevices());
+    }
 }
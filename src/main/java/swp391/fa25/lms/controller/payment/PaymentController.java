@@ -11,7 +11,12 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import swp391.fa25.lms.model.*;
 import swp391.fa25.lms.repository.*;
 import swp391.fa25.lms.service.CartService;
+import swp391.fa25.lms.service.CatalogSnapshotService;
+import swp391.fa25.lms.service.LicenseCertificateService;
+import swp391.fa25.lms.service.LicenseIndexService;
 import swp391.fa25.lms.service.OrderService;
+import swp391.fa25.lms.service.RevenueLedgerService;
+import swp391.fa25.lms.service.TypeaheadService;
 import swp391.fa25.lms.util.VNPayUtil;
 
 import java.time.LocalDateTime;
@@ -32,10 +37,15 @@ public class PaymentController {
     private final OrderService orderService;
     private final CartService cartService;
     private final VNPayUtil vnPayUtil;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final TypeaheadService typeaheadService;
 
     private final LicenseAccountRepository licenseAccountRepo;
     private final LicenseRepository licenseRepo;
     private final LicenseRenewLogRepository licenseRenewLogRepo;
+    private final RevenueLedgerService revenueLedgerService;
+    private final LicenseIndexService licenseIndexService;
+    private final LicenseCertificateService licenseCertificateService;
 
     // ===================== helpers =====================
 
@@ -193,11 +203,14 @@ public class PaymentController {
             newSub.setTransaction(tx);
 
             subscriptionRepo.save(newSub);
+            revenueLedgerService.recordSubscription(newSub, now);
 
             // Update seller active status and expiry date
             seller.setSellerActive(true);
             seller.setSellerExpiryDate(newSub.getEndDate());
             accountRepo.saveAndFlush(seller);
+            catalogSnapshotService.invalidate();
+            typeaheadService.invalidate();
 
             session.setAttribute("loggedInAccount", seller);
 
@@ -312,6 +325,7 @@ public class PaymentController {
             newSub.setActive(true);
             newSub.setTransaction(tx);
             subscriptionRepo.save(newSub);
+            revenueLedgerService.recordSubscription(newSub, LocalDateTime.now());
 
             user.setSellerExpiryDate(newSub.getEndDate());
             accountRepo.saveAndFlush(user);
@@ -500,7 +514,9 @@ public class PaymentController {
 
             licenseAccount.setEndDate(newEnd);
             licenseAccount.setStatus(LicenseAccount.Status.ACTIVE);
+            licenseCertificateService.reissue(licenseAccount);
             licenseAccountRepo.save(licenseAccount);
+            licenseIndexService.refresh(licenseAccountId);
 
             LicenseRenewLog renewLog = new LicenseRenewLog();
             renewLog.setLicenseAccount(licenseAccount);
@@ -509,6 +525,7 @@ public class PaymentController {
             renewLog.setAmountPaid(tx.getAmount());
             renewLog.setTransaction(tx);
             licenseRenewLogRepo.save(renewLog);
+            revenueLedgerService.recordLicenseRenewal(renewLog);
 
             tx.setStatus(PaymentTransaction.TransactionStatus.SUCCESS);
             tx.setCompletedAt(now);
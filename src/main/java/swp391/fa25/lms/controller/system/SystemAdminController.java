@@ -7,6 +7,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -16,10 +17,18 @@ import swp391.fa25.lms.model.Account;
 import swp391.fa25.lms.model.Role;
 import swp391.fa25.lms.model.SellerSubscription;
 import swp391.fa25.lms.repository.RoleRepository;
+import swp391.fa25.lms.repository.SellerPackageRepository;
+import swp391.fa25.lms.service.InventoryService;
+import swp391.fa25.lms.service.OperationalStats;
+import swp391.fa25.lms.service.RevenueLedgerService;
 import swp391.fa25.lms.service.RoleService;
 import swp391.fa25.lms.service.SellerSubscriptionService;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Controller
 @RequiredArgsConstructor
@@ -33,6 +42,19 @@ public class SystemAdminController {
     @Autowired
     private SellerSubscriptionService sellerSubscriptionService;
 
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private RevenueLedgerService revenueLedgerService;
+
+    @Autowired
+    private SellerPackageRepository sellerPackageRepository;
+
+    // Mọi service có bộ đếm vận hành (catalog, inventory, mail, license-index, usage...)
+    @Autowired
+    private List<OperationalStats> operationalStats;
+
 
     @GetMapping("/dashboard")
     public String dashboard(HttpSession session, Model model, RedirectAttributes ra) {
@@ -162,14 +184,44 @@ public class SystemAdminController {
                 sellerSubscriptionService.filter(
                         seller, packageId , packageName,status, fromDate, toDate, pageable
                 );
-        Long totalRevenue =
+        BigDecimal totalRevenue =
                 sellerSubscriptionService.sumRevenue(
                         seller, packageId, status, fromDate, toDate
                 );
         model.addAttribute("page", result);
         model.addAttribute("totalRevenue", totalRevenue);
+        // Doanh thu toàn hệ thống theo loại trong khoảng ngày (bảng tổng hợp theo ngày)
+        model.addAttribute("revenueByType", revenueLedgerService.totalsByType(fromDate, toDate));
+        model.addAttribute("packages", sellerPackageRepository.findAll());
 
         return "system/financial-report";
     }
 
+    // METRICS: bộ đếm vận hành của tất cả service, theo tên (xem OperationalStats.statsName)
+    @GetMapping("/stats")
+    @ResponseBody
+    public Map<String, Map<String, Object>> allStats() {
+        Map<String, Map<String, Object>> all = new TreeMap<>();
+        operationalStats.forEach(s -> all.put(s.statsName(), s.getStats()));
+        return all;
+    }
+
+    // METRICS của 1 service, vd /admin/stats/license-index
+    @GetMapping("/stats/{name}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> stats(@PathVariable String name) {
+        return operationalStats.stream()
+                .filter(s -> s.statsName().equals(name))
+                .findFirst()
+                .map(s -> ResponseEntity.ok(s.getStats()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // INVENTORY: available / reserved / sold của 1 tool
+    @GetMapping("/inventory/tools/{toolId}")
+    @ResponseBody
+    public Map<String, Object> inventoryCounters(@PathVariable Long toolId) {
+        return inventoryService.getCounters(toolId);
+    }
+
 }
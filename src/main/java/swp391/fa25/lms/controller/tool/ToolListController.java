@@ -1,6 +1,7 @@
 package swp391.fa25.lms.controller.tool;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -71,30 +72,22 @@ public class ToolListController {
         }
 
         // ====== LOAD TOOLS & PAGINATION ======
-        List<Tool> tools;
-        int totalTools;
+        Page<Tool> toolPage;
 
         if (isSeller) {
-            tools = toolListService.getToolsForSellerPaginated(
+            toolPage = toolListService.getToolsForSellerPaginated(
                     sellerId, keyword, categoryIdVal, loginMethodEnum, statusEnum,
                     priceMinVal, priceMaxVal, sort, page, size
             );
-            totalTools = toolListService.countToolsForSeller(
-                    sellerId, keyword, categoryIdVal, loginMethodEnum, statusEnum,
-                    priceMinVal, priceMaxVal
-            );
         } else {
-            tools = toolListService.getToolsForUserPaginated(
+            toolPage = toolListService.getToolsForUserPaginated(
                     keyword, categoryIdVal, authorVal, loginMethodEnum,
                     priceMinVal, priceMaxVal, sort, page, size
             );
-            totalTools = toolListService.countToolsForUser(
-                    keyword, categoryIdVal, authorVal, loginMethodEnum,
-                    priceMinVal, priceMaxVal
-            );
         }
 
-        int totalPages = (int) Math.ceil((double) totalTools / size);
+        List<Tool> tools = toolPage.getContent();
+        int totalPages = toolPage.getTotalPages();
 
         // ====== ADD DATA TO MODEL ======
         model.addAttribute("tools", tools);
@@ -1,5 +1,6 @@
 package swp391.fa25.lms.dto;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.format.annotation.DateTimeFormat;
 import swp391.fa25.lms.model.LicenseAccount;
@@ -7,7 +8,7 @@ import swp391.fa25.lms.model.LicenseAccount;
 import java.time.LocalDateTime;
 
 /**
- * Dùng cho ADMIN create/edit LicenseAccount (nếu có).
+ * Dùng cho ADMIN create/edit LicenseAccount (/admin/license-accounts).
  * Lưu ý: tùy Tool.loginMethod (TOKEN / USER_PASSWORD) mà chỉ 1 nhóm field được dùng.
  */
 public class LicenseAccountFormDTO {
@@ -28,6 +29,11 @@ public class LicenseAccountFormDTO {
 
     private Boolean used;
 
+    // Số thiết bị giữ lease cùng lúc; chỉ đảm bảo trong 1 node (lease nằm trong RAM từng node),
+    // chạy nhiều node phải route /api/licenses/leases dính theo account
+    @Min(value = 1, message = "Số thiết bị tối đa phải >= 1")
+    private Integer maxDevices;
+
     // credentials
     private String token;
     private String username;
@@ -49,6 +55,9 @@ public class LicenseAccountFormDTO {
     public Boolean getUsed() { return used; }
     public void setUsed(Boolean used) { this.used = used; }
 
+    public Integer getMaxDevices() { return maxDevices; }
+    public void setMaxDevices(Integer maxDevices) { this.maxDevices = maxDevices; }
+
     public String getToken() { return token; }
     public void setToken(String token) { this.token = token; }
 
@@ -0,0 +1,17 @@
+package swp391.fa25.lms.dto;
+
+/**
+ * Body của POST /api/licenses/leases: thông tin xác thực như /api/licenses/verify
+ * kèm định danh thiết bị (deviceId ổn định trên 1 máy, deviceInfo chỉ để hiển thị).
+ */
+public class LicenseLeaseRequestDTO extends LicenseVerifyRequestDTO {
+
+    private String deviceId;
+    private String deviceInfo;
+
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+
+    public String getDeviceInfo() { return deviceInfo; }
+    public void setDeviceInfo(String deviceInfo) { this.deviceInfo = deviceInfo; }
+}
@@ -0,0 +1,36 @@
+package swp391.fa25.lms.dto;
+
+/**
+ * Kết quả xin / gia hạn lease thiết bị.
+ * result: GRANTED, SEATS_EXHAUSTED, LEASE_NOT_FOUND (sai id hoặc đã hết hạn), LICENSE_INVALID, BAD_REQUEST.
+ * Tool gửi heartbeat trước expiresAt (epoch millis), khuyến nghị mỗi ttlSeconds / 3.
+ */
+public class LicenseLeaseResponseDTO {
+
+    private boolean granted;
+    private String result;
+    private String leaseId;
+    private long expiresAt;
+    private long ttlSeconds;
+    private int activeDevices;
+    private int maxDevices;
+
+    public LicenseLeaseResponseDTO(boolean granted, String result, String leaseId, long expiresAt,
+                                   long ttlSeconds, int activeDevices, int maxDevices) {
+        this.granted = granted;
+        this.result = result;
+        this.leaseId = leaseId;
+        this.expiresAt = expiresAt;
+        this.ttlSeconds = ttlSeconds;
+        this.activeDevices = activeDevices;
+        this.maxDevices = maxDevices;
+    }
+
+    public boolean isGranted() { return granted; }
+    public String getResult() { return result; }
+    public String getLeaseId() { return leaseId; }
+    public long getExpiresAt() { return expiresAt; }
+    public long getTtlSeconds() { return ttlSeconds; }
+    public int getActiveDevices() { return activeDevices; }
+    public int getMaxDevices() { return maxDevices; }
+}
@@ -0,0 +1,26 @@
+package swp391.fa25.lms.dto;
+
+/**
+ * Body của POST /api/licenses/verify do tool phía khách gửi lên.
+ * Gửi toolId + clientSecret (khách tạo ở trang License Account), hoặc toolId + username + password với tool USER_PASSWORD.
+ * Token 6 số của pool không được nhận ở đây.
+ */
+public class LicenseVerifyRequestDTO {
+
+    private Long toolId;
+    private String clientSecret;
+    private String username;
+    private String password;
+
+    public Long getToolId() { return toolId; }
+    public void setToolId(Long toolId) { this.toolId = toolId; }
+
+    public String getClientSecret() { return clientSecret; }
+    public void setClientSecret(String clientSecret) { this.clientSecret = clientSecret; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getPassword() { return password; }
+    public void setPassword(String password) { this.password = password; }
+}
@@ -0,0 +1,32 @@
+package swp391.fa25.lms.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả xác thực license trả về cho tool phía khách.
+ * result: VALID, INVALID_CREDENTIALS (sai / không tồn tại / đã thu hồi), EXPIRED, BAD_REQUEST.
+ */
+public class LicenseVerifyResponseDTO {
+
+    private boolean valid;
+    private String result;
+    private Long toolId;
+    private LocalDateTime endDate;
+    // Certificate ký sẵn (chỉ khi VALID): tool lưu lại và tự kiểm tra offline ở các lần mở sau
+    private String certificate;
+
+    public LicenseVerifyResponseDTO(boolean valid, String result, Long toolId, LocalDateTime endDate,
+                                    String certificate) {
+        this.valid = valid;
+        this.result = result;
+        this.toolId = toolId;
+        this.endDate = endDate;
+        this.certificate = certificate;
+    }
+
+    public boolean isValid() { return valid; }
+    public String getResult() { return result; }
+    public Long getToolId() { return toolId; }
+    public LocalDateTime getEndDate() { return endDate; }
+    public String getCertificate() { return certificate; }
+}
@@ -0,0 +1,33 @@
+package swp391.fa25.lms.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body của POST /api/licenses/usage: thông tin xác thực như /api/licenses/verify kèm 1 lô sự kiện sử dụng.
+ * type: LAUNCH (mở tool) hoặc FEATURE (dùng tính năng, feature bắt buộc, tối đa 64 ký tự);
+ * at: epoch millis lúc xảy ra, bỏ trống = lúc server nhận.
+ */
+public class UsageBatchRequestDTO extends LicenseVerifyRequestDTO {
+
+    private List<Event> events = new ArrayList<>();
+
+    public List<Event> getEvents() { return events; }
+    public void setEvents(List<Event> events) { this.events = events; }
+
+    public static class Event {
+
+        private String type;
+        private String feature;
+        private Long at;
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+
+        public String getFeature() { return feature; }
+        public void setFeature(String feature) { this.feature = feature; }
+
+        public Long getAt() { return at; }
+        public void setAt(Long at) { this.at = at; }
+    }
+}
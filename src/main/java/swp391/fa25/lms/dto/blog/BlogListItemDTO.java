@@ -92,4 +92,32 @@ public class BlogListItemDTO {
         // Set default reading time (avoid loading content for list view)
         this.readingTime = 5; // Default 5 minutes
     }
+
+    /**
+     * Constructor cho projection JPQL (BlogRepository.findAuthorListItems): không đọc cột content
+     */
+    public BlogListItemDTO(Long blogId, String title, String slug, String summary, String thumbnailImage,
+                           swp391.fa25.lms.model.Blog.Status status, Integer viewCount,
+                           LocalDateTime createdAt, LocalDateTime updatedAt, LocalDateTime scheduledPublishAt,
+                           Long categoryId, String categoryName, String categorySlug,
+                           Long authorId, String authorName, String authorEmail) {
+        this.blogId = blogId;
+        this.title = title;
+        this.slug = slug;
+        this.summary = summary;
+        this.thumbnailImage = thumbnailImage;
+        this.status = status != null ? status.name() : null;
+        this.viewCount = viewCount;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.scheduledPublishAt = scheduledPublishAt;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.categorySlug = categorySlug;
+        this.authorId = authorId;
+        this.authorName = authorName;
+        this.authorEmail = authorEmail;
+        this.shortSummary = (summary != null && summary.length() > 100) ? summary.substring(0, 100) + "..." : summary;
+        this.readingTime = 5; // Default 5 minutes
+    }
 }
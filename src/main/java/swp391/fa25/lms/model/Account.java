@@ -9,7 +9,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "Account")
+@Table(name = "Account", indexes = {
+        // Job hết hạn seller: seller_active = 1 AND seller_expiry_date < now
+        @Index(name = "IX_Account_seller_active_expiry", columnList = "seller_active, seller_expiry_date")
+})
 @JsonIgnoreProperties({
         "hibernateLazyInitializer", "handler",
         "orders", "favorites", "feedbacks", "tools", "uploadedFiles"
@@ -8,7 +8,9 @@ import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "Blog")
+@Table(name = "Blog", indexes = {
+        @Index(name = "IX_Blog_author_created", columnList = "author_id, created_at")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Blog {
 
@@ -59,7 +61,8 @@ public class Blog {
         ARCHIVED    // Lưu trữ (không hiển thị nhưng không xóa)
     }
 
-    @Column(name = "view_count", nullable = false)
+    // Chỉ đổi qua BlogRepository.addViewCount; save() entity không ghi đè số đã flush
+    @Column(name = "view_count", nullable = false, updatable = false)
     private Integer viewCount = 0;
 
     // Timestamps
@@ -167,10 +170,6 @@ public class Blog {
         this.status = Status.ARCHIVED;
     }
 
-    public void incrementViewCount() {
-        this.viewCount++;
-    }
-
     public String getAuthorName() {
         return author != null ? author.getFullName() : "Unknown";
     }
@@ -0,0 +1,35 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 1 bộ đếm của dashboard (vd: tools:PENDING, seller:12:tools:PUBLISHED, reports:PENDING).
+ * Cộng dồn trong cùng transaction với thay đổi nghiệp vụ; DashboardRollupService đối soát định kỳ.
+ */
+@Entity
+@Table(name = "dashboard_counter")
+@Getter
+@Setter
+@NoArgsConstructor
+public class DashboardCounter {
+
+    @Id
+    @Column(name = "counter_key", length = 100)
+    private String counterKey;
+
+    @Column(name = "counter_value", nullable = false)
+    private Long counterValue = 0L;
+
+    private LocalDateTime updatedAt;
+
+    public DashboardCounter(String counterKey, long counterValue) {
+        this.counterKey = counterKey;
+        this.counterValue = counterValue;
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -8,11 +8,20 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "License_Account")
+@Table(name = "License_Account", indexes = {
+        // Pool token còn trống của 1 license: license_id + order_id IS NULL + used = 0
+        @Index(name = "IX_License_Account_license_order", columnList = "license_id, order_id, used"),
+        // Admin browser: lọc status / used rồi keyset theo id
+        @Index(name = "IX_License_Account_status_used", columnList = "status, used, licenseAccountId"),
+        // Job hết hạn: status = ACTIVE AND end_date < now
+        @Index(name = "IX_License_Account_status_end", columnList = "status, endDate")
+})
 public class LicenseAccount {
 
+    // Sequence (cấp id theo khối 50) để Hibernate gom INSERT thành JDBC batch khi tạo pool token
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "license_account_seq")
+    @SequenceGenerator(name = "license_account_seq", sequenceName = "license_account_seq", allocationSize = 50)
     private Long licenseAccountId;
 
 
@@ -55,6 +64,26 @@ public class LicenseAccount {
 
     private Boolean used = false;
 
+    // JWT ký bằng khóa server (LicenseCertificateService), tool của khách tự kiểm tra offline
+    @Column(length = 1024)
+    private String certificate;
+
+    // SHA-256 (hex) của client secret cho API license; secret gốc chỉ hiện cho khách 1 lần lúc tạo
+    @Column(name = "client_secret_hash", length = 64)
+    private String clientSecretHash;
+
+    // Số thiết bị được giữ lease cùng lúc (LicenseLeaseService); null coi như 1.
+    // Đếm theo lease trong RAM từng node: nhiều node mà không route lease dính theo account thì mỗi node cấp đủ maxDevices
+    @Column(name = "max_devices")
+    private Integer maxDevices = 1;
+
+    // Lần cấp lease gần nhất và thiết bị nhận lease đó (ghi lúc flush lease, không ghi mỗi heartbeat)
+    @Column(name = "last_login")
+    private LocalDateTime lastLogin;
+
+    @Column(name = "device_info", length = 255)
+    private String deviceInfo;
+
     public LicenseAccount() {
     }
 
@@ -68,6 +97,9 @@ public class LicenseAccount {
         this.status = status;
         this.startDate = startDate;
         this.endDate = endDate;
+        this.lastLogin = lastLogin;
+        this.deviceInfo = deviceInfo;
+        this.maxDevices = maxDevices;
     }
 
     public Long getLicenseAccountId() {
@@ -157,4 +189,44 @@ public class LicenseAccount {
     public void setUsed(Boolean used) {
         this.used = used;
     }
+
+    public String getCertificate() {
+        return certificate;
+    }
+
+    public void setCertificate(String certificate) {
+        this.certificate = certificate;
+    }
+
+    public String getClientSecretHash() {
+        return clientSecretHash;
+    }
+
+    public void setClientSecretHash(String clientSecretHash) {
+        this.clientSecretHash = clientSecretHash;
+    }
+
+    public Integer getMaxDevices() {
+        return maxDevices;
+    }
+
+    public void setMaxDevices(Integer maxDevices) {
+        this.maxDevices = maxDevices;
+    }
+
+    public LocalDateTime getLastLogin() {
+        return lastLogin;
+    }
+
+    public void setLastLogin(LocalDateTime lastLogin) {
+        this.lastLogin = lastLogin;
+    }
+
+    public String getDeviceInfo() {
+        return deviceInfo;
+    }
+
+    public void setDeviceInfo(String deviceInfo) {
+        this.deviceInfo = deviceInfo;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nhật ký License_Account vừa đổi, để các node khác làm mới LicenseIndexService (chỉ thêm, dọn theo changed_at).
+ * seq (identity) là thứ tự đọc: mỗi node nhớ seq đã đọc tới (SeqFeedCursor) và đọc lại các id mới hơn.
+ */
+@Entity
+@Table(name = "license_account_change",
+        indexes = {
+                @Index(name = "IX_license_account_change_at", columnList = "changed_at")
+        })
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class LicenseAccountChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq")
+    private Long seq;
+
+    @Column(name = "license_account_id", nullable = false)
+    private Long licenseAccountId;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,46 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease thiết bị đang giữ seat của 1 License_Account. Chỉ ghi khi cấp / trả / hết hạn lease (không ghi mỗi heartbeat),
+ * để khởi động lại không làm mất seat đang dùng. Thời hạn thật của lease nằm trong RAM (LicenseLeaseService).
+ */
+@Entity
+@Table(name = "license_lease",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "UX_license_lease_device", columnNames = {"license_account_id", "device_id"})
+        })
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class LicenseLease {
+
+    @Id
+    @Column(name = "lease_id", length = 36)
+    private String leaseId;
+
+    @Column(name = "license_account_id", nullable = false)
+    private Long licenseAccountId;
+
+    @Column(name = "device_id", nullable = false, length = 100)
+    private String deviceId;
+
+    @Column(name = "device_info", length = 255)
+    private String deviceInfo;
+
+    @Column(name = "acquired_at", nullable = false)
+    private LocalDateTime acquiredAt;
+
+    public LicenseLease(String leaseId, Long licenseAccountId, String deviceId, String deviceInfo, LocalDateTime acquiredAt) {
+        this.leaseId = leaseId;
+        this.licenseAccountId = licenseAccountId;
+        this.deviceId = deviceId;
+        this.deviceInfo = deviceInfo;
+        this.acquiredAt = acquiredAt;
+    }
+}
@@ -0,0 +1,58 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Certificate bị thu hồi trước hạn, chỉ thêm không sửa: account chuyển REVOKED / EXPIRED khi certificate còn hiệu lực,
+ * hoặc certificate còn hiệu lực bị thay bằng bản cấp lại (status = ACTIVE).
+ * seq (identity) là số thứ tự của feed thu hồi: client đồng bộ delta theo seq.
+ * Sau certificate_expires_at certificate tự hết hạn (exp) nên dòng không còn đưa vào snapshot.
+ */
+@Entity
+@Table(name = "license_revocation",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "UX_license_revocation_cert", columnNames = {"certificate_id"})
+        },
+        indexes = {
+                @Index(name = "IX_license_revocation_expires", columnList = "certificate_expires_at")
+        })
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class LicenseRevocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq")
+    private Long seq;
+
+    // jti của certificate bị thu hồi
+    @Column(name = "certificate_id", nullable = false, length = 36)
+    private String certificateId;
+
+    @Column(name = "license_account_id", nullable = false)
+    private Long licenseAccountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private LicenseAccount.Status status;
+
+    @Column(name = "certificate_expires_at", nullable = false)
+    private LocalDateTime certificateExpiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+
+    public LicenseRevocation(String certificateId, Long licenseAccountId, LicenseAccount.Status status,
+                             LocalDateTime certificateExpiresAt, LocalDateTime revokedAt) {
+        this.certificateId = certificateId;
+        this.licenseAccountId = licenseAccountId;
+        this.status = status;
+        this.certificateExpiresAt = certificateExpiresAt;
+        this.revokedAt = revokedAt;
+    }
+}
@@ -0,0 +1,68 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 1 email chờ gửi, ghi cùng transaction với thay đổi nghiệp vụ (đăng ký, quên mật khẩu, ...).
+ * PENDING -> SENDING (worker đã claim) -> SENT | PENDING (lỗi, chờ retry) | FAILED (hết lượt retry)
+ */
+@Entity
+@Table(name = "mail_outbox", indexes = {
+        @Index(name = "IX_mail_outbox_status_next", columnList = "status, next_attempt_at"),
+        @Index(name = "IX_mail_outbox_claim", columnList = "claim_token")
+})
+@Getter
+@Setter
+public class MailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "mail_id")
+    private Long mailId;
+
+    // Tên template trong classpath:/mail/ (vd: verification-code.html, support-request.txt)
+    @Column(nullable = false, length = 100)
+    private String template;
+
+    @Column(nullable = false, length = 255)
+    private String recipient;
+
+    @Column(length = 255)
+    private String cc;
+
+    @Column(nullable = false, columnDefinition = "NVARCHAR(255)")
+    private String subject;
+
+    // Biến của template dạng JSON; xóa sau khi gửi xong (có OTP / mật khẩu mới)
+    @Column(columnDefinition = "NVARCHAR(MAX)")
+    private String model;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.PENDING;
+
+    public enum Status { PENDING, SENDING, SENT, FAILED }
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Node / lượt nào đang giữ mail (SENDING)
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    private LocalDateTime claimedAt;
+
+    @Column(length = 500)
+    private String lastError;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+}
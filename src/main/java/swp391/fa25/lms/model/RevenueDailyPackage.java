@@ -0,0 +1,48 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng doanh thu bán gói seller trong 1 ngày theo từng gói, cộng dồn khi ghi sổ.
+ */
+@Entity
+@Table(name = "revenue_daily_package", uniqueConstraints = {
+        @UniqueConstraint(name = "UX_revenue_daily_package", columnNames = {"business_date", "package_id"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class RevenueDailyPackage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "bucket_id")
+    private Long bucketId;
+
+    @Column(name = "business_date", nullable = false)
+    private LocalDate businessDate;
+
+    @Column(name = "package_id", nullable = false)
+    private Integer packageId;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private Long entryCount = 0L;
+
+    private LocalDateTime updatedAt;
+
+    public RevenueDailyPackage(LocalDate businessDate, Integer packageId) {
+        this.businessDate = businessDate;
+        this.packageId = packageId;
+        this.updatedAt = LocalDateTime.now();
+    }
+}
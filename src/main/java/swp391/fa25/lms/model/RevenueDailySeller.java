@@ -0,0 +1,55 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng doanh thu 1 ngày của 1 seller theo loại (gói / bán tool / gia hạn), cộng dồn khi ghi sổ.
+ */
+@Entity
+@Table(name = "revenue_daily_seller", uniqueConstraints = {
+        @UniqueConstraint(name = "UX_revenue_daily_seller", columnNames = {"business_date", "seller_id", "entry_type"})
+}, indexes = {
+        @Index(name = "IX_revenue_daily_seller_seller", columnList = "seller_id, business_date")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class RevenueDailySeller {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "bucket_id")
+    private Long bucketId;
+
+    @Column(name = "business_date", nullable = false)
+    private LocalDate businessDate;
+
+    @Column(name = "seller_id", nullable = false)
+    private Long sellerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false, length = 20)
+    private RevenueLedgerEntry.EntryType entryType;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private Long entryCount = 0L;
+
+    private LocalDateTime updatedAt;
+
+    public RevenueDailySeller(LocalDate businessDate, Long sellerId, RevenueLedgerEntry.EntryType entryType) {
+        this.businessDate = businessDate;
+        this.sellerId = sellerId;
+        this.entryType = entryType;
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,75 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Sổ doanh thu: mỗi khoản tiền thu được (mua gói seller, bán tool, gia hạn license) là 1 dòng, chỉ thêm không sửa.
+ * (entry_type, source_id) unique -> callback thanh toán gọi lại cũng không ghi 2 lần.
+ */
+@Entity
+@Table(name = "revenue_ledger",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "UX_revenue_ledger_source", columnNames = {"entry_type", "source_id"})
+        },
+        indexes = {
+                @Index(name = "IX_revenue_ledger_day", columnList = "business_date"),
+                @Index(name = "IX_revenue_ledger_seller_day", columnList = "seller_id, business_date")
+        })
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class RevenueLedgerEntry {
+
+    public enum EntryType { SUBSCRIPTION, TOOL_SALE, LICENSE_RENEWAL }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "entry_id")
+    private Long entryId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false, length = 20)
+    private EntryType entryType;
+
+    // SUBSCRIPTION: SellerSubscription.id, TOOL_SALE: CustomerOrder.orderId, LICENSE_RENEWAL: LicenseRenewLog.renewLogId
+    @Column(name = "source_id", nullable = false)
+    private Long sourceId;
+
+    // Seller mua gói / seller sở hữu tool (null nếu tool không có seller)
+    @Column(name = "seller_id")
+    private Long sellerId;
+
+    @Column(name = "package_id")
+    private Integer packageId;
+
+    @Column(name = "tool_id")
+    private Long toolId;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal amount;
+
+    // Ngày ghi nhận doanh thu (ngày thanh toán thành công), khóa của các bảng tổng hợp theo ngày
+    @Column(name = "business_date", nullable = false)
+    private LocalDate businessDate;
+
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+
+    public RevenueLedgerEntry(EntryType entryType, Long sourceId, Long sellerId, Integer packageId, Long toolId,
+                              BigDecimal amount, LocalDateTime occurredAt) {
+        this.entryType = entryType;
+        this.sourceId = sourceId;
+        this.sellerId = sellerId;
+        this.packageId = packageId;
+        this.toolId = toolId;
+        this.amount = amount;
+        this.occurredAt = occurredAt;
+        this.businessDate = occurredAt.toLocalDate();
+    }
+}
@@ -0,0 +1,50 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Giữ chỗ tồn kho của 1 tool cho 1 giao dịch thanh toán đang chờ VNPay.
+ * HELD -> COMMITTED (thanh toán thành công) | RELEASED (thất bại) | EXPIRED (quá hạn giữ chỗ)
+ */
+@Entity
+@Table(name = "stock_reservation", indexes = {
+        @Index(name = "IX_stock_reservation_tx", columnList = "transaction_id"),
+        @Index(name = "IX_stock_reservation_status_expires", columnList = "status, expires_at")
+})
+@Getter
+@Setter
+public class StockReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "reservation_id")
+    private Long reservationId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "tool_id", nullable = false)
+    private Tool tool;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", nullable = false)
+    private PaymentTransaction transaction;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.HELD;
+
+    public enum Status { HELD, COMMITTED, RELEASED, EXPIRED }
+
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    private LocalDateTime closedAt;
+}
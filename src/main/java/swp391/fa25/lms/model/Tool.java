@@ -7,6 +7,7 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -15,7 +16,11 @@ import java.util.Objects;
 
 
 @Entity
-@Table(name = "Tool")
+@Table(name = "Tool", indexes = {
+        @Index(name = "IX_Tool_status_min_price", columnList = "status, min_price"),
+        @Index(name = "IX_Tool_seller", columnList = "seller_id")
+})
+@DynamicUpdate
 @JsonIgnoreProperties({
         "hibernateLazyInitializer", "handler",
         "feedbacks", "orders", "files", "toolFiles"
@@ -97,6 +102,13 @@ public class Tool {
     private Integer quantity = 0;
     private Integer availableQuantity;
 
+    // Đang giữ chỗ cho các thanh toán chưa xong / đã bán - chỉ cập nhật qua InventoryService (UPDATE có điều kiện)
+    @Column(name = "reserved_quantity", nullable = false)
+    private Integer reservedQuantity = 0;
+
+    @Column(name = "sold_quantity", nullable = false)
+    private Integer soldQuantity = 0;
+
     public String getNote() {
         return note;
     }
@@ -218,26 +230,65 @@ public class Tool {
         this.updatedAt = updatedAt;
     }
 
-    @Transient
-    private Double averageRating;
+    public Integer getReservedQuantity() {
+        return reservedQuantity;
+    }
 
-    @Transient
-    private Long totalReviews;
+    public void setReservedQuantity(Integer reservedQuantity) {
+        this.reservedQuantity = reservedQuantity;
+    }
 
-    public Double getAverageRating() {
-        return averageRating;
+    public Integer getSoldQuantity() {
+        return soldQuantity;
+    }
+
+    public void setSoldQuantity(Integer soldQuantity) {
+        this.soldQuantity = soldQuantity;
+    }
+
+    // ================== RATING SUMMARY ==================
+    // Chỉ tính feedback PUBLISHED, được cập nhật tăng dần bởi ToolSummaryService
+    @Column(name = "review_count", nullable = false)
+    private Long reviewCount = 0L;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    public Long getReviewCount() {
+        return reviewCount;
+    }
+
+    public void setReviewCount(Long reviewCount) {
+        this.reviewCount = reviewCount;
     }
 
-    public void setAverageRating(Double averageRating) {
-        this.averageRating = averageRating;
+    public Long getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(Long ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public Double getAverageRating() {
+        if (reviewCount == null || reviewCount == 0 || ratingSum == null) return 0.0;
+        return (double) ratingSum / reviewCount;
     }
 
     public Long getTotalReviews() {
-        return totalReviews;
+        return reviewCount == null ? 0L : reviewCount;
+    }
+
+    // Số feedback (mọi status) chưa có reply của seller; hộp thư seller = SUM theo tool của seller
+    @Column(name = "unreplied_feedback_count", nullable = false)
+    private Long unrepliedFeedbackCount = 0L;
+
+    public Long getUnrepliedFeedbackCount() {
+        return unrepliedFeedbackCount;
     }
 
-    public void setTotalReviews(Long totalReviews) {
-        this.totalReviews = totalReviews;
+    public void setUnrepliedFeedbackCount(Long unrepliedFeedbackCount) {
+        this.unrepliedFeedbackCount = unrepliedFeedbackCount;
     }
 
     public LoginMethod getLoginMethod() {
@@ -252,11 +303,12 @@ public class Tool {
         this.loginMethod = loginMethod;
     }
 
-    // ================== PRICE HELPERS ==================
-    @Transient
+    // ================== PRICE SUMMARY ==================
+    // Giá license thấp nhất / cao nhất, cập nhật mỗi khi danh sách license thay đổi
+    @Column(name = "min_price", precision = 18, scale = 2)
     private BigDecimal minPrice;
 
-    @Transient
+    @Column(name = "max_price", precision = 18, scale = 2)
     private BigDecimal maxPrice;
 
     public BigDecimal getMinPrice() {
@@ -0,0 +1,81 @@
+package swp391.fa25.lms.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số sự kiện sử dụng (mở tool / dùng tính năng) trong 1 giờ hoặc 1 ngày, cộng dồn theo lô bởi UsageTelemetryService:
+ * bucket ngày theo từng license account, bucket giờ gộp theo tool (licenseAccountId = null).
+ * Dashboard seller chỉ đọc bảng này, không đọc sự kiện thô.
+ */
+@Entity
+@Table(name = "usage_bucket", uniqueConstraints = {
+        @UniqueConstraint(name = "UX_usage_bucket",
+                columnNames = {"granularity", "bucket_start", "tool_id", "license_account_id", "event_type", "feature"})
+}, indexes = {
+        @Index(name = "IX_usage_bucket_seller", columnList = "seller_id, granularity, bucket_start"),
+        @Index(name = "IX_usage_bucket_tool", columnList = "tool_id, granularity, bucket_start")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class UsageBucket {
+
+    public enum Granularity { HOUR, DAY }
+
+    public enum EventType { LAUNCH, FEATURE }
+
+    // Sequence (cấp id theo khối 50) để Hibernate gom INSERT bucket mới thành JDBC batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "usage_bucket_seq")
+    @SequenceGenerator(name = "usage_bucket_seq", sequenceName = "usage_bucket_seq", allocationSize = 50)
+    @Column(name = "bucket_id")
+    private Long bucketId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Granularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    // null ở bucket giờ: 1 dòng / tool / loại / tính năng thay vì 1 dòng / license
+    @Column(name = "license_account_id")
+    private Long licenseAccountId;
+
+    @Column(name = "tool_id", nullable = false)
+    private Long toolId;
+
+    @Column(name = "seller_id")
+    private Long sellerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 20)
+    private EventType eventType;
+
+    // LAUNCH -> chuỗi rỗng (không để NULL để unique so khớp được)
+    @Column(nullable = false, length = 64)
+    private String feature = "";
+
+    @Column(nullable = false)
+    private Long eventCount = 0L;
+
+    private LocalDateTime updatedAt;
+
+    public UsageBucket(Granularity granularity, LocalDateTime bucketStart, Long licenseAccountId, Long toolId,
+                       Long sellerId, EventType eventType, String feature, long eventCount) {
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+        this.licenseAccountId = licenseAccountId;
+        this.toolId = toolId;
+        this.sellerId = sellerId;
+        this.eventType = eventType;
+        this.feature = feature;
+        this.eventCount = eventCount;
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -10,6 +10,8 @@ import swp391.fa25.lms.model.Account;
 import swp391.fa25.lms.model.Account.AccountStatus;
 import swp391.fa25.lms.model.Role.RoleName;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,6 +40,23 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
 
     List<Account> findTop8ByStatusOrderByUpdatedAtDesc(AccountStatus status);
 
+    // ===== SELLER EXPIRY =====
+    // Id seller còn cờ active nhưng đã quá hạn gói
+    @Query("""
+           SELECT a.accountId FROM Account a
+           WHERE a.sellerActive = true AND a.sellerExpiryDate < :now
+           ORDER BY a.sellerExpiryDate
+           """)
+    List<Long> findExpiredSellerIds(@Param("now") LocalDateTime now, Pageable limit);
+
+    // Chỉ tắt seller vẫn active và vẫn quá hạn (seller vừa gia hạn / node khác đã xử lý thì bỏ qua)
+    @Modifying
+    @Query("""
+           UPDATE Account a SET a.sellerActive = false, a.sellerExpiryDate = NULL
+           WHERE a.accountId IN :ids AND a.sellerActive = true AND a.sellerExpiryDate < :now
+           """)
+    int deactivateExpiredSellers(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
     @Query("""
            select a.accountId
            from Account a
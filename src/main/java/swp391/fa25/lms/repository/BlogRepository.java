@@ -2,14 +2,18 @@ package swp391.fa25.lms.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.dto.blog.BlogListItemDTO;
 import swp391.fa25.lms.model.Blog;
 import swp391.fa25.lms.model.BlogCategory;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -41,18 +45,59 @@ public interface BlogRepository extends JpaRepository<Blog, Long> {
     Page<Blog> findByAuthorAccountId(Long authorId, Pageable pageable);
 
     /**
-     * Search blog theo title hoặc content (full-text search)
-     * Chỉ lấy blog từ category ACTIVE
+     * Danh sách blog của 1 author cho trang quản lý (lọc category / status / keyword trong SQL),
+     * trả projection không kèm content; đi theo index (author_id, created_at).
+     * keyword là pattern LIKE đã escape (LikePattern.contains)
+     */
+    @Query(value = "SELECT new swp391.fa25.lms.dto.blog.BlogListItemDTO(" +
+            "b.blogId, b.title, b.slug, b.summary, b.thumbnailImage, b.status, b.viewCount, " +
+            "b.createdAt, b.updatedAt, b.scheduledPublishAt, " +
+            "c.blogCategoryId, c.categoryName, c.slug, a.accountId, a.fullName, a.email) " +
+            "FROM Blog b JOIN b.author a LEFT JOIN b.category c " +
+            "WHERE a.accountId = :authorId AND " +
+            "(:categoryId IS NULL OR c.blogCategoryId = :categoryId) AND " +
+            "(:status IS NULL OR b.status = :status) AND " +
+            "(:keyword IS NULL OR LOWER(b.title) LIKE LOWER(:keyword) ESCAPE '!' " +
+            "OR LOWER(b.summary) LIKE LOWER(:keyword) ESCAPE '!')",
+            countQuery = "SELECT COUNT(b) FROM Blog b LEFT JOIN b.category c " +
+                    "WHERE b.author.accountId = :authorId AND " +
+                    "(:categoryId IS NULL OR c.blogCategoryId = :categoryId) AND " +
+                    "(:status IS NULL OR b.status = :status) AND " +
+                    "(:keyword IS NULL OR LOWER(b.title) LIKE LOWER(:keyword) ESCAPE '!' " +
+                    "OR LOWER(b.summary) LIKE LOWER(:keyword) ESCAPE '!')")
+    Page<BlogListItemDTO> findAuthorListItems(@Param("authorId") Long authorId,
+                                              @Param("categoryId") Long categoryId,
+                                              @Param("status") Blog.Status status,
+                                              @Param("keyword") String keyword,
+                                              Pageable pageable);
+
+    /**
+     * Search blog: keyword đã được tra ở chỉ mục full-text (SearchIndexService),
+     * ở đây chỉ lọc theo danh sách id trúng + status + category ACTIVE
      */
     @Query("SELECT b FROM Blog b " +
-            "WHERE (LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(b.content) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(b.summary) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
+            "WHERE b.blogId IN :blogIds AND " +
             "b.status = :status AND " +
             "b.category.status = 'ACTIVE'")
-    Page<Blog> searchByKeyword(@Param("keyword") String keyword, 
-                                @Param("status") Blog.Status status, 
-                                Pageable pageable);
+    Page<Blog> searchByIds(@Param("blogIds") Collection<Long> blogIds,
+                           @Param("status") Blog.Status status,
+                           Pageable pageable);
+
+    @Query("SELECT b FROM Blog b " +
+            "WHERE b.blogId IN :blogIds AND " +
+            "b.status = :status AND " +
+            "b.category.status = 'ACTIVE'")
+    List<Blog> findSearchableByIds(@Param("blogIds") Collection<Long> blogIds,
+                                   @Param("status") Blog.Status status);
+
+    /**
+     * Id mọi blog tìm được (status + category ACTIVE), theo sort truyền vào:
+     * dùng khi keyword trúng quá nhiều blog để truyền qua IN, service tự giao với tập hit
+     */
+    @Query("SELECT b.blogId FROM Blog b " +
+            "WHERE b.status = :status AND " +
+            "b.category.status = 'ACTIVE'")
+    List<Long> findSearchableIds(@Param("status") Blog.Status status, Sort sort);
 
     /**
      * Lấy các blog published và có scheduledPublishAt <= hiện tại
@@ -65,32 +110,41 @@ public interface BlogRepository extends JpaRepository<Blog, Long> {
     Page<Blog> findPublishedBlogs(@Param("now") LocalDateTime now, Pageable pageable);
 
     /**
-     * Lấy top blog theo view count
-     * Chỉ lấy blog từ category ACTIVE
+     * Lấy top blog theo view count (BlogReadModelCache giữ sẵn top-N)
+     * Chỉ lấy blog từ category ACTIVE, đã tới giờ hẹn đăng
      */
     @Query("SELECT b FROM Blog b " +
             "LEFT JOIN FETCH b.category " +
             "LEFT JOIN FETCH b.author " +
             "WHERE b.status = 'PUBLISHED' AND " +
+            "(b.scheduledPublishAt IS NULL OR b.scheduledPublishAt <= :now) AND " +
             "b.category.status = 'ACTIVE' " +
             "ORDER BY b.viewCount DESC")
-    List<Blog> findTopViewedBlogs(Pageable pageable);
+    List<Blog> findTopViewedBlogs(@Param("now") LocalDateTime now, Pageable pageable);
 
     /**
-     * Lấy các blog liên quan (cùng category, khác ID)
-     * Chỉ lấy blog từ category ACTIVE
+     * Cộng lượt xem đã gom trong RAM (BlogViewCounter), các blog cùng delta cộng trong 1 câu
+     */
+    @Modifying
+    @Query("UPDATE Blog b SET b.viewCount = b.viewCount + :delta WHERE b.blogId IN :blogIds")
+    int addViewCount(@Param("blogIds") Collection<Long> blogIds, @Param("delta") int delta);
+
+    /**
+     * Blog mới nhất của 1 category (nguồn cho "bài liên quan", cache theo category;
+     * bài đang xem được loại ở tầng cache)
+     * Chỉ lấy blog từ category ACTIVE, đã tới giờ hẹn đăng
      */
     @Query("SELECT b FROM Blog b " +
             "LEFT JOIN FETCH b.category " +
             "LEFT JOIN FETCH b.author " +
             "WHERE b.category.blogCategoryId = :categoryId AND " +
-            "b.blogId != :excludeBlogId AND " +
             "b.status = 'PUBLISHED' AND " +
+            "(b.scheduledPublishAt IS NULL OR b.scheduledPublishAt <= :now) AND " +
             "b.category.status = 'ACTIVE' " +
             "ORDER BY b.createdAt DESC")
-    List<Blog> findRelatedBlogs(@Param("categoryId") Long categoryId, 
-                                 @Param("excludeBlogId") Long excludeBlogId,
-                                 Pageable pageable);
+    List<Blog> findRecentInCategory(@Param("categoryId") Long categoryId,
+                                    @Param("now") LocalDateTime now,
+                                    Pageable pageable);
 
     /**
      * Đếm số blog theo category (tất cả status)
@@ -98,9 +152,20 @@ public interface BlogRepository extends JpaRepository<Blog, Long> {
     long countByCategory(BlogCategory category);
 
     /**
-     * Đếm số blog PUBLISHED theo category (dùng cho public view)
-     * Chỉ đếm blog từ category ACTIVE
+     * [categoryId, số blog mọi status, số blog PUBLISHED đã tới giờ hẹn đăng] cho mọi category, 1 câu GROUP BY
+     */
+    @Query("SELECT b.category.blogCategoryId, COUNT(b), " +
+            "SUM(CASE WHEN b.status = 'PUBLISHED' AND " +
+            "(b.scheduledPublishAt IS NULL OR b.scheduledPublishAt <= :now) THEN 1 ELSE 0 END) " +
+            "FROM Blog b " +
+            "WHERE b.category IS NOT NULL " +
+            "GROUP BY b.category.blogCategoryId")
+    List<Object[]> countByCategoryGrouped(@Param("now") LocalDateTime now);
+
+    /**
+     * Mốc hẹn đăng gần nhất còn ở tương lai (qua mốc này danh sách công khai thay đổi)
      */
-    @Query("SELECT COUNT(b) FROM Blog b WHERE b.category = :category AND b.status = 'PUBLISHED' AND b.category.status = 'ACTIVE'")
-    long countPublishedBlogsByCategory(@Param("category") BlogCategory category);
+    @Query("SELECT MIN(b.scheduledPublishAt) FROM Blog b " +
+            "WHERE b.status = 'PUBLISHED' AND b.scheduledPublishAt > :now")
+    LocalDateTime findNextScheduledPublishAt(@Param("now") LocalDateTime now);
 }
@@ -0,0 +1,36 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.DashboardCounter;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DashboardCounterRepository extends JpaRepository<DashboardCounter, String> {
+
+    List<DashboardCounter> findByCounterKeyIn(Collection<String> keys);
+
+    // Cộng dồn tại DB (không đọc-sửa-ghi); 0 = chưa có dòng cho key này
+    @Modifying
+    @Query("""
+            UPDATE DashboardCounter c
+            SET c.counterValue = c.counterValue + :delta, c.updatedAt = :now
+            WHERE c.counterKey = :key
+            """)
+    int increment(@Param("key") String key, @Param("delta") long delta, @Param("now") LocalDateTime now);
+
+    // Đối soát: chỉ ghi khi lệch; trả về 1 nếu đã sửa
+    @Modifying
+    @Query("""
+            UPDATE DashboardCounter c
+            SET c.counterValue = :value, c.updatedAt = :now
+            WHERE c.counterKey = :key AND c.counterValue <> :value
+            """)
+    int correct(@Param("key") String key, @Param("value") long value, @Param("now") LocalDateTime now);
+}
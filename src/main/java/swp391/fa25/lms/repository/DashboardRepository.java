@@ -1,5 +1,6 @@
 package swp391.fa25.lms.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -7,13 +8,12 @@ import swp391.fa25.lms.model.*;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface DashboardRepository extends JpaRepository<Account, Long> {
 
     // =========================
-    // ADMIN
+    // ĐỐI SOÁT ROLLUP (DashboardRollupService.reconcile)
     // =========================
 
     @Query("SELECT COUNT(a) FROM Account a")
@@ -26,113 +26,47 @@ public interface DashboardRepository extends JpaRepository<Account, Long> {
     """)
     long countAllSellers();
 
-    @Query("SELECT COUNT(t) FROM Tool t")
-    long countAllTools();
-
-    @Query("SELECT COUNT(tr) FROM ToolReport tr")
-    long countToolReports();
-
-    // =========================
-    // SELLER
-    // =========================
-
-    @Query("""
-        SELECT COUNT(t)
-        FROM Tool t
-        WHERE t.seller.accountId = :sellerId
-    """)
-    long countSellerTools(@Param("sellerId") Long sellerId);
-
-    @Query("""
-        SELECT COUNT(t)
-        FROM Tool t
-        WHERE t.seller.accountId = :sellerId
-          AND t.status = 'PUBLISHED'
-    """)
-    long countSellerPublishedTools(@Param("sellerId") Long sellerId);
-
-    @Query("""
-        SELECT COUNT(t)
-        FROM Tool t
-        WHERE t.seller.accountId = :sellerId
-          AND t.status IN ('PENDING', 'REJECTED')
-    """)
-    long countSellerPendingRejectedTools(@Param("sellerId") Long sellerId);
-
-    @Query("""
-    SELECT COALESCE(SUM(o.price), 0)
-    FROM CustomerOrder o
-    WHERE o.tool.seller.accountId = :sellerId
-      AND o.orderStatus = swp391.fa25.lms.model.CustomerOrder.OrderStatus.SUCCESS
-""")
-    Double sumSellerRevenue(@Param("sellerId") Long sellerId);
-
+    // [sellerId (null nếu tool không có seller), status, count]
     @Query("""
-        SELECT a
-        FROM Account a
-        WHERE a.accountId = :sellerId
+        SELECT s.accountId, t.status, COUNT(t)
+        FROM Tool t LEFT JOIN t.seller s
+        WHERE t.status IS NOT NULL
+        GROUP BY s.accountId, t.status
     """)
-    Account findSellerAccount(@Param("sellerId") Long sellerId);
+    List<Object[]> countToolsBySellerAndStatus();
 
-    // ===== TOOL STATUS BREAKDOWN =====
+    // [status, count]
     @Query("""
-        SELECT t.status, COUNT(t)
-        FROM Tool t
-        WHERE t.seller.accountId = :sellerId
-        GROUP BY t.status
+        SELECT tr.status, COUNT(tr)
+        FROM ToolReport tr
+        GROUP BY tr.status
     """)
-    List<Object[]> countSellerToolsByStatus(@Param("sellerId") Long sellerId);
+    List<Object[]> countToolReportsByStatus();
 
-    // ===== REVENUE LAST 5 MONTHS =====
-    // SELLER - revenue last 5 months (SQL Server compatible)
-    // ===== SELLER REVENUE LAST 5 MONTHS (FROM CUSTOMER_ORDER) =====
-    @Query("""
-    SELECT
-        YEAR(o.createdAt),
-        MONTH(o.createdAt),
-        SUM(o.price)
-    FROM CustomerOrder o
-    WHERE o.tool.seller.accountId = :sellerId
-      AND o.orderStatus = swp391.fa25.lms.model.CustomerOrder.OrderStatus.SUCCESS
-    GROUP BY YEAR(o.createdAt), MONTH(o.createdAt)
-    ORDER BY YEAR(o.createdAt) DESC, MONTH(o.createdAt) DESC
-""")
-    List<Object[]> sumSellerRevenueByMonth(@Param("sellerId") Long sellerId);
+    @Query("SELECT COUNT(b) FROM Blog b WHERE b.status = 'PUBLISHED'")
+    long countPublishedBlogs();
 
     // =========================
-    // MANAGER
+    // TOP-N (giới hạn bằng Pageable)
     // =========================
 
-    @Query("SELECT COUNT(t) FROM Tool t WHERE t.status = 'PENDING'")
-    long countPendingTools();
-
-    @Query("SELECT COUNT(t) FROM Tool t WHERE t.status = 'SUSPECT'")
-    long countSuspectTools();
-
-    @Query("SELECT COUNT(t) FROM Tool t WHERE t.status = 'PUBLISHED'")
-    long countPublishedTools();
-
-    @Query("SELECT COUNT(b) FROM Blog b WHERE b.status = 'PUBLISHED'")
-    long countPublishedBlogs();
-
     @Query("""
         SELECT b
         FROM Blog b
         WHERE b.status = 'PUBLISHED'
         ORDER BY b.viewCount DESC
     """)
-    List<Blog> findTopBlogs();
-
-    // =========================
-    // MOD
-    // =========================
+    List<Blog> findTopBlogs(Pageable pageable);
 
     @Query("""
         SELECT tr
         FROM ToolReport tr
+        JOIN FETCH tr.tool
+        JOIN FETCH tr.reporter
         WHERE tr.status = 'PENDING'
+        ORDER BY tr.toolReportId DESC
     """)
-    List<ToolReport> findPendingToolReports();
+    List<ToolReport> findPendingToolReports(Pageable pageable);
 
     @Query("""
         SELECT ss
@@ -140,5 +74,5 @@ public interface DashboardRepository extends JpaRepository<Account, Long> {
         WHERE ss.account.accountId = :sellerId
         ORDER BY ss.endDate DESC, ss.id DESC
     """)
-    List<SellerSubscription> findLatestSellerSubscriptions(@Param("sellerId") Long sellerId);
+    List<SellerSubscription> findLatestSellerSubscriptions(@Param("sellerId") Long sellerId, Pageable pageable);
 }
@@ -7,6 +7,8 @@ import org.springframework.stereotype.Repository;
 import swp391.fa25.lms.model.Feedback;
 import swp391.fa25.lms.model.FeedbackReply;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -19,6 +21,10 @@ public interface FeedbackReplyRepository extends JpaRepository<FeedbackReply, Lo
 
     boolean existsByFeedback(Feedback feedback);
 
+    // Reply của các feedback trong 1 trang hộp thư (1 query thay vì 1 query / feedback)
+    @Query("SELECT fr FROM FeedbackReply fr LEFT JOIN FETCH fr.seller WHERE fr.feedback.feedbackId IN :feedbackIds")
+    List<FeedbackReply> findByFeedbackIds(@Param("feedbackIds") Collection<Long> feedbackIds);
+
     @Query("SELECT COUNT(fr) FROM FeedbackReply fr WHERE fr.seller.accountId = :sellerId")
     long countBySellerId(@Param("sellerId") Long sellerId);
 }
@@ -43,6 +43,54 @@ public interface FeedbackRepository extends JpaRepository<Feedback, Long> {
                                         @Param("status") Feedback.Status status, 
                                         Pageable pageable);
 
+    // [toolId, ratingSum, reviewCount] cho toàn bộ tool (dùng khi rebuild summary)
+    @Query("""
+        SELECT f.tool.toolId, SUM(f.rating), COUNT(f)
+        FROM Feedback f
+        WHERE f.status = :status
+        GROUP BY f.tool.toolId
+    """)
+    List<Object[]> sumRatingsByStatus(@Param("status") Feedback.Status status);
+
+    // Hộp thư feedback của seller: lọc tool / rating / đã reply hay chưa (anti-join LEFT JOIN reply) ngay trong DB
+    @Query(value = """
+        SELECT f FROM Feedback f
+        JOIN FETCH f.tool t
+        LEFT JOIN FETCH f.account
+        LEFT JOIN FeedbackReply fr ON fr.feedback = f
+        WHERE t.seller.accountId = :sellerId
+          AND (:toolId IS NULL OR t.toolId = :toolId)
+          AND (:minRating IS NULL OR f.rating >= :minRating)
+          AND (:hasReply IS NULL
+               OR (:hasReply = true AND fr.replyId IS NOT NULL)
+               OR (:hasReply = false AND fr.replyId IS NULL))
+    """, countQuery = """
+        SELECT COUNT(f) FROM Feedback f
+        JOIN f.tool t
+        LEFT JOIN FeedbackReply fr ON fr.feedback = f
+        WHERE t.seller.accountId = :sellerId
+          AND (:toolId IS NULL OR t.toolId = :toolId)
+          AND (:minRating IS NULL OR f.rating >= :minRating)
+          AND (:hasReply IS NULL
+               OR (:hasReply = true AND fr.replyId IS NOT NULL)
+               OR (:hasReply = false AND fr.replyId IS NULL))
+    """)
+    Page<Feedback> findSellerInbox(@Param("sellerId") Long sellerId,
+                                   @Param("toolId") Long toolId,
+                                   @Param("hasReply") Boolean hasReply,
+                                   @Param("minRating") Integer minRating,
+                                   Pageable pageable);
+
+    // [toolId, số feedback chưa có reply] (dùng khi rebuild summary)
+    @Query("""
+        SELECT f.tool.toolId, COUNT(f)
+        FROM Feedback f
+        LEFT JOIN FeedbackReply fr ON fr.feedback = f
+        WHERE fr.replyId IS NULL
+        GROUP BY f.tool.toolId
+    """)
+    List<Object[]> countUnrepliedByTool();
+
     @Query("SELECT AVG(f.rating) FROM Feedback f WHERE f.tool.toolId = :toolId")
     Double avgRatingByToolId(@Param("toolId") Long toolId);
 }
@@ -0,0 +1,43 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.LicenseAccountChange;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LicenseAccountChangeRepository extends JpaRepository<LicenseAccountChange, Long> {
+
+    // 1 câu INSERT ... SELECT cho cả lô id (identity không cho Hibernate gom INSERT thành batch)
+    // Chỉ ghi được id còn tồn tại: xóa account thì ghi trước khi xóa
+    @Modifying
+    @Query("""
+        INSERT INTO LicenseAccountChange (licenseAccountId, changedAt)
+        SELECT la.licenseAccountId, :now FROM LicenseAccount la
+        WHERE la.licenseAccountId IN :ids
+    """)
+    int recordChanges(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // [seq, licenseAccountId] mới hơn afterSeq, keyset theo seq
+    @Query("""
+        SELECT c.seq, c.licenseAccountId FROM LicenseAccountChange c
+        WHERE c.seq > :afterSeq
+        ORDER BY c.seq
+    """)
+    List<Object[]> findAfter(@Param("afterSeq") Long afterSeq, Pageable limit);
+
+    // Mốc bắt đầu đọc lúc khởi động: dòng ghi trước cutoff chắc chắn đã commit hoặc rollback
+    @Query("SELECT MAX(c.seq) FROM LicenseAccountChange c WHERE c.changedAt < :cutoff")
+    Long findMaxSeqBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM LicenseAccountChange c WHERE c.changedAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
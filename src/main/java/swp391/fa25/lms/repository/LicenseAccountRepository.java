@@ -3,16 +3,25 @@ package swp391.fa25.lms.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import swp391.fa25.lms.model.CustomerOrder;
+import swp391.fa25.lms.model.License;
 import swp391.fa25.lms.model.LicenseAccount;
 import swp391.fa25.lms.model.Tool;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LicenseAccountRepository extends JpaRepository<LicenseAccount, Long> {
@@ -21,8 +30,130 @@ public interface LicenseAccountRepository extends JpaRepository<LicenseAccount,
 
     LicenseAccount findByToken(String token);
 
+    // Toàn bộ token đã cấp (nạp bitmap lúc khởi động, đọc dạng stream để không giữ cả list trong bộ nhớ)
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "5000"))
+    @Query("SELECT la.token FROM LicenseAccount la WHERE la.token IS NOT NULL")
+    Stream<String> streamAllTokens();
+
+    // Token nào trong tập đã tồn tại (caller chia lô <= 2000 phần tử vì giới hạn tham số của SQL Server)
+    @Query("SELECT la.token FROM LicenseAccount la WHERE la.token IN :tokens")
+    List<String> findExistingTokens(@Param("tokens") Collection<String> tokens);
+
+    // [token, toolId] của các token đã tồn tại trong tập
+    @Query("SELECT la.token, la.license.tool.toolId FROM LicenseAccount la WHERE la.token IN :tokens")
+    List<Object[]> findTokenOwners(@Param("tokens") Collection<String> tokens);
+
     List<LicenseAccount> findByLicense_Tool_ToolId(Long toolId);
 
+    // ===== EXPIRY SWEEP =====
+    // Id các account status = :status đã quá endDate, cũ nhất trước (index status, end_date)
+    @Query("""
+        SELECT la.licenseAccountId FROM LicenseAccount la
+        WHERE la.status = :status AND la.endDate < :now
+        ORDER BY la.endDate
+    """)
+    List<Long> findIdsByStatusAndEndDateBefore(@Param("status") LicenseAccount.Status status,
+                                               @Param("now") LocalDateTime now,
+                                               Pageable limit);
+
+    // Chỉ đổi dòng vẫn còn :from và vẫn quá hạn (an toàn khi nhiều node cùng quét / khách vừa gia hạn)
+    @Modifying
+    @Query("""
+        UPDATE LicenseAccount la SET la.status = :to
+        WHERE la.licenseAccountId IN :ids AND la.status = :from AND la.endDate < :now
+    """)
+    int updateStatusIfEnded(@Param("ids") Collection<Long> ids,
+                            @Param("from") LicenseAccount.Status from,
+                            @Param("to") LicenseAccount.Status to,
+                            @Param("now") LocalDateTime now);
+
+    // ===== LICENSE INDEX =====
+    // [id, clientSecretHash, username, password, status, endDate, used, toolId, certificate, maxDevices] các account đang dùng được, keyset theo id
+    // (index status, used, licenseAccountId)
+    @Query("""
+        SELECT la.licenseAccountId, la.clientSecretHash, la.username, la.password, la.status, la.endDate, la.used, l.tool.toolId,
+               la.certificate, la.maxDevices
+        FROM LicenseAccount la JOIN la.license l
+        WHERE la.status = :status AND la.used = true AND la.licenseAccountId > :afterId
+        ORDER BY la.licenseAccountId
+    """)
+    List<Object[]> findIndexRowsAfter(@Param("status") LicenseAccount.Status status,
+                                      @Param("afterId") Long afterId,
+                                      Pageable limit);
+
+    // Cùng projection cho 1 tập id, không lọc status (caller tự quyết giữ hay bỏ khỏi index)
+    @Query("""
+        SELECT la.licenseAccountId, la.clientSecretHash, la.username, la.password, la.status, la.endDate, la.used, l.tool.toolId,
+               la.certificate, la.maxDevices
+        FROM LicenseAccount la JOIN la.license l
+        WHERE la.licenseAccountId IN :ids
+    """)
+    List<Object[]> findIndexRowsByIds(@Param("ids") Collection<Long> ids);
+
+    // Admin: duyệt License_Account, lọc + sort + phân trang trong DB
+    // q là pattern LIKE đã escape (vd: "%abc%"), collation mặc định của SQL Server không phân biệt hoa thường
+    @EntityGraph(attributePaths = {"license", "license.tool", "order"})
+    @Query(value = """
+        SELECT la FROM LicenseAccount la
+        LEFT JOIN la.license l
+        LEFT JOIN l.tool t
+        WHERE (:toolId IS NULL OR t.toolId = :toolId)
+          AND (:status IS NULL OR la.status = :status)
+          AND (:used IS NULL OR la.used = :used)
+          AND (
+              :q IS NULL OR
+              la.username LIKE :q ESCAPE '!' OR
+              la.token LIKE :q ESCAPE '!' OR
+              l.name LIKE :q ESCAPE '!' OR
+              t.toolName LIKE :q ESCAPE '!'
+          )
+    """, countQuery = """
+        SELECT COUNT(la) FROM LicenseAccount la
+        LEFT JOIN la.license l
+        LEFT JOIN l.tool t
+        WHERE (:toolId IS NULL OR t.toolId = :toolId)
+          AND (:status IS NULL OR la.status = :status)
+          AND (:used IS NULL OR la.used = :used)
+          AND (
+              :q IS NULL OR
+              la.username LIKE :q ESCAPE '!' OR
+              la.token LIKE :q ESCAPE '!' OR
+              l.name LIKE :q ESCAPE '!' OR
+              t.toolName LIKE :q ESCAPE '!'
+          )
+    """)
+    Page<LicenseAccount> adminSearch(@Param("toolId") Long toolId,
+                                     @Param("q") String q,
+                                     @Param("status") LicenseAccount.Status status,
+                                     @Param("used") Boolean used,
+                                     Pageable pageable);
+
+    // Admin: keyset pagination theo id giảm dần (trang sau = id < id cuối trang trước), không COUNT / OFFSET
+    @EntityGraph(attributePaths = {"license", "license.tool", "order"})
+    @Query("""
+        SELECT la FROM LicenseAccount la
+        LEFT JOIN la.license l
+        LEFT JOIN l.tool t
+        WHERE (:toolId IS NULL OR t.toolId = :toolId)
+          AND (:status IS NULL OR la.status = :status)
+          AND (:used IS NULL OR la.used = :used)
+          AND (:afterId IS NULL OR la.licenseAccountId < :afterId)
+          AND (
+              :q IS NULL OR
+              la.username LIKE :q ESCAPE '!' OR
+              la.token LIKE :q ESCAPE '!' OR
+              l.name LIKE :q ESCAPE '!' OR
+              t.toolName LIKE :q ESCAPE '!'
+          )
+        ORDER BY la.licenseAccountId DESC
+    """)
+    List<LicenseAccount> adminSearchAfter(@Param("toolId") Long toolId,
+                                          @Param("q") String q,
+                                          @Param("status") LicenseAccount.Status status,
+                                          @Param("used") Boolean used,
+                                          @Param("afterId") Long afterId,
+                                          Pageable limit);
+
     List<LicenseAccount> findByStatusAndLicense_Tool_ToolId(LicenseAccount.Status status, Long licenseToolToolId);
 
     int countByLicense_Tool_ToolIdAndUsedFalse(Long toolId);
@@ -68,4 +199,46 @@ public interface LicenseAccountRepository extends JpaRepository<LicenseAccount,
 
     @EntityGraph(attributePaths = {"license", "license.tool", "order"})
     List<LicenseAccount> findByOrder_OrderId(Long orderId);
+
+    // ================= TOKEN POOL =================
+    // Khóa TOP N token còn trống (chưa used, chưa gán order), bỏ qua dòng đang bị transaction khác khóa.
+    // SQL Server: WITH (UPDLOCK, ROWLOCK, READPAST) - không load cả pool, không chờ nhau.
+    // Lọc license bằng subquery (không JOIN) để chỉ khóa dòng License_Account
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+        SELECT la FROM LicenseAccount la
+        WHERE la.license.licenseId IN (SELECT l.licenseId FROM License l WHERE l.tool.toolId = :toolId)
+          AND la.token IS NOT NULL
+          AND la.used = false
+          AND la.order IS NULL
+        ORDER BY la.licenseAccountId
+    """)
+    List<LicenseAccount> lockFreeTokens(@Param("toolId") Long toolId, Pageable pageable);
+
+    // Claim có điều kiện: chỉ những token vẫn còn trống tại thời điểm UPDATE mới bị gán order
+    // (chốt chặn cuối nếu DB không hỗ trợ READPAST / SKIP LOCKED)
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        UPDATE LicenseAccount la
+        SET la.order = :order,
+            la.license = :license,
+            la.status = :status,
+            la.startDate = NULL,
+            la.endDate = NULL
+        WHERE la.licenseAccountId IN :ids
+          AND la.order IS NULL
+          AND la.used = false
+    """)
+    int claimTokens(@Param("ids") Collection<Long> ids,
+                    @Param("order") CustomerOrder order,
+                    @Param("license") License license,
+                    @Param("status") LicenseAccount.Status status);
+
+    @Query("""
+        SELECT la.licenseAccountId FROM LicenseAccount la
+        WHERE la.order.orderId = :orderId
+          AND la.licenseAccountId IN :ids
+    """)
+    List<Long> findIdsClaimedByOrder(@Param("orderId") Long orderId, @Param("ids") Collection<Long> ids);
 }
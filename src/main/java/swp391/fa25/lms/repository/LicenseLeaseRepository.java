@@ -0,0 +1,29 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.LicenseLease;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface LicenseLeaseRepository extends JpaRepository<LicenseLease, String> {
+
+    @Modifying
+    @Query("DELETE FROM LicenseLease l WHERE l.leaseId IN :ids")
+    int deleteByIds(@Param("ids") Collection<String> ids);
+
+    // Thiết bị vừa nhận lease: lần đăng nhập gần nhất của account (chỉ tiến, không lùi)
+    @Modifying
+    @Query("""
+        UPDATE LicenseAccount la SET la.lastLogin = :at, la.deviceInfo = :deviceInfo
+        WHERE la.licenseAccountId = :id AND (la.lastLogin IS NULL OR la.lastLogin < :at)
+    """)
+    int touchLastLogin(@Param("id") Long licenseAccountId,
+                       @Param("at") LocalDateTime at,
+                       @Param("deviceInfo") String deviceInfo);
+}
@@ -0,0 +1,39 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.LicenseRevocation;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface LicenseRevocationRepository extends JpaRepository<LicenseRevocation, Long> {
+
+    boolean existsByCertificateId(String certificateId);
+
+    // Mốc bắt đầu lúc khởi động: dòng thu hồi trước cutoff chắc chắn đã commit hoặc rollback
+    @Query("SELECT MAX(r.seq) FROM LicenseRevocation r WHERE r.revokedAt < :cutoff")
+    Long findMaxSeqBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    // [seq, certificateId, certificateExpiresAt] certificate còn hạn, keyset theo seq (dựng snapshot)
+    @Query("""
+        SELECT r.seq, r.certificateId, r.certificateExpiresAt FROM LicenseRevocation r
+        WHERE r.certificateExpiresAt > :now AND r.seq > :afterSeq
+        ORDER BY r.seq
+    """)
+    List<Object[]> findLiveAfter(@Param("now") LocalDateTime now,
+                                 @Param("afterSeq") Long afterSeq,
+                                 Pageable limit);
+
+    // [seq, certificateId, certificateExpiresAt] mới hơn afterSeq (poll delta)
+    @Query("""
+        SELECT r.seq, r.certificateId, r.certificateExpiresAt FROM LicenseRevocation r
+        WHERE r.seq > :afterSeq
+        ORDER BY r.seq
+    """)
+    List<Object[]> findAfter(@Param("afterSeq") Long afterSeq, Pageable limit);
+}
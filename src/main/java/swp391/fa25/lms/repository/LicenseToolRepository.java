@@ -1,6 +1,7 @@
 package swp391.fa25.lms.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import swp391.fa25.lms.model.License;
 
@@ -10,5 +11,13 @@ import java.util.List;
 public interface LicenseToolRepository extends JpaRepository<License, Long> {
 
     // Lấy tất cả license của một tool
-    List<License> findByTool_ToolId(Long toolId);;
+    List<License> findByTool_ToolId(Long toolId);
+
+    // [toolId, minPrice, maxPrice] cho toàn bộ tool (dùng khi rebuild summary)
+    @Query("""
+        SELECT l.tool.toolId, MIN(l.price), MAX(l.price)
+        FROM License l
+        GROUP BY l.tool.toolId
+    """)
+    List<Object[]> aggregatePricesByTool();
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.MailOutbox;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    // Id các mail PENDING đến hạn gửi, cũ nhất trước
+    @Query("""
+            SELECT m.mailId FROM MailOutbox m
+            WHERE m.status = 'PENDING' AND m.nextAttemptAt <= :now
+            ORDER BY m.mailId
+            """)
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Claim có điều kiện: node khác claim trước thì dòng đó không bị gửi 2 lần
+    @Modifying
+    @Query("""
+            UPDATE MailOutbox m
+            SET m.status = 'SENDING', m.claimToken = :token, m.claimedAt = :now
+            WHERE m.mailId IN :ids AND m.status = 'PENDING'
+            """)
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("token") String token,
+              @Param("now") LocalDateTime now);
+
+    List<MailOutbox> findByClaimTokenAndStatus(String claimToken, MailOutbox.Status status);
+
+    // Gửi xong: xóa model (OTP) khỏi DB
+    @Modifying
+    @Query("""
+            UPDATE MailOutbox m
+            SET m.status = 'SENT', m.sentAt = :now, m.model = NULL, m.claimToken = NULL,
+                m.attempts = m.attempts + 1
+            WHERE m.mailId IN :ids AND m.status = 'SENDING'
+            """)
+    int markSent(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Hết lượt thử (to = FAILED): cũng xóa model, mail không bao giờ gửi lại nên không giữ OTP trong DB
+    @Modifying
+    @Query("""
+            UPDATE MailOutbox m
+            SET m.status = :to, m.attempts = m.attempts + 1, m.nextAttemptAt = :nextAttemptAt,
+                m.lastError = :error, m.claimToken = NULL,
+                m.model = CASE WHEN :to = swp391.fa25.lms.model.MailOutbox.Status.FAILED THEN NULL ELSE m.model END
+            WHERE m.mailId = :id AND m.status = 'SENDING'
+            """)
+    int markAttemptFailed(@Param("id") Long mailId,
+                          @Param("to") MailOutbox.Status to,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("error") String error);
+
+    // Node chết giữa chừng: trả mail SENDING quá lâu về PENDING
+    @Modifying
+    @Query("""
+            UPDATE MailOutbox m
+            SET m.status = 'PENDING', m.claimToken = NULL
+            WHERE m.status = 'SENDING' AND m.claimedAt < :before
+            """)
+    int releaseStale(@Param("before") LocalDateTime before);
+
+    long countByStatus(MailOutbox.Status status);
+
+    // Mail PENDING cũ nhất (đo độ trễ hàng đợi)
+    @Query("SELECT MIN(m.createdAt) FROM MailOutbox m WHERE m.status = 'PENDING'")
+    LocalDateTime findOldestPendingCreatedAt();
+}
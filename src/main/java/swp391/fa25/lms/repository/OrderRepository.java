@@ -1,9 +1,13 @@
 package swp391.fa25.lms.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import swp391.fa25.lms.model.CustomerOrder;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -11,5 +15,22 @@ public interface OrderRepository extends JpaRepository<CustomerOrder, Long> {
     List<CustomerOrder> findByTransaction_TransactionId(Long transactionId);
     
     List<CustomerOrder> findByAccount_AccountId(Long accountId);
+
+    long countByTool_ToolIdAndOrderStatus(Long toolId, CustomerOrder.OrderStatus status);
+
+    // [toolId, số order] theo trạng thái - dùng làm độ phổ biến của tool
+    @Query("SELECT o.tool.toolId, COUNT(o) FROM CustomerOrder o " +
+            "WHERE o.orderStatus = :status GROUP BY o.tool.toolId")
+    List<Object[]> countOrdersByTool(@Param("status") CustomerOrder.OrderStatus status);
+
+    // Chốt order -> SUCCESS đúng 1 lần: IPN và return URL (hoặc IPN gửi lại) chạy song song chỉ 1 bên nhận 1
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE CustomerOrder o
+            SET o.orderStatus = swp391.fa25.lms.model.CustomerOrder.OrderStatus.SUCCESS, o.updatedAt = :now
+            WHERE o.orderId = :orderId
+              AND (o.orderStatus IS NULL OR o.orderStatus <> swp391.fa25.lms.model.CustomerOrder.OrderStatus.SUCCESS)
+            """)
+    int markSucceeded(@Param("orderId") Long orderId, @Param("now") LocalDateTime now);
 }
 
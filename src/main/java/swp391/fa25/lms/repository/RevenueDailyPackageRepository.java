@@ -0,0 +1,45 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.RevenueDailyPackage;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevenueDailyPackageRepository extends JpaRepository<RevenueDailyPackage, Long> {
+
+    // Cộng vào bucket ngày; 0 = bucket chưa tồn tại
+    @Modifying
+    @Query("""
+            UPDATE RevenueDailyPackage d
+            SET d.amount = d.amount + :amount, d.entryCount = d.entryCount + :entries, d.updatedAt = :now
+            WHERE d.businessDate = :day AND d.packageId = :packageId
+            """)
+    int add(@Param("day") LocalDate day,
+            @Param("packageId") Integer packageId,
+            @Param("amount") BigDecimal amount,
+            @Param("entries") long entries,
+            @Param("now") LocalDateTime now);
+
+    boolean existsByBusinessDateAndPackageId(LocalDate businessDate, Integer packageId);
+
+    // packageId null = mọi gói
+    @Query("""
+            SELECT COALESCE(SUM(d.amount), 0) FROM RevenueDailyPackage d
+            WHERE (:packageId IS NULL OR d.packageId = :packageId)
+              AND (:fromDate IS NULL OR d.businessDate >= :fromDate)
+              AND (:toDate IS NULL OR d.businessDate <= :toDate)
+            """)
+    BigDecimal sumRevenue(@Param("packageId") Integer packageId,
+                          @Param("fromDate") LocalDate fromDate,
+                          @Param("toDate") LocalDate toDate);
+
+    List<RevenueDailyPackage> findByBusinessDateGreaterThanEqual(LocalDate fromDate);
+}
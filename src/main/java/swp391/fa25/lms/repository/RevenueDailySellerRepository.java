@@ -0,0 +1,83 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.RevenueDailySeller;
+import swp391.fa25.lms.model.RevenueLedgerEntry;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RevenueDailySellerRepository extends JpaRepository<RevenueDailySeller, Long> {
+
+    // Cộng vào bucket ngày; 0 = bucket chưa tồn tại
+    @Modifying
+    @Query("""
+            UPDATE RevenueDailySeller d
+            SET d.amount = d.amount + :amount, d.entryCount = d.entryCount + :entries, d.updatedAt = :now
+            WHERE d.businessDate = :day AND d.sellerId = :sellerId AND d.entryType = :type
+            """)
+    int add(@Param("day") LocalDate day,
+            @Param("sellerId") Long sellerId,
+            @Param("type") RevenueLedgerEntry.EntryType type,
+            @Param("amount") BigDecimal amount,
+            @Param("entries") long entries,
+            @Param("now") LocalDateTime now);
+
+    boolean existsByBusinessDateAndSellerIdAndEntryType(LocalDate businessDate, Long sellerId,
+                                                        RevenueLedgerEntry.EntryType entryType);
+
+    @Query("""
+            SELECT COALESCE(SUM(d.amount), 0) FROM RevenueDailySeller d
+            WHERE d.entryType = :type
+              AND d.sellerId IN (
+                  SELECT a.accountId FROM Account a
+                  WHERE LOWER(a.fullName) LIKE LOWER(CONCAT('%', :seller, '%')))
+              AND (:fromDate IS NULL OR d.businessDate >= :fromDate)
+              AND (:toDate IS NULL OR d.businessDate <= :toDate)
+            """)
+    BigDecimal sumForSellerName(@Param("type") RevenueLedgerEntry.EntryType type,
+                                @Param("seller") String seller,
+                             @Param("fromDate") LocalDate fromDate,
+                             @Param("toDate") LocalDate toDate);
+
+    // [entryType, SUM(amount)] toàn hệ thống trong khoảng ngày
+    @Query("""
+            SELECT d.entryType, SUM(d.amount) FROM RevenueDailySeller d
+            WHERE (:fromDate IS NULL OR d.businessDate >= :fromDate)
+              AND (:toDate IS NULL OR d.businessDate <= :toDate)
+            GROUP BY d.entryType
+            """)
+    List<Object[]> sumByType(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    List<RevenueDailySeller> findByBusinessDateGreaterThanEqual(LocalDate fromDate);
+
+    // ===== Dashboard seller =====
+
+    @Query("""
+            SELECT COALESCE(SUM(d.amount), 0) FROM RevenueDailySeller d
+            WHERE d.sellerId = :sellerId AND d.entryType IN :types
+            """)
+    BigDecimal sumForSeller(@Param("sellerId") Long sellerId,
+                            @Param("types") Collection<RevenueLedgerEntry.EntryType> types);
+
+    // [year, month, SUM(amount)] các tháng có doanh thu (mới nhất trước), giới hạn bằng Pageable
+    @Query("""
+            SELECT YEAR(d.businessDate), MONTH(d.businessDate), SUM(d.amount) FROM RevenueDailySeller d
+            WHERE d.sellerId = :sellerId AND d.entryType IN :types
+            GROUP BY YEAR(d.businessDate), MONTH(d.businessDate)
+            HAVING SUM(d.entryCount) > 0
+            ORDER BY YEAR(d.businessDate) DESC, MONTH(d.businessDate) DESC
+            """)
+    List<Object[]> sumBySellerAndMonth(@Param("sellerId") Long sellerId,
+                                       @Param("types") Collection<RevenueLedgerEntry.EntryType> types,
+                                       Pageable pageable);
+}
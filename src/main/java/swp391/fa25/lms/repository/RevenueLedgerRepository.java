@@ -0,0 +1,88 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface RevenueLedgerRepository extends JpaRepository<RevenueLedgerEntry, Long> {
+
+    boolean existsByEntryTypeAndSourceId(RevenueLedgerEntry.EntryType entryType, Long sourceId);
+
+    // Lọc cả seller lẫn gói -> không có bảng tổng hợp nào khớp, đọc sổ theo index (seller_id, business_date)
+    @Query("""
+            SELECT COALESCE(SUM(e.amount), 0) FROM RevenueLedgerEntry e
+            WHERE e.entryType = :type
+              AND e.sellerId IN (
+                  SELECT a.accountId FROM Account a
+                  WHERE LOWER(a.fullName) LIKE LOWER(CONCAT('%', :seller, '%')))
+              AND e.packageId = :packageId
+              AND (:fromDate IS NULL OR e.businessDate >= :fromDate)
+              AND (:toDate IS NULL OR e.businessDate <= :toDate)
+            """)
+    BigDecimal sumForSellerNameAndPackage(@Param("type") RevenueLedgerEntry.EntryType type,
+                                          @Param("seller") String seller,
+                                       @Param("packageId") Integer packageId,
+                                       @Param("fromDate") LocalDate fromDate,
+                                       @Param("toDate") LocalDate toDate);
+
+    // ===== ĐỐI SOÁT (chỉ các ngày gần đây) =====
+
+    // [businessDate, sellerId, entryType, SUM(amount), COUNT]
+    @Query("""
+            SELECT e.businessDate, e.sellerId, e.entryType, SUM(e.amount), COUNT(e)
+            FROM RevenueLedgerEntry e
+            WHERE e.businessDate >= :fromDate AND e.sellerId IS NOT NULL
+            GROUP BY e.businessDate, e.sellerId, e.entryType
+            """)
+    List<Object[]> sumBySellerAndDay(@Param("fromDate") LocalDate fromDate);
+
+    // [businessDate, packageId, SUM(amount), COUNT]
+    @Query("""
+            SELECT e.businessDate, e.packageId, SUM(e.amount), COUNT(e)
+            FROM RevenueLedgerEntry e
+            WHERE e.businessDate >= :fromDate AND e.packageId IS NOT NULL
+            GROUP BY e.businessDate, e.packageId
+            """)
+    List<Object[]> sumByPackageAndDay(@Param("fromDate") LocalDate fromDate);
+
+    // ===== BACKFILL: khoản thu có trước khi có sổ =====
+
+    @Query("""
+            SELECT s FROM SellerSubscription s
+            WHERE NOT EXISTS (
+                SELECT 1 FROM RevenueLedgerEntry e
+                WHERE e.entryType = swp391.fa25.lms.model.RevenueLedgerEntry.EntryType.SUBSCRIPTION
+                  AND e.sourceId = s.id)
+            ORDER BY s.id
+            """)
+    List<SellerSubscription> findSubscriptionsWithoutEntry(Pageable limit);
+
+    @Query("""
+            SELECT o FROM CustomerOrder o
+            WHERE o.orderStatus = swp391.fa25.lms.model.CustomerOrder.OrderStatus.SUCCESS
+              AND NOT EXISTS (
+                SELECT 1 FROM RevenueLedgerEntry e
+                WHERE e.entryType = swp391.fa25.lms.model.RevenueLedgerEntry.EntryType.TOOL_SALE
+                  AND e.sourceId = o.orderId)
+            ORDER BY o.orderId
+            """)
+    List<CustomerOrder> findSucceededOrdersWithoutEntry(Pageable limit);
+
+    @Query("""
+            SELECT r FROM LicenseRenewLog r
+            WHERE NOT EXISTS (
+                SELECT 1 FROM RevenueLedgerEntry e
+                WHERE e.entryType = swp391.fa25.lms.model.RevenueLedgerEntry.EntryType.LICENSE_RENEWAL
+                  AND e.sourceId = r.renewLogId)
+            ORDER BY r.renewLogId
+            """)
+    List<LicenseRenewLog> findRenewLogsWithoutEntry(Pageable limit);
+}
@@ -3,6 +3,7 @@ package swp391.fa25.lms.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,10 +21,14 @@ public interface SellerSubscriptionRepository extends JpaRepository<SellerSubscr
     List<SellerSubscription> findByAccountOrderByStartDateDesc(Account account);
 
     Page<SellerSubscription> findByAccountAccountId(Long accountId, Pageable pageable);
-    @Query("""
+    // Lọc seller theo tên bằng subquery; khoảng ngày so với ngày mua gói (giống bảng doanh thu theo ngày)
+    @Query(value = """
         SELECT s FROM SellerSubscription s
+        LEFT JOIN s.transaction t
         WHERE
-            (:seller IS NULL OR LOWER(s.account.fullName) LIKE LOWER(CONCAT('%', :seller, '%')))
+            (:seller IS NULL OR s.account.accountId IN (
+                SELECT a.accountId FROM Account a
+                WHERE LOWER(a.fullName) LIKE LOWER(CONCAT('%', :seller, '%'))))
         AND (:packageId IS NULL OR s.sellerPackage.id = :packageId)
                  AND (
                         :packageName IS NULL OR
@@ -35,8 +40,28 @@ public interface SellerSubscriptionRepository extends JpaRepository<SellerSubscr
             (:status = 'ACTIVE' AND s.active = true) OR
             (:status = 'EXPIRED' AND s.active = false)
         )
-        AND (:fromDate IS NULL OR s.startDate >= :fromDate)
-        AND (:toDate IS NULL OR s.endDate <= :toDate)
+        AND (:fromDate IS NULL OR COALESCE(t.completedAt, s.startDate) >= :fromDate)
+        AND (:toDate IS NULL OR COALESCE(t.completedAt, s.startDate) <= :toDate)
+        """,
+            countQuery = """
+        SELECT COUNT(s) FROM SellerSubscription s
+        LEFT JOIN s.transaction t
+        WHERE
+            (:seller IS NULL OR s.account.accountId IN (
+                SELECT a.accountId FROM Account a
+                WHERE LOWER(a.fullName) LIKE LOWER(CONCAT('%', :seller, '%'))))
+        AND (:packageId IS NULL OR s.sellerPackage.id = :packageId)
+        AND (
+            :packageName IS NULL OR
+            LOWER(s.sellerPackage.packageName) LIKE LOWER(CONCAT('%', :packageName, '%'))
+        )
+        AND (
+            :status IS NULL OR
+            (:status = 'ACTIVE' AND s.active = true) OR
+            (:status = 'EXPIRED' AND s.active = false)
+        )
+        AND (:fromDate IS NULL OR COALESCE(t.completedAt, s.startDate) >= :fromDate)
+        AND (:toDate IS NULL OR COALESCE(t.completedAt, s.startDate) <= :toDate)
         """)
     Page<SellerSubscription> filter(
             @Param("seller") String seller,
@@ -47,22 +72,26 @@ public interface SellerSubscriptionRepository extends JpaRepository<SellerSubscr
             @Param("toDate") LocalDateTime toDate,
             Pageable pageable
     );
+    // Cùng điều kiện seller / ngày mua với filter
     @Query("""
     SELECT COALESCE(SUM(s.priceAtPurchase), 0)
     FROM SellerSubscription s
+    LEFT JOIN s.transaction t
     WHERE
-        (:seller IS NULL OR LOWER(s.account.fullName) LIKE LOWER(CONCAT('%', :seller, '%')))
+        (:seller IS NULL OR s.account.accountId IN (
+            SELECT a.accountId FROM Account a
+            WHERE LOWER(a.fullName) LIKE LOWER(CONCAT('%', :seller, '%'))))
     AND (:packageId IS NULL OR s.sellerPackage.id = :packageId)
     AND (
         :status IS NULL OR
         (:status = 'ACTIVE' AND s.active = true) OR
         (:status = 'EXPIRED' AND s.active = false)
     )
-    AND (:fromDate IS NULL OR s.startDate >= :fromDate)
-    AND (:toDate IS NULL OR s.endDate <= :toDate)
+    AND (:fromDate IS NULL OR COALESCE(t.completedAt, s.startDate) >= :fromDate)
+    AND (:toDate IS NULL OR COALESCE(t.completedAt, s.startDate) <= :toDate)
 """)
-    Long sumRevenue(
-            String seller,
+    Number sumRevenue(
+            @Param("seller") String seller,
             Long packageId,
             String status,
             LocalDateTime fromDate,
@@ -70,4 +99,13 @@ public interface SellerSubscriptionRepository extends JpaRepository<SellerSubscr
     );
 
     Optional<SellerSubscription> findTopByAccountOrderByEndDateDesc(Account seller);
+
+    // Gói còn hiệu lực xa nhất của seller (1 dòng, dùng lúc login)
+    Optional<SellerSubscription> findFirstByAccountAndActiveTrueAndEndDateAfterOrderByEndDateDesc(
+            Account seller, LocalDateTime now);
+
+    // Đánh dấu các gói đã quá hạn (cột active dùng cho bộ lọc ACTIVE / EXPIRED của admin)
+    @Modifying
+    @Query("UPDATE SellerSubscription s SET s.active = false WHERE s.active = true AND s.endDate < :now")
+    int deactivateEnded(@Param("now") LocalDateTime now);
 }
@@ -0,0 +1,44 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.StockReservation;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // [reservationId, toolId, quantity] của các giữ chỗ thuộc 1 giao dịch theo trạng thái
+    @Query("""
+            SELECT r.reservationId, r.tool.toolId, r.quantity FROM StockReservation r
+            WHERE r.transaction.transactionId = :transactionId
+              AND r.status = :status
+            """)
+    List<Object[]> findLinesByTransaction(@Param("transactionId") Long transactionId,
+                                          @Param("status") StockReservation.Status status);
+
+    // [reservationId, toolId, quantity] giữ chỗ HELD đã quá hạn
+    @Query("""
+            SELECT r.reservationId, r.tool.toolId, r.quantity FROM StockReservation r
+            WHERE r.status = 'HELD' AND r.expiresAt < :now
+            ORDER BY r.expiresAt
+            """)
+    List<Object[]> findExpiredLines(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Chuyển trạng thái có điều kiện: chỉ 1 bên (return handler / sweeper / node khác) đóng được giữ chỗ
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE StockReservation r
+            SET r.status = :to, r.closedAt = :now
+            WHERE r.reservationId = :id AND r.status = 'HELD'
+            """)
+    int close(@Param("id") Long reservationId,
+              @Param("to") StockReservation.Status to,
+              @Param("now") LocalDateTime now);
+}
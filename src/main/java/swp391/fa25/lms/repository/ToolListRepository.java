@@ -3,8 +3,12 @@ package swp391.fa25.lms.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import swp391.fa25.lms.model.Tool;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,4 +23,78 @@ public interface ToolListRepository extends JpaRepository<Tool, Long> {
     // Seller: thao tác trên tool của chính họ (toggle, edit)
     Optional<Tool> findByToolIdAndSeller_AccountId(Long toolId, Long accountId);
 
+    // User + Seller: lọc, sắp xếp, phân trang ngay trong DB
+    // - sellerId: seller view (tool của chính mình) hoặc filter author ở user view
+    // - keyword tra ở chỉ mục full-text trước, kết quả truyền vào toolIds (filterByIds = true)
+    // - giá so sánh theo cột min_price của tool (tool không có license bị loại khi lọc giá)
+    @Query(value = """
+        SELECT t FROM Tool t
+        WHERE (:sellerId IS NULL OR t.seller.accountId = :sellerId)
+          AND (:status IS NULL OR t.status = :status)
+          AND (:categoryId IS NULL OR t.category.categoryId = :categoryId)
+          AND (:loginMethod IS NULL OR t.loginMethod = :loginMethod)
+          AND (:filterByIds = false OR t.toolId IN :toolIds)
+          AND (:priceMin IS NULL OR t.minPrice >= :priceMin)
+          AND (:priceMax IS NULL OR t.minPrice <= :priceMax)
+        ORDER BY
+          CASE WHEN :sort = 'date_desc' THEN t.createdAt END DESC,
+          CASE WHEN :sort = 'date_asc' THEN t.createdAt END ASC,
+          CASE WHEN :sort = 'price_asc'
+               THEN COALESCE(t.minPrice, 0) END ASC,
+          CASE WHEN :sort = 'price_desc'
+               THEN COALESCE(t.minPrice, 0) END DESC,
+          t.toolId ASC
+        """,
+            countQuery = """
+        SELECT COUNT(t) FROM Tool t
+        WHERE (:sellerId IS NULL OR t.seller.accountId = :sellerId)
+          AND (:status IS NULL OR t.status = :status)
+          AND (:categoryId IS NULL OR t.category.categoryId = :categoryId)
+          AND (:loginMethod IS NULL OR t.loginMethod = :loginMethod)
+          AND (:filterByIds = false OR t.toolId IN :toolIds)
+          AND (:priceMin IS NULL OR t.minPrice >= :priceMin)
+          AND (:priceMax IS NULL OR t.minPrice <= :priceMax)
+        """)
+    Page<Tool> searchToolList(
+            @Param("sellerId") Long sellerId,
+            @Param("status") Tool.Status status,
+            @Param("categoryId") Long categoryId,
+            @Param("loginMethod") Tool.LoginMethod loginMethod,
+            @Param("filterByIds") boolean filterByIds,
+            @Param("toolIds") Collection<Long> toolIds,
+            @Param("priceMin") BigDecimal priceMin,
+            @Param("priceMax") BigDecimal priceMax,
+            @Param("sort") String sort,
+            Pageable pageable
+    );
+
+    // Như searchToolList nhưng không lọc theo id và chỉ trả cột id (đúng thứ tự sort):
+    // dùng khi keyword trúng quá nhiều tool để truyền qua IN, service tự giao với tập hit
+    @Query(value = """
+        SELECT t.toolId FROM Tool t
+        WHERE (:sellerId IS NULL OR t.seller.accountId = :sellerId)
+          AND (:status IS NULL OR t.status = :status)
+          AND (:categoryId IS NULL OR t.category.categoryId = :categoryId)
+          AND (:loginMethod IS NULL OR t.loginMethod = :loginMethod)
+          AND (:priceMin IS NULL OR t.minPrice >= :priceMin)
+          AND (:priceMax IS NULL OR t.minPrice <= :priceMax)
+        ORDER BY
+          CASE WHEN :sort = 'date_desc' THEN t.createdAt END DESC,
+          CASE WHEN :sort = 'date_asc' THEN t.createdAt END ASC,
+          CASE WHEN :sort = 'price_asc'
+               THEN COALESCE(t.minPrice, 0) END ASC,
+          CASE WHEN :sort = 'price_desc'
+               THEN COALESCE(t.minPrice, 0) END DESC,
+          t.toolId ASC
+        """)
+    List<Long> searchToolListIds(
+            @Param("sellerId") Long sellerId,
+            @Param("status") Tool.Status status,
+            @Param("categoryId") Long categoryId,
+            @Param("loginMethod") Tool.LoginMethod loginMethod,
+            @Param("priceMin") BigDecimal priceMin,
+            @Param("priceMax") BigDecimal priceMax,
+            @Param("sort") String sort
+    );
+
 }
@@ -2,13 +2,16 @@ package swp391.fa25.lms.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import swp391.fa25.lms.model.Account;
 import swp391.fa25.lms.model.Tool;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -77,7 +80,162 @@ public interface ToolRepository extends JpaRepository<Tool, Long> {
     List<Tool> findAllPublishedAndSellerActive();
 
 
+    // ========================= HOME CATALOG =========================
+    // Nguồn dựng catalog snapshot: hạn seller được kiểm tra lúc đọc (xem CatalogSnapshotService)
+    @EntityGraph(attributePaths = {"seller", "category"})
+    @Query("""
+            SELECT t FROM Tool t
+            WHERE t.status = 'PUBLISHED'
+              AND t.seller.sellerActive = true
+              AND t.availableQuantity > 0
+            """)
+    List<Tool> findPublishedCatalogCandidates();
+
+    // Lọc giá / rating dựa trên cột summary (min_price, review_count, rating_sum)
+    // Keyword đã được tra ở chỉ mục full-text -> truyền vào toolIds (filterByIds = true)
+    @Query("""
+            SELECT t FROM Tool t
+            WHERE t.status = 'PUBLISHED'
+              AND t.seller.sellerActive = true
+              AND (t.seller.sellerExpiryDate IS NULL OR t.seller.sellerExpiryDate >= CURRENT_TIMESTAMP)
+              AND t.availableQuantity > 0
+              AND (:filterByIds = false OR t.toolId IN :toolIds)
+              AND (:categoryId IS NULL OR t.category.categoryId = :categoryId)
+              AND (:createdAfter IS NULL OR t.createdAt > :createdAfter)
+              AND (:priceFrom IS NULL OR COALESCE(t.minPrice, 0) >= :priceFrom)
+              AND (:priceAbove IS NULL OR COALESCE(t.minPrice, 0) > :priceAbove)
+              AND (:priceBelow IS NULL OR COALESCE(t.minPrice, 0) < :priceBelow)
+              AND (:priceUpTo IS NULL OR COALESCE(t.minPrice, 0) <= :priceUpTo)
+              AND (:minRating IS NULL OR (t.reviewCount > 0 AND t.ratingSum >= :minRating * t.reviewCount))
+            """)
+    Page<Tool> searchPublishedCatalog(
+            @Param("filterByIds") boolean filterByIds,
+            @Param("toolIds") Collection<Long> toolIds,
+            @Param("categoryId") Long categoryId,
+            @Param("createdAfter") LocalDateTime createdAfter,
+            @Param("priceFrom") BigDecimal priceFrom,
+            @Param("priceAbove") BigDecimal priceAbove,
+            @Param("priceBelow") BigDecimal priceBelow,
+            @Param("priceUpTo") BigDecimal priceUpTo,
+            @Param("minRating") Long minRating,
+            Pageable pageable
+    );
+
+    // Như searchPublishedCatalog nhưng không lọc theo id và chỉ trả cột id (theo sort truyền vào):
+    // dùng khi keyword trúng quá nhiều tool để truyền qua IN, service tự giao với tập hit
+    @Query("""
+            SELECT t.toolId FROM Tool t
+            WHERE t.status = 'PUBLISHED'
+              AND t.seller.sellerActive = true
+              AND (t.seller.sellerExpiryDate IS NULL OR t.seller.sellerExpiryDate >= CURRENT_TIMESTAMP)
+              AND t.availableQuantity > 0
+              AND (:categoryId IS NULL OR t.category.categoryId = :categoryId)
+              AND (:createdAfter IS NULL OR t.createdAt > :createdAfter)
+              AND (:priceFrom IS NULL OR COALESCE(t.minPrice, 0) >= :priceFrom)
+              AND (:priceAbove IS NULL OR COALESCE(t.minPrice, 0) > :priceAbove)
+              AND (:priceBelow IS NULL OR COALESCE(t.minPrice, 0) < :priceBelow)
+              AND (:priceUpTo IS NULL OR COALESCE(t.minPrice, 0) <= :priceUpTo)
+              AND (:minRating IS NULL OR (t.reviewCount > 0 AND t.ratingSum >= :minRating * t.reviewCount))
+            """)
+    List<Long> searchPublishedCatalogIds(
+            @Param("categoryId") Long categoryId,
+            @Param("createdAfter") LocalDateTime createdAfter,
+            @Param("priceFrom") BigDecimal priceFrom,
+            @Param("priceAbove") BigDecimal priceAbove,
+            @Param("priceBelow") BigDecimal priceBelow,
+            @Param("priceUpTo") BigDecimal priceUpTo,
+            @Param("minRating") Long minRating,
+            Sort sort
+    );
+
+    // ================= SUMMARY COLUMNS =================
+    @Modifying
+    @Query("""
+            UPDATE Tool t
+            SET t.reviewCount = t.reviewCount + :countDelta,
+                t.ratingSum = t.ratingSum + :sumDelta
+            WHERE t.toolId = :toolId
+            """)
+    int adjustRatingSummary(@Param("toolId") Long toolId,
+                            @Param("countDelta") long countDelta,
+                            @Param("sumDelta") long sumDelta);
+
+    @Modifying
+    @Query("""
+            UPDATE Tool t
+            SET t.unrepliedFeedbackCount = t.unrepliedFeedbackCount + :delta
+            WHERE t.toolId = :toolId
+            """)
+    int adjustUnrepliedFeedbackCount(@Param("toolId") Long toolId, @Param("delta") long delta);
+
+    @Query("""
+            SELECT COALESCE(SUM(t.unrepliedFeedbackCount), 0)
+            FROM Tool t WHERE t.seller.accountId = :sellerId
+            """)
+    long sumUnrepliedFeedbackBySeller(@Param("sellerId") Long sellerId);
+
+    List<Tool> findBySeller_AccountIdOrderByToolNameAsc(Long sellerId);
+
+    // ================= INVENTORY =================
+    // Mỗi thao tác là 1 câu UPDATE có điều kiện -> không mất cập nhật, không bán quá tồn kho.
+    // Trả về 1 nếu thành công, 0 nếu không đủ hàng.
+
+    // available -> reserved (giữ chỗ lúc checkout)
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Tool t
+            SET t.availableQuantity = t.availableQuantity - :qty,
+                t.reservedQuantity = t.reservedQuantity + :qty
+            WHERE t.toolId = :toolId
+              AND t.availableQuantity >= :qty
+            """)
+    int reserveStock(@Param("toolId") Long toolId, @Param("qty") int qty);
+
+    // reserved -> sold (thanh toán thành công)
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Tool t
+            SET t.reservedQuantity = t.reservedQuantity - :qty,
+                t.soldQuantity = t.soldQuantity + :qty
+            WHERE t.toolId = :toolId
+              AND t.reservedQuantity >= :qty
+            """)
+    int commitReservedStock(@Param("toolId") Long toolId, @Param("qty") int qty);
+
+    // reserved -> available (thanh toán thất bại / hết hạn giữ chỗ)
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Tool t
+            SET t.reservedQuantity = t.reservedQuantity - :qty,
+                t.availableQuantity = t.availableQuantity + :qty
+            WHERE t.toolId = :toolId
+              AND t.reservedQuantity >= :qty
+            """)
+    int releaseReservedStock(@Param("toolId") Long toolId, @Param("qty") int qty);
+
+    // available -> sold trực tiếp (thanh toán không có giữ chỗ, vd: repay đơn cũ)
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Tool t
+            SET t.availableQuantity = t.availableQuantity - :qty,
+                t.soldQuantity = t.soldQuantity + :qty
+            WHERE t.toolId = :toolId
+              AND t.availableQuantity >= :qty
+            """)
+    int decrementIfAvailable(@Param("toolId") Long toolId, @Param("qty") int qty);
+
+    // [availableQuantity, reservedQuantity, soldQuantity, quantity] đọc thẳng từ DB (không qua persistence context)
+    @Query("""
+            SELECT t.availableQuantity, t.reservedQuantity, t.soldQuantity, t.quantity
+            FROM Tool t WHERE t.toolId = :toolId
+            """)
+    List<Object[]> findStockCounters(@Param("toolId") Long toolId);
+
     // Lấy Tool theo id status PUBLISHED
     @EntityGraph(attributePaths = {"licenses", "seller", "category"})
     Optional<Tool> findByToolIdAndStatus(Long toolId, Tool.Status status);
+
+    // [toolId, sellerId] cho telemetry gắn seller vào bucket sử dụng
+    @Query("SELECT t.toolId, t.seller.accountId FROM Tool t WHERE t.toolId IN :toolIds")
+    List<Object[]> findSellerIds(@Param("toolIds") Collection<Long> toolIds);
 }
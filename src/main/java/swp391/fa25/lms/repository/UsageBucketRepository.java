@@ -0,0 +1,79 @@
+package swp391.fa25.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import swp391.fa25.lms.model.UsageBucket;
+import swp391.fa25.lms.model.UsageBucket.EventType;
+import swp391.fa25.lms.model.UsageBucket.Granularity;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UsageBucketRepository extends JpaRepository<UsageBucket, Long> {
+
+    // [bucketId, licenseAccountId, toolId, eventType, feature] bucket đã có của các tool trong 1 giờ / ngày
+    @Query("""
+            SELECT b.bucketId, b.licenseAccountId, b.toolId, b.eventType, b.feature FROM UsageBucket b
+            WHERE b.granularity = :granularity AND b.bucketStart = :start AND b.toolId IN :toolIds
+            """)
+    List<Object[]> findKeys(@Param("granularity") Granularity granularity,
+                            @Param("start") LocalDateTime start,
+                            @Param("toolIds") Collection<Long> toolIds);
+
+    // Cộng cùng delta vào nhiều bucket
+    @Modifying
+    @Query("UPDATE UsageBucket b SET b.eventCount = b.eventCount + :delta, b.updatedAt = :now WHERE b.bucketId IN :ids")
+    int addByIds(@Param("ids") Collection<Long> ids, @Param("delta") long delta, @Param("now") LocalDateTime now);
+
+    // Bucket giờ chỉ phục vụ xem gần đây; bucket ngày giữ lâu dài
+    @Modifying
+    @Query("DELETE FROM UsageBucket b WHERE b.granularity = :granularity AND b.bucketStart < :before")
+    int deleteOlderThan(@Param("granularity") Granularity granularity, @Param("before") LocalDateTime before);
+
+    // ===== Dashboard seller =====
+
+    // [bucketStart, SUM(eventCount)] theo từng bucket
+    @Query("""
+            SELECT b.bucketStart, SUM(b.eventCount) FROM UsageBucket b
+            WHERE b.sellerId = :sellerId AND b.granularity = :granularity
+              AND b.eventType = :type AND b.bucketStart >= :from
+            GROUP BY b.bucketStart
+            ORDER BY b.bucketStart
+            """)
+    List<Object[]> sumBySeller(@Param("sellerId") Long sellerId,
+                               @Param("granularity") Granularity granularity,
+                               @Param("type") EventType type,
+                               @Param("from") LocalDateTime from);
+
+    // [toolName, SUM(eventCount), số license có dùng] theo bucket ngày
+    @Query("""
+            SELECT t.toolName, SUM(b.eventCount), COUNT(DISTINCT b.licenseAccountId)
+            FROM UsageBucket b JOIN Tool t ON t.toolId = b.toolId
+            WHERE b.sellerId = :sellerId AND b.granularity = swp391.fa25.lms.model.UsageBucket.Granularity.DAY
+              AND b.eventType = :type AND b.bucketStart >= :from
+            GROUP BY t.toolId, t.toolName
+            ORDER BY SUM(b.eventCount) DESC
+            """)
+    List<Object[]> topToolsBySeller(@Param("sellerId") Long sellerId,
+                                    @Param("type") EventType type,
+                                    @Param("from") LocalDateTime from,
+                                    Pageable pageable);
+
+    // [feature, SUM(eventCount)] theo bucket ngày
+    @Query("""
+            SELECT b.feature, SUM(b.eventCount) FROM UsageBucket b
+            WHERE b.sellerId = :sellerId AND b.granularity = swp391.fa25.lms.model.UsageBucket.Granularity.DAY
+              AND b.eventType = swp391.fa25.lms.model.UsageBucket.EventType.FEATURE AND b.bucketStart >= :from
+            GROUP BY b.feature
+            ORDER BY SUM(b.eventCount) DESC
+            """)
+    List<Object[]> topFeaturesBySeller(@Param("sellerId") Long sellerId,
+                                       @Param("from") LocalDateTime from,
+                                       Pageable pageable);
+}
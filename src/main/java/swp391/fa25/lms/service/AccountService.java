@@ -1,14 +1,11 @@
 package swp391.fa25.lms.service;
 
-import jakarta.mail.internet.MimeMessage;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.BindingResult;
@@ -17,19 +14,18 @@ import swp391.fa25.lms.model.Role;
 import swp391.fa25.lms.repository.AccountRepository;
 import swp391.fa25.lms.repository.RoleRepository;
 
-import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Service
 public class AccountService {
     private static final Logger logger = LoggerFactory.getLogger(AccountService.class);
     private final AccountRepository accountRepo;
-    private final JavaMailSender mailSender;
+    private final MailOutboxService mailOutbox;
     private final PasswordEncoder passwordEncoder;
     private final RoleRepository roleRepository;
+    private final SearchIndexService searchIndexService;
     private static Scanner sc = new Scanner(System.in);
 
     @Value("2") // mặc định 2 phút (comment đang ghi 15 nhưng value là 2)
@@ -47,17 +43,14 @@ public class AccountService {
             "^(?=.*[a-z])(?=.*[A-Z])(?=.*\\d)(?=.*[!@#$%^&*]).{8,}$"
     );
 
-    private static final String SPECIALS = "!@#$%^&*";
-    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
-    private static final String DIGITS = "0123456789";
-
     public AccountService(AccountRepository accountRepo, PasswordEncoder passwordEncoder,
-                          JavaMailSender mailSender, RoleRepository roleRepository) {
+                          MailOutboxService mailOutbox, RoleRepository roleRepository,
+                          SearchIndexService searchIndexService) {
         this.accountRepo = accountRepo;
         this.passwordEncoder = passwordEncoder;
-        this.mailSender = mailSender;
+        this.mailOutbox = mailOutbox;
         this.roleRepository = roleRepository;
+        this.searchIndexService = searchIndexService;
     }
 
     /**
@@ -70,6 +63,7 @@ public class AccountService {
      * - Lưu DB và gửi email
      * @param account
      */
+    @Transactional
     public boolean registerAccount(Account account, BindingResult result) {
         // Trim toàn bộ các field text
         if (account.getEmail() != null) {
@@ -169,39 +163,13 @@ public class AccountService {
         return true;
     }
 
-    // Gửi mã xác minh sau khi đăng ký thành công
+    // Gửi mã xác minh sau khi đăng ký thành công (ghi vào mail outbox, gửi sau khi transaction commit)
     public void sendVerificationCode(Account account, String code) {
-        try {
-            String subject = "[LMS] Xác minh tài khoản của bạn";
-
-            // [UPDATED] Nội dung email đẹp hơn, dùng HTML
-            String body =
-                    "<div style='font-family: Arial, sans-serif; font-size:14px; color:#333;'>"
-                            + "<p>Xin chào <b>" + account.getFullName() + "</b>,</p>"
-                            + "<p>Cảm ơn bạn đã đăng ký tài khoản trên hệ thống <b>LMS</b>.</p>"
-                            + "<p>Mã xác minh của bạn là:</p>"
-                            + "<div style='background:#f3f3f3;padding:12px 16px;border-radius:6px;"
-                            + "display:inline-block;font-size:20px;font-weight:bold;letter-spacing:4px;'>"
-                            + code + "</div>"
-                            + "<p style='margin-top:12px;'>Mã này có hiệu lực trong <b>" + tokenExpiryMinutes + " phút</b>."
-                            + " Vui lòng không chia sẻ mã này cho bất kỳ ai.</p>"
-                            + "<p>Nếu bạn không thực hiện yêu cầu này, hãy bỏ qua email.</p>"
-                            + "<p>Trân trọng,<br><b>Đội ngũ LMS</b></p>"
-                            + "</div>";
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(account.getEmail());
-            helper.setSubject(subject);
-            helper.setText(body, true);
-
-            mailSender.send(message);
-
-        } catch (Exception e) {
-            logger.error("Lỗi gửi email xác minh", e);
-            throw new RuntimeException("Không thể gửi email xác minh. Vui lòng thử lại sau.");
-        }
+        mailOutbox.enqueue(MailTemplateService.VERIFICATION_CODE, account.getEmail(), null,
+                "[LMS] Xác minh tài khoản của bạn",
+                Map.of("fullName", nullToEmpty(account.getFullName()),
+                        "code", code,
+                        "expiryMinutes", tokenExpiryMinutes));
     }
 
     // Verify Code sau khi dang ky thanh cong
@@ -269,6 +237,7 @@ public class AccountService {
     /**
      * Bước 1: Nhập email -> sinh mã -> gửi mã qua email
      */
+    @Transactional
     public void initiateForgotPassword(String email) {
         if (email == null || email.trim().isEmpty()) {
             throw new RuntimeException("Vui lòng nhập email.");
@@ -298,39 +267,14 @@ public class AccountService {
     }
 
     /**
-     * Gửi email chứa mã OTP phục vụ quên mật khẩu
+     * Gửi email chứa mã OTP phục vụ quên mật khẩu (qua mail outbox)
      */
     private void sendPasswordResetCode(Account account, String code) {
-        try {
-            String subject = "[LMS] Mã xác minh đặt lại mật khẩu";
-
-            String body =
-                    "<div style='font-family: Arial, sans-serif; font-size:14px; color:#333;'>"
-                            + "<p>Xin chào <b>" + account.getFullName() + "</b>,</p>"
-                            + "<p>Bạn vừa yêu cầu đặt lại mật khẩu cho tài khoản trên hệ thống <b>LMS</b>.</p>"
-                            + "<p>Mã xác minh đặt lại mật khẩu của bạn là:</p>"
-                            + "<div style='background:#f3f3f3;padding:12px 16px;border-radius:6px;"
-                            + "display:inline-block;font-size:20px;font-weight:bold;letter-spacing:4px;'>"
-                            + code + "</div>"
-                            + "<p style='margin-top:12px;'>Mã này có hiệu lực trong <b>"
-                            + tokenExpiryMinutes + " phút</b>.</p>"
-                            + "<p>Nếu bạn không thực hiện yêu cầu này, vui lòng bỏ qua email.</p>"
-                            + "<p>Trân trọng,<br><b>Đội ngũ LMS</b></p>"
-                            + "</div>";
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(account.getEmail());
-            helper.setSubject(subject);
-            helper.setText(body, true);
-
-            mailSender.send(message);
-
-        } catch (Exception e) {
-            logger.error("Lỗi gửi email mã đặt lại mật khẩu", e);
-            throw new RuntimeException("Không thể gửi email mã đặt lại mật khẩu. Vui lòng thử lại sau.");
-        }
+        mailOutbox.enqueue(MailTemplateService.PASSWORD_RESET_CODE, account.getEmail(), null,
+                "[LMS] Mã xác minh đặt lại mật khẩu",
+                Map.of("fullName", nullToEmpty(account.getFullName()),
+                        "code", code,
+                        "expiryMinutes", tokenExpiryMinutes));
     }
 
     /**
@@ -445,78 +389,8 @@ public class AccountService {
         accountRepo.save(account);
     }
 
-
-    // ====================== FORGOT PASSWORD ======================
-    public void resetPasswordAndSendMail(String email) {
-        if (email == null || email.trim().isEmpty()) {
-            throw new RuntimeException("Vui lòng nhập email.");
-        }
-        if (!EMAIL_REGEX.matcher(email).matches()) {
-            throw new RuntimeException("Định dạng email không hợp lệ.");
-        }
-
-        Account account = accountRepo.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Email không tồn tại trong hệ thống."));
-
-        // Gen password ngẫu nhiên
-        String newPassword = generateRandomPassword();
-
-        // Cap nhat DB
-        account.setPassword(passwordEncoder.encode(newPassword));
-        accountRepo.save(account);
-
-        // Gui mail new password
-        sendNewPasswordEmail(account, newPassword);
-    }
-
-    public String generateRandomPassword() {
-        SecureRandom random = new SecureRandom();
-
-        StringBuilder password = new StringBuilder();
-        password.append(UPPER.charAt(random.nextInt(UPPER.length())));
-        password.append(LOWER.charAt(random.nextInt(LOWER.length())));
-        password.append(DIGITS.charAt(random.nextInt(DIGITS.length())));
-        password.append(SPECIALS.charAt(random.nextInt(SPECIALS.length())));
-
-        String words = UPPER + LOWER + DIGITS + SPECIALS;
-        for (int i = 4; i < 8; i++) {
-            password.append(words.charAt(random.nextInt(words.length())));
-        }
-
-        List<Character> chars = password.chars().mapToObj(c -> (char) c).collect(Collectors.toList());
-        Collections.shuffle(chars, random);
-
-        StringBuilder finalPassword = new StringBuilder();
-        chars.forEach(finalPassword::append);
-
-        return finalPassword.toString();
-    }
-
-    private void sendNewPasswordEmail(Account account, String newPassword) {
-        try {
-            String subject = "[LMS] Mật khẩu mới của bạn";
-            String body = "<p>Xin chào <b>" + account.getFullName() + "</b>,</p>"
-                    + "<p>Bạn vừa yêu cầu đặt lại mật khẩu.</p>"
-                    + "<p><b>Mật khẩu mới của bạn là:</b></p>"
-                    + "<div style='background:#f3f3f3;padding:10px;border-radius:5px;"
-                    + "font-size:16px;font-weight:bold;text-align:center;'>"
-                    + newPassword + "</div>"
-                    + "<p>Vui lòng đăng nhập và thay đổi mật khẩu sau khi vào hệ thống.</p>"
-                    + "<p>Trân trọng,<br><b>Đội ngũ LMS</b></p>";
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(account.getEmail());
-            helper.setSubject(subject);
-            helper.setText(body, true);
-
-            mailSender.send(message);
-
-        } catch (Exception e) {
-            logger.error("Gửi email mật khẩu mới thất bại", e);
-            throw new RuntimeException("Không thể gửi email mật khẩu mới. Vui lòng thử lại sau.");
-        }
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
     }
 
     // View Profile
@@ -545,11 +419,15 @@ public class AccountService {
             }
         }
 
+        boolean renamed = !updatedAccount.getFullName().trim().equals(existing.getFullName());
         existing.setFullName(updatedAccount.getFullName().trim());
         existing.setPhone(updatedAccount.getPhone());
         existing.setAddress(updatedAccount.getAddress());
 
-        return accountRepo.save(existing);
+        Account saved = accountRepo.save(existing);
+        // Tên seller nằm trong chỉ mục tìm kiếm của tool
+        if (renamed) searchIndexService.reindexSellerTools(saved.getAccountId());
+        return saved;
     }
 
     public Account registerSeller(String email) {
@@ -685,6 +563,7 @@ public class AccountService {
         Account acc = accountRepo.findById(id)
                 .orElseThrow(() -> new RuntimeException("Account not found"));
 
+        boolean renamed = !Objects.equals(fullName, acc.getFullName());
         acc.setFullName(fullName);
         acc.setPhone(phone);
         acc.setAddress(address);
@@ -695,6 +574,9 @@ public class AccountService {
                 .orElseThrow(() -> new RuntimeException("Role not found"));
 
         acc.setRole(role);
+
+        // Tên seller nằm trong chỉ mục tìm kiếm của tool
+        if (renamed) searchIndexService.reindexSellerTools(acc.getAccountId());
     }
 
     /**
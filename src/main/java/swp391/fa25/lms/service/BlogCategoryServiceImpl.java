@@ -22,6 +22,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
 
     private final BlogCategoryRepository categoryRepository;
     private final BlogRepository blogRepository;
+    private final BlogReadModelCache blogReadModelCache;
 
     @Override
     @Transactional
@@ -64,6 +65,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
         // Slug will be auto-generated by @PrePersist
         BlogCategory savedCategory = categoryRepository.save(category);
         log.info("Category created successfully with ID: {}", savedCategory.getCategoryId());
+        blogReadModelCache.invalidate();
 
         return new BlogCategoryDTO(savedCategory);
     }
@@ -135,6 +137,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
         // @PreUpdate will handle updatedAt
         BlogCategory updatedCategory = categoryRepository.save(category);
         log.info("Category updated successfully: {}", updatedCategory.getCategoryId());
+        blogReadModelCache.invalidate();
 
         return new BlogCategoryDTO(updatedCategory);
     }
@@ -156,6 +159,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
 
         categoryRepository.delete(category);
         log.info("Category deleted successfully: {}", categoryId);
+        blogReadModelCache.invalidate();
     }
 
     @Override
@@ -165,7 +169,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
                 .orElseThrow(() -> new RuntimeException("Category not found"));
 
         // Get blog count
-        long blogCount = blogRepository.countByCategory(category);
+        long blogCount = blogReadModelCache.countAll(category.getCategoryId());
         return new BlogCategoryDTO(category, blogCount);
     }
 
@@ -176,7 +180,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy category với slug: " + slug));
 
         // Get blog count
-        long blogCount = blogRepository.countByCategory(category);
+        long blogCount = blogReadModelCache.countAll(category.getCategoryId());
         return new BlogCategoryDTO(category, blogCount);
     }
 
@@ -186,7 +190,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
         List<BlogCategory> categories = categoryRepository.findAllOrderByDisplayOrder();
         return categories.stream()
                 .map(category -> {
-                    long blogCount = blogRepository.countByCategory(category);
+                    long blogCount = blogReadModelCache.countAll(category.getCategoryId());
                     return new BlogCategoryDTO(category, blogCount);
                 })
                 .collect(Collectors.toList());
@@ -283,7 +287,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
         
         return categories.stream()
                 .map(category -> {
-                    long blogCount = blogRepository.countByCategory(category);
+                    long blogCount = blogReadModelCache.countAll(category.getCategoryId());
                     return new BlogCategoryDTO(category, blogCount);
                 })
                 .collect(Collectors.toList());
@@ -295,8 +299,8 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
         List<BlogCategory> categories = categoryRepository.findAllActiveOrderByDisplayOrder();
         return categories.stream()
                 .map(category -> {
-                    // Chỉ đếm bài viết PUBLISHED cho public view
-                    long blogCount = blogRepository.countPublishedBlogsByCategory(category);
+                    // Chỉ đếm bài viết PUBLISHED đã tới giờ đăng cho public view
+                    long blogCount = blogReadModelCache.countVisible(category.getCategoryId());
                     return new BlogCategoryDTO(category, blogCount);
                 })
                 .collect(Collectors.toList());
@@ -314,6 +318,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
         BlogCategory savedCategory = categoryRepository.save(category);
 
         log.info("Category activated successfully: {}", categoryId);
+        blogReadModelCache.invalidate();
         return new BlogCategoryDTO(savedCategory);
     }
 
@@ -329,6 +334,7 @@ public class BlogCategoryServiceImpl implements BlogCategoryService {
         BlogCategory savedCategory = categoryRepository.save(category);
 
         log.info("Category deactivated successfully: {}", categoryId);
+        blogReadModelCache.invalidate();
         return new BlogCategoryDTO(savedCategory);
     }
 }
@@ -0,0 +1,201 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.dto.blog.BlogListItemDTO;
+import swp391.fa25.lms.repository.BlogRepository;
+import swp391.fa25.lms.util.AfterCommit;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read model cho trang blog công khai, giữ trong bộ nhớ:
+ * - Số blog mỗi category (tất cả / đang hiển thị) lấy từ 1 câu GROUP BY thay vì COUNT từng category
+ * - Top-N blog xem nhiều nhất (hết hạn sau top-viewed-ttl-ms để thứ tự theo kịp lượt xem đã flush)
+ * - Bài liên quan theo category (dựng lười khi category được xem lần đầu)
+ * Publish / unpublish / sửa / xóa blog, đổi category -> invalidate() sau commit.
+ * Blog hẹn giờ: giữ mốc hẹn giờ gần nhất, qua mốc đó thì cache tự coi là stale.
+ * Danh sách trả ra dùng chung giữa các request, caller không được sửa.
+ */
+@Slf4j
+@Service
+public class BlogReadModelCache implements OperationalStats {
+
+    // Số bài giữ sẵn cho top-viewed; xin nhiều hơn thì đọc DB
+    private static final int TOP_CACHED = 10;
+    // Bài liên quan hiển thị 5, giữ thêm 1 để bỏ chính bài đang xem
+    private static final int RELATED_SHOWN = 5;
+
+    private final BlogRepository blogRepository;
+    private final TransactionTemplate readTx;
+
+    @Value("${app.blog.top-viewed-ttl-ms:30000}")
+    private long topViewedTtlMillis;
+
+    private volatile Snapshot current;
+    private volatile boolean stale = true;
+
+    // ===== Metrics =====
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    public BlogReadModelCache(BlogRepository blogRepository, PlatformTransactionManager transactionManager) {
+        this.blogRepository = blogRepository;
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+    }
+
+    // ================== READ ==================
+
+    /** Số blog (mọi status) của category. */
+    public long countAll(Long categoryId) {
+        long[] c = snapshot().counts.get(categoryId);
+        return c == null ? 0 : c[0];
+    }
+
+    /** Số blog PUBLISHED đã tới giờ hiển thị của category. */
+    public long countVisible(Long categoryId) {
+        long[] c = snapshot().counts.get(categoryId);
+        return c == null ? 0 : c[1];
+    }
+
+    public List<BlogListItemDTO> topViewed(int limit) {
+        if (limit > TOP_CACHED) {
+            misses.incrementAndGet();
+            return readTx.execute(s -> loadTopViewed(limit));
+        }
+        Snapshot snap = snapshot();
+        TopViewed top = snap.topViewed;
+        if (top == null || System.currentTimeMillis() - top.builtAt > topViewedTtlMillis) {
+            misses.incrementAndGet();
+            List<BlogListItemDTO> items = readTx.execute(s -> loadTopViewed(TOP_CACHED));
+            top = new TopViewed(items, System.currentTimeMillis());
+            snap.topViewed = top;
+        } else {
+            hits.incrementAndGet();
+        }
+        return top.items.subList(0, Math.min(limit, top.items.size()));
+    }
+
+    /** Tối đa 5 bài cùng category, mới nhất trước, trừ bài excludeBlogId. */
+    public List<BlogListItemDTO> related(Long categoryId, Long excludeBlogId) {
+        Snapshot snap = snapshot();
+        List<BlogListItemDTO> candidates = snap.related.get(categoryId);
+        if (candidates == null) {
+            misses.incrementAndGet();
+            candidates = snap.related.computeIfAbsent(categoryId, id -> readTx.execute(s -> loadRelated(id)));
+        } else {
+            hits.incrementAndGet();
+        }
+        return candidates.stream()
+                .filter(b -> !b.getBlogId().equals(excludeBlogId))
+                .limit(RELATED_SHOWN)
+                .toList();
+    }
+
+    // ================== INVALIDATE ==================
+
+    /** Đánh dấu stale (sau khi transaction hiện tại commit, nếu có). */
+    public void invalidate() {
+        AfterCommit.run(this::markStale);
+    }
+
+    private void markStale() {
+        stale = true;
+        invalidations.incrementAndGet();
+    }
+
+    // ================== BUILD ==================
+
+    private Snapshot snapshot() {
+        Snapshot snap = current;
+        if (snap != null && !stale && !snap.scheduledCrossed()) return snap;
+
+        synchronized (this) {
+            snap = current;
+            if (snap != null && !stale && !snap.scheduledCrossed()) return snap;
+            // Đặt stale=false trước khi đọc DB: invalidate xảy ra trong lúc dựng sẽ buộc dựng lại lần sau
+            stale = false;
+            current = readTx.execute(s -> build());
+            return current;
+        }
+    }
+
+    private Snapshot build() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, long[]> counts = new HashMap<>();
+        for (Object[] row : blogRepository.countByCategoryGrouped(now)) {
+            counts.put((Long) row[0], new long[]{((Number) row[1]).longValue(), ((Number) row[2]).longValue()});
+        }
+        LocalDateTime nextScheduled = blogRepository.findNextScheduledPublishAt(now);
+        rebuilds.incrementAndGet();
+        return new Snapshot(counts, nextScheduled);
+    }
+
+    private List<BlogListItemDTO> loadTopViewed(int limit) {
+        return blogRepository.findTopViewedBlogs(LocalDateTime.now(), PageRequest.of(0, limit)).stream()
+                .map(BlogListItemDTO::new)
+                .toList();
+    }
+
+    private List<BlogListItemDTO> loadRelated(Long categoryId) {
+        return blogRepository.findRecentInCategory(categoryId, LocalDateTime.now(), PageRequest.of(0, RELATED_SHOWN + 1))
+                .stream()
+                .map(BlogListItemDTO::new)
+                .toList();
+    }
+
+    private static final class Snapshot {
+        // categoryId -> [tất cả, đang hiển thị]
+        final Map<Long, long[]> counts;
+        final LocalDateTime nextScheduledPublishAt;
+        final Map<Long, List<BlogListItemDTO>> related = new ConcurrentHashMap<>();
+        volatile TopViewed topViewed;
+
+        Snapshot(Map<Long, long[]> counts, LocalDateTime nextScheduledPublishAt) {
+            this.counts = counts;
+            this.nextScheduledPublishAt = nextScheduledPublishAt;
+        }
+
+        boolean scheduledCrossed() {
+            return nextScheduledPublishAt != null && !LocalDateTime.now().isBefore(nextScheduledPublishAt);
+        }
+    }
+
+    private record TopViewed(List<BlogListItemDTO> items, long builtAt) {
+    }
+
+    // ================== METRICS ==================
+
+    @Override
+    public String statsName() {
+        return "blog-cache";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        Snapshot snap = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("invalidations", invalidations.get());
+        stats.put("rebuilds", rebuilds.get());
+        stats.put("stale", stale);
+        stats.put("categories", snap == null ? 0 : snap.counts.size());
+        stats.put("relatedCached", snap == null ? 0 : snap.related.size());
+        stats.put("nextScheduledPublishAt", snap == null ? null : snap.nextScheduledPublishAt);
+        return stats;
+    }
+}
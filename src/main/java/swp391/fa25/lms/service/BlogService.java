@@ -59,6 +59,13 @@ public interface BlogService {
      */
     Page<BlogListItemDTO> getBlogsByAuthor(Long authorId, Pageable pageable);
 
+    /**
+     * Danh sách blog của author cho trang quản lý, lọc + phân trang trong DB
+     * (categoryId / status / keyword null hoặc rỗng = không lọc)
+     */
+    Page<BlogListItemDTO> getAuthorBlogList(Long authorId, Long categoryId, String status, String keyword,
+                                            Pageable pageable);
+
     /**
      * Search blog theo keyword
      */
@@ -3,6 +3,7 @@ package swp391.fa25.lms.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -16,9 +17,13 @@ import swp391.fa25.lms.model.Role;
 import swp391.fa25.lms.repository.AccountRepository;
 import swp391.fa25.lms.repository.BlogCategoryRepository;
 import swp391.fa25.lms.repository.BlogRepository;
+import swp391.fa25.lms.util.LikePattern;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -30,6 +35,10 @@ public class BlogServiceImpl implements BlogService {
     private final BlogRepository blogRepository;
     private final BlogCategoryRepository categoryRepository;
     private final AccountRepository accountRepository;
+    private final SearchIndexService searchIndexService;
+    private final DashboardRollupService dashboardRollupService;
+    private final BlogViewCounter blogViewCounter;
+    private final BlogReadModelCache blogReadModelCache;
 
     @Override
     @Transactional
@@ -77,6 +86,9 @@ public class BlogServiceImpl implements BlogService {
         blog.setSlug(uniqueSlug);
 
         Blog savedBlog = blogRepository.save(blog);
+        dashboardRollupService.onBlogStatusChanged(null, savedBlog.getStatus());
+        blogReadModelCache.invalidate();
+        searchIndexService.indexBlog(savedBlog);
         log.info("Blog created successfully with ID: {}", savedBlog.getBlogId());
 
         return new BlogDetailDTO(savedBlog);
@@ -110,6 +122,7 @@ public class BlogServiceImpl implements BlogService {
         blog.setScheduledPublishAt(dto.getScheduledPublishAt());
 
         // Update status
+        Blog.Status before = blog.getStatus();
         try {
             blog.setStatus(Blog.Status.valueOf(dto.getStatus().toUpperCase()));
         } catch (IllegalArgumentException e) {
@@ -132,6 +145,9 @@ public class BlogServiceImpl implements BlogService {
         }
 
         Blog updatedBlog = blogRepository.save(blog);
+        dashboardRollupService.onBlogStatusChanged(before, updatedBlog.getStatus());
+        blogReadModelCache.invalidate();
+        searchIndexService.indexBlog(updatedBlog);
         log.info("Blog updated successfully: {}", updatedBlog.getBlogId());
 
         return new BlogDetailDTO(updatedBlog);
@@ -150,8 +166,12 @@ public class BlogServiceImpl implements BlogService {
             throw new RuntimeException("You don't have permission to delete this blog. Only the author can delete.");
         }
 
+        Blog.Status before = blog.getStatus();
         blog.archive();
         blogRepository.save(blog);
+        dashboardRollupService.onBlogStatusChanged(before, blog.getStatus());
+        blogReadModelCache.invalidate();
+        searchIndexService.removeBlog(blogId);
         log.info("Blog archived successfully: {}", blogId);
     }
 
@@ -164,29 +184,25 @@ public class BlogServiceImpl implements BlogService {
     }
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
     public BlogDetailDTO getBlogBySlugAndIncrementView(String slug) {
         Blog blog = blogRepository.findBySlug(slug)
                 .orElseThrow(() -> new RuntimeException("Blog not found"));
 
-        // Only increment view for published blogs
+        BlogDetailDTO detailDTO = new BlogDetailDTO(blog);
+
+        // Only count views for published blogs (đếm trong RAM, BlogViewCounter flush xuống DB)
         if (blog.isPublished()) {
-            blog.incrementViewCount();
-            blogRepository.save(blog);
+            blogViewCounter.record(blog.getBlogId());
+            detailDTO.setViewCount((int) (blog.getViewCount() + blogViewCounter.pendingFor(blog.getBlogId())));
         }
 
-        BlogDetailDTO detailDTO = new BlogDetailDTO(blog);
-
-        // Load related blogs
+        // Related blogs: lấy từ read-model cache theo category
         if (blog.getCategory() != null) {
-            List<Blog> relatedBlogs = blogRepository.findRelatedBlogs(
+            detailDTO.setRelatedBlogs(blogReadModelCache.related(
                     blog.getCategory().getCategoryId(),
-                    blog.getBlogId(),
-                    PageRequest.of(0, 5)
-            );
-            detailDTO.setRelatedBlogs(relatedBlogs.stream()
-                    .map(BlogListItemDTO::new)
-                    .collect(Collectors.toList()));
+                    blog.getBlogId()
+            ));
         }
 
         return detailDTO;
@@ -205,8 +221,11 @@ public class BlogServiceImpl implements BlogService {
             throw new RuntimeException("You don't have permission to publish this blog. Only the author can publish.");
         }
 
+        Blog.Status before = blog.getStatus();
         blog.publish();
         Blog publishedBlog = blogRepository.save(blog);
+        dashboardRollupService.onBlogStatusChanged(before, publishedBlog.getStatus());
+        blogReadModelCache.invalidate();
         log.info("Blog published successfully: {}", blogId);
 
         return new BlogDetailDTO(publishedBlog);
@@ -225,8 +244,11 @@ public class BlogServiceImpl implements BlogService {
             throw new RuntimeException("You don't have permission to unpublish this blog. Only the author can unpublish.");
         }
 
+        Blog.Status before = blog.getStatus();
         blog.unpublish();
         Blog unpublishedBlog = blogRepository.save(blog);
+        dashboardRollupService.onBlogStatusChanged(before, unpublishedBlog.getStatus());
+        blogReadModelCache.invalidate();
         log.info("Blog unpublished successfully: {}", blogId);
 
         return new BlogDetailDTO(unpublishedBlog);
@@ -261,27 +283,72 @@ public class BlogServiceImpl implements BlogService {
         return blogs.map(BlogListItemDTO::new);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Page<BlogListItemDTO> getAuthorBlogList(Long authorId, Long categoryId, String status, String keyword,
+                                                   Pageable pageable) {
+        Blog.Status statusFilter = null;
+        if (status != null && !status.trim().isEmpty()) {
+            try {
+                statusFilter = Blog.Status.valueOf(status.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                // Status không hợp lệ -> không blog nào khớp
+                return new PageImpl<>(List.of(), pageable, 0);
+            }
+        }
+        // Escape %, _ trong keyword để khớp đúng ký tự người dùng gõ
+        String keywordFilter = LikePattern.contains(keyword);
+
+        return blogRepository.findAuthorListItems(authorId, categoryId, statusFilter, keywordFilter, pageable);
+    }
+
 
     @Override
     @Transactional(readOnly = true)
     public Page<BlogListItemDTO> searchBlogs(String keyword, Pageable pageable) {
-        Page<Blog> blogs = blogRepository.searchByKeyword(
-                keyword,
-                Blog.Status.PUBLISHED,
-                pageable
-        );
-        return blogs.map(BlogListItemDTO::new);
+        List<Long> hitIds = searchIndexService.searchBlogIds(keyword);
+        if (hitIds.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        // Quá nhiều hit cho IN -> lấy id blog tìm được từ DB rồi giao với tập hit
+        if (hitIds.size() > SearchIndexService.ID_FILTER_LIMIT) {
+            List<Long> searchable = blogRepository.findSearchableIds(Blog.Status.PUBLISHED, pageable.getSort());
+            Page<Blog> blogs = pageable.getSort().isSorted()
+                    ? SearchIndexService.pageOf(searchable, new HashSet<>(hitIds), pageable,
+                            blogRepository::findAllById, Blog::getBlogId)
+                    : SearchIndexService.pageOf(hitIds, new HashSet<>(searchable), pageable,
+                            blogRepository::findAllById, Blog::getBlogId);
+            return blogs.map(BlogListItemDTO::new);
+        }
+
+        // Có sort -> để DB sắp xếp + phân trang
+        if (pageable.getSort().isSorted()) {
+            Page<Blog> blogs = blogRepository.searchByIds(hitIds, Blog.Status.PUBLISHED, pageable);
+            return blogs.map(BlogListItemDTO::new);
+        }
+
+        // Không sort -> giữ thứ tự độ liên quan của chỉ mục
+        Map<Long, Blog> byId = blogRepository.findSearchableByIds(hitIds, Blog.Status.PUBLISHED)
+                .stream()
+                .collect(Collectors.toMap(Blog::getBlogId, b -> b));
+        List<Blog> ranked = hitIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        int start = (int) Math.min(pageable.getOffset(), ranked.size());
+        int end = Math.min(start + pageable.getPageSize(), ranked.size());
+        List<BlogListItemDTO> content = ranked.subList(start, end).stream()
+                .map(BlogListItemDTO::new)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, ranked.size());
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<BlogListItemDTO> getTopViewedBlogs(int limit) {
-        List<Blog> blogs = blogRepository.findTopViewedBlogs(
-                PageRequest.of(0, limit)
-        );
-        return blogs.stream()
-                .map(BlogListItemDTO::new)
-                .collect(Collectors.toList());
+        return blogReadModelCache.topViewed(limit);
     }
 
     // Private helper method for generating unique slug
@@ -0,0 +1,137 @@
+package swp391.fa25.lms.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.repository.BlogRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Đếm lượt xem blog trong RAM (LongAdder mỗi blog), flusher định kỳ cộng dồn xuống DB.
+ * - Xem trang chi tiết chỉ tăng bộ đếm, không mở transaction ghi
+ * - Flush: đọc số đang chờ rồi trừ đúng số đó (không reset) -> lượt xem đến trong lúc flush không bị mất
+ * - Blog cùng delta cộng chung 1 câu UPDATE ... SET view_count = view_count + ? (IN chia lô <= 2000 id)
+ * - UPDATE lỗi thì trả số lại vào bộ đếm, lượt sau thử lại; tắt app thì flush nốt
+ * - Flush xong bỏ bộ đếm đã về 0 khỏi map (blog cũ không giữ LongAdder mãi)
+ */
+@Slf4j
+@Service
+public class BlogViewCounter implements OperationalStats {
+
+    // SQL Server giới hạn 2100 tham số mỗi câu
+    private static final int IN_CHUNK = 2000;
+
+    private final BlogRepository blogRepository;
+    private final TransactionTemplate tx;
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // ===== Metrics =====
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong flushRuns = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private volatile long lastFlushMillis;
+    private volatile int lastFlushStatements;
+
+    public BlogViewCounter(BlogRepository blogRepository, PlatformTransactionManager transactionManager) {
+        this.blogRepository = blogRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    public void record(Long blogId) {
+        add(blogId, 1);
+        recorded.incrementAndGet();
+    }
+
+    private void add(Long blogId, long n) {
+        while (true) {
+            LongAdder adder = pending.computeIfAbsent(blogId, id -> new LongAdder());
+            adder.add(n);
+            if (pending.get(blogId) == adder) return;
+            // flush vừa bỏ adder rỗng này khỏi map: lấy lại phần chưa ai đọc, cộng sang adder mới
+            n = adder.sumThenReset();
+            if (n <= 0) return;
+        }
+    }
+
+    /** Lượt xem đã nhận nhưng chưa ghi xuống DB (để trang chi tiết hiển thị số mới nhất). */
+    public long pendingFor(Long blogId) {
+        LongAdder adder = pending.get(blogId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${app.blog.view-flush-interval-ms:5000}")
+    public void flush() {
+        Map<Long, Long> drained = new HashMap<>();
+        for (Map.Entry<Long, LongAdder> e : pending.entrySet()) {
+            long n = e.getValue().sum();
+            if (n <= 0) continue;
+            e.getValue().add(-n);
+            drained.put(e.getKey(), n);
+        }
+        if (drained.isEmpty()) return;
+
+        // delta -> các blog có cùng delta
+        Map<Long, List<Long>> byDelta = new HashMap<>();
+        drained.forEach((blogId, n) -> byDelta.computeIfAbsent(n, d -> new ArrayList<>()).add(blogId));
+
+        long start = System.currentTimeMillis();
+        try {
+            int statements = tx.execute(s -> {
+                int count = 0;
+                for (Map.Entry<Long, List<Long>> e : byDelta.entrySet()) {
+                    List<Long> ids = e.getValue();
+                    for (int i = 0; i < ids.size(); i += IN_CHUNK) {
+                        blogRepository.addViewCount(ids.subList(i, Math.min(i + IN_CHUNK, ids.size())), e.getKey().intValue());
+                        count++;
+                    }
+                }
+                return count;
+            });
+            flushed.addAndGet(drained.values().stream().mapToLong(Long::longValue).sum());
+            lastFlushStatements = statements;
+            for (Long blogId : drained.keySet()) {
+                LongAdder adder = pending.get(blogId);
+                if (adder != null && adder.sum() == 0) pending.remove(blogId, adder);
+            }
+        } catch (RuntimeException e) {
+            drained.forEach(this::add);
+            flushFailures.incrementAndGet();
+            log.warn("Blog view flush failed, {} blog(s) will be retried: {}", drained.size(), e.getMessage());
+        }
+        flushRuns.incrementAndGet();
+        lastFlushMillis = System.currentTimeMillis() - start;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    @Override
+    public String statsName() {
+        return "blog-views";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long waiting = pending.values().stream().mapToLong(LongAdder::sum).sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recorded", recorded.get());
+        stats.put("flushed", flushed.get());
+        stats.put("pending", waiting);
+        stats.put("trackedBlogs", pending.size());
+        stats.put("flushRuns", flushRuns.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("lastFlushStatements", lastFlushStatements);
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+}
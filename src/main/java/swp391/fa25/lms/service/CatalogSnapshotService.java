@@ -0,0 +1,393 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import swp391.fa25.lms.model.Account;
+import swp391.fa25.lms.model.Category;
+import swp391.fa25.lms.model.Tool;
+import swp391.fa25.lms.repository.ToolRepository;
+import swp391.fa25.lms.util.AfterCommit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshot catalog (tool PUBLISHED của seller còn hạn, còn hàng) giữ trong bộ nhớ cho lưới tool ở /home.
+ * Snapshot là bất biến, có version; mọi thay đổi tạo snapshot mới (copy-on-write) hoặc đánh dấu stale
+ * để request kế tiếp dựng lại. Request đọc không chạm DB khi snapshot còn hiệu lực.
+ */
+@Slf4j
+@Service
+public class CatalogSnapshotService implements OperationalStats {
+
+    private static final Long ALL_CATEGORIES = 0L;
+
+    private final ToolRepository toolRepo;
+    private final SearchIndexService searchIndexService;
+
+    private volatile Snapshot current;
+    private volatile boolean stale = true;
+
+    private final AtomicLong versionSeq = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile long lastRebuildMillis;
+    private volatile long totalRebuildMillis;
+
+    public CatalogSnapshotService(ToolRepository toolRepo, SearchIndexService searchIndexService) {
+        this.toolRepo = toolRepo;
+        this.searchIndexService = searchIndexService;
+    }
+
+    // ================== READ ==================
+
+    /**
+     * Lọc + phân trang trên snapshot. Trả về bản sao Tool (chỉ các field lưới /home dùng),
+     * caller có thể sửa tự do mà không ảnh hưởng snapshot.
+     */
+    public Page<Tool> search(String keyword, Long categoryId, String dateFilter,
+                             String priceFilter, Integer ratingFilter,
+                             int page, int size) {
+
+        Snapshot snap = snapshot();
+        LocalDateTime now = LocalDateTime.now();
+
+        Long cat = (categoryId != null && categoryId > 0) ? categoryId : ALL_CATEGORIES;
+        boolean newestFirst = "1".equals(dateFilter);
+
+        LocalDateTime createdAfter = null;
+        if ("2".equals(dateFilter)) createdAfter = now.minusDays(30);
+        else if ("3".equals(dateFilter)) createdAfter = now.minusMonths(3);
+
+        // Chọn danh sách gốc: có lọc giá thì cắt khoảng trên danh sách đã sắp theo giá
+        List<CatalogItem> base;
+        PriceRange range = PriceRange.of(priceFilter);
+        if (range != null) {
+            List<CatalogItem> byPrice = snap.byPrice.getOrDefault(cat, List.of());
+            base = new ArrayList<>(byPrice.subList(lowerBound(byPrice, range), upperBound(byPrice, range)));
+            base.sort(newestFirst ? BY_DATE_DESC : BY_ID);
+        } else {
+            base = newestFirst
+                    ? snap.byDate.getOrDefault(cat, List.of())
+                    : snap.byId.getOrDefault(cat, List.of());
+        }
+
+        // Keyword: tra chỉ mục full-text -> toolId -> thứ hạng liên quan
+        Map<Long, Integer> relevance = null;
+        if (keyword != null && !keyword.isBlank()) {
+            List<Long> hitIds = searchIndexService.searchToolIds(keyword);
+            relevance = new HashMap<>(hitIds.size() * 2);
+            for (int i = 0; i < hitIds.size(); i++) relevance.put(hitIds.get(i), i);
+        }
+        int minRating = (ratingFilter != null && ratingFilter > 0) ? ratingFilter : 0;
+
+        List<CatalogItem> matched = new ArrayList<>();
+        for (CatalogItem it : base) {
+            if (it.sellerExpiryDate != null && it.sellerExpiryDate.isBefore(now)) continue;
+            if (relevance != null && !relevance.containsKey(it.toolId)) continue;
+            if (createdAfter != null && (it.createdAt == null || !it.createdAt.isAfter(createdAfter))) continue;
+            if (minRating > 0 && (it.reviewCount == 0 || it.ratingSum < (long) minRating * it.reviewCount)) continue;
+            matched.add(it);
+        }
+
+        // Có keyword mà không chọn "mới nhất" -> xếp theo độ liên quan
+        if (relevance != null && !newestFirst) {
+            Map<Long, Integer> rank = relevance;
+            matched.sort(Comparator.comparing(it -> rank.get(it.toolId)));
+        }
+
+        int start = Math.min(page * size, matched.size());
+        int end = Math.min(start + size, matched.size());
+        List<Tool> content = new ArrayList<>(end - start);
+        for (CatalogItem it : matched.subList(start, end)) {
+            content.add(it.toTool());
+        }
+        return new PageImpl<>(content, PageRequest.of(page, size), matched.size());
+    }
+
+    private Snapshot snapshot() {
+        Snapshot snap = current;
+        if (snap != null && !stale) {
+            hits.incrementAndGet();
+            return snap;
+        }
+        synchronized (this) {
+            if (current != null && !stale) {
+                hits.incrementAndGet();
+                return current;
+            }
+            misses.incrementAndGet();
+            rebuild();
+            return current;
+        }
+    }
+
+    // ================== INVALIDATE / PATCH ==================
+
+    /** Đánh dấu snapshot stale (sau khi transaction hiện tại commit, nếu có). */
+    public void invalidate() {
+        AfterCommit.run(() -> stale = true);
+    }
+
+    /** Patch nhanh: gỡ 1 tool khỏi snapshot (hết hàng, bị ẩn...) mà không dựng lại toàn bộ. */
+    public void evict(Long toolId) {
+        if (toolId == null) return;
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                Snapshot snap = current;
+                if (snap == null || stale || !snap.contains(toolId)) return;
+                List<CatalogItem> items = new ArrayList<>(snap.byId.get(ALL_CATEGORIES));
+                items.removeIf(it -> it.toolId.equals(toolId));
+                current = Snapshot.build(versionSeq.incrementAndGet(), items);
+            }
+        });
+    }
+
+    /** Gọi khi availableQuantity của tool thay đổi. */
+    public void onAvailableQuantityChanged(Long toolId, Integer availableQuantity) {
+        if (availableQuantity == null || availableQuantity <= 0) evict(toolId);
+        else invalidate();
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        // Đặt stale=false trước khi đọc DB: invalidate xảy ra trong lúc dựng sẽ buộc dựng lại lần sau
+        stale = false;
+
+        List<CatalogItem> items = new ArrayList<>();
+        for (Tool t : toolRepo.findPublishedCatalogCandidates()) {
+            items.add(CatalogItem.from(t));
+        }
+        current = Snapshot.build(versionSeq.incrementAndGet(), items);
+
+        long took = System.currentTimeMillis() - start;
+        lastRebuildMillis = took;
+        totalRebuildMillis += took;
+        rebuilds.incrementAndGet();
+        log.info("Catalog snapshot v{} rebuilt: {} tool(s) in {} ms", current.version, items.size(), took);
+    }
+
+    // ================== METRICS ==================
+
+    @Override
+    public String statsName() {
+        return "catalog";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        long r = rebuilds.get();
+        Snapshot snap = current;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", snap == null ? 0 : snap.version);
+        stats.put("size", snap == null ? 0 : snap.byId.get(ALL_CATEGORIES).size());
+        stats.put("builtAt", snap == null ? null : snap.builtAt);
+        stats.put("stale", stale);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("rebuilds", r);
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        stats.put("avgRebuildMillis", r == 0 ? 0.0 : (double) totalRebuildMillis / r);
+        return stats;
+    }
+
+    // ================== SNAPSHOT ==================
+
+    private static final Comparator<CatalogItem> BY_ID = Comparator.comparing(it -> it.toolId);
+
+    private static final Comparator<CatalogItem> BY_DATE_DESC = Comparator
+            .comparing((CatalogItem it) -> it.createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(BY_ID);
+
+    private static final Comparator<CatalogItem> BY_PRICE = Comparator
+            .comparing((CatalogItem it) -> it.effectivePrice)
+            .thenComparing(BY_ID);
+
+    private static final class Snapshot {
+        final long version;
+        final LocalDateTime builtAt;
+        // key: categoryId (0 = tất cả)
+        final Map<Long, List<CatalogItem>> byId;
+        final Map<Long, List<CatalogItem>> byDate;
+        final Map<Long, List<CatalogItem>> byPrice;
+        final Set<Long> toolIds;
+
+        private Snapshot(long version, Map<Long, List<CatalogItem>> byId,
+                         Map<Long, List<CatalogItem>> byDate,
+                         Map<Long, List<CatalogItem>> byPrice,
+                         Set<Long> toolIds) {
+            this.version = version;
+            this.builtAt = LocalDateTime.now();
+            this.byId = byId;
+            this.byDate = byDate;
+            this.byPrice = byPrice;
+            this.toolIds = toolIds;
+        }
+
+        static Snapshot build(long version, List<CatalogItem> items) {
+            Map<Long, List<CatalogItem>> groups = new HashMap<>();
+            groups.put(ALL_CATEGORIES, items);
+            for (CatalogItem it : items) {
+                if (it.categoryId == null) continue;
+                groups.computeIfAbsent(it.categoryId, k -> new ArrayList<>()).add(it);
+            }
+
+            Map<Long, List<CatalogItem>> byId = new HashMap<>();
+            Map<Long, List<CatalogItem>> byDate = new HashMap<>();
+            Map<Long, List<CatalogItem>> byPrice = new HashMap<>();
+            Set<Long> ids = new HashSet<>();
+            for (Map.Entry<Long, List<CatalogItem>> e : groups.entrySet()) {
+                byId.put(e.getKey(), sorted(e.getValue(), BY_ID));
+                byDate.put(e.getKey(), sorted(e.getValue(), BY_DATE_DESC));
+                byPrice.put(e.getKey(), sorted(e.getValue(), BY_PRICE));
+            }
+            for (CatalogItem it : items) ids.add(it.toolId);
+
+            return new Snapshot(version, Map.copyOf(byId), Map.copyOf(byDate), Map.copyOf(byPrice), Set.copyOf(ids));
+        }
+
+        boolean contains(Long toolId) {
+            return toolIds.contains(toolId);
+        }
+
+        private static List<CatalogItem> sorted(List<CatalogItem> src, Comparator<CatalogItem> cmp) {
+            List<CatalogItem> copy = new ArrayList<>(src);
+            copy.sort(cmp);
+            return List.copyOf(copy);
+        }
+    }
+
+    /** Bản ghi bất biến cho 1 tool trong snapshot. */
+    private static final class CatalogItem {
+        final Long toolId;
+        final String toolName;
+        final String image;
+        final Long categoryId;
+        final String categoryName;
+        final Long sellerId;
+        final String sellerFullName;
+        final LocalDateTime sellerExpiryDate;
+        final LocalDateTime createdAt;
+        final BigDecimal minPrice;
+        final BigDecimal maxPrice;
+        final BigDecimal effectivePrice;
+        final long reviewCount;
+        final long ratingSum;
+        final Integer quantity;
+        final Integer availableQuantity;
+        final Tool.LoginMethod loginMethod;
+
+        private CatalogItem(Tool t) {
+            Account seller = t.getSeller();
+            Category category = t.getCategory();
+            this.toolId = t.getToolId();
+            this.toolName = t.getToolName();
+            this.image = t.getImage();
+            this.categoryId = category == null ? null : category.getCategoryId();
+            this.categoryName = category == null ? null : category.getCategoryName();
+            this.sellerId = seller == null ? null : seller.getAccountId();
+            this.sellerFullName = seller == null ? null : seller.getFullName();
+            this.sellerExpiryDate = seller == null ? null : seller.getSellerExpiryDate();
+            this.createdAt = t.getCreatedAt();
+            this.minPrice = t.getMinPrice();
+            this.maxPrice = t.getMaxPrice();
+            this.effectivePrice = t.getMinPrice() == null ? BigDecimal.ZERO : t.getMinPrice();
+            this.reviewCount = t.getReviewCount() == null ? 0L : t.getReviewCount();
+            this.ratingSum = t.getRatingSum() == null ? 0L : t.getRatingSum();
+            this.quantity = t.getQuantity();
+            this.availableQuantity = t.getAvailableQuantity();
+            this.loginMethod = t.getLoginMethod();
+        }
+
+        static CatalogItem from(Tool t) {
+            return new CatalogItem(t);
+        }
+
+        Tool toTool() {
+            Account seller = new Account();
+            seller.setAccountId(sellerId);
+            seller.setFullName(sellerFullName);
+
+            Category category = new Category();
+            category.setCategoryId(categoryId);
+            category.setCategoryName(categoryName);
+
+            Tool t = new Tool();
+            t.setToolId(toolId);
+            t.setToolName(toolName);
+            t.setImage(image);
+            t.setSeller(seller);
+            t.setCategory(category);
+            t.setCreatedAt(createdAt);
+            t.setMinPrice(minPrice);
+            t.setMaxPrice(maxPrice);
+            t.setReviewCount(reviewCount);
+            t.setRatingSum(ratingSum);
+            t.setQuantity(quantity);
+            t.setAvailableQuantity(availableQuantity);
+            t.setLoginMethod(loginMethod);
+            t.setStatus(Tool.Status.PUBLISHED);
+            return t;
+        }
+    }
+
+    // ================== PRICE RANGE (so với giá license thấp nhất) ==================
+
+    private record PriceRange(BigDecimal from, boolean fromInclusive, BigDecimal to, boolean toInclusive) {
+
+        static PriceRange of(String priceFilter) {
+            if (priceFilter == null) return null;
+            return switch (priceFilter) {
+                case "under100k" -> new PriceRange(null, true, BigDecimal.valueOf(100_000), false);
+                case "100k-500k" -> new PriceRange(BigDecimal.valueOf(100_000), true, BigDecimal.valueOf(500_000), true);
+                case "500k-1m" -> new PriceRange(BigDecimal.valueOf(500_000), false, BigDecimal.valueOf(1_000_000), true);
+                case "above1m" -> new PriceRange(BigDecimal.valueOf(1_000_000), false, null, true);
+                default -> null;
+            };
+        }
+
+        boolean aboveLower(BigDecimal p) {
+            if (from == null) return true;
+            int c = p.compareTo(from);
+            return fromInclusive ? c >= 0 : c > 0;
+        }
+
+        boolean belowUpper(BigDecimal p) {
+            if (to == null) return true;
+            int c = p.compareTo(to);
+            return toInclusive ? c <= 0 : c < 0;
+        }
+    }
+
+    /** Vị trí đầu tiên có giá thỏa cận dưới (danh sách đã sắp theo giá tăng dần). */
+    private static int lowerBound(List<CatalogItem> byPrice, PriceRange range) {
+        int lo = 0, hi = byPrice.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (range.aboveLower(byPrice.get(mid).effectivePrice)) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    /** Vị trí đầu tiên vượt cận trên. */
+    private static int upperBound(List<CatalogItem> byPrice, PriceRange range) {
+        int lo = 0, hi = byPrice.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (range.belowUpper(byPrice.get(mid).effectivePrice)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -9,6 +9,7 @@ import swp391.fa25.lms.repository.LicenseAccountRepository;
 import swp391.fa25.lms.repository.LicenseRenewLogRepository;
 import swp391.fa25.lms.repository.LicenseRepository;
 import swp391.fa25.lms.repository.ToolRepository;
+import swp391.fa25.lms.util.ClientSecret;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -22,17 +23,23 @@ public class CustomerLicenseAccountService {
     private final LicenseRenewLogRepository renewLogRepo;
     private final ToolRepository toolRepo;
     private final CustomerOrderRepository orderRepo;
+    private final LicenseIndexService licenseIndexService;
+    private final LicenseCertificateService licenseCertificateService;
 
     public CustomerLicenseAccountService(LicenseAccountRepository laRepo,
                                          LicenseRepository licenseRepo,
                                          LicenseRenewLogRepository renewLogRepo,
                                          ToolRepository toolRepo,
-                                         CustomerOrderRepository orderRepo) {
+                                         CustomerOrderRepository orderRepo,
+                                         LicenseIndexService licenseIndexService,
+                                         LicenseCertificateService licenseCertificateService) {
         this.laRepo = laRepo;
         this.licenseRepo = licenseRepo;
         this.renewLogRepo = renewLogRepo;
         this.toolRepo = toolRepo;
         this.orderRepo = orderRepo;
+        this.licenseIndexService = licenseIndexService;
+        this.licenseCertificateService = licenseCertificateService;
     }
 
     // tools for filter (list page)
@@ -78,18 +85,17 @@ public class CustomerLicenseAccountService {
         return laRepo.findMyLicenseAccounts(accountId, q, status, toolId, loginMethod, from, to, pageable);
     }
 
+    // Chỉ đọc: ACTIVE -> EXPIRED do LicenseExpiryService xử lý định kỳ
+    @Transactional(readOnly = true)
     public LicenseAccount getMyLicenseAccountDetail(Long accountId, Long licenseAccountId) {
-        LicenseAccount la = laRepo.findByLicenseAccountIdAndOrder_Account_AccountId(licenseAccountId, accountId)
+        return laRepo.findByLicenseAccountIdAndOrder_Account_AccountId(licenseAccountId, accountId)
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy License Account hoặc không thuộc về bạn"));
+    }
 
-        // auto mark expired (cẩn thận: side effect khi view)
-        if (la.getEndDate() != null && la.getStatus() == LicenseAccount.Status.ACTIVE) {
-            if (la.getEndDate().isBefore(LocalDateTime.now())) {
-                la.setStatus(LicenseAccount.Status.EXPIRED);
-                laRepo.save(la);
-            }
-        }
-        return la;
+    // ACTIVE và chưa quá endDate (job hết hạn có thể chưa chạy tới)
+    private boolean isActiveNow(LicenseAccount la) {
+        return la.getStatus() == LicenseAccount.Status.ACTIVE
+                && (la.getEndDate() == null || !la.getEndDate().isBefore(LocalDateTime.now()));
     }
 
     public LicenseAccount getMyLicenseAccountByOrder(Long accountId, Long orderId) {
@@ -112,12 +118,27 @@ public class CustomerLicenseAccountService {
         if (tool.getLoginMethod() != Tool.LoginMethod.USER_PASSWORD) {
             throw new IllegalArgumentException("Tool loginMethod=TOKEN không cho phép chỉnh sửa thông tin đăng nhập");
         }
-        if (la.getStatus() != LicenseAccount.Status.ACTIVE) {
+        if (!isActiveNow(la)) {
             throw new IllegalArgumentException("Chỉ License ACTIVE mới được chỉnh sửa");
         }
         la.setUsername(username == null ? null : username.trim());
         la.setPassword(password == null ? null : password.trim());
         laRepo.save(la);
+        licenseIndexService.refresh(la.getLicenseAccountId());
+    }
+
+    // CUSTOMER: CLIENT SECRET cho API license (thay token 6 số); trả secret gốc để hiện 1 lần, DB chỉ giữ hash
+    @Transactional
+    public String regenerateClientSecret(Long accountId, Long licenseAccountId) {
+        LicenseAccount la = getMyLicenseAccountDetail(accountId, licenseAccountId);
+        if (!isActiveNow(la) || !Boolean.TRUE.equals(la.getUsed())) {
+            throw new IllegalArgumentException("Chỉ License ACTIVE đã dùng dịch vụ mới tạo được client secret");
+        }
+        String secret = ClientSecret.generate();
+        la.setClientSecretHash(ClientSecret.hash(secret));
+        laRepo.save(la);
+        licenseIndexService.refresh(la.getLicenseAccountId());
+        return secret;
     }
 
     // CUSTOMER: RENEW
@@ -151,7 +172,9 @@ public class CustomerLicenseAccountService {
         la.setEndDate(newEnd);
         la.setStatus(LicenseAccount.Status.ACTIVE);
         la.setLicense(pack);
+        licenseCertificateService.reissue(la);
         laRepo.save(la);
+        licenseIndexService.refresh(la.getLicenseAccountId());
 
         LicenseRenewLog log = new LicenseRenewLog();
         log.setLicenseAccount(la);
@@ -195,7 +218,9 @@ public class CustomerLicenseAccountService {
         }
 
         la.setUsed(true);
+        licenseCertificateService.reissue(la);
         laRepo.save(la);
+        licenseIndexService.refresh(la.getLicenseAccountId());
     }
 
     /**
@@ -255,7 +280,9 @@ public class CustomerLicenseAccountService {
                 }
 
                 la.setUsed(true);
+                licenseCertificateService.reissue(la);
                 laRepo.save(la);
+                licenseIndexService.refresh(la.getLicenseAccountId());
                 activatedCount++;
             } catch (Exception e) {
                 errors.add("Lỗi khi kích hoạt LicenseAccount ID " + la.getLicenseAccountId() + ": " + e.getMessage());
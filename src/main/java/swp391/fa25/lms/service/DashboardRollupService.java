@@ -0,0 +1,238 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.DashboardCounterRepository;
+import swp391.fa25.lms.repository.DashboardRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đếm cho /dashboard, cập nhật dần thay vì COUNT/SUM mỗi lần load trang.
+ * - Chuyển trạng thái tool, tạo / xử lý report, publish blog -> UPDATE +delta
+ *   trong cùng transaction với thay đổi đó (rollback thì bộ đếm cũng rollback)
+ * - Doanh thu seller không nằm ở đây: dashboard đọc bảng ngày của sổ doanh thu (RevenueLedgerService)
+ * - reconcile() định kỳ tính lại từ bảng gốc và sửa chỗ lệch (update bị sót, sửa tay DB...);
+ *   số account / seller chỉ lấy từ lượt đối soát (đổi ở quá nhiều chỗ để móc hook)
+ */
+@Slf4j
+@Service
+public class DashboardRollupService implements OperationalStats {
+
+    public static final String ACCOUNTS = "accounts";
+    public static final String SELLERS = "sellers";
+    public static final String REPORTS = "reports";
+    public static final String PENDING_REPORTS = "reports:PENDING";
+    public static final String PUBLISHED_BLOGS = "blogs:PUBLISHED";
+
+    private final DashboardCounterRepository counterRepo;
+    private final DashboardRepository dashboardRepo;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate requiresNew;
+
+    // ===== Metrics =====
+    private final AtomicLong reconcileRuns = new AtomicLong();
+    private final AtomicLong totalCorrections = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public DashboardRollupService(DashboardCounterRepository counterRepo,
+                                  DashboardRepository dashboardRepo,
+                                  PlatformTransactionManager transactionManager) {
+        this.counterRepo = counterRepo;
+        this.dashboardRepo = dashboardRepo;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public static String toolKey(Tool.Status status) {
+        return "tools:" + status.name();
+    }
+
+    public static String sellerToolKey(Long sellerId, Tool.Status status) {
+        return "seller:" + sellerId + ":tools:" + status.name();
+    }
+
+    // ================== HOOKS ==================
+
+    /** Tool mới được lưu lần đầu. */
+    @Transactional
+    public void onToolCreated(Tool tool) {
+        applyToolDelta(tool, tool.getStatus(), +1);
+    }
+
+    /** Gọi sau khi đổi status của tool đã tồn tại (from = status trước khi đổi). */
+    @Transactional
+    public void onToolStatusChanged(Tool tool, Tool.Status from) {
+        if (from == tool.getStatus()) return;
+        applyToolDelta(tool, from, -1);
+        applyToolDelta(tool, tool.getStatus(), +1);
+    }
+
+    private void applyToolDelta(Tool tool, Tool.Status status, long delta) {
+        if (status == null) return;
+        add(toolKey(status), delta);
+        if (tool.getSeller() != null) {
+            add(sellerToolKey(tool.getSeller().getAccountId(), status), delta);
+        }
+    }
+
+    @Transactional
+    public void onReportCreated() {
+        add(REPORTS, +1);
+        add(PENDING_REPORTS, +1);
+    }
+
+    @Transactional
+    public void onReportStatusChanged(ToolReport.Status from, ToolReport.Status to) {
+        if (from == to) return;
+        if (from == ToolReport.Status.PENDING) add(PENDING_REPORTS, -1);
+        if (to == ToolReport.Status.PENDING) add(PENDING_REPORTS, +1);
+    }
+
+    /** from = null khi blog mới tạo. */
+    @Transactional
+    public void onBlogStatusChanged(Blog.Status from, Blog.Status to) {
+        if (from == to) return;
+        if (from == Blog.Status.PUBLISHED) add(PUBLISHED_BLOGS, -1);
+        if (to == Blog.Status.PUBLISHED) add(PUBLISHED_BLOGS, +1);
+    }
+
+    // ================== READ ==================
+
+    /** Giá trị các key (key chưa có dòng = 0). */
+    @Transactional(readOnly = true)
+    public Map<String, Long> getCounters(Collection<String> keys) {
+        Map<String, Long> values = new HashMap<>();
+        for (String key : keys) values.put(key, 0L);
+        for (DashboardCounter c : counterRepo.findByCounterKeyIn(keys)) {
+            values.put(c.getCounterKey(), c.getCounterValue());
+        }
+        return values;
+    }
+
+    // ================== WRITE HELPERS ==================
+
+    private void add(String key, long delta) {
+        if (delta == 0) return;
+        LocalDateTime now = LocalDateTime.now();
+        if (counterRepo.increment(key, delta, now) == 0) {
+            createCounterIfAbsent(key);
+            counterRepo.increment(key, delta, now);
+        }
+    }
+
+    // Tạo dòng = 0 ở transaction riêng (commit ngay); 2 request cùng tạo thì 1 bên dính unique -> bỏ qua
+    private void createCounterIfAbsent(String key) {
+        try {
+            requiresNew.executeWithoutResult(s -> {
+                if (!counterRepo.existsById(key)) counterRepo.saveAndFlush(new DashboardCounter(key, 0));
+            });
+        } catch (DataIntegrityViolationException alreadyCreated) {
+            log.debug("Dashboard counter {} created concurrently", key);
+        }
+    }
+
+    // ================== RECONCILE ==================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+
+    /**
+     * Tính lại toàn bộ bộ đếm từ bảng gốc, chỉ ghi những chỗ lệch.
+     * Update chạy song song với lượt đối soát có thể bị ghi đè -> lượt sau sửa lại.
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.dashboard.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        Integer fixed = tx.execute(s -> reconcileCounters());
+        long millis = System.currentTimeMillis() - start;
+
+        int corrections = fixed == null ? 0 : fixed;
+        reconcileRuns.incrementAndGet();
+        totalCorrections.addAndGet(corrections);
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("at", LocalDateTime.now());
+        run.put("counterCorrections", corrections);
+        run.put("millis", millis);
+        lastRun = run;
+
+        if (corrections > 0) {
+            log.info("Dashboard rollups reconciled: {} correction(s) in {} ms", corrections, millis);
+        }
+    }
+
+    private int reconcileCounters() {
+        Map<String, Long> truth = new HashMap<>();
+        truth.put(ACCOUNTS, dashboardRepo.countAllAccounts());
+        truth.put(SELLERS, dashboardRepo.countAllSellers());
+        truth.put(PUBLISHED_BLOGS, dashboardRepo.countPublishedBlogs());
+        for (Tool.Status s : Tool.Status.values()) truth.put(toolKey(s), 0L);
+
+        for (Object[] row : dashboardRepo.countToolsBySellerAndStatus()) {
+            Long sellerId = (Long) row[0];
+            Tool.Status status = (Tool.Status) row[1];
+            long count = ((Number) row[2]).longValue();
+            truth.merge(toolKey(status), count, Long::sum);
+            if (sellerId != null) truth.put(sellerToolKey(sellerId, status), count);
+        }
+
+        long reports = 0;
+        long pendingReports = 0;
+        for (Object[] row : dashboardRepo.countToolReportsByStatus()) {
+            long count = ((Number) row[1]).longValue();
+            reports += count;
+            if (row[0] == ToolReport.Status.PENDING) pendingReports = count;
+        }
+        truth.put(REPORTS, reports);
+        truth.put(PENDING_REPORTS, pendingReports);
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, DashboardCounter> existing = new HashMap<>();
+        counterRepo.findAll().forEach(c -> existing.put(c.getCounterKey(), c));
+
+        int fixed = 0;
+        for (Map.Entry<String, Long> e : truth.entrySet()) {
+            if (!existing.containsKey(e.getKey())) {
+                counterRepo.save(new DashboardCounter(e.getKey(), e.getValue()));
+                if (e.getValue() != 0) fixed++;
+            } else {
+                fixed += counterRepo.correct(e.getKey(), e.getValue(), now);
+            }
+        }
+        // Key không còn trong kết quả GROUP BY (vd seller hết tool PENDING) -> về 0
+        for (String key : existing.keySet()) {
+            if (!truth.containsKey(key)) fixed += counterRepo.correct(key, 0, now);
+        }
+        return fixed;
+    }
+
+    @Override
+    public String statsName() {
+        return "dashboard-rollups";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reconcileRuns", reconcileRuns.get());
+        stats.put("totalCorrections", totalCorrections.get());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+}
@@ -1,9 +1,12 @@
 package swp391.fa25.lms.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import swp391.fa25.lms.model.*;
 import swp391.fa25.lms.repository.DashboardRepository;
+import swp391.fa25.lms.repository.RevenueDailySellerRepository;
+import swp391.fa25.lms.repository.UsageBucketRepository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -15,10 +18,23 @@ import java.util.*;
 @RequiredArgsConstructor
 public class DashboardService {
 
+    private static final int REVENUE_MONTHS = 5;
+    private static final int TOP_BLOGS = 5;
+    private static final int PENDING_REPORTS_SHOWN = 20;
+    private static final int USAGE_DAYS = 7;
+    private static final int USAGE_TOP = 5;
+    // Doanh thu của seller trong sổ: bán tool + khách gia hạn license (SUBSCRIPTION là seller trả phí gói)
+    private static final List<RevenueLedgerEntry.EntryType> SELLER_REVENUE_TYPES =
+            List.of(RevenueLedgerEntry.EntryType.TOOL_SALE, RevenueLedgerEntry.EntryType.LICENSE_RENEWAL);
+
     private final DashboardRepository dashboardRepository;
+    private final DashboardRollupService rollupService;
+    private final RevenueDailySellerRepository revenueRepository;
+    private final UsageBucketRepository usageBucketRepository;
 
     /**
-     * Trả toàn bộ dữ liệu dashboard theo role
+     * Trả toàn bộ dữ liệu dashboard theo role.
+     * Số liệu đọc từ rollup (DashboardRollupService), danh sách chỉ lấy top-N.
      */
     public Map<String, Object> getDashboardData(Account account) {
 
@@ -45,11 +61,20 @@ public class DashboardService {
     // =========================
     private void loadAdminDashboard(Map<String, Object> data) {
 
-        data.put("totalAccounts", dashboardRepository.countAllAccounts());
-        data.put("totalSellers", dashboardRepository.countAllSellers());
-        data.put("totalTools", dashboardRepository.countAllTools());
-        data.put("totalReports",
-                dashboardRepository.countToolReports());
+        List<String> keys = new ArrayList<>(List.of(
+                DashboardRollupService.ACCOUNTS,
+                DashboardRollupService.SELLERS,
+                DashboardRollupService.REPORTS));
+        for (Tool.Status s : Tool.Status.values()) keys.add(DashboardRollupService.toolKey(s));
+        Map<String, Long> counters = rollupService.getCounters(keys);
+
+        long totalTools = 0;
+        for (Tool.Status s : Tool.Status.values()) totalTools += counters.get(DashboardRollupService.toolKey(s));
+
+        data.put("totalAccounts", counters.get(DashboardRollupService.ACCOUNTS));
+        data.put("totalSellers", counters.get(DashboardRollupService.SELLERS));
+        data.put("totalTools", totalTools);
+        data.put("totalReports", counters.get(DashboardRollupService.REPORTS));
     }
 
     // =========================
@@ -59,35 +84,28 @@ public class DashboardService {
 
         Long sellerId = seller.getAccountId();
 
-        // ===== KPI =====
-        data.put("totalTools",
-                dashboardRepository.countSellerTools(sellerId));
-
-        data.put("publishedTools",
-                dashboardRepository.countSellerPublishedTools(sellerId));
-
-        data.put("pendingRejectedTools",
-                dashboardRepository.countSellerPendingRejectedTools(sellerId));
-
-        // Tổng doanh thu (ALL TIME) – từ CustomerOrder
-        data.put("revenue",
-                dashboardRepository.sumSellerRevenue(sellerId));
-
-        // ===== TOOL STATUS BREAKDOWN =====
-        List<Object[]> statusCounts =
-                dashboardRepository.countSellerToolsByStatus(sellerId);
+        // ===== TOOL STATUS BREAKDOWN (rollup theo seller) =====
+        List<String> keys = new ArrayList<>();
+        for (Tool.Status s : Tool.Status.values()) keys.add(DashboardRollupService.sellerToolKey(sellerId, s));
+        Map<String, Long> counters = rollupService.getCounters(keys);
 
         // mặc định = 0 để dashboard KHÔNG BAO GIỜ bị trắng
         Map<Tool.Status, Long> statusMap = new EnumMap<>(Tool.Status.class);
+        long totalTools = 0;
         for (Tool.Status s : Tool.Status.values()) {
-            statusMap.put(s, 0L);
+            long count = counters.get(DashboardRollupService.sellerToolKey(sellerId, s));
+            statusMap.put(s, count);
+            totalTools += count;
         }
 
-        for (Object[] row : statusCounts) {
-            Tool.Status status = (Tool.Status) row[0];
-            Long count = (Long) row[1];
-            statusMap.put(status, count);
-        }
+        // ===== KPI =====
+        data.put("totalTools", totalTools);
+        data.put("publishedTools", statusMap.get(Tool.Status.PUBLISHED));
+        data.put("pendingRejectedTools",
+                statusMap.get(Tool.Status.PENDING) + statusMap.get(Tool.Status.REJECTED));
+
+        // Tổng doanh thu (ALL TIME) – tổng bucket ngày của sổ doanh thu, cùng nguồn với báo cáo tài chính
+        data.put("revenue", revenueRepository.sumForSeller(sellerId, SELLER_REVENUE_TYPES));
 
         data.put("pendingCount", statusMap.get(Tool.Status.PENDING));
         data.put("approvedCount", statusMap.get(Tool.Status.APPROVED));
@@ -96,37 +114,42 @@ public class DashboardService {
         data.put("suspectCount", statusMap.get(Tool.Status.SUSPECT));
         data.put("deactivatedCount", statusMap.get(Tool.Status.DEACTIVATED));
 
-        // ===== REVENUE LAST 5 MONTHS (FROM CUSTOMER_ORDER) =====
-        List<Object[]> revenueRows =
-                dashboardRepository.sumSellerRevenueByMonth(sellerId);
-
+        // ===== REVENUE LAST 5 MONTHS (bucket ngày revenue_daily_seller gộp theo tháng thanh toán) =====
         List<String> revenueMonths = new ArrayList<>();
         List<BigDecimal> revenueValues = new ArrayList<>();
 
-        revenueRows.stream()
-                .limit(5)
-                .forEach(r -> {
-
-                    // r[0] = YEAR(o.createdAt)
-                    // r[1] = MONTH(o.createdAt)
-                    // r[2] = SUM(o.price)
-                    Integer year = (Integer) r[0];
-                    Integer month = (Integer) r[1];
-                    Double totalDouble = (Double) r[2];
-                    BigDecimal total = BigDecimal.valueOf(totalDouble);
-
-                    revenueMonths.add(
-                            year + "-" + String.format("%02d", month)
-                    );
-                    revenueValues.add(total);
-                });
+        for (Object[] row : revenueRepository.sumBySellerAndMonth(sellerId, SELLER_REVENUE_TYPES,
+                PageRequest.of(0, REVENUE_MONTHS))) {
+            revenueMonths.add(row[0] + "-" + String.format("%02d", ((Number) row[1]).intValue()));
+            revenueValues.add((BigDecimal) row[2]);
+        }
 
         data.put("revenueMonths", revenueMonths);
         data.put("revenueValues", revenueValues);
 
+        // ===== USAGE LAST 7 DAYS (bucket ngày usage_bucket) =====
+        LocalDate today = LocalDate.now();
+        LocalDateTime usageFrom = today.minusDays(USAGE_DAYS - 1).atStartOfDay();
+        Map<LocalDate, Long> launchesByDay = new LinkedHashMap<>();
+        for (int i = USAGE_DAYS - 1; i >= 0; i--) launchesByDay.put(today.minusDays(i), 0L);
+        for (Object[] row : usageBucketRepository.sumBySeller(sellerId, UsageBucket.Granularity.DAY,
+                UsageBucket.EventType.LAUNCH, usageFrom)) {
+            launchesByDay.put(((LocalDateTime) row[0]).toLocalDate(), ((Number) row[1]).longValue());
+        }
+
+        data.put("usageDays", launchesByDay.keySet().stream().map(LocalDate::toString).toList());
+        data.put("usageLaunches", new ArrayList<>(launchesByDay.values()));
+        data.put("usageTotalLaunches", launchesByDay.values().stream().mapToLong(Long::longValue).sum());
+        // [toolName, launches, số license có dùng]
+        data.put("usageTopTools", usageBucketRepository.topToolsBySeller(sellerId, UsageBucket.EventType.LAUNCH,
+                usageFrom, PageRequest.of(0, USAGE_TOP)));
+        // [feature, số lượt]
+        data.put("usageTopFeatures", usageBucketRepository.topFeaturesBySeller(sellerId, usageFrom,
+                PageRequest.of(0, USAGE_TOP)));
+
         // ===== SELLER PACKAGE =====
         List<SellerSubscription> subscriptions =
-                dashboardRepository.findLatestSellerSubscriptions(sellerId);
+                dashboardRepository.findLatestSellerSubscriptions(sellerId, PageRequest.of(0, 1));
         
         Optional<SellerSubscription> optLast = subscriptions.isEmpty() 
                 ? Optional.empty() 
@@ -164,20 +187,26 @@ public class DashboardService {
     // =========================
     private void loadManagerDashboard(Map<String, Object> data) {
 
+        Map<String, Long> counters = rollupService.getCounters(List.of(
+                DashboardRollupService.toolKey(Tool.Status.PENDING),
+                DashboardRollupService.toolKey(Tool.Status.SUSPECT),
+                DashboardRollupService.toolKey(Tool.Status.PUBLISHED),
+                DashboardRollupService.PUBLISHED_BLOGS));
+
         data.put("pendingTools",
-                dashboardRepository.countPendingTools());
+                counters.get(DashboardRollupService.toolKey(Tool.Status.PENDING)));
 
         data.put("suspectTools",
-                dashboardRepository.countSuspectTools());
+                counters.get(DashboardRollupService.toolKey(Tool.Status.SUSPECT)));
 
         data.put("publishedTools",
-                dashboardRepository.countPublishedTools());
+                counters.get(DashboardRollupService.toolKey(Tool.Status.PUBLISHED)));
 
         data.put("publishedBlogs",
-                dashboardRepository.countPublishedBlogs());
+                counters.get(DashboardRollupService.PUBLISHED_BLOGS));
 
         data.put("topBlogs",
-                dashboardRepository.findTopBlogs().stream().limit(5).toList());
+                dashboardRepository.findTopBlogs(PageRequest.of(0, TOP_BLOGS)));
     }
 
     // =========================
@@ -185,11 +214,11 @@ public class DashboardService {
     // =========================
     private void loadModDashboard(Map<String, Object> data) {
 
-        List<ToolReport> toolReports =
-                dashboardRepository.findPendingToolReports();
-
-        data.put("pendingToolReports", toolReports);
+        data.put("pendingToolReports",
+                dashboardRepository.findPendingToolReports(PageRequest.of(0, PENDING_REPORTS_SHOWN)));
 
-        data.put("totalPendingReports", toolReports.size());
+        data.put("totalPendingReports",
+                rollupService.getCounters(List.of(DashboardRollupService.PENDING_REPORTS))
+                        .get(DashboardRollupService.PENDING_REPORTS));
     }
 }
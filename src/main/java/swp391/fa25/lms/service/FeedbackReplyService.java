@@ -2,7 +2,6 @@ package swp391.fa25.lms.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -12,8 +11,7 @@ import swp391.fa25.lms.model.*;
 import swp391.fa25.lms.repository.*;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
@@ -23,25 +21,35 @@ public class FeedbackReplyService {
     private final FeedbackRepository feedbackRepo;
     private final AccountRepository accountRepo;
     private final ToolRepository toolRepo;
+    private final ToolSummaryService toolSummaryService;
 
     private static final int MAX_REPLY_LENGTH = 500;
 
-    public Page<Feedback> getSellerToolFeedbacks(Long sellerId, int page, int size, 
+    /** Hộp thư feedback của seller, lọc + phân trang trong DB (mới nhất trước). */
+    @Transactional(readOnly = true)
+    public Page<Feedback> getSellerToolFeedbacks(Long sellerId, int page, int size,
                                                    Long toolId, Boolean hasReply, Integer minRating) {
-        List<Tool> sellerTools = getSellerTools(sellerId);
-
-        if (sellerTools.isEmpty()) {
-            return Page.empty();
-        }
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(size, 1),
+                Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "feedbackId")));
+        return feedbackRepo.findSellerInbox(sellerId, toolId, hasReply, minRating, pageable);
+    }
 
-        List<Long> sellerToolIds = sellerTools.stream()
-                .map(Tool::getToolId)
-                .toList();
+    /** feedbackId -> reply cho các feedback trong trang. */
+    @Transactional(readOnly = true)
+    public Map<Long, FeedbackReply> getRepliesByFeedback(Collection<Feedback> feedbacks) {
+        Map<Long, FeedbackReply> replies = new HashMap<>();
+        if (feedbacks == null || feedbacks.isEmpty()) return replies;
 
-        List<Feedback> allFeedbacks = feedbackRepo.findAllWithAccountAndTool();
-        List<Feedback> filteredFeedbacks = filterFeedbacks(allFeedbacks, sellerToolIds, toolId, hasReply, minRating);
+        List<Long> ids = feedbacks.stream().map(Feedback::getFeedbackId).toList();
+        for (FeedbackReply reply : feedbackReplyRepo.findByFeedbackIds(ids)) {
+            replies.put(reply.getFeedback().getFeedbackId(), reply);
+        }
+        return replies;
+    }
 
-        return createPage(filteredFeedbacks, page, size);
+    @Transactional(readOnly = true)
+    public List<Tool> getSellerTools(Long sellerId) {
+        return toolRepo.findBySeller_AccountIdOrderByToolNameAsc(sellerId);
     }
 
     public Optional<FeedbackReply> getReplyByFeedbackId(Long feedbackId) {
@@ -67,7 +75,9 @@ public class FeedbackReplyService {
         reply.setContent(content.trim());
         reply.setCreatedAt(LocalDateTime.now());
 
-        return feedbackReplyRepo.save(reply);
+        FeedbackReply saved = feedbackReplyRepo.save(reply);
+        toolSummaryService.adjustUnrepliedFeedback(feedback.getTool().getToolId(), -1);
+        return saved;
     }
 
     @Transactional
@@ -93,47 +103,13 @@ public class FeedbackReplyService {
         validateReplyOwnership(reply, sellerId);
 
         feedbackReplyRepo.delete(reply);
+        toolSummaryService.adjustUnrepliedFeedback(reply.getFeedback().getTool().getToolId(), 1);
     }
 
+    /** Số feedback chưa reply của seller (cộng cột unreplied_feedback_count trên các tool của seller). */
+    @Transactional(readOnly = true)
     public long countUnrepliedFeedbacks(Long sellerId) {
-        List<Tool> sellerTools = getSellerTools(sellerId);
-        List<Long> sellerToolIds = sellerTools.stream()
-                .map(Tool::getToolId)
-                .toList();
-
-        return feedbackRepo.findAllWithAccountAndTool().stream()
-                .filter(fb -> sellerToolIds.contains(fb.getTool().getToolId()))
-                .filter(fb -> !feedbackReplyRepo.existsByFeedback(fb))
-                .count();
-    }
-
-    private List<Tool> getSellerTools(Long sellerId) {
-        return toolRepo.findAll().stream()
-                .filter(t -> t.getSeller() != null && t.getSeller().getAccountId().equals(sellerId))
-                .toList();
-    }
-
-    private List<Feedback> filterFeedbacks(List<Feedback> allFeedbacks, List<Long> sellerToolIds,
-                                           Long toolId, Boolean hasReply, Integer minRating) {
-        return allFeedbacks.stream()
-                .filter(fb -> fb.getTool() != null && sellerToolIds.contains(fb.getTool().getToolId()))
-                .filter(fb -> toolId == null || fb.getTool().getToolId().equals(toolId))
-                .filter(fb -> {
-                    if (hasReply == null) return true;
-                    boolean fbHasReply = feedbackReplyRepo.existsByFeedback(fb);
-                    return hasReply == fbHasReply;
-                })
-                .filter(fb -> minRating == null || fb.getRating() >= minRating)
-                .toList();
-    }
-
-    private Page<Feedback> createPage(List<Feedback> feedbacks, int page, int size) {
-        int start = Math.min(page * size, feedbacks.size());
-        int end = Math.min(start + size, feedbacks.size());
-        List<Feedback> pageContent = feedbacks.subList(start, end);
-
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return new PageImpl<>(pageContent, pageable, feedbacks.size());
+        return toolRepo.sumUnrepliedFeedbackBySeller(sellerId);
     }
 
     private void validateReplyContent(String content) {
@@ -17,6 +17,7 @@ public class FeedbackService {
     private final OrderRepository orderRepo;
     private final AccountRepository accountRepo;
     private final ToolRepository toolRepo;
+    private final ToolSummaryService toolSummaryService;
 
     private static final int MAX_COMMENT_LENGTH = 100;
     private static final int MIN_RATING = 1;
@@ -40,13 +41,23 @@ public class FeedbackService {
         Optional<Feedback> existingFeedback = findFeedbackByOrder(orderId);
 
         Feedback feedback;
+        Feedback.Status oldStatus = null;
+        Integer oldRating = null;
         if (existingFeedback.isPresent()) {
+            oldStatus = existingFeedback.get().getStatus();
+            oldRating = existingFeedback.get().getRating();
             feedback = updateExistingFeedback(existingFeedback.get(), rating, comment);
         } else {
             feedback = createNewFeedback(account, tool, order, rating, comment);
         }
 
-        return feedbackRepo.save(feedback);
+        Feedback saved = feedbackRepo.save(feedback);
+        toolSummaryService.onFeedbackChanged(saved.getTool().getToolId(),
+                oldStatus, oldRating, saved.getStatus(), saved.getRating());
+        if (existingFeedback.isEmpty()) {
+            toolSummaryService.adjustUnrepliedFeedback(saved.getTool().getToolId(), 1);
+        }
+        return saved;
     }
 
     public Double getAverageRating(Long toolId) {
@@ -0,0 +1,230 @@
+package swp391.fa25.lms.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import swp391.fa25.lms.model.PaymentTransaction;
+import swp391.fa25.lms.model.StockReservation;
+import swp391.fa25.lms.repository.StockReservationRepository;
+import swp391.fa25.lms.repository.ToolRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tồn kho của tool: available -> reserved (checkout) -> sold (thanh toán thành công)
+ * hoặc reserved -> available (thất bại / hết hạn giữ chỗ).
+ * Mọi thay đổi số lượng là 1 câu UPDATE có điều kiện trên bảng Tool, không đọc-sửa-ghi trong Java.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryService implements OperationalStats {
+
+    private static final int SWEEP_BATCH = 200;
+
+    private final ToolRepository toolRepo;
+    private final StockReservationRepository reservationRepo;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final TypeaheadService typeaheadService;
+
+    @Value("${app.inventory.reservation-ttl-minutes:15}")
+    private long reservationTtlMinutes;
+
+    // ===== Metrics (từ lúc khởi động) =====
+    private final AtomicLong reserveOk = new AtomicLong();
+    private final AtomicLong reserveRejected = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong directSales = new AtomicLong();
+    private final AtomicLong oversold = new AtomicLong();
+
+    // ================== RESERVE ==================
+
+    /**
+     * Giữ chỗ tất cả tool của 1 giao dịch (all-or-nothing).
+     * @param qtyByTool toolId -> số lượng
+     * @return false nếu có tool không đủ hàng (các tool đã giữ trong lần gọi này được trả lại)
+     */
+    @Transactional
+    public boolean reserve(PaymentTransaction transaction, Map<Long, Integer> qtyByTool) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StockReservation> held = new ArrayList<>();
+
+        // Giữ theo thứ tự toolId tăng dần để các giao dịch nhiều tool không khóa chéo nhau
+        for (Map.Entry<Long, Integer> e : new TreeMap<>(qtyByTool).entrySet()) {
+            Long toolId = e.getKey();
+            int qty = e.getValue() == null ? 0 : e.getValue();
+            if (qty <= 0) continue;
+
+            if (toolRepo.reserveStock(toolId, qty) == 0) {
+                reserveRejected.incrementAndGet();
+                for (StockReservation r : held) {
+                    reservationRepo.close(r.getReservationId(), StockReservation.Status.RELEASED, now);
+                    toolRepo.releaseReservedStock(r.getTool().getToolId(), r.getQuantity());
+                }
+                return false;
+            }
+
+            StockReservation r = new StockReservation();
+            r.setTool(toolRepo.getReferenceById(toolId));
+            r.setTransaction(transaction);
+            r.setQuantity(qty);
+            r.setStatus(StockReservation.Status.HELD);
+            r.setCreatedAt(now);
+            r.setExpiresAt(now.plusMinutes(reservationTtlMinutes));
+            held.add(reservationRepo.save(r));
+
+            if (available(toolId) <= 0) onSoldOut(toolId);
+        }
+
+        reserveOk.incrementAndGet();
+        return true;
+    }
+
+    // ================== COMMIT / RELEASE ==================
+
+    /**
+     * Thanh toán thành công: chuyển giữ chỗ của giao dịch sang sold.
+     * Phần không có giữ chỗ (đã hết hạn, đơn repay...) trừ thẳng available nếu còn hàng.
+     * Giữ chỗ đã COMMITTED (bởi lần gọi này hay callback trước) luôn được tính là đã trừ -> không trừ thẳng lần nữa.
+     * @param qtyByTool toolId -> số lượng thực tế của các order trong giao dịch
+     */
+    @Transactional
+    public void commit(PaymentTransaction transaction, Map<Long, Integer> qtyByTool) {
+        LocalDateTime now = LocalDateTime.now();
+
+        for (Object[] line : reservationRepo.findLinesByTransaction(
+                transaction.getTransactionId(), StockReservation.Status.HELD)) {
+            Long reservationId = (Long) line[0];
+            Long toolId = (Long) line[1];
+            int qty = ((Number) line[2]).intValue();
+
+            if (reservationRepo.close(reservationId, StockReservation.Status.COMMITTED, now) == 1) {
+                toolRepo.commitReservedStock(toolId, qty);
+                committed.incrementAndGet();
+            }
+        }
+
+        // Đọc lại sau khi close: giữ chỗ mà callback chạy song song đã commit cũng được trừ ra ở đây
+        Map<Long, Integer> remaining = new TreeMap<>(qtyByTool);
+        for (Object[] line : reservationRepo.findLinesByTransaction(
+                transaction.getTransactionId(), StockReservation.Status.COMMITTED)) {
+            remaining.merge((Long) line[1], -((Number) line[2]).intValue(), Integer::sum);
+        }
+
+        for (Map.Entry<Long, Integer> e : remaining.entrySet()) {
+            int qty = e.getValue() == null ? 0 : e.getValue();
+            if (qty <= 0) continue;
+
+            Long toolId = e.getKey();
+            if (toolRepo.decrementIfAvailable(toolId, qty) == 1) {
+                directSales.incrementAndGet();
+                if (available(toolId) <= 0) onSoldOut(toolId);
+            } else {
+                // Đã thu tiền nhưng hết hàng: không để tồn kho âm, ghi nhận để xử lý thủ công
+                oversold.incrementAndGet();
+                log.warn("Oversold: tool {} x{} for transaction {}", toolId, qty, transaction.getTransactionId());
+            }
+        }
+    }
+
+    /** Thanh toán thất bại / hủy: trả giữ chỗ về available. */
+    @Transactional
+    public void release(PaymentTransaction transaction) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] line : reservationRepo.findLinesByTransaction(
+                transaction.getTransactionId(), StockReservation.Status.HELD)) {
+            if (closeAndRestock((Long) line[0], (Long) line[1], ((Number) line[2]).intValue(),
+                    StockReservation.Status.RELEASED, now)) {
+                released.incrementAndGet();
+            }
+        }
+    }
+
+    /** Trả lại các giữ chỗ quá hạn (người mua bỏ ngang ở trang VNPay). */
+    @Scheduled(fixedDelayString = "${app.inventory.sweep-interval-ms:60000}")
+    @Transactional
+    public void releaseExpiredReservations() {
+        LocalDateTime now = LocalDateTime.now();
+        int count = 0;
+        for (Object[] line : reservationRepo.findExpiredLines(now, PageRequest.of(0, SWEEP_BATCH))) {
+            if (closeAndRestock((Long) line[0], (Long) line[1], ((Number) line[2]).intValue(),
+                    StockReservation.Status.EXPIRED, now)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            expired.addAndGet(count);
+            log.info("Released {} expired stock reservation(s)", count);
+        }
+    }
+
+    // Chỉ bên đóng được giữ chỗ (HELD -> RELEASED/EXPIRED) mới cộng lại tồn kho -> an toàn khi chạy nhiều node
+    private boolean closeAndRestock(Long reservationId, Long toolId, int qty,
+                                    StockReservation.Status to, LocalDateTime now) {
+        if (reservationRepo.close(reservationId, to, now) == 0) return false;
+        toolRepo.releaseReservedStock(toolId, qty);
+        if (available(toolId) == qty) onBackInStock();
+        return true;
+    }
+
+    // ================== COUNTERS ==================
+
+    /** available / reserved / sold / quantity của 1 tool (đọc thẳng DB). */
+    public Map<String, Object> getCounters(Long toolId) {
+        List<Object[]> rows = toolRepo.findStockCounters(toolId);
+        if (rows.isEmpty()) throw new IllegalArgumentException("Tool không tồn tại: " + toolId);
+
+        Object[] row = rows.get(0);
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("toolId", toolId);
+        counters.put("available", row[0]);
+        counters.put("reserved", row[1]);
+        counters.put("sold", row[2]);
+        counters.put("quantity", row[3]);
+        return counters;
+    }
+
+    @Override
+    public String statsName() {
+        return "inventory";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reservationTtlMinutes", reservationTtlMinutes);
+        stats.put("reserveOk", reserveOk.get());
+        stats.put("reserveRejected", reserveRejected.get());
+        stats.put("committed", committed.get());
+        stats.put("released", released.get());
+        stats.put("expired", expired.get());
+        stats.put("directSales", directSales.get());
+        stats.put("oversold", oversold.get());
+        return stats;
+    }
+
+    private int available(Long toolId) {
+        List<Object[]> rows = toolRepo.findStockCounters(toolId);
+        if (rows.isEmpty() || rows.get(0)[0] == null) return 0;
+        return ((Number) rows.get(0)[0]).intValue();
+    }
+
+    // Catalog / typeahead chỉ quan tâm khi tool hết hàng hoặc có hàng trở lại
+    private void onSoldOut(Long toolId) {
+        catalogSnapshotService.onAvailableQuantityChanged(toolId, 0);
+        typeaheadService.onToolRemoved(toolId);
+    }
+
+    private void onBackInStock() {
+        catalogSnapshotService.invalidate();
+        typeaheadService.invalidate();
+    }
+}
@@ -1,5 +1,9 @@
 package swp391.fa25.lms.service;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -12,11 +16,11 @@ import swp391.fa25.lms.model.Tool;
 import swp391.fa25.lms.repository.LicenseAccountRepository;
 import swp391.fa25.lms.repository.LicenseRenewLogRepository;
 import swp391.fa25.lms.repository.LicenseToolRepository;
+import swp391.fa25.lms.util.LikePattern;
 
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Objects;
 
 @Service
 public class LicenseAccountService {
@@ -24,13 +28,25 @@ public class LicenseAccountService {
     private final LicenseAccountRepository accRepo;
     private final LicenseToolRepository licenseRepo;
     private final LicenseRenewLogRepository renewLogRepo;
+    private final TokenService tokenService;
+    private final LicenseIndexService licenseIndexService;
+    private final LicenseCertificateService licenseCertificateService;
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_KEYSET_SIZE = 500;
 
     public LicenseAccountService(LicenseAccountRepository accRepo,
                                  LicenseToolRepository licenseRepo,
-                                 LicenseRenewLogRepository renewLogRepo) {
+                                 LicenseRenewLogRepository renewLogRepo,
+                                 TokenService tokenService,
+                                 LicenseIndexService licenseIndexService,
+                                 LicenseCertificateService licenseCertificateService) {
         this.accRepo = accRepo;
         this.licenseRepo = licenseRepo;
         this.renewLogRepo = renewLogRepo;
+        this.tokenService = tokenService;
+        this.licenseIndexService = licenseIndexService;
+        this.licenseCertificateService = licenseCertificateService;
     }
 
     @Transactional(readOnly = true)
@@ -39,32 +55,36 @@ public class LicenseAccountService {
         return accRepo.findByStatusAndLicense_Tool_ToolId(LicenseAccount.Status.ACTIVE, toolId);
     }
 
+    /**
+     * Admin: danh sách License_Account theo trang, lọc / sort trong DB.
+     * sort: id_desc (mặc định), id_asc, end_desc, end_asc
+     */
     @Transactional(readOnly = true)
-    public List<LicenseAccount> adminList(Long toolId, String q, LicenseAccount.Status status, Boolean used) {
-        List<LicenseAccount> base = (toolId != null)
-                ? accRepo.findByLicense_Tool_ToolId(toolId)
-                : accRepo.findAll();
-
-        Stream<LicenseAccount> st = base.stream();
-
-        if (status != null) st = st.filter(x -> x.getStatus() == status);
-        if (used != null) st = st.filter(x -> used.equals(x.getUsed()));
-
-        if (StringUtils.hasText(q)) {
-            String k = q.trim().toLowerCase();
-            st = st.filter(x ->
-                    (x.getUsername() != null && x.getUsername().toLowerCase().contains(k))
-                            || (x.getToken() != null && x.getToken().toLowerCase().contains(k))
-                            || (x.getLicense() != null && x.getLicense().getName() != null
-                            && x.getLicense().getName().toLowerCase().contains(k))
-                            || (x.getLicense() != null && x.getLicense().getTool() != null
-                            && x.getLicense().getTool().getToolName() != null
-                            && x.getLicense().getTool().getToolName().toLowerCase().contains(k))
-            );
-        }
+    public Page<LicenseAccount> adminList(Long toolId, String q, LicenseAccount.Status status, Boolean used,
+                                          int page, int size, String sort) {
+        Sort order = switch (sort == null ? "" : sort) {
+            case "id_asc" -> Sort.by(Sort.Direction.ASC, "licenseAccountId");
+            case "end_desc" -> Sort.by(Sort.Direction.DESC, "endDate").and(Sort.by(Sort.Direction.DESC, "licenseAccountId"));
+            case "end_asc" -> Sort.by(Sort.Direction.ASC, "endDate").and(Sort.by(Sort.Direction.ASC, "licenseAccountId"));
+            default -> Sort.by(Sort.Direction.DESC, "licenseAccountId");
+        };
+        Pageable pageable = PageRequest.of(Math.max(page, 0), clamp(size, MAX_PAGE_SIZE), order);
+        return accRepo.adminSearch(toolId, LikePattern.contains(q), status, used, pageable);
+    }
+
+    /**
+     * Admin: duyệt sâu bằng keyset (id giảm dần). Trang đầu afterId = null,
+     * trang sau truyền id của phần tử cuối trang trước.
+     */
+    @Transactional(readOnly = true)
+    public List<LicenseAccount> adminListAfter(Long toolId, String q, LicenseAccount.Status status, Boolean used,
+                                               Long afterId, int size) {
+        return accRepo.adminSearchAfter(toolId, LikePattern.contains(q), status, used, afterId,
+                PageRequest.of(0, clamp(size, MAX_KEYSET_SIZE)));
+    }
 
-        return st.sorted(Comparator.comparing(LicenseAccount::getLicenseAccountId).reversed())
-                .toList();
+    private int clamp(int size, int max) {
+        return Math.min(Math.max(size, 1), max);
     }
 
     @Transactional(readOnly = true)
@@ -83,6 +103,24 @@ public class LicenseAccountService {
         return renewLogRepo.findByLicenseAccount_LicenseAccountIdOrderByRenewDateDesc(licenseAccountId);
     }
 
+    // ====== ADMIN: EDIT FORM ======
+    /** Đổ LicenseAccount vào form edit; password để trống (không đổi nếu admin không nhập). */
+    @Transactional(readOnly = true)
+    public LicenseAccountFormDTO toForm(Long id) {
+        LicenseAccount la = getById(id);
+        LicenseAccountFormDTO dto = new LicenseAccountFormDTO();
+        dto.setLicenseId(la.getLicense() != null ? la.getLicense().getLicenseId() : null);
+        dto.setStartDate(la.getStartDate());
+        dto.setEndDate(la.getEndDate());
+        dto.setStatus(la.getStatus());
+        dto.setUsed(la.getUsed());
+        dto.setMaxDevices(la.getMaxDevices() != null ? la.getMaxDevices() : 1);
+        dto.setToken(la.getToken());
+        dto.setUsername(la.getUsername());
+        dto.setPassword("");
+        return dto;
+    }
+
     // ====== ADMIN: CREATE ======
     @Transactional
     public void adminCreate(LicenseAccountFormDTO dto) {
@@ -100,10 +138,14 @@ public class LicenseAccountService {
         la.setEndDate(dto.getEndDate());
         la.setStatus(dto.getStatus());
         la.setUsed(Boolean.TRUE.equals(dto.getUsed()));
+        if (dto.getMaxDevices() != null) la.setMaxDevices(dto.getMaxDevices());
 
         applyCredentialsByMethod(tool, dto, la, true); // create
 
         accRepo.save(la);
+        licenseCertificateService.reissue(la); // cần id -> cấp sau save, flush lúc commit
+        if (la.getToken() != null) tokenService.onTokensAdded(List.of(la.getToken()));
+        licenseIndexService.refresh(la.getLicenseAccountId());
     }
 
     // ====== ADMIN: EDIT ======
@@ -117,16 +159,24 @@ public class LicenseAccountService {
 
         Tool tool = license.getTool();
         validateByLoginMethod(tool, dto, existing); // edit
+        String oldToken = existing.getToken();
 
         existing.setLicense(license);
         existing.setStartDate(dto.getStartDate());
         existing.setEndDate(dto.getEndDate());
         existing.setStatus(dto.getStatus());
         existing.setUsed(Boolean.TRUE.equals(dto.getUsed()));
+        if (dto.getMaxDevices() != null) existing.setMaxDevices(dto.getMaxDevices());
 
         applyCredentialsByMethod(tool, dto, existing, false); // edit
+        licenseCertificateService.reissue(existing);
 
         accRepo.save(existing);
+        if (!Objects.equals(oldToken, existing.getToken())) {
+            if (oldToken != null) tokenService.onTokensRemoved(List.of(oldToken));
+            if (existing.getToken() != null) tokenService.onTokensAdded(List.of(existing.getToken()));
+        }
+        licenseIndexService.refresh(existing.getLicenseAccountId());
     }
 
     // ====== ADMIN: RENEW ======
@@ -147,7 +197,9 @@ public class LicenseAccountService {
 
         la.setEndDate(dto.getNewEndDate());
         la.setStatus(LicenseAccount.Status.ACTIVE);
+        licenseCertificateService.reissue(la);
         accRepo.save(la);
+        licenseIndexService.refresh(la.getLicenseAccountId());
 
         LicenseRenewLog log = new LicenseRenewLog();
         log.setLicenseAccount(la);
@@ -181,7 +233,7 @@ public class LicenseAccountService {
                 throw new IllegalArgumentException("Tool login_method=TOKEN => Token không được trống");
 
             String token = dto.getToken().trim();
-            boolean exists = accRepo.existsByToken(token);
+            boolean exists = tokenService.isTokenTaken(token);
             if (exists) {
                 if (editing == null || editing.getToken() == null || !token.equals(editing.getToken())) {
                     throw new IllegalArgumentException("Token đã tồn tại, vui lòng chọn token khác");
@@ -0,0 +1,159 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chặn dò credential trên API license công khai (verify / leases / usage), đếm theo cửa sổ cố định window-ms:
+ * - Mỗi IP tối đa ip-requests request / cửa sổ, vượt thì chờ hết cửa sổ
+ * - Xác thực sai (kể cả license đã hết hạn) cộng vào 3 bộ đếm: IP, tool, tool + username;
+ *   chạm ngưỡng thì khóa key đó lockout-ms (tool chỉ khóa khi bị dò rải rác từ rất nhiều IP)
+ * - Đăng nhập đúng xóa bộ đếm sai của tool + username, không xóa của IP
+ * Bộ đếm nằm trong RAM từng node: chạy nhiều node thì ngưỡng thực tế nhân theo số node.
+ */
+@Slf4j
+@Service
+public class LicenseApiThrottle implements OperationalStats {
+
+    @Value("${app.license-api.window-ms:60000}")
+    private long windowMs;
+
+    @Value("${app.license-api.ip-requests:600}")
+    private int ipRequests;
+
+    @Value("${app.license-api.ip-failures:20}")
+    private int ipFailures;
+
+    @Value("${app.license-api.login-failures:5}")
+    private int loginFailures;
+
+    @Value("${app.license-api.tool-failures:1000}")
+    private int toolFailures;
+
+    @Value("${app.license-api.lockout-ms:900000}")
+    private long lockoutMs;
+
+    private static final class Window {
+        // guarded by this
+        long start;
+        int count;
+    }
+
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lockedUntil = new ConcurrentHashMap<>();
+
+    // ===== Metrics =====
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong lockouts = new AtomicLong();
+
+    /**
+     * Gọi trước khi xác thực. 0 = cho qua; > 0 = số giây client phải chờ (429 + Retry-After).
+     * username chỉ truyền khi xác thực bằng username / password.
+     */
+    public long admit(String ip, Long toolId, String username) {
+        long now = System.currentTimeMillis();
+        long waitMs = Math.max(lockRemaining(ipKey(ip), now), lockRemaining(toolKey(toolId), now));
+        if (username != null) waitMs = Math.max(waitMs, lockRemaining(loginKey(toolId, username), now));
+        if (waitMs == 0) {
+            Window w = windows.computeIfAbsent("req:" + ip, k -> new Window());
+            synchronized (w) {
+                roll(w, now);
+                if (++w.count > ipRequests) waitMs = w.start + windowMs - now;
+            }
+        }
+        if (waitMs <= 0) return 0;
+        throttled.incrementAndGet();
+        return (waitMs + 999) / 1000;
+    }
+
+    /** Xác thực sai hoặc license không còn hiệu lực: trả lời như nhau nên đếm như nhau. */
+    public void recordFailure(String ip, Long toolId, String username) {
+        failures.incrementAndGet();
+        long now = System.currentTimeMillis();
+        countFailure(ipKey(ip), ipFailures, now);
+        countFailure(toolKey(toolId), toolFailures, now);
+        if (username != null) countFailure(loginKey(toolId, username), loginFailures, now);
+    }
+
+    public void recordSuccess(Long toolId, String username) {
+        if (username != null) windows.remove("fail:" + loginKey(toolId, username));
+    }
+
+    // ================== INTERNAL ==================
+
+    private void countFailure(String key, int limit, long now) {
+        Window w = windows.computeIfAbsent("fail:" + key, k -> new Window());
+        boolean lock;
+        synchronized (w) {
+            roll(w, now);
+            lock = ++w.count == limit;
+        }
+        if (lock) {
+            lockedUntil.put(key, now + lockoutMs);
+            lockouts.incrementAndGet();
+            log.warn("License API locked {} for {} ms after {} failed attempt(s)", key, lockoutMs, limit);
+        }
+    }
+
+    private void roll(Window w, long now) {
+        if (now - w.start >= windowMs) {
+            w.start = now;
+            w.count = 0;
+        }
+    }
+
+    private long lockRemaining(String key, long now) {
+        Long until = lockedUntil.get(key);
+        return until == null ? 0 : Math.max(0, until - now);
+    }
+
+    private static String ipKey(String ip) {
+        return "ip:" + ip;
+    }
+
+    private static String toolKey(Long toolId) {
+        return "tool:" + toolId;
+    }
+
+    private static String loginKey(Long toolId, String username) {
+        return "login:" + toolId + ":" + username;
+    }
+
+    // Dọn cửa sổ đã qua và khóa đã hết hạn để map không phình theo số IP từng gọi
+    @Scheduled(fixedDelayString = "${app.license-api.window-ms:60000}")
+    public void cleanup() {
+        long now = System.currentTimeMillis();
+        windows.entrySet().removeIf(e -> {
+            synchronized (e.getValue()) {
+                return now - e.getValue().start >= windowMs;
+            }
+        });
+        lockedUntil.values().removeIf(until -> until <= now);
+    }
+
+    // ================== METRICS ==================
+
+    @Override
+    public String statsName() {
+        return "license-api";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("throttled", throttled.get());
+        stats.put("failures", failures.get());
+        stats.put("lockouts", lockouts.get());
+        stats.put("lockedKeys", lockedUntil.size());
+        stats.put("trackedWindows", windows.size());
+        return stats;
+    }
+}
@@ -0,0 +1,184 @@
+package swp391.fa25.lms.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.util.LicenseCertificateVerifier;
+
+import java.io.IOException;
+import java.security.*;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cấp license certificate: JWT RS256 (RSA 2048) cho mỗi License_Account đã kích hoạt.
+ * Chọn RSA thay vì EC: verify phía client (chạy mỗi lần mở tool) rẻ hơn ECDSA, ~260 µs/op (LicenseCertificateVerifierBenchmark).
+ * Claims: jti (certificate id), sub = licenseAccountId, tool, lic (licenseId), seats = maxDevices, nbf = startDate, exp = endDate.
+ * Tool phía khách kiểm tra bằng LicenseCertificateVerifier + public key, không cần gọi server mỗi lần mở.
+ * Kích hoạt / gia hạn / admin sửa ngày -> reissue() trước khi save; account không còn dùng được thì xóa certificate.
+ * Certificate cũ bị thay (cấp lại) hoặc xóa mà còn hạn thì ghi vào feed thu hồi (LicenseRevocationFeedService)
+ * để client offline cũng biết: không thì bản cũ (vd ngày / số seat cũ) vẫn verify được tới exp.
+ * Khóa đọc từ app.license-cert.*, mọi node dùng chung 1 cặp. Để trống chỉ chấp nhận ở profile dev / test
+ * (sinh cặp khóa tạm, certificate không còn verify được sau restart); profile khác dừng khởi động.
+ * Đổi khóa (kid = SHA-256 public key, nằm trong header mỗi certificate):
+ * - Đặt cặp khóa mới vào private-key / public-key, chuyển public key cũ sang previous-public-keys
+ * - /api/licenses/public-key trả khóa hiện tại kèm các khóa cũ; client chọn khóa theo kid của certificate
+ * - Certificate cũ được ký lại bằng khóa mới ở lần kích hoạt / gia hạn / admin sửa kế tiếp;
+ *   bỏ khóa cũ khỏi previous-public-keys khi certificate cuối cùng ký bằng nó đã hết hạn
+ */
+@Slf4j
+@Service
+public class LicenseCertificateService implements OperationalStats {
+
+    private static final int KEY_SIZE = 2048;
+    // Profile được phép chạy với khóa tạm
+    private static final String[] EPHEMERAL_KEY_PROFILES = {"dev", "test"};
+
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+    // kid -> public key base64 của các khóa đã thay, còn certificate chưa hết hạn
+    private final Map<String, String> previousPublicKeys = new LinkedHashMap<>();
+    private final LicenseCertificateVerifier verifier;
+    private final LicenseRevocationFeedService revocationFeed;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // ===== Metrics =====
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong cleared = new AtomicLong();
+
+    public LicenseCertificateService(@Value("${app.license-cert.private-key:}") String privateKeyBase64,
+                                     @Value("${app.license-cert.public-key:}") String publicKeyBase64,
+                                     @Value("${app.license-cert.previous-public-keys:}") String previousPublicKeysBase64,
+                                     Environment environment,
+                                     LicenseRevocationFeedService revocationFeed) {
+        this.revocationFeed = revocationFeed;
+        try {
+            KeyFactory kf = KeyFactory.getInstance("RSA");
+            if (StringUtils.hasText(privateKeyBase64) && StringUtils.hasText(publicKeyBase64)) {
+                this.privateKey = kf.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKeyBase64.trim())));
+                this.publicKey = kf.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publicKeyBase64.trim())));
+            } else {
+                if (!environment.matchesProfiles(EPHEMERAL_KEY_PROFILES)) {
+                    throw new IllegalStateException("Chưa cấu hình app.license-cert.private-key / public-key "
+                            + "(chỉ profile dev / test mới được dùng khóa tạm)");
+                }
+                KeyPairGenerator gen = KeyPairGenerator.getInstance("RSA");
+                gen.initialize(KEY_SIZE);
+                KeyPair pair = gen.generateKeyPair();
+                this.privateKey = pair.getPrivate();
+                this.publicKey = pair.getPublic();
+                log.warn("app.license-cert keys not configured, using a temporary key pair (certificates will not verify after restart)");
+            }
+            for (String key : StringUtils.commaDelimitedListToStringArray(previousPublicKeysBase64)) {
+                if (!StringUtils.hasText(key)) continue;
+                PublicKey previous = kf.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(key.trim())));
+                previousPublicKeys.put(LicenseCertificateVerifier.keyId(previous), key.trim());
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Không nạp được khóa ký license certificate", e);
+        }
+        this.verifier = new LicenseCertificateVerifier(publicKey);
+    }
+
+    /** Cấp lại certificate theo trạng thái hiện tại của account (chưa save). */
+    public void reissue(LicenseAccount la) {
+        if (la.getStatus() != LicenseAccount.Status.ACTIVE || !Boolean.TRUE.equals(la.getUsed())
+                || la.getStartDate() == null || la.getEndDate() == null
+                || la.getLicense() == null || la.getLicense().getTool() == null) {
+            if (la.getCertificate() != null) {
+                withdraw(la);
+                cleared.incrementAndGet();
+            }
+            la.setCertificate(null);
+            return;
+        }
+        if (la.getCertificate() != null) withdraw(la);
+        la.setCertificate(issue(la));
+        issued.incrementAndGet();
+    }
+
+    private String issue(LicenseAccount la) {
+        return Jwts.builder()
+                .setHeaderParam("kid", verifier.getKeyId())
+                .setId(UUID.randomUUID().toString())
+                .setIssuer(LicenseCertificateVerifier.ISSUER)
+                .setSubject(String.valueOf(la.getLicenseAccountId()))
+                .claim(LicenseCertificateVerifier.CLAIM_TOOL, la.getLicense().getTool().getToolId())
+                .claim(LicenseCertificateVerifier.CLAIM_LICENSE, la.getLicense().getLicenseId())
+                .claim(LicenseCertificateVerifier.CLAIM_SEATS, la.getMaxDevices() == null ? 1 : la.getMaxDevices())
+                .setIssuedAt(new Date())
+                .setNotBefore(toDate(la.getStartDate()))
+                .setExpiration(toDate(la.getEndDate()))
+                .signWith(privateKey, SignatureAlgorithm.RS256)
+                .compact();
+    }
+
+    // Certificate đang giữ vẫn còn hạn -> thu hồi. Đọc jti / exp từ payload do chính server ký (không cần verify lại,
+    // khóa có thể đã đổi sau restart)
+    private void withdraw(LicenseAccount la) {
+        try {
+            String[] parts = la.getCertificate().split("\\.");
+            JsonNode claims = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            String jti = claims.path("jti").asText(null);
+            long exp = claims.path("exp").asLong(0);
+            LocalDateTime expiresAt = LocalDateTime.ofInstant(Instant.ofEpochSecond(exp), ZoneId.systemDefault());
+            if (jti != null && expiresAt.isAfter(LocalDateTime.now())) {
+                revocationFeed.record(jti, la.getLicenseAccountId(), la.getStatus(), expiresAt);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot read certificate of license account {} for revocation: {}", la.getLicenseAccountId(), e.getMessage());
+        }
+    }
+
+    public LicenseCertificateVerifier getVerifier() {
+        return verifier;
+    }
+
+    public String getPublicKeyBase64() {
+        return Base64.getEncoder().encodeToString(publicKey.getEncoded());
+    }
+
+    /** [{kid, publicKey}] các khóa cũ còn dùng để verify certificate chưa được ký lại. */
+    public List<Map<String, String>> getPreviousPublicKeys() {
+        List<Map<String, String>> keys = new ArrayList<>();
+        previousPublicKeys.forEach((kid, key) -> keys.add(Map.of("kid", kid, "publicKey", key)));
+        return keys;
+    }
+
+    private static Date toDate(LocalDateTime t) {
+        return Date.from(t.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Override
+    public String statsName() {
+        return "license-cert";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("keyId", verifier.getKeyId());
+        stats.put("previousKeyIds", List.copyOf(previousPublicKeys.keySet()));
+        stats.put("issued", issued.get());
+        stats.put("cleared", cleared.get());
+        return stats;
+    }
+}
@@ -0,0 +1,118 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.repository.LicenseAccountRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Job định kỳ chuyển License_Account ACTIVE đã quá endDate sang EXPIRED.
+ * - Quét theo index (status, end_date), mỗi lô tối đa chunk-size dòng, mỗi lô 1 transaction ngắn
+ * - UPDATE có điều kiện (status = ACTIVE AND endDate < now): nhiều node chạy cùng lúc
+ *   hoặc khách vừa gia hạn thì dòng đó không bị đổi sai / đếm 2 lần
+ * Các trang xem license chỉ đọc, không tự đổi trạng thái nữa.
+ */
+@Slf4j
+@Service
+public class LicenseExpiryService implements OperationalStats {
+
+    private static final int HISTORY_SIZE = 20;
+
+    private final LicenseAccountRepository laRepo;
+    private final TransactionTemplate tx;
+    private final LicenseIndexService licenseIndexService;
+
+    @Value("${app.license-expiry.chunk-size:500}")
+    private int chunkSize;
+
+    // Giới hạn số lô mỗi lượt để 1 lượt không giữ scheduler quá lâu; phần còn lại để lượt sau
+    @Value("${app.license-expiry.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+
+    // ===== Metrics =====
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalExpired = new AtomicLong();
+    private final Deque<Map<String, Object>> history = new ArrayDeque<>();
+
+    public LicenseExpiryService(LicenseAccountRepository laRepo, PlatformTransactionManager transactionManager,
+                                LicenseIndexService licenseIndexService) {
+        this.laRepo = laRepo;
+        this.licenseIndexService = licenseIndexService;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${app.license-expiry.sweep-interval-ms:60000}")
+    public void sweep() {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+
+        int touched = 0;
+        int chunks = 0;
+        while (chunks < maxChunksPerRun) {
+            int[] result = tx.execute(s -> expireChunk(now));
+            if (result == null || result[0] == 0) break;
+            chunks++;
+            touched += result[1];
+        }
+
+        long millis = System.currentTimeMillis() - start;
+        record(now, touched, chunks, millis);
+        if (touched > 0) {
+            log.info("License expiry sweep: {} account(s) expired in {} chunk(s), {} ms", touched, chunks, millis);
+        }
+    }
+
+    // [số id đã chọn, số dòng thực sự đổi]; node khác đổi trước thì lô có thể update < chọn, vẫn đi tiếp
+    private int[] expireChunk(LocalDateTime now) {
+        List<Long> ids = laRepo.findIdsByStatusAndEndDateBefore(
+                LicenseAccount.Status.ACTIVE, now, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) return new int[]{0, 0};
+
+        int updated = laRepo.updateStatusIfEnded(ids, LicenseAccount.Status.ACTIVE, LicenseAccount.Status.EXPIRED, now);
+        // Đọc lại cả lô: dòng không đổi (vừa được gia hạn) vẫn giữ trong index
+        licenseIndexService.refresh(ids);
+        return new int[]{ids.size(), updated};
+    }
+
+    private void record(LocalDateTime at, int touched, int chunks, long millis) {
+        runs.incrementAndGet();
+        totalExpired.addAndGet(touched);
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("at", at);
+        run.put("expired", touched);
+        run.put("chunks", chunks);
+        run.put("millis", millis);
+        synchronized (history) {
+            history.addFirst(run);
+            while (history.size() > HISTORY_SIZE) history.removeLast();
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "license-expiry";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chunkSize", chunkSize);
+        stats.put("maxChunksPerRun", maxChunksPerRun);
+        stats.put("runs", runs.get());
+        stats.put("totalExpired", totalExpired.get());
+        synchronized (history) {
+            stats.put("recentRuns", new ArrayList<>(history));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,367 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.repository.LicenseAccountChangeRepository;
+import swp391.fa25.lms.repository.LicenseAccountRepository;
+import swp391.fa25.lms.util.AfterCommit;
+import swp391.fa25.lms.util.ClientSecret;
+import swp391.fa25.lms.util.SeqFeedCursor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index trong RAM các License_Account đang dùng được (ACTIVE + used) để tool của khách xác thực
+ * client secret / USER_PASSWORD không cần query DB:
+ * - bySecret: SHA-256 client secret -> entry; byLogin: "toolId:username" -> entry; byId để gỡ key cũ khi account đổi
+ * - Token 6 số của pool không còn là credential của API (dò được), tool TOKEN dùng client secret khách tự tạo
+ * - Ghi License_Account (gia hạn, admin sửa / gia hạn, kích hoạt, hết hạn, xóa token) -> refresh(ids) sau commit,
+ *   đọc lại đúng các dòng đó rồi thêm / thay / gỡ khỏi index
+ * - Dựng lại toàn bộ lúc khởi động và định kỳ (keyset theo id); id đổi trong lúc dựng được đọc lại sau khi swap
+ * - Nhiều node: refresh(ids) ghi thêm license_account_change trong cùng transaction, mọi node poll bảng đó
+ *   (SeqFeedCursor, không bỏ sót seq commit muộn) và đọc lại các id mới -> node khác thấy sau tối đa change-poll-interval-ms
+ * Password chỉ giữ dạng SHA-256, so sánh hằng thời gian.
+ */
+@Slf4j
+@Service
+public class LicenseIndexService implements OperationalStats {
+
+    // SQL Server giới hạn 2100 tham số / câu lệnh
+    private static final int IN_CHUNK = 2000;
+    private static final int REBUILD_CHUNK = 5000;
+    private static final int CHANGE_CHUNK = 5000;
+
+    public enum Result { VALID, INVALID_CREDENTIALS, EXPIRED }
+
+    public record Verification(Result result, Long licenseAccountId, Long toolId, LocalDateTime endDate,
+                               String certificate, int maxDevices) {
+        public boolean valid() {
+            return result == Result.VALID;
+        }
+    }
+
+    private record Entry(Long licenseAccountId, String secretHash, String username, byte[] passwordHash,
+                         LicenseAccount.Status status, LocalDateTime endDate, boolean used, Long toolId,
+                         String certificate, int maxDevices) {
+    }
+
+    private final LicenseAccountRepository laRepo;
+    private final LicenseAccountChangeRepository changeRepo;
+    private final TransactionTemplate readTx;
+    private final TransactionTemplate writeTx;
+
+    @Value("${app.license-index.change-grace-ms:60000}")
+    private long changeGraceMs;
+
+    @Value("${app.license-index.change-retention-ms:86400000}")
+    private long changeRetentionMs;
+
+    // Khác null sau khi khởi động xong; chỉ dùng trong pollChanges (synchronized)
+    private SeqFeedCursor changeCursor;
+
+    private volatile Index current = new Index();
+    private volatile boolean ready = false;
+    // Khác null khi đang rebuild: id được refresh trong lúc đó, đọc lại sau khi swap
+    private volatile Set<Long> changedDuringRebuild;
+
+    // ===== Metrics =====
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong valid = new AtomicLong();
+    private final AtomicLong refreshedRows = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong remoteChanges = new AtomicLong();
+    private volatile long lastRebuildMillis;
+    // Bản chụp changeCursor cho getStats (không chờ monitor đang bị rebuild / pollChanges giữ); null trước khi khởi động
+    private volatile Long changeWatermark;
+    private volatile int changeHeld;
+
+    public LicenseIndexService(LicenseAccountRepository laRepo,
+                               LicenseAccountChangeRepository changeRepo,
+                               PlatformTransactionManager transactionManager) {
+        this.laRepo = laRepo;
+        this.changeRepo = changeRepo;
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+        this.writeTx = new TransactionTemplate(transactionManager);
+    }
+
+    // ================== VERIFY ==================
+
+    public Verification verifySecret(Long toolId, String clientSecret) {
+        lookups.incrementAndGet();
+        Entry e = clientSecret == null ? null : current.bySecret.get(ClientSecret.hash(clientSecret));
+        if (e == null || !e.toolId().equals(toolId)) return miss(toolId);
+        return check(e);
+    }
+
+    public Verification verifyLogin(Long toolId, String username, String password) {
+        lookups.incrementAndGet();
+        Entry e = username == null ? null : current.byLogin.get(loginKey(toolId, username));
+        if (e == null || password == null || e.passwordHash() == null
+                || !MessageDigest.isEqual(e.passwordHash(), sha256(password))) {
+            return miss(toolId);
+        }
+        return check(e);
+    }
+
+    // endDate đã qua nhưng job hết hạn chưa quét tới -> vẫn trả EXPIRED
+    private Verification check(Entry e) {
+        if (e.endDate() != null && e.endDate().isBefore(LocalDateTime.now())) {
+            return new Verification(Result.EXPIRED, e.licenseAccountId(), e.toolId(), e.endDate(), null, e.maxDevices());
+        }
+        valid.incrementAndGet();
+        return new Verification(Result.VALID, e.licenseAccountId(), e.toolId(), e.endDate(), e.certificate(), e.maxDevices());
+    }
+
+    /**
+     * maxDevices hiện tại của account (>= 1) nếu account vẫn còn trong index và chưa quá endDate, ngược lại 0.
+     * Heartbeat lease kiểm tra lại mỗi lần nên admin hạ maxDevices thì lease đang giữ cũng theo.
+     */
+    public int activeMaxDevices(Long licenseAccountId) {
+        Entry e = current.byId.get(licenseAccountId);
+        if (e == null || (e.endDate() != null && e.endDate().isBefore(LocalDateTime.now()))) return 0;
+        return Math.max(1, e.maxDevices());
+    }
+
+    private Verification miss(Long toolId) {
+        return new Verification(Result.INVALID_CREDENTIALS, null, toolId, null, null, 0);
+    }
+
+    // ================== REFRESH ==================
+
+    /**
+     * Đọc lại các account này và cập nhật index, sau khi transaction hiện tại commit (nếu có).
+     * Ghi license_account_change trong transaction hiện tại để node khác cũng đọc lại; gọi trước khi xóa account.
+     */
+    public void refresh(Collection<Long> licenseAccountIds) {
+        List<Long> ids = licenseAccountIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) return;
+        LocalDateTime now = LocalDateTime.now();
+        writeTx.executeWithoutResult(s -> {
+            for (int i = 0; i < ids.size(); i += IN_CHUNK) {
+                changeRepo.recordChanges(ids.subList(i, Math.min(i + IN_CHUNK, ids.size())), now);
+            }
+        });
+        AfterCommit.run(() -> reload(ids));
+    }
+
+    public void refresh(Long licenseAccountId) {
+        refresh(List.of(licenseAccountId));
+    }
+
+    private void reload(List<Long> ids) {
+        Set<Long> pending = changedDuringRebuild;
+        if (pending != null) pending.addAll(ids);
+
+        Map<Long, Entry> rows = new HashMap<>();
+        try {
+            readTx.executeWithoutResult(s -> {
+                for (int i = 0; i < ids.size(); i += IN_CHUNK) {
+                    for (Object[] row : laRepo.findIndexRowsByIds(ids.subList(i, Math.min(i + IN_CHUNK, ids.size())))) {
+                        Entry e = toEntry(row);
+                        rows.put(e.licenseAccountId(), e);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            // Không đọc được thì gỡ hẳn: thà trả sai "không hợp lệ" rồi rebuild sửa, còn hơn cho qua account đã thu hồi
+            log.warn("License index refresh failed for {} account(s), removing them: {}", ids.size(), ex.getMessage());
+        }
+
+        Index index = current;
+        for (Long id : ids) {
+            Entry e = rows.get(id);
+            index.put(id, e != null && indexable(e) ? e : null);
+        }
+        refreshedRows.addAndGet(ids.size());
+    }
+
+    // ================== CHANGE FEED ==================
+
+    // Đọc license_account_change của mọi node (kể cả của chính node này, đọc lại lần nữa cũng không sao)
+    @Scheduled(fixedDelayString = "${app.license-index.change-poll-interval-ms:5000}")
+    public synchronized void pollChanges() {
+        SeqFeedCursor cursor = changeCursor;
+        if (cursor == null) return;
+
+        List<Long> seqs = new ArrayList<>();
+        Set<Long> ids = new LinkedHashSet<>();
+        long after = cursor.getWatermark();
+        while (true) {
+            long from = after;
+            List<Object[]> rows = readTx.execute(s -> changeRepo.findAfter(from, PageRequest.of(0, CHANGE_CHUNK)));
+            if (rows == null || rows.isEmpty()) break;
+            for (Object[] row : rows) {
+                long seq = (Long) row[0];
+                // Dòng đang chờ sau khoảng trống đã đọc lại ở lượt trước
+                if (!cursor.seen(seq)) ids.add((Long) row[1]);
+                seqs.add(seq);
+                after = seq;
+            }
+            if (rows.size() < CHANGE_CHUNK) break;
+        }
+        cursor.advance(seqs, System.currentTimeMillis());
+        snapshotCursor(cursor);
+        if (ids.isEmpty()) return;
+
+        reload(new ArrayList<>(ids));
+        remoteChanges.addAndGet(ids.size());
+    }
+
+    // Dọn nhật ký cũ (mọi node đều chạy, câu DELETE lặp lại vô hại)
+    @Scheduled(initialDelayString = "${app.license-index.rebuild-interval-ms:600000}",
+            fixedDelayString = "${app.license-index.rebuild-interval-ms:600000}")
+    public void purgeChanges() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(changeRetentionMs));
+        writeTx.executeWithoutResult(s -> changeRepo.deleteOlderThan(cutoff));
+    }
+
+    // ================== REBUILD ==================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        // Bắt đầu đọc nhật ký từ trước khi dựng: thay đổi trong lúc dựng (kể cả của node khác) không bị sót
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(changeGraceMs));
+        Long from = readTx.execute(s -> changeRepo.findMaxSeqBefore(cutoff));
+        synchronized (this) {
+            changeCursor = new SeqFeedCursor(from == null ? 0 : from, changeGraceMs);
+            snapshotCursor(changeCursor);
+        }
+        rebuild();
+    }
+
+    private void snapshotCursor(SeqFeedCursor cursor) {
+        changeHeld = cursor.getHeld();
+        changeWatermark = cursor.getWatermark();
+    }
+
+    @Scheduled(initialDelayString = "${app.license-index.rebuild-interval-ms:600000}",
+            fixedDelayString = "${app.license-index.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        changedDuringRebuild = changed;
+        try {
+            Index fresh = new Index();
+            long afterId = 0;
+            while (true) {
+                long from = afterId;
+                List<Object[]> rows = readTx.execute(s -> laRepo.findIndexRowsAfter(
+                        LicenseAccount.Status.ACTIVE, from, PageRequest.of(0, REBUILD_CHUNK)));
+                if (rows == null || rows.isEmpty()) break;
+                for (Object[] row : rows) {
+                    Entry e = toEntry(row);
+                    fresh.put(e.licenseAccountId(), e);
+                    afterId = e.licenseAccountId();
+                }
+                if (rows.size() < REBUILD_CHUNK) break;
+            }
+            current = fresh;
+            ready = true;
+        } finally {
+            changedDuringRebuild = null;
+        }
+        // Refresh chạy trong lúc dựng có thể đã ghi vào index cũ, hoặc snapshot mới đọc trước commit đó
+        if (!changed.isEmpty()) reload(new ArrayList<>(changed));
+
+        rebuilds.incrementAndGet();
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        log.info("License index rebuilt: {} account(s) in {} ms", current.byId.size(), lastRebuildMillis);
+    }
+
+    // ================== INTERNAL ==================
+
+    private static boolean indexable(Entry e) {
+        return e.status() == LicenseAccount.Status.ACTIVE && e.used() && e.toolId() != null;
+    }
+
+    private static Entry toEntry(Object[] row) {
+        String password = (String) row[3];
+        return new Entry(
+                (Long) row[0],
+                (String) row[1],
+                (String) row[2],
+                password == null ? null : sha256(password),
+                (LicenseAccount.Status) row[4],
+                (LocalDateTime) row[5],
+                Boolean.TRUE.equals(row[6]),
+                (Long) row[7],
+                (String) row[8],
+                row[9] == null ? 1 : (Integer) row[9]);
+    }
+
+    private static String loginKey(Long toolId, String username) {
+        return toolId + ":" + username;
+    }
+
+    private static byte[] sha256(String s) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Index {
+        final ConcurrentHashMap<String, Entry> bySecret = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, Entry> byLogin = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, Entry> byId = new ConcurrentHashMap<>();
+
+        // Thay entry của 1 account (null = gỡ); khóa theo index để bySecret / byLogin / byId không lệch nhau
+        synchronized void put(Long id, Entry e) {
+            Entry old = e == null ? byId.remove(id) : byId.put(id, e);
+            if (old != null) {
+                if (old.secretHash() != null) bySecret.remove(old.secretHash(), old);
+                if (old.username() != null) byLogin.remove(loginKey(old.toolId(), old.username()), old);
+            }
+            if (e != null) {
+                if (e.secretHash() != null) bySecret.put(e.secretHash(), e);
+                if (e.username() != null) byLogin.put(loginKey(e.toolId(), e.username()), e);
+            }
+        }
+    }
+
+    // ================== METRICS ==================
+
+    @Override
+    public String statsName() {
+        return "license-index";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Index index = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("accounts", index.byId.size());
+        stats.put("secrets", index.bySecret.size());
+        stats.put("logins", index.byLogin.size());
+        stats.put("lookups", lookups.get());
+        stats.put("valid", valid.get());
+        stats.put("refreshedRows", refreshedRows.get());
+        stats.put("rebuilds", rebuilds.get());
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        stats.put("remoteChanges", remoteChanges.get());
+        Long watermark = changeWatermark;
+        if (watermark != null) {
+            stats.put("changeWatermark", watermark);
+            stats.put("changeHeld", changeHeld);
+        }
+        return stats;
+    }
+}
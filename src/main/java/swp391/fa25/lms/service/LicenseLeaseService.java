@@ -0,0 +1,373 @@
+package swp391.fa25.lms.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.LicenseLease;
+import swp391.fa25.lms.repository.LicenseLeaseRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lease seat theo thiết bị cho License_Account (tối đa maxDevices thiết bị cùng lúc):
+ * - Tool xin lease (acquire) -> heartbeat định kỳ -> hết ttl-seconds không heartbeat thì mất lease
+ * - Lease giữ trong RAM, chia STRIPES ngăn theo licenseAccountId; đếm + cấp seat trong lock của ngăn
+ *   nên 2 thiết bị tranh seat cuối không thể cùng được cấp
+ * - Heartbeat chỉ đổi hạn trong RAM; DB chỉ ghi khi cấp / trả / hết hạn lease, gom lại flush định kỳ
+ * - Khởi động: nạp lại lease từ DB và cho thêm 1 ttl để thiết bị kịp heartbeat lại
+ * - maxDevices đọc lại từ LicenseIndexService mỗi lần acquire / heartbeat: admin hạ giới hạn thì
+ *   các lease cấp sau cùng vượt giới hạn bị kết thúc (SEATS_EXHAUSTED), lease cũ nhất được giữ
+ * Lease không chia sẻ giữa các node nên maxDevices chỉ được đảm bảo trong 1 node: khi chạy nhiều node,
+ * route /api/licenses/leases dính theo account (sticky) hoặc về cùng 1 node, nếu không mỗi node cấp đủ maxDevices.
+ */
+@Slf4j
+@Service
+public class LicenseLeaseService implements OperationalStats {
+
+    private static final int STRIPES = 64;
+    // SQL Server giới hạn 2100 tham số / câu lệnh
+    private static final int IN_CHUNK = 2000;
+
+    public enum Result { GRANTED, SEATS_EXHAUSTED, LEASE_NOT_FOUND, LICENSE_INVALID }
+
+    public record LeaseResult(Result result, String leaseId, Long licenseAccountId, long expiresAtMillis,
+                              int activeDevices, int maxDevices) {
+        public boolean granted() {
+            return result == Result.GRANTED;
+        }
+    }
+
+    private static final class Lease {
+        final String leaseId;
+        final Long licenseAccountId;
+        final String deviceId;
+        final String deviceInfo;
+        final LocalDateTime acquiredAt;
+        // Thứ tự cấp trên node này: vượt maxDevices thì kết thúc lease có order lớn nhất trước
+        final long order;
+        // Chỉ đổi trong lock của ngăn
+        long expiresAtMillis;
+        // persisted / ended: guarded by this
+        boolean persisted;
+        boolean ended;
+
+        Lease(String leaseId, Long licenseAccountId, String deviceId, String deviceInfo,
+              LocalDateTime acquiredAt, long order, long expiresAtMillis, boolean persisted) {
+            this.leaseId = leaseId;
+            this.licenseAccountId = licenseAccountId;
+            this.deviceId = deviceId;
+            this.deviceInfo = deviceInfo;
+            this.acquiredAt = acquiredAt;
+            this.order = order;
+            this.expiresAtMillis = expiresAtMillis;
+            this.persisted = persisted;
+        }
+    }
+
+    private static final class Stripe {
+        // licenseAccountId -> deviceId -> lease
+        final Map<Long, Map<String, Lease>> byAccount = new HashMap<>();
+    }
+
+    private final LicenseIndexService licenseIndexService;
+    private final LicenseLeaseRepository leaseRepo;
+    private final TransactionTemplate tx;
+
+    @Value("${app.license-lease.ttl-seconds:120}")
+    private long ttlSeconds;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final ConcurrentHashMap<String, Lease> byLeaseId = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Lease> pendingInserts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> pendingDeletes = new ConcurrentLinkedQueue<>();
+    private final AtomicLong leaseOrder = new AtomicLong();
+
+    // ===== Metrics =====
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong overLimit = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public LicenseLeaseService(LicenseIndexService licenseIndexService,
+                               LicenseLeaseRepository leaseRepo,
+                               PlatformTransactionManager transactionManager) {
+        this.licenseIndexService = licenseIndexService;
+        this.leaseRepo = leaseRepo;
+        this.tx = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    // ================== LEASE ==================
+
+    /**
+     * Cấp (hoặc gia hạn nếu thiết bị đã giữ) lease cho account vừa xác thực qua LicenseIndexService.
+     */
+    public LeaseResult acquire(LicenseIndexService.Verification license, String deviceId, String deviceInfo) {
+        if (!license.valid()) {
+            return new LeaseResult(Result.LICENSE_INVALID, null, license.licenseAccountId(), 0, 0, 0);
+        }
+        Long accountId = license.licenseAccountId();
+        int max = Math.max(1, license.maxDevices());
+        long now = System.currentTimeMillis();
+
+        Stripe stripe = stripeOf(accountId);
+        synchronized (stripe) {
+            Map<String, Lease> devices = stripe.byAccount.computeIfAbsent(accountId, id -> new HashMap<>());
+            purgeExpired(devices, now);
+            trimToLimit(devices, max);
+
+            Lease lease = devices.get(deviceId);
+            if (lease != null) {
+                lease.expiresAtMillis = now + ttlSeconds * 1000;
+            } else if (devices.size() >= max) {
+                rejected.incrementAndGet();
+                if (devices.isEmpty()) stripe.byAccount.remove(accountId);
+                return new LeaseResult(Result.SEATS_EXHAUSTED, null, accountId, 0, devices.size(), max);
+            } else {
+                lease = new Lease(UUID.randomUUID().toString(), accountId, deviceId, truncate(deviceInfo),
+                        LocalDateTime.now(), leaseOrder.incrementAndGet(), now + ttlSeconds * 1000, false);
+                devices.put(deviceId, lease);
+                byLeaseId.put(lease.leaseId, lease);
+                pendingInserts.add(lease);
+                acquired.incrementAndGet();
+            }
+            return new LeaseResult(Result.GRANTED, lease.leaseId, accountId, lease.expiresAtMillis, devices.size(), max);
+        }
+    }
+
+    /**
+     * Gia hạn lease; license đã bị thu hồi / hết hạn thì trả lease luôn.
+     * maxDevices bị hạ dưới số lease đang giữ -> lease cấp sau cùng bị kết thúc (SEATS_EXHAUSTED).
+     */
+    public LeaseResult heartbeat(String leaseId) {
+        heartbeats.incrementAndGet();
+        Lease lease = leaseId == null ? null : byLeaseId.get(leaseId);
+        if (lease == null) return notFound();
+        int max = licenseIndexService.activeMaxDevices(lease.licenseAccountId);
+        if (max == 0) {
+            end(lease, false);
+            return new LeaseResult(Result.LICENSE_INVALID, null, lease.licenseAccountId, 0, 0, 0);
+        }
+
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripeOf(lease.licenseAccountId);
+        synchronized (stripe) {
+            Map<String, Lease> devices = stripe.byAccount.get(lease.licenseAccountId);
+            if (devices == null || devices.get(lease.deviceId) != lease) return notFound();
+            if (lease.expiresAtMillis <= now) {
+                purgeExpired(devices, now);
+                if (devices.isEmpty()) stripe.byAccount.remove(lease.licenseAccountId);
+                return notFound();
+            }
+            purgeExpired(devices, now);
+            trimToLimit(devices, max);
+            if (devices.get(lease.deviceId) != lease) {
+                return new LeaseResult(Result.SEATS_EXHAUSTED, null, lease.licenseAccountId, 0, devices.size(), max);
+            }
+            lease.expiresAtMillis = now + ttlSeconds * 1000;
+            return new LeaseResult(Result.GRANTED, lease.leaseId, lease.licenseAccountId, lease.expiresAtMillis,
+                    devices.size(), max);
+        }
+    }
+
+    public boolean release(String leaseId) {
+        Lease lease = leaseId == null ? null : byLeaseId.get(leaseId);
+        if (lease == null) return false;
+        end(lease, false);
+        return true;
+    }
+
+    private void end(Lease lease, boolean expiredLease) {
+        Stripe stripe = stripeOf(lease.licenseAccountId);
+        synchronized (stripe) {
+            Map<String, Lease> devices = stripe.byAccount.get(lease.licenseAccountId);
+            if (devices == null || !devices.remove(lease.deviceId, lease)) return;
+            if (devices.isEmpty()) stripe.byAccount.remove(lease.licenseAccountId);
+        }
+        forget(lease);
+        (expiredLease ? expired : released).incrementAndGet();
+    }
+
+    // Gọi trong lock của ngăn
+    private void purgeExpired(Map<String, Lease> devices, long now) {
+        Iterator<Lease> it = devices.values().iterator();
+        while (it.hasNext()) {
+            Lease lease = it.next();
+            if (lease.expiresAtMillis <= now) {
+                it.remove();
+                forget(lease);
+                expired.incrementAndGet();
+            }
+        }
+    }
+
+    // Gọi trong lock của ngăn: maxDevices vừa bị hạ -> kết thúc lease cấp sau cùng tới khi vừa giới hạn
+    private void trimToLimit(Map<String, Lease> devices, int max) {
+        if (devices.size() <= max) return;
+        List<Lease> newestFirst = new ArrayList<>(devices.values());
+        newestFirst.sort(Comparator.comparingLong((Lease l) -> l.order).reversed());
+        for (Lease lease : newestFirst.subList(0, devices.size() - max)) {
+            devices.remove(lease.deviceId);
+            forget(lease);
+            overLimit.incrementAndGet();
+        }
+    }
+
+    // Bỏ khỏi index theo leaseId; dòng DB (nếu đã ghi) xóa ở lần flush sau
+    private void forget(Lease lease) {
+        byLeaseId.remove(lease.leaseId, lease);
+        synchronized (lease) {
+            lease.ended = true;
+            if (lease.persisted) pendingDeletes.add(lease.leaseId);
+        }
+    }
+
+    private LeaseResult notFound() {
+        return new LeaseResult(Result.LEASE_NOT_FOUND, null, null, 0, 0, 0);
+    }
+
+    // ================== FLUSH ==================
+
+    @Scheduled(fixedDelayString = "${app.license-lease.flush-interval-ms:15000}")
+    public void flush() {
+        sweepExpired();
+
+        // Xóa trước rồi mới thêm: thiết bị vừa trả lease rồi xin lại không đụng unique (account, device)
+        List<String> deletes = drain(pendingDeletes);
+        List<Lease> inserts = new ArrayList<>();
+        for (Lease lease : drain(pendingInserts)) {
+            synchronized (lease) {
+                if (!lease.ended) inserts.add(lease);
+            }
+        }
+        if (deletes.isEmpty() && inserts.isEmpty()) return;
+
+        try {
+            tx.executeWithoutResult(s -> {
+                for (int i = 0; i < deletes.size(); i += IN_CHUNK) {
+                    leaseRepo.deleteByIds(deletes.subList(i, Math.min(i + IN_CHUNK, deletes.size())));
+                }
+                leaseRepo.saveAll(inserts.stream()
+                        .map(l -> new LicenseLease(l.leaseId, l.licenseAccountId, l.deviceId, l.deviceInfo, l.acquiredAt))
+                        .toList());
+                // Mỗi account chỉ cập nhật lastLogin / deviceInfo theo lease mới nhất
+                Map<Long, Lease> latest = new HashMap<>();
+                for (Lease l : inserts) latest.merge(l.licenseAccountId, l, (a, b) -> a.acquiredAt.isAfter(b.acquiredAt) ? a : b);
+                latest.values().forEach(l -> leaseRepo.touchLastLogin(l.licenseAccountId, l.acquiredAt, l.deviceInfo));
+            });
+        } catch (RuntimeException e) {
+            pendingDeletes.addAll(deletes);
+            pendingInserts.addAll(inserts);
+            flushFailures.incrementAndGet();
+            log.warn("License lease flush failed, {} delete(s) / {} insert(s) will be retried: {}",
+                    deletes.size(), inserts.size(), e.getMessage());
+            return;
+        }
+
+        for (Lease lease : inserts) {
+            synchronized (lease) {
+                lease.persisted = true;
+                // Bị trả trong lúc đang ghi -> xóa ở lần flush sau
+                if (lease.ended) pendingDeletes.add(lease.leaseId);
+            }
+        }
+        flushedRows.addAndGet(deletes.size() + inserts.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void sweepExpired() {
+        long now = System.currentTimeMillis();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Map<String, Lease>> it = stripe.byAccount.values().iterator();
+                while (it.hasNext()) {
+                    Map<String, Lease> devices = it.next();
+                    purgeExpired(devices, now);
+                    if (devices.isEmpty()) it.remove();
+                }
+            }
+        }
+    }
+
+    // ================== STARTUP ==================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        List<LicenseLease> rows = new ArrayList<>(leaseRepo.findAll());
+        // Giữ thứ tự cấp ban đầu để lease cũ nhất vẫn được ưu tiên khi vượt maxDevices
+        rows.sort(Comparator.comparing(LicenseLease::getAcquiredAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+        long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000;
+        for (LicenseLease row : rows) {
+            Lease lease = new Lease(row.getLeaseId(), row.getLicenseAccountId(), row.getDeviceId(), row.getDeviceInfo(),
+                    row.getAcquiredAt(), leaseOrder.incrementAndGet(), expiresAt, true);
+            Stripe stripe = stripeOf(lease.licenseAccountId);
+            synchronized (stripe) {
+                stripe.byAccount.computeIfAbsent(lease.licenseAccountId, id -> new HashMap<>()).put(lease.deviceId, lease);
+            }
+            byLeaseId.put(lease.leaseId, lease);
+        }
+        if (!rows.isEmpty()) log.info("License leases restored: {} lease(s)", rows.size());
+    }
+
+    // ================== INTERNAL ==================
+
+    private Stripe stripeOf(Long licenseAccountId) {
+        return stripes[(Long.hashCode(licenseAccountId) & 0x7fffffff) % STRIPES];
+    }
+
+    private static <T> List<T> drain(Queue<T> queue) {
+        List<T> out = new ArrayList<>();
+        for (T t; (t = queue.poll()) != null; ) out.add(t);
+        return out;
+    }
+
+    private static String truncate(String s) {
+        return s == null || s.length() <= 255 ? s : s.substring(0, 255);
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    // ================== METRICS ==================
+
+    @Override
+    public String statsName() {
+        return "license-leases";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeLeases", byLeaseId.size());
+        stats.put("acquired", acquired.get());
+        stats.put("rejected", rejected.get());
+        stats.put("heartbeats", heartbeats.get());
+        stats.put("expired", expired.get());
+        stats.put("released", released.get());
+        stats.put("overLimit", overLimit.get());
+        stats.put("pendingInserts", pendingInserts.size());
+        stats.put("pendingDeletes", pendingDeletes.size());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("flushFailures", flushFailures.get());
+        return stats;
+    }
+}
@@ -0,0 +1,327 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.model.LicenseRevocation;
+import swp391.fa25.lms.repository.LicenseRevocationRepository;
+import swp391.fa25.lms.util.RevocationBloomFilter;
+import swp391.fa25.lms.util.AfterCommit;
+import swp391.fa25.lms.util.SeqFeedCursor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feed thu hồi license certificate cho tool kiểm tra offline:
+ * - Snapshot: Bloom filter (RevocationBloomFilter) các certificate bị thu hồi mà chưa tự hết hạn,
+ *   kích thước theo số certificate bị thu hồi (không theo tổng số license): ~1.2 KB / 1000 certificate ở 1%
+ * - Delta: danh sách certificate id theo seq, client có snapshot ở seq S chỉ cần xin phần seq > S
+ * - Có thu hồi mới (sau commit) hoặc poll định kỳ (node khác ghi) -> thêm vào bản sao filter rồi swap, không dựng lại
+ * - Dựng lại toàn bộ định kỳ để bỏ certificate đã hết hạn; filter đầy quá capacity cũng dựng lại ngay
+ * - seq là IDENTITY, commit muộn thì seq nhỏ xuất hiện sau seq lớn: throughSeq chỉ tiến liền mạch (SeqFeedCursor),
+ *   phần sau khoảng trống giữ lại tới khi seq còn thiếu commit hoặc quá gap-grace-ms
+ * Bytes của snapshot tính 1 lần cho mỗi phiên bản, phục vụ kèm ETag.
+ */
+@Slf4j
+@Service
+public class LicenseRevocationFeedService implements OperationalStats {
+
+    private static final int READ_CHUNK = 5000;
+    // Capacity tối thiểu của filter (certificate), và dư thêm 50% cho phần thêm dần giữa 2 lần dựng lại
+    private static final int MIN_CAPACITY = 1000;
+    private static final double HEADROOM = 1.5;
+    // Mỗi certificate id trong JSON delta ~40 byte; trang delta tối thiểu trước khi đẩy client sang snapshot
+    private static final int DELTA_ENTRY_BYTES = 40;
+    private static final int MIN_DELTA_PAGE = 100;
+
+    public record Delta(long seq, String certificateId, LocalDateTime expiresAt) {
+    }
+
+    /** Phần feed sau seq since; snapshotRequired = true khi delta sau since đã bị cắt hoặc dài hơn snapshot. */
+    public record DeltaPage(long since, long throughSeq, boolean snapshotRequired, List<String> revoked) {
+    }
+
+    public record Snapshot(String etag, long throughSeq, byte[] bytes) {
+    }
+
+    private final LicenseRevocationRepository revocationRepo;
+    private final TransactionTemplate readTx;
+
+    @Value("${app.license-revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${app.license-revocation.max-deltas:5000}")
+    private int maxDeltas;
+
+    // Lâu hơn transaction ghi dài nhất: khoảng trống seq tồn tại quá mốc này coi như đã rollback
+    @Value("${app.license-revocation.gap-grace-ms:60000}")
+    private long gapGraceMs;
+
+    // Trạng thái hiện tại, đổi dưới lock của service; đọc qua volatile
+    private volatile State state = new State(RevocationBloomFilter.create(MIN_CAPACITY, 0.01), MIN_CAPACITY, 0, 0, 1);
+    private final Deque<Delta> deltas = new ArrayDeque<>();
+    // Delta có đầy đủ cho mọi seq > deltaFloorSeq; client cũ hơn mốc này phải tải snapshot
+    private volatile long deltaFloorSeq = 0;
+    private boolean initialized = false;
+    // watermark = state.throughSeq; đổi dưới lock của service
+    private SeqFeedCursor cursor;
+
+    // ===== Metrics =====
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong snapshotServed = new AtomicLong();
+    private final AtomicLong snapshotNotModified = new AtomicLong();
+    private volatile long lastRebuildMillis;
+
+    public LicenseRevocationFeedService(LicenseRevocationRepository revocationRepo,
+                                        PlatformTransactionManager transactionManager) {
+        this.revocationRepo = revocationRepo;
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+    }
+
+    // ================== WRITE ==================
+
+    /**
+     * Ghi certificate bị thu hồi, trong transaction hiện tại (cùng lúc account đổi trạng thái).
+     * Sau commit kéo ngay vào filter của node này.
+     */
+    public void record(String certificateId, Long licenseAccountId, LicenseAccount.Status status, LocalDateTime expiresAt) {
+        if (revocationRepo.existsByCertificateId(certificateId)) return;
+        revocationRepo.save(new LicenseRevocation(certificateId, licenseAccountId, status, expiresAt, LocalDateTime.now()));
+        recorded.incrementAndGet();
+
+        AfterCommit.run(this::poll);
+    }
+
+    // ================== READ ==================
+
+    /** Snapshot hiện tại; ifNoneMatch trùng ETag -> null (caller trả 304). */
+    public Snapshot snapshot(String ifNoneMatch) {
+        State s = state;
+        Snapshot snap = s.snapshot();
+        if (snap.etag().equals(ifNoneMatch)) {
+            snapshotNotModified.incrementAndGet();
+            return null;
+        }
+        snapshotServed.incrementAndGet();
+        return snap;
+    }
+
+    public DeltaPage deltasSince(long since) {
+        State s = state;
+        if (since < deltaFloorSeq) {
+            return new DeltaPage(since, s.throughSeq, true, List.of());
+        }
+        List<String> ids = new ArrayList<>();
+        synchronized (deltas) {
+            for (Delta d : deltas) {
+                if (d.seq() > since && d.seq() <= s.throughSeq) ids.add(d.certificateId());
+            }
+        }
+        // Delta dài hơn cả snapshot -> bảo client tải snapshot cho rẻ
+        if (ids.size() > Math.max(MIN_DELTA_PAGE, s.filter.getBits() / 8 / DELTA_ENTRY_BYTES)) {
+            return new DeltaPage(since, s.throughSeq, true, List.of());
+        }
+        return new DeltaPage(since, Math.max(since, s.throughSeq), false, ids);
+    }
+
+    // ================== INCREMENTAL ==================
+
+    // Node khác ghi thu hồi -> thấy được sau tối đa poll-interval-ms
+    @Scheduled(fixedDelayString = "${app.license-revocation.poll-interval-ms:10000}")
+    public synchronized void poll() {
+        if (!initialized) return; // rebuild lúc khởi động sẽ đọc hết
+        State s = state;
+        List<Delta> read = new ArrayList<>();
+        List<Long> seqs = new ArrayList<>();
+        long after = cursor.getWatermark();
+        while (true) {
+            long from = after;
+            List<Object[]> rows = readTx.execute(st -> revocationRepo.findAfter(from, PageRequest.of(0, READ_CHUNK)));
+            if (rows == null || rows.isEmpty()) break;
+            for (Object[] row : rows) {
+                Delta d = toDelta(row);
+                read.add(d);
+                seqs.add(d.seq());
+                after = d.seq();
+            }
+            if (rows.size() < READ_CHUNK) break;
+        }
+        // Chỉ nhận tới watermark: phần sau khoảng trống đọc lại ở lượt sau, delta vẫn đúng thứ tự seq
+        long through = cursor.advance(seqs, System.currentTimeMillis());
+        List<Delta> fresh = read.stream().filter(d -> d.seq() <= through).toList();
+        if (fresh.isEmpty()) return;
+
+        appendDeltas(fresh);
+        applied.addAndGet(fresh.size());
+        LocalDateTime now = LocalDateTime.now();
+        List<Delta> live = fresh.stream().filter(d -> d.expiresAt().isAfter(now)).toList();
+        if (s.count + live.size() > s.capacity) {
+            rebuild(through);
+            return;
+        }
+
+        // Copy-on-write: request đang đọc snapshot cũ không thấy filter sửa dở
+        RevocationBloomFilter next = s.filter.copy();
+        live.forEach(d -> next.add(d.certificateId()));
+        next.setThroughSeq(through);
+        state = new State(next, s.capacity, s.count + live.size(), through, s.generation);
+    }
+
+    // ================== REBUILD ==================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${app.license-revocation.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${app.license-revocation.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        if (initialized) {
+            rebuild(state.throughSeq);
+        } else {
+            // Mốc chắc chắn: dòng ghi trước cutoff đã commit hoặc rollback; phần sau để poll() đọc theo cursor
+            LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(gapGraceMs));
+            Long from = readTx.execute(st -> revocationRepo.findMaxSeqBefore(cutoff));
+            long through = from == null ? 0 : from;
+            cursor = new SeqFeedCursor(through, gapGraceMs);
+            rebuild(through);
+            poll();
+        }
+    }
+
+    // Chỉ lấy tới seq through: phần mới hơn để poll() đưa vào cả filter lẫn delta, client không bị sót
+    private void rebuild(long through) {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Delta> live = new ArrayList<>();
+        long after = 0;
+        while (true) {
+            long from = after;
+            List<Object[]> rows = readTx.execute(st -> revocationRepo.findLiveAfter(now, from, PageRequest.of(0, READ_CHUNK)));
+            if (rows == null || rows.isEmpty()) break;
+            for (Object[] row : rows) {
+                Delta d = toDelta(row);
+                after = d.seq();
+                if (d.seq() <= through) live.add(d);
+            }
+            if (rows.size() < READ_CHUNK || after > through) break;
+        }
+
+        int capacity = Math.max(MIN_CAPACITY, (int) (live.size() * HEADROOM));
+        RevocationBloomFilter filter = RevocationBloomFilter.create(capacity, falsePositiveRate);
+        live.forEach(d -> filter.add(d.certificateId()));
+        filter.setThroughSeq(through);
+
+        if (!initialized) {
+            // Delta chỉ có từ lúc node khởi động; client đồng bộ trước mốc này thì tải snapshot
+            deltaFloorSeq = through;
+            initialized = true;
+        }
+        state = new State(filter, capacity, live.size(), through, state.generation + 1);
+
+        rebuilds.incrementAndGet();
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        log.info("Revocation snapshot rebuilt: {} live certificate(s), {} bytes, {} ms",
+                live.size(), filter.getBits() / 8, lastRebuildMillis);
+    }
+
+    // ================== INTERNAL ==================
+
+    private void appendDeltas(List<Delta> fresh) {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (deltas) {
+            deltas.addAll(fresh);
+            while (!deltas.isEmpty()) {
+                Delta head = deltas.peekFirst();
+                if (deltas.size() > maxDeltas) {
+                    // Cắt vì quá dài: client chưa nhận delta này phải tải snapshot
+                    deltas.pollFirst();
+                    deltaFloorSeq = Math.max(deltaFloorSeq, head.seq());
+                } else if (!head.expiresAt().isAfter(now)) {
+                    // Certificate đã tự hết hạn: client không cần biết nữa, không đổi mốc
+                    deltas.pollFirst();
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static Delta toDelta(Object[] row) {
+        return new Delta((Long) row[0], (String) row[1], (LocalDateTime) row[2]);
+    }
+
+    private static final class State {
+        final RevocationBloomFilter filter;
+        final int capacity;
+        final int count;
+        final long throughSeq;
+        final long generation;
+        private volatile Snapshot snapshot;
+
+        State(RevocationBloomFilter filter, int capacity, int count, long throughSeq, long generation) {
+            this.filter = filter;
+            this.capacity = capacity;
+            this.count = count;
+            this.throughSeq = throughSeq;
+            this.generation = generation;
+        }
+
+        Snapshot snapshot() {
+            Snapshot snap = snapshot;
+            if (snap == null) {
+                snap = new Snapshot("\"" + generation + "-" + throughSeq + "\"", throughSeq, filter.toBytes());
+                snapshot = snap;
+            }
+            return snap;
+        }
+    }
+
+    // ================== METRICS ==================
+
+    @Override
+    public String statsName() {
+        return "license-revocation";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        State s = state;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("throughSeq", s.throughSeq);
+        stats.put("generation", s.generation);
+        stats.put("liveCertificates", s.count);
+        stats.put("capacity", s.capacity);
+        stats.put("snapshotBytes", s.filter.getBits() / 8);
+        stats.put("hashes", s.filter.getHashes());
+        stats.put("deltaFloorSeq", deltaFloorSeq);
+        synchronized (this) {
+            stats.put("heldSeqs", cursor == null ? 0 : cursor.getHeld());
+        }
+        synchronized (deltas) {
+            stats.put("deltas", deltas.size());
+        }
+        stats.put("recorded", recorded.get());
+        stats.put("applied", applied.get());
+        stats.put("rebuilds", rebuilds.get());
+        stats.put("snapshotServed", snapshotServed.get());
+        stats.put("snapshotNotModified", snapshotNotModified.get());
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,364 @@
+package swp391.fa25.lms.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.MailOutbox;
+import swp391.fa25.lms.repository.MailOutboxRepository;
+import swp391.fa25.lms.util.AfterCommit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hàng đợi email (bảng mail_outbox) thay cho JavaMailSender.send trên request thread.
+ * - enqueue() ghi mail trong transaction của caller: rollback nghiệp vụ thì không có mail, commit thì chắc chắn có
+ * - Sau commit đánh thức dispatcher; job định kỳ quét lại phòng khi bị lỡ (node restart, retry đến hạn)
+ * - Dispatcher claim từng lô bằng UPDATE có điều kiện (nhiều node không gửi trùng), chia lô cho worker pool cố định;
+ *   mỗi worker gửi phần của mình qua 1 kết nối SMTP (JavaMailSender.send(MimeMessage...))
+ * - Lỗi gửi -> retry với backoff lũy thừa, quá max-attempts -> FAILED
+ */
+@Slf4j
+@Service
+public class MailOutboxService implements OperationalStats {
+
+    private static final int ERROR_MAX_LENGTH = 500;
+    private static final TypeReference<Map<String, Object>> MODEL_TYPE = new TypeReference<>() {};
+
+    private final MailOutboxRepository outboxRepo;
+    private final JavaMailSender mailSender;
+    private final MailTemplateService templates;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${app.mail.workers:4}")
+    private int workers;
+
+    @Value("${app.mail.batch-size:50}")
+    private int batchSize;
+
+    // Giới hạn số lô mỗi lượt để 1 lượt không giữ dispatcher quá lâu
+    @Value("${app.mail.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.mail.max-attempts:6}")
+    private int maxAttempts;
+
+    // Lần retry thứ n chờ base * 2^(n-1) giây, tối đa 1 giờ
+    @Value("${app.mail.retry-base-seconds:30}")
+    private long retryBaseSeconds;
+
+    // Mail SENDING lâu hơn mức này coi như node gửi đã chết -> trả về PENDING
+    @Value("${app.mail.stale-after-minutes:10}")
+    private long staleAfterMinutes;
+
+    private ExecutorService dispatcher;
+    private ThreadPoolExecutor workerPool;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+
+    // ===== Metrics =====
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong smtpBatches = new AtomicLong();
+    private final AtomicLong sendMillisTotal = new AtomicLong();
+    private final AtomicLong sendMillisMax = new AtomicLong();
+    private final AtomicLong queueMillisTotal = new AtomicLong();
+    private final AtomicLong queueMillisMax = new AtomicLong();
+
+    public MailOutboxService(MailOutboxRepository outboxRepo, JavaMailSender mailSender,
+                             MailTemplateService templates, PlatformTransactionManager transactionManager) {
+        this.outboxRepo = outboxRepo;
+        this.mailSender = mailSender;
+        this.templates = templates;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcher = Executors.newSingleThreadExecutor(r -> new Thread(r, "mail-dispatcher"));
+        workerPool = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(workers),
+                new ThreadFactory() {
+                    private final AtomicLong seq = new AtomicLong();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "mail-worker-" + seq.incrementAndGet());
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdown();
+        workerPool.shutdown();
+    }
+
+    // ================== ENQUEUE ==================
+
+    /**
+     * Ghi 1 mail vào outbox trong transaction hiện tại (không có thì tự mở transaction riêng).
+     * @param template tên template trong MailTemplateService
+     * @param model biến của template (chỉ dùng kiểu đơn giản: String, số, boolean)
+     */
+    @Transactional
+    public void enqueue(String template, String recipient, String cc, String subject, Map<String, Object> model) {
+        if (recipient == null || recipient.isBlank()) {
+            throw new IllegalArgumentException("Email người nhận không được để trống");
+        }
+        LocalDateTime now = LocalDateTime.now();
+
+        MailOutbox mail = new MailOutbox();
+        mail.setTemplate(template);
+        mail.setRecipient(recipient);
+        mail.setCc(cc);
+        mail.setSubject(subject);
+        mail.setModel(toJson(model));
+        mail.setStatus(MailOutbox.Status.PENDING);
+        mail.setNextAttemptAt(now);
+        mail.setCreatedAt(now);
+        outboxRepo.save(mail);
+
+        AfterCommit.run(() -> {
+            enqueued.incrementAndGet();
+            wakeUp();
+        });
+    }
+
+    // ================== DISPATCH ==================
+
+    @Scheduled(fixedDelayString = "${app.mail.poll-interval-ms:5000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    // Mỗi node chỉ 1 lượt drain chạy tại 1 thời điểm; gọi lúc đang drain thì drain thêm 1 vòng
+    public void wakeUp() {
+        wakeRequested.set(true);
+        if (draining.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(this::drainLoop);
+            } catch (RejectedExecutionException shuttingDown) {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        try {
+            while (wakeRequested.getAndSet(false)) {
+                drain();
+            }
+        } catch (RuntimeException e) {
+            log.error("Mail outbox drain failed", e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /** Gửi hết mail đến hạn (tối đa max-batches-per-run lô). @return số mail đã xử lý */
+    public int drain() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer stale = tx.execute(s -> outboxRepo.releaseStale(now.minusMinutes(staleAfterMinutes)));
+        if (stale != null && stale > 0) {
+            log.warn("Mail outbox: {} stale SENDING mail(s) returned to PENDING", stale);
+        }
+
+        // Chỉ lấy mail đến hạn trước lúc bắt đầu lượt: mail vừa lỗi trong lượt này chờ lượt sau
+        int processed = 0;
+        for (int b = 0; b < maxBatchesPerRun; b++) {
+            List<MailOutbox> batch = tx.execute(s -> claimBatch(now));
+            if (batch == null || batch.isEmpty()) break;
+
+            // Chia lô cho các worker, mỗi phần đi qua 1 kết nối SMTP
+            int perWorker = (batch.size() + workers - 1) / workers;
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i += perWorker) {
+                List<MailOutbox> part = batch.subList(i, Math.min(batch.size(), i + perWorker));
+                futures.add(workerPool.submit(() -> sendPart(part)));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return processed;
+                } catch (ExecutionException e) {
+                    log.error("Mail worker failed", e.getCause());
+                }
+            }
+            processed += batch.size();
+        }
+        return processed;
+    }
+
+    private List<MailOutbox> claimBatch(LocalDateTime dueBefore) {
+        List<Long> ids = outboxRepo.findDueIds(dueBefore, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) return List.of();
+
+        String token = UUID.randomUUID().toString();
+        if (outboxRepo.claim(ids, token, LocalDateTime.now()) == 0) return List.of();
+        return outboxRepo.findByClaimTokenAndStatus(token, MailOutbox.Status.SENDING);
+    }
+
+    private void sendPart(List<MailOutbox> part) {
+        Map<MimeMessage, MailOutbox> byMessage = new LinkedHashMap<>();
+        for (MailOutbox mail : part) {
+            try {
+                byMessage.put(toMessage(mail), mail);
+            } catch (Exception e) {
+                // Dữ liệu / template sai thì retry cũng không khỏi
+                markFailed(mail, e, true);
+            }
+        }
+        if (byMessage.isEmpty()) return;
+
+        Set<MailOutbox> failedMails = new HashSet<>();
+        long start = System.currentTimeMillis();
+        try {
+            mailSender.send(byMessage.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                failedMails.addAll(byMessage.values());
+                byMessage.values().forEach(m -> markFailed(m, e, false));
+            } else {
+                e.getFailedMessages().forEach((msg, ex) -> {
+                    MailOutbox mail = byMessage.get(msg);
+                    if (mail != null) {
+                        failedMails.add(mail);
+                        markFailed(mail, ex, false);
+                    }
+                });
+            }
+        } catch (MailException e) {
+            // Không kết nối / đăng nhập được SMTP: cả phần này retry sau
+            failedMails.addAll(byMessage.values());
+            byMessage.values().forEach(m -> markFailed(m, e, false));
+        }
+        long millis = System.currentTimeMillis() - start;
+        smtpBatches.incrementAndGet();
+
+        List<MailOutbox> ok = byMessage.values().stream().filter(m -> !failedMails.contains(m)).toList();
+        if (ok.isEmpty()) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        tx.executeWithoutResult(s -> outboxRepo.markSent(ok.stream().map(MailOutbox::getMailId).toList(), now));
+        sent.addAndGet(ok.size());
+
+        long perMail = millis / byMessage.size();
+        sendMillisTotal.addAndGet(perMail * ok.size());
+        sendMillisMax.accumulateAndGet(perMail, Math::max);
+        for (MailOutbox mail : ok) {
+            long queued = Duration.between(mail.getCreatedAt(), now).toMillis();
+            queueMillisTotal.addAndGet(queued);
+            queueMillisMax.accumulateAndGet(queued, Math::max);
+        }
+    }
+
+    private MimeMessage toMessage(MailOutbox mail) throws Exception {
+        String body = templates.render(mail.getTemplate(), fromJson(mail.getModel()));
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo(mail.getRecipient());
+        if (mail.getCc() != null) helper.setCc(mail.getCc());
+        helper.setSubject(mail.getSubject());
+        helper.setText(body, templates.isHtml(mail.getTemplate()));
+        return message;
+    }
+
+    private void markFailed(MailOutbox mail, Exception e, boolean permanent) {
+        int attempts = mail.getAttempts() + 1;
+        boolean giveUp = permanent || attempts >= maxAttempts;
+        LocalDateTime next = LocalDateTime.now().plusSeconds(backoffSeconds(attempts));
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (error.length() > ERROR_MAX_LENGTH) error = error.substring(0, ERROR_MAX_LENGTH);
+
+        String err = error;
+        tx.executeWithoutResult(s -> outboxRepo.markAttemptFailed(mail.getMailId(),
+                giveUp ? MailOutbox.Status.FAILED : MailOutbox.Status.PENDING, next, err));
+
+        if (giveUp) {
+            failed.incrementAndGet();
+            log.error("Mail {} to {} failed permanently after {} attempt(s): {}",
+                    mail.getMailId(), mail.getRecipient(), attempts, err);
+        } else {
+            retried.incrementAndGet();
+            log.warn("Mail {} to {} failed (attempt {}), retry at {}: {}",
+                    mail.getMailId(), mail.getRecipient(), attempts, next, err);
+        }
+    }
+
+    private long backoffSeconds(int attempts) {
+        long seconds = retryBaseSeconds << Math.min(attempts - 1, 20);
+        return Math.min(seconds, 3600);
+    }
+
+    private String toJson(Map<String, Object> model) {
+        try {
+            return objectMapper.writeValueAsString(model == null ? Map.of() : model);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Không serialize được dữ liệu email", e);
+        }
+    }
+
+    private Map<String, Object> fromJson(String json) throws JsonProcessingException {
+        return json == null ? Map.of() : objectMapper.readValue(json, MODEL_TYPE);
+    }
+
+    // ================== METRICS ==================
+
+    @Override
+    public String statsName() {
+        return "mail";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        LocalDateTime oldest = outboxRepo.findOldestPendingCreatedAt();
+        long sentCount = sent.get();
+
+        stats.put("pending", outboxRepo.countByStatus(MailOutbox.Status.PENDING));
+        stats.put("sending", outboxRepo.countByStatus(MailOutbox.Status.SENDING));
+        stats.put("failed", outboxRepo.countByStatus(MailOutbox.Status.FAILED));
+        stats.put("oldestPendingAgeSeconds",
+                oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toSeconds());
+        stats.put("workers", workers);
+        stats.put("activeWorkers", workerPool.getActiveCount());
+        stats.put("batchSize", batchSize);
+        stats.put("enqueued", enqueued.get());
+        stats.put("sent", sentCount);
+        stats.put("retried", retried.get());
+        stats.put("failedPermanently", failed.get());
+        stats.put("smtpBatches", smtpBatches.get());
+        stats.put("avgSendMillis", sentCount == 0 ? 0 : sendMillisTotal.get() / sentCount);
+        stats.put("maxSendMillis", sendMillisMax.get());
+        stats.put("avgQueueMillis", sentCount == 0 ? 0 : queueMillisTotal.get() / sentCount);
+        stats.put("maxQueueMillis", queueMillisMax.get());
+        return stats;
+    }
+}
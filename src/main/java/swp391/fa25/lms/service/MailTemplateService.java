@@ -0,0 +1,71 @@
+package swp391.fa25.lms.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Render nội dung email từ template Thymeleaf trong classpath:/mail/ (*.html = HTML, *.txt = text).
+ * Engine riêng, luôn cache (kể cả khi spring.thymeleaf.cache=false cho trang web lúc dev)
+ * và parse sẵn mọi template lúc khởi động -> worker gửi mail chỉ còn bước render.
+ */
+@Slf4j
+@Service
+public class MailTemplateService {
+
+    public static final String VERIFICATION_CODE = "verification-code.html";
+    public static final String PASSWORD_RESET_CODE = "password-reset-code.html";
+    public static final String SUPPORT_REQUEST = "support-request.txt";
+
+    private static final List<String> TEMPLATES =
+            List.of(VERIFICATION_CODE, PASSWORD_RESET_CODE, SUPPORT_REQUEST);
+
+    private static final Locale LOCALE = Locale.forLanguageTag("vi");
+
+    private final SpringTemplateEngine engine = new SpringTemplateEngine();
+
+    public MailTemplateService() {
+        engine.addTemplateResolver(resolver(TemplateMode.HTML, "*.html", 1));
+        engine.addTemplateResolver(resolver(TemplateMode.TEXT, "*.txt", 2));
+    }
+
+    private static ClassLoaderTemplateResolver resolver(TemplateMode mode, String pattern, int order) {
+        ClassLoaderTemplateResolver r = new ClassLoaderTemplateResolver();
+        r.setPrefix("mail/");
+        r.setTemplateMode(mode);
+        r.setResolvablePatterns(Set.of(pattern));
+        r.setCharacterEncoding("UTF-8");
+        r.setCacheable(true);
+        r.setOrder(order);
+        return r;
+    }
+
+    // Template lỗi cú pháp thì app không lên, thay vì mail kẹt trong outbox
+    @PostConstruct
+    public void warmUp() {
+        for (String template : TEMPLATES) {
+            engine.process(template, new Context(LOCALE));
+        }
+        log.info("Mail templates parsed: {}", TEMPLATES);
+    }
+
+    public boolean isHtml(String template) {
+        return template.endsWith(".html");
+    }
+
+    public String render(String template, Map<String, Object> model) {
+        if (!TEMPLATES.contains(template)) {
+            throw new IllegalArgumentException("Mail template không tồn tại: " + template);
+        }
+        return engine.process(template, new Context(LOCALE, model));
+    }
+}
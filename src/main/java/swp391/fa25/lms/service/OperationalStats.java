@@ -0,0 +1,15 @@
+package swp391.fa25.lms.service;
+
+import java.util.Map;
+
+/**
+ * Service có bộ đếm vận hành (hàng đợi, hit rate, thời gian chạy job...), gom về 1 endpoint admin:
+ * GET /admin/stats (tất cả) và GET /admin/stats/{name}.
+ */
+public interface OperationalStats {
+
+    /** Tên trong URL, vd "license-index". */
+    String statsName();
+
+    Map<String, Object> getStats();
+}
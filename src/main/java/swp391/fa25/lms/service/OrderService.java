@@ -9,7 +9,9 @@ import swp391.fa25.lms.repository.*;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -21,7 +23,16 @@ public class OrderService {
     private final OrderLicenseRepository orderLicenseRepository;
 
     @Autowired
-    private ToolRepository toolRepository;
+    private InventoryService inventoryService;
+
+    @Autowired
+    private TypeaheadService typeaheadService;
+
+    @Autowired
+    private TokenPoolAllocator tokenPoolAllocator;
+
+    @Autowired
+    private RevenueLedgerService revenueLedgerService;
 
     /**
      * ✅ Mỗi Order có nhiều License thông qua OrderLicense
@@ -100,39 +111,42 @@ public class OrderService {
     /**
      * ✅ SUCCESS PAYMENT:
      * - order -> SUCCESS
-     * - giảm quantity
+     * - giữ chỗ tồn kho -> đã bán
      * - cấp LicenseAccount nhưng CHƯA kích hoạt, CHƯA tính hạn
      */
     @Transactional
     public void processSuccessfulPayment(PaymentTransaction transaction) {
         List<CustomerOrder> orders = orderRepository.findByTransaction_TransactionId(transaction.getTransactionId());
+        Map<Long, Integer> soldByTool = new HashMap<>();
 
         for (CustomerOrder order : orders) {
 
-            // 1) Update order status
+            // 1) Chốt order -> SUCCESS bằng UPDATE có điều kiện. Callback trùng (IPN gửi lại, return URL)
+            //    thấy order đã SUCCESS thì bỏ qua hẳn: không cộng doanh thu, không cấp license, không trừ kho lần 2
+            LocalDateTime now = LocalDateTime.now();
+            if (orderRepository.markSucceeded(order.getOrderId(), now) == 0) continue;
             order.setOrderStatus(CustomerOrder.OrderStatus.SUCCESS);
-            order.setUpdatedAt(LocalDateTime.now());
-            orderRepository.save(order);
+            order.setUpdatedAt(now);
+            revenueLedgerService.recordToolSale(order, now);
 
-            // 2) Giảm tool quantity và cấp LicenseAccount cho từng OrderLicense
+            // 2) Cấp LicenseAccount cho từng OrderLicense
             Tool tool = order.getTool();
+            if (tool != null) typeaheadService.onToolOrdered(tool.getToolId());
             List<OrderLicense> orderLicenses = orderLicenseRepository.findByOrder_OrderId(order.getOrderId());
-            
+
             for (OrderLicense orderLicense : orderLicenses) {
-                // Giảm tool quantity
-            if (tool != null) {
-                Integer currentQty = tool.getAvailableQuantity();
-                    Integer licenseQty = orderLicense.getQuantity() != null ? orderLicense.getQuantity() : 1;
-                if (currentQty != null && currentQty > 0) {
-                        tool.setAvailableQuantity(Math.max(0, currentQty - licenseQty));
-                    toolRepository.save(tool);
+                if (tool != null) {
+                    int licenseQty = orderLicense.getQuantity() != null ? orderLicense.getQuantity() : 1;
+                    soldByTool.merge(tool.getToolId(), licenseQty, Integer::sum);
                 }
-            }
 
                 // 3) ✅ Cấp LicenseAccount thông qua License (theo quantity của OrderLicense)
                 provisionLicenseAccounts(orderLicense);
             }
         }
+
+        // 4) Giữ chỗ -> đã bán (UPDATE có điều kiện, không đọc-sửa-ghi availableQuantity)
+        if (!soldByTool.isEmpty()) inventoryService.commit(transaction, soldByTool);
     }
 
     /**
@@ -147,6 +161,9 @@ public class OrderService {
             order.setUpdatedAt(LocalDateTime.now());
             orderRepository.save(order);
         }
+
+        // Trả giữ chỗ tồn kho của giao dịch về available
+        inventoryService.release(transaction);
     }
 
     /**
@@ -157,7 +174,7 @@ public class OrderService {
      *
      * Lưu ý TOKEN:
      * - Không dùng used để “reserve”, mà reserve bằng cách gán Order (order != null)
-     * - Khi chọn token thì lọc acc.getOrder() == null để tránh cấp trùng token
+     * - Việc chọn + gán token do TokenPoolAllocator làm atomically (order IS NULL tại thời điểm UPDATE)
      */
     private void provisionLicenseAccounts(OrderLicense orderLicense) {
         if (orderLicense == null) return;
@@ -190,39 +207,8 @@ public class OrderService {
             }
 
         } else if (Tool.LoginMethod.TOKEN.equals(tool.getLoginMethod())) {
-            // TH2: Lấy token từ License (tool) theo số lượng quantity
-            List<LicenseAccount> unusedTokens = licenseAccountRepository
-                    .findByLicense_Tool_ToolId(tool.getToolId())
-                    .stream()
-                    .filter(acc -> acc.getToken() != null)
-                    .filter(acc -> Boolean.FALSE.equals(acc.getUsed()))
-                    .filter(acc -> acc.getOrder() == null) // ✅ chưa bị reserve
-                    .limit(quantity) // Lấy đúng số lượng cần
-                    .toList();
-
-            if (unusedTokens.size() < quantity) {
-                // Không đủ token, có thể throw exception hoặc log warning
-                throw new IllegalStateException(
-                    String.format("Không đủ token cho order. Cần %d token nhưng chỉ có %d token available", 
-                        quantity, unusedTokens.size())
-                );
-            }
-
-            for (LicenseAccount tokenAcc : unusedTokens) {
-                // reserve token cho order
-                tokenAcc.setOrder(order); // Tracking: biết token này thuộc order nào
-
-                // ✅ đảm bảo license đúng với đơn mua (để durationDays đúng)
-                tokenAcc.setLicense(license);
-
-                // ✅ CHƯA kích hoạt
-                tokenAcc.setStatus(LicenseAccount.Status.ACTIVE);
-                tokenAcc.setUsed(false);
-                tokenAcc.setStartDate(null);
-                tokenAcc.setEndDate(null);
-
-                licenseAccountRepository.save(tokenAcc);
-            }
+            // TH2: Claim token từ pool của tool theo quantity (UPDATE có điều kiện, an toàn khi chạy song song)
+            tokenPoolAllocator.claim(tool.getToolId(), license, order, quantity);
         }
     }
 
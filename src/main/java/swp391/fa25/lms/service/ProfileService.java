@@ -5,11 +5,15 @@ import org.springframework.stereotype.Service;
 import swp391.fa25.lms.model.Account;
 import swp391.fa25.lms.repository.ProfileRepository;
 
+import java.time.LocalDateTime;
+import java.util.Objects;
+
 @Service
 @RequiredArgsConstructor
 public class ProfileService {
 
     private final ProfileRepository profileRepository;
+    private final SearchIndexService searchIndexService;
 
     public Account getByEmail(String email) {
         return profileRepository.findByEmail(email);
@@ -22,4 +26,16 @@ public class ProfileService {
     public void save(Account account) {
         profileRepository.save(account);
     }
+
+    public void updateInfo(Account account, String fullName, String phone, String address) {
+        boolean renamed = !Objects.equals(fullName, account.getFullName());
+        account.setFullName(fullName);
+        account.setPhone(phone);
+        account.setAddress(address);
+        account.setUpdatedAt(LocalDateTime.now());
+        profileRepository.save(account);
+
+        // Tên seller nằm trong chỉ mục tìm kiếm của tool (account không phải seller -> không có tool)
+        if (renamed) searchIndexService.reindexSellerTools(account.getAccountId());
+    }
 }
@@ -0,0 +1,330 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.model.RevenueLedgerEntry.EntryType;
+import swp391.fa25.lms.repository.RevenueDailyPackageRepository;
+import swp391.fa25.lms.repository.RevenueDailySellerRepository;
+import swp391.fa25.lms.repository.RevenueLedgerRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Sổ doanh thu + bảng tổng hợp theo ngày cho báo cáo tài chính.
+ * - Mỗi khoản thu (mua gói seller, order SUCCESS, gia hạn license) ghi 1 dòng revenue_ledger và cộng
+ *   vào revenue_daily_seller / revenue_daily_package trong cùng transaction với thanh toán
+ * - Báo cáo chỉ đọc bảng theo ngày (số dòng ~ số ngày x seller/gói, không tăng theo số giao dịch)
+ * - Lúc khởi động ghi bù các khoản thu chưa có trong sổ; định kỳ đối soát bảng ngày của vài ngày gần nhất với sổ
+ */
+@Slf4j
+@Service
+public class RevenueLedgerService implements OperationalStats {
+
+    private static final int BACKFILL_CHUNK = 200;
+
+    private final RevenueLedgerRepository ledgerRepo;
+    private final RevenueDailySellerRepository sellerDailyRepo;
+    private final RevenueDailyPackageRepository packageDailyRepo;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate requiresNew;
+
+    @Value("${app.revenue.reconcile-days:7}")
+    private int reconcileDays;
+
+    // ===== Metrics =====
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong backfilled = new AtomicLong();
+    private final AtomicLong reconcileRuns = new AtomicLong();
+    private final AtomicLong totalCorrections = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public RevenueLedgerService(RevenueLedgerRepository ledgerRepo,
+                                RevenueDailySellerRepository sellerDailyRepo,
+                                RevenueDailyPackageRepository packageDailyRepo,
+                                PlatformTransactionManager transactionManager) {
+        this.ledgerRepo = ledgerRepo;
+        this.sellerDailyRepo = sellerDailyRepo;
+        this.packageDailyRepo = packageDailyRepo;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // ================== GHI SỔ ==================
+
+    /** Seller mua / gia hạn gói (gọi sau khi subscription đã được save). */
+    @Transactional
+    public void recordSubscription(SellerSubscription sub, LocalDateTime paidAt) {
+        Integer packageId = sub.getSellerPackage() != null ? sub.getSellerPackage().getId() : null;
+        Long sellerId = sub.getAccount() != null ? sub.getAccount().getAccountId() : null;
+        record(new RevenueLedgerEntry(EntryType.SUBSCRIPTION, (long) sub.getId(), sellerId, packageId, null,
+                money(sub.getPriceAtPurchase()), paidAt));
+    }
+
+    /** Order vừa chuyển sang SUCCESS. */
+    @Transactional
+    public void recordToolSale(CustomerOrder order, LocalDateTime paidAt) {
+        Tool tool = order.getTool();
+        Long sellerId = tool != null && tool.getSeller() != null ? tool.getSeller().getAccountId() : null;
+        record(new RevenueLedgerEntry(EntryType.TOOL_SALE, order.getOrderId(), sellerId, null,
+                tool != null ? tool.getToolId() : null, money(order.getPrice()), paidAt));
+    }
+
+    /** Khách gia hạn license thành công (gọi sau khi renew log đã được save). */
+    @Transactional
+    public void recordLicenseRenewal(LicenseRenewLog renewLog) {
+        Tool tool = renewLog.getLicenseAccount() != null && renewLog.getLicenseAccount().getLicense() != null
+                ? renewLog.getLicenseAccount().getLicense().getTool() : null;
+        Long sellerId = tool != null && tool.getSeller() != null ? tool.getSeller().getAccountId() : null;
+        record(new RevenueLedgerEntry(EntryType.LICENSE_RENEWAL, renewLog.getRenewLogId(), sellerId, null,
+                tool != null ? tool.getToolId() : null, money(renewLog.getAmountPaid()), firstNonNull(renewLog.getRenewDate(), null)));
+    }
+
+    private void record(RevenueLedgerEntry entry) {
+        // Callback thanh toán đã chặn gọi lại, đây là chốt cuối trước unique (entry_type, source_id)
+        if (ledgerRepo.existsByEntryTypeAndSourceId(entry.getEntryType(), entry.getSourceId())) {
+            duplicates.incrementAndGet();
+            return;
+        }
+        ledgerRepo.save(entry);
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate day = entry.getBusinessDate();
+        if (entry.getSellerId() != null) {
+            if (sellerDailyRepo.add(day, entry.getSellerId(), entry.getEntryType(), entry.getAmount(), 1, now) == 0) {
+                createSellerBucketIfAbsent(day, entry.getSellerId(), entry.getEntryType());
+                sellerDailyRepo.add(day, entry.getSellerId(), entry.getEntryType(), entry.getAmount(), 1, now);
+            }
+        }
+        if (entry.getPackageId() != null) {
+            if (packageDailyRepo.add(day, entry.getPackageId(), entry.getAmount(), 1, now) == 0) {
+                createPackageBucketIfAbsent(day, entry.getPackageId());
+                packageDailyRepo.add(day, entry.getPackageId(), entry.getAmount(), 1, now);
+            }
+        }
+        recorded.incrementAndGet();
+    }
+
+    // Tạo bucket = 0 ở transaction riêng (commit ngay); 2 request cùng tạo thì 1 bên dính unique -> bỏ qua
+    private void createSellerBucketIfAbsent(LocalDate day, Long sellerId, EntryType type) {
+        try {
+            requiresNew.executeWithoutResult(s -> {
+                if (!sellerDailyRepo.existsByBusinessDateAndSellerIdAndEntryType(day, sellerId, type)) {
+                    sellerDailyRepo.saveAndFlush(new RevenueDailySeller(day, sellerId, type));
+                }
+            });
+        } catch (DataIntegrityViolationException alreadyCreated) {
+            log.debug("Revenue bucket {}/{}/{} created concurrently", day, sellerId, type);
+        }
+    }
+
+    private void createPackageBucketIfAbsent(LocalDate day, Integer packageId) {
+        try {
+            requiresNew.executeWithoutResult(s -> {
+                if (!packageDailyRepo.existsByBusinessDateAndPackageId(day, packageId)) {
+                    packageDailyRepo.saveAndFlush(new RevenueDailyPackage(day, packageId));
+                }
+            });
+        } catch (DataIntegrityViolationException alreadyCreated) {
+            log.debug("Package revenue bucket {}/{} created concurrently", day, packageId);
+        }
+    }
+
+    private static BigDecimal money(Number value) {
+        if (value == null) return BigDecimal.ZERO.setScale(2);
+        if (value instanceof BigDecimal bd) return bd.setScale(2, RoundingMode.HALF_UP);
+        return BigDecimal.valueOf(value.doubleValue()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // ================== READ ==================
+
+    /**
+     * Doanh thu bán gói seller theo ngày mua (from / to null = không giới hạn).
+     * sellerName null = mọi seller (khớp một phần tên), packageId null = mọi gói.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal subscriptionRevenue(String sellerName, Integer packageId, LocalDate from, LocalDate to) {
+        if (sellerName == null) return packageDailyRepo.sumRevenue(packageId, from, to);
+        if (packageId == null) return sellerDailyRepo.sumForSellerName(EntryType.SUBSCRIPTION, sellerName, from, to);
+        return ledgerRepo.sumForSellerNameAndPackage(EntryType.SUBSCRIPTION, sellerName, packageId, from, to);
+    }
+
+    /** Tổng doanh thu toàn hệ thống theo từng loại trong khoảng ngày (loại chưa có = 0). */
+    @Transactional(readOnly = true)
+    public Map<EntryType, BigDecimal> totalsByType(LocalDate from, LocalDate to) {
+        Map<EntryType, BigDecimal> totals = new EnumMap<>(EntryType.class);
+        for (EntryType t : EntryType.values()) totals.put(t, BigDecimal.ZERO);
+        for (Object[] row : sellerDailyRepo.sumByType(from, to)) {
+            totals.put((EntryType) row[0], (BigDecimal) row[1]);
+        }
+        return totals;
+    }
+
+    // ================== BACKFILL + RECONCILE ==================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        int total = 0;
+        total += backfill(() -> ledgerRepo.findSubscriptionsWithoutEntry(PageRequest.of(0, BACKFILL_CHUNK)),
+                sub -> recordSubscription(sub, firstNonNull(
+                        sub.getTransaction() != null ? sub.getTransaction().getCompletedAt() : null, sub.getStartDate())));
+        total += backfill(() -> ledgerRepo.findSucceededOrdersWithoutEntry(PageRequest.of(0, BACKFILL_CHUNK)),
+                order -> recordToolSale(order, firstNonNull(order.getUpdatedAt(), order.getCreatedAt())));
+        total += backfill(() -> ledgerRepo.findRenewLogsWithoutEntry(PageRequest.of(0, BACKFILL_CHUNK)),
+                this::recordLicenseRenewal);
+        if (total > 0) log.info("Revenue ledger backfilled {} entr(ies)", total);
+        reconcile();
+    }
+
+    // Mỗi lô 1 transaction; lô không đầy = đã hết dòng thiếu
+    private <T> int backfill(Supplier<List<T>> nextChunk, Consumer<T> recorder) {
+        int count = 0;
+        while (true) {
+            Integer size = tx.execute(s -> {
+                List<T> chunk = nextChunk.get();
+                chunk.forEach(recorder);
+                return chunk.size();
+            });
+            if (size == null) break;
+            count += size;
+            if (size < BACKFILL_CHUNK) break;
+        }
+        backfilled.addAndGet(count);
+        return count;
+    }
+
+    private static LocalDateTime firstNonNull(LocalDateTime a, LocalDateTime b) {
+        if (a != null) return a;
+        return b != null ? b : LocalDateTime.now();
+    }
+
+    /**
+     * Tính lại bucket của reconcile-days ngày gần nhất từ sổ, chỉ ghi chỗ lệch.
+     * Ngày cũ hơn không còn ghi thêm nên không quét lại.
+     */
+    @Scheduled(fixedDelayString = "${app.revenue.reconcile-interval-ms:900000}",
+            initialDelayString = "${app.revenue.reconcile-interval-ms:900000}")
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        LocalDate from = LocalDate.now().minusDays(reconcileDays);
+        int[] fixed = tx.execute(s -> new int[]{reconcileSellerDays(from), reconcilePackageDays(from)});
+        long millis = System.currentTimeMillis() - start;
+
+        int corrections = fixed == null ? 0 : fixed[0] + fixed[1];
+        reconcileRuns.incrementAndGet();
+        totalCorrections.addAndGet(corrections);
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("at", LocalDateTime.now());
+        run.put("fromDate", from);
+        run.put("sellerCorrections", fixed == null ? 0 : fixed[0]);
+        run.put("packageCorrections", fixed == null ? 0 : fixed[1]);
+        run.put("millis", millis);
+        lastRun = run;
+
+        if (corrections > 0) {
+            log.info("Revenue aggregates reconciled: {} correction(s) in {} ms", corrections, millis);
+        }
+    }
+
+    private int reconcileSellerDays(LocalDate from) {
+        Map<List<Object>, Object[]> truth = new HashMap<>();
+        for (Object[] row : ledgerRepo.sumBySellerAndDay(from)) {
+            truth.put(List.of(row[0], row[1], row[2]), new Object[]{money((Number) row[3]), ((Number) row[4]).longValue()});
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int fixed = 0;
+        for (RevenueDailySeller d : sellerDailyRepo.findByBusinessDateGreaterThanEqual(from)) {
+            Object[] t = truth.remove(List.of(d.getBusinessDate(), d.getSellerId(), d.getEntryType()));
+            fixed += correct(t, d.getAmount(), d.getEntryCount(), (amount, count) -> {
+                d.setAmount(amount);
+                d.setEntryCount(count);
+                d.setUpdatedAt(now);
+            });
+        }
+        for (Map.Entry<List<Object>, Object[]> e : truth.entrySet()) {
+            RevenueDailySeller d = new RevenueDailySeller(
+                    (LocalDate) e.getKey().get(0), (Long) e.getKey().get(1), (EntryType) e.getKey().get(2));
+            d.setAmount((BigDecimal) e.getValue()[0]);
+            d.setEntryCount((Long) e.getValue()[1]);
+            sellerDailyRepo.save(d);
+            fixed++;
+        }
+        return fixed;
+    }
+
+    private int reconcilePackageDays(LocalDate from) {
+        Map<List<Object>, Object[]> truth = new HashMap<>();
+        for (Object[] row : ledgerRepo.sumByPackageAndDay(from)) {
+            truth.put(List.of(row[0], row[1]), new Object[]{money((Number) row[2]), ((Number) row[3]).longValue()});
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int fixed = 0;
+        for (RevenueDailyPackage d : packageDailyRepo.findByBusinessDateGreaterThanEqual(from)) {
+            Object[] t = truth.remove(List.of(d.getBusinessDate(), d.getPackageId()));
+            fixed += correct(t, d.getAmount(), d.getEntryCount(), (amount, count) -> {
+                d.setAmount(amount);
+                d.setEntryCount(count);
+                d.setUpdatedAt(now);
+            });
+        }
+        for (Map.Entry<List<Object>, Object[]> e : truth.entrySet()) {
+            RevenueDailyPackage d = new RevenueDailyPackage((LocalDate) e.getKey().get(0), (Integer) e.getKey().get(1));
+            d.setAmount((BigDecimal) e.getValue()[0]);
+            d.setEntryCount((Long) e.getValue()[1]);
+            packageDailyRepo.save(d);
+            fixed++;
+        }
+        return fixed;
+    }
+
+    // truth null = bucket không còn khoản thu nào trong sổ -> về 0
+    private static int correct(Object[] truth, BigDecimal amount, long count,
+                               BiConsumer<BigDecimal, Long> setter) {
+        BigDecimal expectedAmount = truth == null ? BigDecimal.ZERO : (BigDecimal) truth[0];
+        long expectedCount = truth == null ? 0 : (Long) truth[1];
+        if (amount.compareTo(expectedAmount) == 0 && count == expectedCount) return 0;
+        setter.accept(expectedAmount, expectedCount);
+        return 1;
+    }
+
+    @Override
+    public String statsName() {
+        return "revenue";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recorded", recorded.get());
+        stats.put("duplicatesIgnored", duplicates.get());
+        stats.put("backfilled", backfilled.get());
+        stats.put("reconcileDays", reconcileDays);
+        stats.put("reconcileRuns", reconcileRuns.get());
+        stats.put("totalCorrections", totalCorrections.get());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+}
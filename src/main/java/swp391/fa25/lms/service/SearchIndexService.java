@@ -0,0 +1,366 @@
+package swp391.fa25.lms.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import swp391.fa25.lms.model.Blog;
+import swp391.fa25.lms.model.Tool;
+import swp391.fa25.lms.repository.BlogRepository;
+import swp391.fa25.lms.repository.ToolRepository;
+import swp391.fa25.lms.util.AfterCommit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Chỉ mục full-text (Lucene, lưu trên đĩa) cho tìm kiếm tool và blog.
+ * - Tool: tên, mô tả, tên seller
+ * - Blog: title, summary, content
+ * Bỏ dấu tiếng Việt (ASCII folding), match theo tiền tố, xếp hạng theo BM25.
+ * Cập nhật tăng dần khi save/xóa (commit xuống đĩa định kỳ), dựng lại toàn bộ từ DB lúc khởi động.
+ * Trả về toàn bộ hit (không cắt top-N) để filter SQL phía sau không bị thiếu kết quả.
+ */
+@Slf4j
+@Service
+public class SearchIndexService {
+
+    /**
+     * Số hit tối đa truyền thẳng vào IN (:ids) (SQL Server giới hạn 2100 tham số).
+     * Nhiều hơn -> caller lấy danh sách id đã lọc từ DB rồi giao với tập hit (xem {@link #pageOf}).
+     */
+    public static final int ID_FILTER_LIMIT = 2000;
+
+    private static final String F_KEY = "key";
+    private static final String F_TYPE = "type";
+    private static final String F_ID = "id";
+
+    private static final String TYPE_TOOL = "TOOL";
+    private static final String TYPE_BLOG = "BLOG";
+
+    private static final String[] TOOL_FIELDS = {"toolName", "description", "sellerName"};
+    private static final float[] TOOL_BOOSTS = {3f, 1f, 2f};
+
+    private static final String[] BLOG_FIELDS = {"title", "summary", "content"};
+    private static final float[] BLOG_BOOSTS = {3f, 2f, 1f};
+
+    private static final int REBUILD_BATCH = 500;
+
+    private final ToolRepository toolRepo;
+    private final BlogRepository blogRepo;
+    private final Analyzer analyzer = new FoldingAnalyzer();
+
+    private final FSDirectory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    public SearchIndexService(ToolRepository toolRepo,
+                              BlogRepository blogRepo,
+                              @Value("${app.search.index-dir:search-index}") String indexDir) throws IOException {
+        this.toolRepo = toolRepo;
+        this.blogRepo = blogRepo;
+
+        Path path = Paths.get(indexDir).toAbsolutePath();
+        Files.createDirectories(path);
+        this.directory = FSDirectory.open(path);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    // ================== SEARCH ==================
+
+    /** Toàn bộ ID tool khớp keyword, xếp theo độ liên quan giảm dần. */
+    public List<Long> searchToolIds(String keyword) {
+        return search(TYPE_TOOL, TOOL_FIELDS, TOOL_BOOSTS, keyword);
+    }
+
+    /** Toàn bộ ID blog khớp keyword, xếp theo độ liên quan giảm dần. */
+    public List<Long> searchBlogIds(String keyword) {
+        return search(TYPE_BLOG, BLOG_FIELDS, BLOG_BOOSTS, keyword);
+    }
+
+    private List<Long> search(String type, String[] fields, float[] boosts, String keyword) {
+        List<String> terms = analyze(keyword);
+        if (terms.isEmpty()) return List.of();
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(F_TYPE, type)), BooleanClause.Occur.FILTER);
+
+        // Mọi từ đều phải khớp (AND), mỗi từ khớp nguyên từ hoặc tiền tố ở bất kỳ field nào
+        for (String term : terms) {
+            BooleanQuery.Builder perTerm = new BooleanQuery.Builder();
+            for (int i = 0; i < fields.length; i++) {
+                perTerm.add(new BoostQuery(new TermQuery(new Term(fields[i], term)), boosts[i]),
+                        BooleanClause.Occur.SHOULD);
+                perTerm.add(new BoostQuery(new PrefixQuery(new Term(fields[i], term)), boosts[i] * 0.5f),
+                        BooleanClause.Occur.SHOULD);
+            }
+            query.add(perTerm.build(), BooleanClause.Occur.MUST);
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            // Lấy hết hit: filter status/giá/category... chạy ở DB sau đó, cắt top-N ở đây sẽ làm mất kết quả
+            TopDocs top = searcher.search(query.build(), Math.max(1, searcher.getIndexReader().maxDoc()));
+            StoredFields stored = searcher.storedFields();
+
+            List<Long> ids = new ArrayList<>(top.scoreDocs.length);
+            for (ScoreDoc sd : top.scoreDocs) {
+                ids.add(Long.valueOf(stored.document(sd.doc).get(F_ID)));
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Search index query failed", e);
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) return terms;
+
+        try (TokenStream ts = analyzer.tokenStream("q", text)) {
+            CharTermAttribute attr = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.add(attr.toString());
+            }
+            ts.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    /**
+     * Phân trang khi số hit quá lớn để lọc bằng IN:
+     * ordered là danh sách id theo thứ tự hiển thị, chỉ giữ id có trong keep,
+     * cắt trang rồi mới nạp entity của trang đó (loader không đảm bảo thứ tự -> sắp lại theo id).
+     */
+    public static <T> Page<T> pageOf(List<Long> ordered, Collection<Long> keep, Pageable pageable,
+                                     Function<List<Long>, List<T>> loader, Function<T, Long> idOf) {
+        List<Long> matched = new ArrayList<>();
+        for (Long id : ordered) {
+            if (keep.contains(id)) matched.add(id);
+        }
+
+        int start = (int) Math.min(pageable.getOffset(), matched.size());
+        int end = Math.min(start + pageable.getPageSize(), matched.size());
+        List<Long> pageIds = matched.subList(start, end);
+        if (pageIds.isEmpty()) return new PageImpl<>(List.of(), pageable, matched.size());
+
+        Map<Long, T> byId = new HashMap<>(pageIds.size() * 2);
+        for (T item : loader.apply(pageIds)) byId.put(idOf.apply(item), item);
+        List<T> content = pageIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, matched.size());
+    }
+
+    // ================== INCREMENTAL UPDATE ==================
+
+    public void indexTool(Tool tool) {
+        if (tool == null || tool.getToolId() == null) return;
+
+        Document doc = toolDoc(tool);
+        AfterCommit.run(() -> update(TYPE_TOOL, tool.getToolId(), doc));
+    }
+
+    /**
+     * Đánh lại chỉ mục mọi tool của seller (tên seller là một field của tool).
+     * Gọi khi seller đổi tên; tài khoản không phải seller -> không có tool, không làm gì.
+     */
+    public void reindexSellerTools(Long sellerId) {
+        if (sellerId == null) return;
+
+        List<Tool> tools = toolRepo.findBySeller_AccountIdOrderByToolNameAsc(sellerId);
+        if (tools.isEmpty()) return;
+
+        List<Document> docs = new ArrayList<>(tools.size());
+        for (Tool t : tools) docs.add(toolDoc(t));
+        AfterCommit.run(() -> {
+            for (int i = 0; i < tools.size(); i++) {
+                update(TYPE_TOOL, tools.get(i).getToolId(), docs.get(i));
+            }
+        });
+    }
+
+    public void removeTool(Long toolId) {
+        if (toolId == null) return;
+        AfterCommit.run(() -> update(TYPE_TOOL, toolId, null));
+    }
+
+    public void indexBlog(Blog blog) {
+        if (blog == null || blog.getBlogId() == null) return;
+
+        Document doc = blogDoc(blog);
+        AfterCommit.run(() -> update(TYPE_BLOG, blog.getBlogId(), doc));
+    }
+
+    public void removeBlog(Long blogId) {
+        if (blogId == null) return;
+        AfterCommit.run(() -> update(TYPE_BLOG, blogId, null));
+    }
+
+    private void update(String type, Long id, Document doc) {
+        try {
+            Term key = new Term(F_KEY, type + ":" + id);
+            if (doc == null) writer.deleteDocuments(key);
+            else writer.updateDocument(key, doc);
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("Search index update failed for {}:{}", type, id, e);
+        }
+    }
+
+    private Document toolDoc(Tool tool) {
+        Document doc = baseDoc(TYPE_TOOL, tool.getToolId());
+        addText(doc, "toolName", tool.getToolName());
+        addText(doc, "description", tool.getDescription());
+        addText(doc, "sellerName", tool.getSeller() != null ? tool.getSeller().getFullName() : null);
+        return doc;
+    }
+
+    private Document blogDoc(Blog blog) {
+        Document doc = baseDoc(TYPE_BLOG, blog.getBlogId());
+        addText(doc, "title", blog.getTitle());
+        addText(doc, "summary", blog.getSummary());
+        addText(doc, "content", stripHtml(blog.getContent()));
+        return doc;
+    }
+
+    private Document baseDoc(String type, Long id) {
+        Document doc = new Document();
+        doc.add(new StringField(F_KEY, type + ":" + id, Field.Store.NO));
+        doc.add(new StringField(F_TYPE, type, Field.Store.NO));
+        doc.add(new StringField(F_ID, String.valueOf(id), Field.Store.YES));
+        return doc;
+    }
+
+    private void addText(Document doc, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    private String stripHtml(String html) {
+        return html == null ? null : html.replaceAll("<[^>]*>", " ");
+    }
+
+    /**
+     * Ghi các thay đổi tăng dần xuống đĩa. maybeRefresh chỉ làm chúng thấy được với searcher (NRT),
+     * chưa commit thì tắt đột ngột sẽ mất; rebuild lúc khởi động bù lại nhưng index cũ vẫn nên nhất quán.
+     */
+    @Scheduled(fixedDelayString = "${app.search.commit-interval-ms:30000}")
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) writer.commit();
+        } catch (IOException e) {
+            log.error("Search index commit failed", e);
+        }
+    }
+
+    // ================== REBUILD ==================
+
+    /** Dựng lại toàn bộ chỉ mục từ DB (chạy lúc khởi động). */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            writer.deleteAll();
+
+            int tools = 0;
+            Page<Tool> toolPage;
+            int page = 0;
+            do {
+                toolPage = toolRepo.findAll(PageRequest.of(page++, REBUILD_BATCH));
+                for (Tool t : toolPage) {
+                    writer.addDocument(toolDoc(t));
+                    tools++;
+                }
+            } while (toolPage.hasNext());
+
+            int blogs = 0;
+            Page<Blog> blogPage;
+            page = 0;
+            do {
+                blogPage = blogRepo.findAll(PageRequest.of(page++, REBUILD_BATCH));
+                for (Blog b : blogPage) {
+                    if (b.getStatus() == Blog.Status.ARCHIVED) continue;
+                    writer.addDocument(blogDoc(b));
+                    blogs++;
+                }
+            } while (blogPage.hasNext());
+
+            writer.commit();
+            searcherManager.maybeRefresh();
+            log.info("Search index rebuilt: {} tool(s), {} blog(s) in {} ms",
+                    tools, blogs, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.error("Search index rebuild failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        commit();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    // ================== ANALYZER ==================
+
+    /** Tách từ chuẩn + lowercase + bỏ dấu (vd: "Phần mềm" -> "phan", "mem"; "đ" -> "d"). */
+    private static final class FoldingAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer source = new StandardTokenizer();
+            TokenStream stream = new LowerCaseFilter(source);
+            stream = new ASCIIFoldingFilter(stream);
+            return new TokenStreamComponents(source, stream);
+        }
+    }
+}
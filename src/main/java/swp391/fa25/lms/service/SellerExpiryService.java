@@ -0,0 +1,111 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.repository.AccountRepository;
+import swp391.fa25.lms.repository.SellerSubscriptionRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Job định kỳ tắt cờ sellerActive của seller đã hết hạn gói và đánh dấu subscription quá hạn.
+ * Có seller bị tắt -> làm mới catalog snapshot / typeahead để tool của họ biến mất ngay,
+ * không phải chờ seller login lại.
+ * UPDATE có điều kiện nên chạy trên nhiều node cùng lúc vẫn an toàn.
+ */
+@Slf4j
+@Service
+public class SellerExpiryService implements OperationalStats {
+
+    private final AccountRepository accountRepo;
+    private final SellerSubscriptionRepository subscriptionRepo;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final TypeaheadService typeaheadService;
+    private final TransactionTemplate tx;
+
+    @Value("${app.seller-expiry.chunk-size:200}")
+    private int chunkSize;
+
+    // ===== Metrics =====
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalSellersExpired = new AtomicLong();
+    private final AtomicLong totalSubscriptionsExpired = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public SellerExpiryService(AccountRepository accountRepo,
+                               SellerSubscriptionRepository subscriptionRepo,
+                               CatalogSnapshotService catalogSnapshotService,
+                               TypeaheadService typeaheadService,
+                               PlatformTransactionManager transactionManager) {
+        this.accountRepo = accountRepo;
+        this.subscriptionRepo = subscriptionRepo;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.typeaheadService = typeaheadService;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${app.seller-expiry.sweep-interval-ms:60000}")
+    public void sweep() {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+
+        Integer subs = tx.execute(s -> subscriptionRepo.deactivateEnded(now));
+
+        int sellers = 0;
+        while (true) {
+            List<Long> ids = accountRepo.findExpiredSellerIds(now, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) break;
+
+            Integer n = tx.execute(s -> accountRepo.deactivateExpiredSellers(ids, now));
+            sellers += n == null ? 0 : n;
+            if (ids.size() < chunkSize) break;
+        }
+
+        if (sellers > 0) {
+            catalogSnapshotService.invalidate();
+            typeaheadService.invalidate();
+        }
+
+        long millis = System.currentTimeMillis() - start;
+        record(now, sellers, subs == null ? 0 : subs, millis);
+        if (sellers > 0 || (subs != null && subs > 0)) {
+            log.info("Seller expiry sweep: {} seller(s), {} subscription(s) expired in {} ms", sellers, subs, millis);
+        }
+    }
+
+    private void record(LocalDateTime at, int sellers, int subs, long millis) {
+        runs.incrementAndGet();
+        totalSellersExpired.addAndGet(sellers);
+        totalSubscriptionsExpired.addAndGet(subs);
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("at", at);
+        run.put("sellersExpired", sellers);
+        run.put("subscriptionsExpired", subs);
+        run.put("millis", millis);
+        lastRun = run;
+    }
+
+    @Override
+    public String statsName() {
+        return "seller-expiry";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chunkSize", chunkSize);
+        stats.put("runs", runs.get());
+        stats.put("totalSellersExpired", totalSellersExpired.get());
+        stats.put("totalSubscriptionsExpired", totalSubscriptionsExpired.get());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+}
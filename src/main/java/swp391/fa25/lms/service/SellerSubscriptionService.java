@@ -7,6 +7,7 @@ import org.springframework.stereotype.Service;
 import swp391.fa25.lms.model.SellerSubscription;
 import swp391.fa25.lms.repository.SellerSubscriptionRepository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -15,6 +16,7 @@ import java.time.LocalDateTime;
 public class SellerSubscriptionService {
 
     private final SellerSubscriptionRepository repo;
+    private final RevenueLedgerService revenueLedgerService;
 
     public Page<SellerSubscription> findForSeller(Long sellerId, Pageable pageable) {
         return repo.findByAccountAccountId(sellerId, pageable);
@@ -30,11 +32,9 @@ public class SellerSubscriptionService {
             Pageable pageable
     ) {
 
-        // xử lý seller
-        String sellerFilter = null;
-        if (seller != null && !seller.isBlank()) {
-            sellerFilter = seller.trim();
-        }
+        // xử lý seller (lọc theo tên bằng subquery trong query)
+        String sellerFilter = sellerFilter(seller);
+
         String packageNameFilter = null;
         if (packageName != null && !packageName.isBlank()) {
             packageNameFilter = packageName.trim();
@@ -46,7 +46,7 @@ public class SellerSubscriptionService {
             statusFilter = status;
         }
 
-        // xử lý fromDate
+        // xử lý fromDate (khoảng ngày so với ngày mua gói, giống sumRevenue)
         LocalDateTime fromDateTime = null;
         if (fromDate != null) {
             fromDateTime = fromDate.atStartOfDay();
@@ -75,7 +75,12 @@ public class SellerSubscriptionService {
     }
 
     // ====== TÍNH TỔNG DOANH THU ======
-    public Long sumRevenue(
+    /**
+     * from / to luôn so với ngày mua gói (cùng điều kiện với filter).
+     * Không lọc status: đọc bảng doanh thu theo ngày.
+     * Lọc status: cờ active đổi theo thời gian, bảng tổng hợp không giữ -> cộng trực tiếp trên subscription.
+     */
+    public BigDecimal sumRevenue(
             String seller,
             Long packageId,
             String status,
@@ -83,14 +88,15 @@ public class SellerSubscriptionService {
             LocalDate toDate
     ) {
 
-        String sellerFilter = null;
-        if (seller != null && !seller.isBlank()) {
-            sellerFilter = seller.trim();
-        }
+        String sellerFilter = sellerFilter(seller);
 
-        String statusFilter = null;
-        if (status != null && !status.isBlank()) {
-            statusFilter = status;
+        if (status == null || status.isBlank()) {
+            return revenueLedgerService.subscriptionRevenue(
+                    sellerFilter,
+                    packageId == null ? null : packageId.intValue(),
+                    fromDate,
+                    toDate
+            );
         }
 
         LocalDateTime fromDateTime = null;
@@ -103,12 +109,18 @@ public class SellerSubscriptionService {
             toDateTime = toDate.atTime(23, 59, 59);
         }
 
-        return repo.sumRevenue(
+        Number total = repo.sumRevenue(
                 sellerFilter,
                 packageId,
-                statusFilter,
+                status,
                 fromDateTime,
                 toDateTime
         );
+        return total == null ? BigDecimal.ZERO : BigDecimal.valueOf(total.doubleValue());
+    }
+
+    // null = không lọc seller
+    private static String sellerFilter(String seller) {
+        return seller == null || seller.isBlank() ? null : seller.trim();
     }
 }
@@ -0,0 +1,73 @@
+package swp391.fa25.lms.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import swp391.fa25.lms.model.CustomerOrder;
+import swp391.fa25.lms.model.License;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.repository.LicenseAccountRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cấp token (LoginMethod.TOKEN) từ pool của tool cho 1 order.
+ * - Khóa TOP N token còn trống, bỏ qua dòng transaction khác đang giữ (UPDLOCK + READPAST),
+ *   không load cả pool và các order song song không chờ / deadlock lẫn nhau
+ * - Gán order bằng 1 câu UPDATE có điều kiện (order IS NULL AND used = false)
+ * - Không đủ token -> IllegalStateException, transaction của caller rollback toàn bộ
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenPoolAllocator {
+
+    // Số lượt thử lại khi UPDATE không gán được đủ token (DB không hỗ trợ READPAST)
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final LicenseAccountRepository licenseAccountRepository;
+
+    /**
+     * Claim đúng quantity token còn trống của tool cho order.
+     * @return id các LicenseAccount đã được gán cho order
+     */
+    @Transactional
+    public List<Long> claim(Long toolId, License license, CustomerOrder order, int quantity) {
+        if (quantity <= 0) return List.of();
+        if (order == null || order.getOrderId() == null) {
+            throw new IllegalArgumentException("Order phải được lưu trước khi cấp token");
+        }
+
+        List<Long> claimed = new ArrayList<>(quantity);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && claimed.size() < quantity; attempt++) {
+            int need = quantity - claimed.size();
+
+            List<Long> batch = licenseAccountRepository.lockFreeTokens(toolId, PageRequest.of(0, need))
+                    .stream()
+                    .map(LicenseAccount::getLicenseAccountId)
+                    .toList();
+            if (batch.isEmpty()) break;
+
+            int updated = licenseAccountRepository.claimTokens(batch, order, license, LicenseAccount.Status.ACTIVE);
+            if (updated == batch.size()) {
+                claimed.addAll(batch);
+            } else if (updated > 0) {
+                // Một phần batch đã bị order khác lấy trước -> chỉ giữ những token thật sự gán cho order này
+                claimed.addAll(licenseAccountRepository.findIdsClaimedByOrder(order.getOrderId(), batch));
+            }
+        }
+
+        if (claimed.size() < quantity) {
+            throw new IllegalStateException(
+                    String.format("Không đủ token cho order. Cần %d token nhưng chỉ có %d token available",
+                            quantity, claimed.size())
+            );
+        }
+
+        log.debug("Claimed {} token(s) of tool {} for order {}", claimed.size(), toolId, order.getOrderId());
+        return claimed;
+    }
+}
@@ -1,49 +1,247 @@
 package swp391.fa25.lms.service;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import swp391.fa25.lms.model.*;
 import swp391.fa25.lms.repository.LicenseAccountRepository;
 import swp391.fa25.lms.repository.LicenseToolRepository;
+import swp391.fa25.lms.util.AfterCommit;
 
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Sinh / quản lý token 6 số cho tool LoginMethod.TOKEN.
+ * Giữ 1 BitSet (1.000.000 bit ~ 125KB) các giá trị token đã cấp, nạp từ DB lúc khởi động và cập nhật
+ * sau commit khi thêm / xóa token -> kiểm tra trùng và random giá trị trống không cần query DB.
+ * DB (unique constraint + findExistingTokens lúc lưu) vẫn là nguồn chuẩn khi chạy nhiều node.
+ */
+@Slf4j
 @Service
 @Transactional
 public class TokenService {
 
     @Autowired private LicenseAccountRepository licenseAccountRepository;
     @Autowired private LicenseToolRepository licenseRepository;
+    @Autowired private LicenseIndexService licenseIndexService;
+    @Autowired private LicenseCertificateService licenseCertificateService;
+
+    // Token là số 6 chữ số -> tối đa 1.000.000 giá trị
+    private static final int TOKEN_SPACE = 1_000_000;
+    // SQL Server giới hạn 2100 tham số / câu lệnh
+    private static final int IN_CHUNK = 2000;
+    // Còn ít hơn 10% giá trị trống (hoặc cần > 1/4 số trống) -> chọn từ free list thay vì random thử lại
+    private static final int LOW_SPACE_DIVISOR = 10;
+    private static final int FREE_LIST_RATIO = 4;
 
     private final Random random = new Random();
 
+    // ===== Bitmap token đã cấp =====
+    private final BitSet allocated = new BitSet(TOKEN_SPACE);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded = false;
+
     /** Random 6-digit token */
     public String randomToken() {
-        return String.format("%06d", random.nextInt(1_000_000));
+        return format(random.nextInt(TOKEN_SPACE));
     }
 
     /** Random unique token (not duplicate in session or DB) */
     public String randomUnique(Set<String> existed) {
-        String token;
-        do {
-            token = randomToken();
-        } while (existed.contains(token) || licenseAccountRepository.existsByToken(token));
-        return token;
+        return randomList(1, existed).get(0);
     }
 
-    /** Generate N tokens */
+    /**
+     * Generate N tokens không trùng nhau, không trùng existed và token đã cấp.
+     * Còn nhiều chỗ trống: random + tra bitmap; sắp đầy: xáo trộn 1 phần free list, không thử lại ngẫu nhiên.
+     */
     public List<String> randomList(int qty, Set<String> existed) {
-        List<String> result = new ArrayList<>();
-        for (int i = 0; i < qty; i++) {
-            String t = randomUnique(existed);
-            existed.add(t);
-            result.add(t);
+        if (qty <= 0) return new ArrayList<>();
+        ensureLoaded();
+
+        List<String> result = new ArrayList<>(qty);
+        lock.readLock().lock();
+        try {
+            int free = TOKEN_SPACE - allocated.cardinality();
+            if (qty > free - existed.size())
+                throw new IllegalArgumentException("Không đủ token 6 số trống cho số lượng " + qty);
+
+            if (free < TOKEN_SPACE / LOW_SPACE_DIVISOR || qty > free / FREE_LIST_RATIO) {
+                pickFromFreeList(qty, free, existed, result);
+            } else {
+                Set<Integer> picked = new HashSet<>(qty * 2);
+                while (result.size() < qty) {
+                    int v = random.nextInt(TOKEN_SPACE);
+                    if (allocated.get(v) || !picked.add(v)) continue;
+
+                    String t = format(v);
+                    if (existed.contains(t)) continue;
+                    result.add(t);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
         }
+
+        existed.addAll(result);
         return result;
     }
 
+    // Fisher-Yates từng phần trên danh sách giá trị trống (gọi trong read lock)
+    private void pickFromFreeList(int qty, int free, Set<String> existed, List<String> result) {
+        int[] freeList = new int[free];
+        int n = 0;
+        for (int v = allocated.nextClearBit(0); v < TOKEN_SPACE && n < free; v = allocated.nextClearBit(v + 1)) {
+            freeList[n++] = v;
+        }
+
+        for (int i = 0; i < n && result.size() < qty; i++) {
+            int j = i + random.nextInt(n - i);
+            int v = freeList[j];
+            freeList[j] = freeList[i];
+            freeList[i] = v;
+
+            String t = format(v);
+            if (!existed.contains(t)) result.add(t);
+        }
+    }
+
+    /** Token đã được cấp chưa (token 6 số tra bitmap, token tự đặt khác định dạng thì hỏi DB). */
+    public boolean isTokenTaken(String token) {
+        int v = toValue(token);
+        if (v < 0) return licenseAccountRepository.existsByToken(token);
+
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return allocated.get(v);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ================== SYNC BITMAP ==================
+
+    /** Đánh dấu token đã cấp, sau khi transaction hiện tại commit. */
+    public void onTokensAdded(Collection<String> tokens) {
+        List<String> copy = List.copyOf(tokens);
+        AfterCommit.run(() -> apply(copy, true));
+    }
+
+    /** Trả token về trạng thái trống, sau khi transaction hiện tại commit. */
+    public void onTokensRemoved(Collection<String> tokens) {
+        List<String> copy = List.copyOf(tokens);
+        AfterCommit.run(() -> apply(copy, false));
+    }
+
+    private void apply(Collection<String> tokens, boolean value) {
+        lock.writeLock().lock();
+        try {
+            for (String t : tokens) {
+                int v = toValue(t);
+                if (v >= 0) allocated.set(v, value);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Nạp lại bitmap từ License_Account.token (lúc khởi động). */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadAllocated() {
+        long start = System.currentTimeMillis();
+        BitSet fresh = new BitSet(TOKEN_SPACE);
+        try (Stream<String> tokens = licenseAccountRepository.streamAllTokens()) {
+            tokens.forEach(t -> {
+                int v = toValue(t);
+                if (v >= 0) fresh.set(v);
+            });
+        }
+
+        lock.writeLock().lock();
+        try {
+            allocated.clear();
+            allocated.or(fresh);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Token bitmap loaded: {} allocated in {} ms",
+                fresh.cardinality(), System.currentTimeMillis() - start);
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) loadAllocated();
+            }
+        }
+    }
+
+    private static String format(int value) {
+        return String.format("%06d", value);
+    }
+
+    // "000123" -> 123; không phải đúng 6 chữ số -> -1
+    private static int toValue(String token) {
+        if (token == null || token.length() != 6) return -1;
+        int v = 0;
+        for (int i = 0; i < 6; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    /** Các token trong tập đã có trong DB (query theo lô). */
+    @Transactional(readOnly = true)
+    public Set<String> findExistingTokens(Collection<String> tokens) {
+        Set<String> found = new HashSet<>();
+        List<String> list = new ArrayList<>(tokens);
+        for (int i = 0; i < list.size(); i += IN_CHUNK) {
+            found.addAll(licenseAccountRepository.findExistingTokens(
+                    list.subList(i, Math.min(i + IN_CHUNK, list.size()))));
+        }
+        return found;
+    }
+
+    /** token -> toolId đang sở hữu, chỉ với token đã có trong DB (query theo lô). */
+    @Transactional(readOnly = true)
+    public Map<String, Long> findTokenOwners(Collection<String> tokens) {
+        Map<String, Long> owners = new HashMap<>();
+        List<String> list = new ArrayList<>(tokens);
+        for (int i = 0; i < list.size(); i += IN_CHUNK) {
+            for (Object[] row : licenseAccountRepository.findTokenOwners(
+                    list.subList(i, Math.min(i + IN_CHUNK, list.size())))) {
+                owners.put((String) row[0], (Long) row[1]);
+            }
+        }
+        return owners;
+    }
+
+    /** Insert pool token cho license (saveAll -> JDBC batch, id lấy từ sequence). */
+    public void createTokens(License license, Collection<String> tokens) {
+        List<LicenseAccount> batch = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            LicenseAccount acc = new LicenseAccount();
+            acc.setLicense(license);
+            acc.setToken(token);
+            acc.setUsed(false);
+            acc.setStatus(LicenseAccount.Status.ACTIVE);
+            batch.add(acc);
+        }
+        licenseAccountRepository.saveAll(batch);
+        onTokensAdded(tokens);
+    }
+
     /** Update token list for EDIT TOOL (TOKEN login) */
     public void updateTokensForTool(Tool tool, List<String> newTokens) {
 
@@ -55,25 +253,28 @@ public class TokenService {
             throw new IllegalStateException("Tool has no license.");
 
         License primary = licenses.get(0);
+        Set<String> newSet = new LinkedHashSet<>(newTokens);
 
         // DELETE
-        for (LicenseAccount acc : old) {
-            if (!newTokens.contains(acc.getToken())) {
-                licenseAccountRepository.delete(acc);
-            }
+        List<LicenseAccount> removed = old.stream()
+                .filter(acc -> !newSet.contains(acc.getToken()))
+                .toList();
+        // Account đã kích hoạt bị xóa: thu hồi certificate còn hạn qua feed, không thì tool offline vẫn dùng tới exp
+        for (LicenseAccount acc : removed) {
+            if (acc.getCertificate() == null) continue;
+            acc.setStatus(LicenseAccount.Status.REVOKED);
+            licenseCertificateService.reissue(acc);
         }
+        // Ghi nhật ký đổi (cho node khác) trước khi xóa: sau khi xóa không còn dòng để ghi
+        licenseIndexService.refresh(removed.stream().map(LicenseAccount::getLicenseAccountId).toList());
+        for (int i = 0; i < removed.size(); i += IN_CHUNK) {
+            licenseAccountRepository.deleteAllInBatch(removed.subList(i, Math.min(i + IN_CHUNK, removed.size())));
+        }
+        onTokensRemoved(removed.stream().map(LicenseAccount::getToken).toList());
 
         // ADD NEW
-        for (String token : newTokens) {
-            if (oldSet.contains(token)) continue;
-
-            LicenseAccount acc = new LicenseAccount();
-            acc.setLicense(primary);
-            acc.setToken(token);
-            acc.setUsed(false);
-            acc.setStatus(LicenseAccount.Status.ACTIVE);
-            licenseAccountRepository.save(acc);
-        }
+        newSet.removeAll(oldSet);
+        createTokens(primary, newSet);
     }
 }
 
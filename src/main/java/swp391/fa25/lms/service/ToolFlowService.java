@@ -123,17 +123,16 @@ public class ToolFlowService {
                 .findByTool_ToolId(saved.getToolId())
                 .get(0);
 
-        for (String t : tokens) {
-            if (licenseAccountRepository.existsByToken(t))
-                throw new IllegalArgumentException("Token already exists: " + t);
-
-            LicenseAccount acc = new LicenseAccount();
-            acc.setLicense(primary);
-            acc.setToken(t);
-            acc.setUsed(false);
-            acc.setStatus(LicenseAccount.Status.ACTIVE);
-            licenseAccountRepository.save(acc);
-        }
+        // Token trùng trong danh sách hoặc đã có trong DB -> kiểm tra 1 lượt theo lô
+        Set<String> unique = new LinkedHashSet<>(tokens);
+        if (unique.size() < tokens.size())
+            throw new IllegalArgumentException("Duplicate token in list.");
+
+        Set<String> existing = tokenService.findExistingTokens(unique);
+        if (!existing.isEmpty())
+            throw new IllegalArgumentException("Token already exists: " + existing.iterator().next());
+
+        tokenService.createTokens(primary, unique);
 
         //  CỰC KỲ QUAN TRỌNG
         session.removeAttribute(SESSION_PENDING_TOOL);
@@ -188,11 +187,10 @@ public class ToolFlowService {
         tool.setNote(pending.getTool().getNote());
         tool.setCategory(pending.getCategory());
 
-        for (String t : tokens) {
-            LicenseAccount acc = licenseAccountRepository.findByToken(t);
-            if (acc != null &&
-                    !Objects.equals(acc.getLicense().getTool().getToolId(), tool.getToolId())) {
-                throw new IllegalStateException("Token belongs to another tool: " + t);
+        Map<String, Long> owners = tokenService.findTokenOwners(new HashSet<>(tokens));
+        for (Map.Entry<String, Long> e : owners.entrySet()) {
+            if (!Objects.equals(e.getValue(), tool.getToolId())) {
+                throw new IllegalStateException("Token belongs to another tool: " + e.getKey());
             }
         }
 
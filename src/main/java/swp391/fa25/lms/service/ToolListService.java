@@ -1,6 +1,9 @@
 package swp391.fa25.lms.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import swp391.fa25.lms.model.*;
 import swp391.fa25.lms.repository.*;
@@ -23,10 +26,19 @@ public class ToolListService {
     private CategoryRepository categoryRepository;
 
     @Autowired
-    private FeedbackRepository feedbackRepository;
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private TypeaheadService typeaheadService;
+
+    @Autowired
+    private DashboardRollupService dashboardRollupService;
 
     // ======================= USER VIEW (PAGINATED) =======================
-    public List<Tool> getToolsForUserPaginated(String keyword,
+    public Page<Tool> getToolsForUserPaginated(String keyword,
                                                Long categoryId,
                                                Long authorId,
                                                Tool.LoginMethod loginMethod,
@@ -36,52 +48,23 @@ public class ToolListService {
                                                int page,
                                                int size) {
 
-        List<Tool> base = toolListRepository.findByStatus(Tool.Status.PUBLISHED);
-        enrichToolPrices(base);
-        enrichToolRatings(base);
-
-        List<Tool> filtered = filterTools(
-                base,
-                keyword,
-                categoryId,
+        return searchTools(
                 authorId,
-                loginMethod,
-                null,
-                priceMin,
-                priceMax,
-                false
-        );
-
-        List<Tool> sorted = sortTools(filtered, sort);
-        return paginate(sorted, page, size);
-    }
-
-    public int countToolsForUser(String keyword,
-                                 Long categoryId,
-                                 Long authorId,
-                                 Tool.LoginMethod loginMethod,
-                                 Integer priceMin,
-                                 Integer priceMax) {
-
-        List<Tool> base = toolListRepository.findByStatus(Tool.Status.PUBLISHED);
-        enrichToolPrices(base);
-
-        return filterTools(
-                base,
+                Tool.Status.PUBLISHED,
                 keyword,
                 categoryId,
-                authorId,
                 loginMethod,
-                null,
                 priceMin,
                 priceMax,
-                false
-        ).size();
+                sort,
+                page,
+                size
+        );
     }
 
 
     // ======================= SELLER VIEW (PAGINATED) =======================
-    public List<Tool> getToolsForSellerPaginated(Long sellerId,
+    public Page<Tool> getToolsForSellerPaginated(Long sellerId,
                                                  String keyword,
                                                  Long categoryId,
                                                  Tool.LoginMethod loginMethod,
@@ -92,177 +75,72 @@ public class ToolListService {
                                                  int page,
                                                  int size) {
 
-        List<Tool> base = toolListRepository.findBySeller_AccountId(sellerId);
-        enrichToolPrices(base);
-        enrichToolRatings(base);
-
-        List<Tool> filtered = filterTools(
-                base,
-                keyword,
-                categoryId,
-                null,
-                loginMethod,
+        return searchTools(
+                sellerId,
                 status,
-                priceMin,
-                priceMax,
-                true
-        );
-
-        List<Tool> sorted = sortTools(filtered, sort);
-        return paginate(sorted, page, size);
-    }
-
-    public int countToolsForSeller(Long sellerId,
-                                   String keyword,
-                                   Long categoryId,
-                                   Tool.LoginMethod loginMethod,
-                                   Tool.Status status,
-                                   Integer priceMin,
-                                   Integer priceMax) {
-
-        List<Tool> base = toolListRepository.findBySeller_AccountId(sellerId);
-        enrichToolPrices(base);
-
-        return filterTools(
-                base,
                 keyword,
                 categoryId,
-                null,
                 loginMethod,
-                status,
                 priceMin,
                 priceMax,
-                true
-        ).size();
-    }
-
-
-    // ======================= PAGINATION =======================
-    private List<Tool> paginate(List<Tool> tools, int page, int size) {
-        int from = (page - 1) * size;
-        int to = Math.min(from + size, tools.size());
-        if (from >= tools.size()) return Collections.emptyList();
-        return tools.subList(from, to);
-    }
-
-
-    // ======================= ENRICH PRICE =======================
-    private void enrichToolPrices(List<Tool> tools) {
-        if (tools == null) return;
-
-        for (Tool t : tools) {
-            List<License> licenses = t.getLicenses();
-            if (licenses == null || licenses.isEmpty()) {
-                t.setMinPrice(null);
-                t.setMaxPrice(null);
-                continue;
-            }
-
-            Double min = null;
-            Double max = null;
-
-            for (License lic : licenses) {
-                if (lic == null || lic.getPrice() == null) continue;
-                double p = lic.getPrice();
-
-                if (min == null || p < min) min = p;
-                if (max == null || p > max) max = p;
-            }
-
-            t.setMinPrice(min == null ? null : BigDecimal.valueOf(min));
-            t.setMaxPrice(max == null ? null : BigDecimal.valueOf(max));
-        }
+                sort,
+                page,
+                size
+        );
     }
 
-    // ======================= ENRICH RATING =======================
-    private void enrichToolRatings(List<Tool> tools) {
-        if (tools == null) return;
-
-        for (Tool tool : tools) {
-            // Tính trung bình rating từ feedback có status PUBLISHED
-            Double avgRating = feedbackRepository.avgRatingByToolAndStatus(tool, Feedback.Status.PUBLISHED);
-            Long totalReviews = feedbackRepository.countByToolAndStatus(tool, Feedback.Status.PUBLISHED);
-
-            tool.setAverageRating(avgRating != null ? avgRating : 0.0);
-            tool.setTotalReviews(totalReviews);
-        }
-    }
 
-    // ======================= FILTER CORE =======================
-    private List<Tool> filterTools(List<Tool> tools,
+    // ======================= QUERY CORE (FILTER + SORT + PAGE TRONG DB) =======================
+    private Page<Tool> searchTools(Long sellerId,
+                                   Tool.Status status,
                                    String keyword,
                                    Long categoryId,
-                                   Long authorId,
                                    Tool.LoginMethod loginMethod,
-                                   Tool.Status status,
                                    Integer priceMin,
                                    Integer priceMax,
-                                   boolean isSellerView) {
-
-        String kw = (keyword == null) ? null : keyword.toLowerCase(Locale.ROOT).trim();
-
-        return tools.stream()
-
-                .filter(t -> kw == null || kw.isBlank() ||
-                        (t.getToolName() != null && t.getToolName().toLowerCase().contains(kw)) ||
-                        (t.getDescription() != null && t.getDescription().toLowerCase().contains(kw)))
-
-                .filter(t -> categoryId == null ||
-                        (t.getCategory() != null && Objects.equals(t.getCategory().getCategoryId(), categoryId)))
-
-                .filter(t -> isSellerView || authorId == null ||
-                        (t.getSeller() != null && Objects.equals(t.getSeller().getAccountId(), authorId)))
-
-                .filter(t -> loginMethod == null || t.getLoginMethod() == loginMethod)
+                                   String sort,
+                                   int page,
+                                   int size) {
+
+        Pageable pageable = PageRequest.of(Math.max(page - 1, 0), Math.max(size, 1));
+
+        BigDecimal min = priceMin == null ? null : BigDecimal.valueOf(priceMin);
+        BigDecimal max = priceMax == null ? null : BigDecimal.valueOf(priceMax);
+        String sortKey = sort == null ? "" : sort;
+
+        // Keyword -> tra chỉ mục full-text, DB chỉ lọc theo danh sách id trúng
+        boolean filterByIds = keyword != null && !keyword.isBlank();
+        List<Long> toolIds = List.of(-1L);
+        if (filterByIds) {
+            toolIds = searchIndexService.searchToolIds(keyword);
+            if (toolIds.isEmpty()) return Page.empty(pageable);
+
+            // Quá nhiều hit cho IN -> lấy id đã lọc + sắp xếp từ DB rồi giao với tập hit
+            if (toolIds.size() > SearchIndexService.ID_FILTER_LIMIT) {
+                List<Long> ordered = toolListRepository.searchToolListIds(
+                        sellerId, status, categoryId, loginMethod, min, max, sortKey);
+                return SearchIndexService.pageOf(ordered, new HashSet<>(toolIds), pageable,
+                        toolListRepository::findAllById, Tool::getToolId);
+            }
+        }
 
-                .filter(t -> status == null || t.getStatus() == status)
+        Page<Tool> result = toolListRepository.searchToolList(
+                sellerId,
+                status,
+                categoryId,
+                loginMethod,
+                filterByIds,
+                toolIds,
+                min,
+                max,
+                sortKey,
+                pageable
+        );
 
-                .filter(t -> {
-                    if (priceMin == null && priceMax == null) return true;
-                    BigDecimal minPrice = t.getMinPrice();
-                    if (minPrice == null) return false;
-                    double p = minPrice.doubleValue();
-                    return (priceMin == null || p >= priceMin) &&
-                            (priceMax == null || p <= priceMax);
-                })
-                .collect(Collectors.toList());
+        // minPrice/maxPrice/rating đọc thẳng từ cột summary của Tool
+        return result;
     }
 
-    // ======================= SORT =======================
-    private List<Tool> sortTools(List<Tool> tools, String sort) {
-        if (sort == null || sort.isBlank()) return tools;
-
-        Comparator<Tool> comparator = null;
-
-        switch (sort) {
-            case "date_desc":
-                comparator = Comparator.comparing(
-                        Tool::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())
-                ).reversed();
-                break;
-
-            case "date_asc":
-                comparator = Comparator.comparing(
-                        Tool::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())
-                );
-                break;
-
-            case "price_asc":
-                comparator = Comparator.comparing(
-                        t -> t.getMinPrice() == null ? 0.0 : t.getMinPrice().doubleValue()
-                );
-                break;
-
-            case "price_desc":
-                comparator = Comparator.comparing(
-                        (Tool t) -> t.getMinPrice() == null ? 0.0 : t.getMinPrice().doubleValue()
-                ).reversed();
-                break;
-        }
-
-        if (comparator == null) return tools;
-        return tools.stream().sorted(comparator).collect(Collectors.toList());
-    }
 
     // ======================= DYNAMIC FILTER (LẤY FULL DB) =======================
     public List<Category> getAllCategoriesFromDB() {
@@ -301,13 +179,17 @@ public class ToolListService {
         if (tool.getQuantity() == null) tool.setQuantity(0);
         if (tool.getAvailableQuantity() == null) tool.setAvailableQuantity(tool.getQuantity());
 
-        return toolListRepository.save(tool);
+        Tool saved = toolListRepository.save(tool);
+        dashboardRollupService.onToolCreated(saved);
+        searchIndexService.indexTool(saved);
+        return saved;
     }
 
     public Tool toggleStatus(Long toolId, Long sellerId) {
         Tool tool = toolListRepository.findByToolIdAndSeller_AccountId(toolId, sellerId)
                 .orElseThrow(() -> new IllegalArgumentException("Tool không tồn tại hoặc không thuộc seller"));
 
+        Tool.Status before = tool.getStatus();
         if (tool.getStatus() == Tool.Status.PUBLISHED) {
             tool.setStatus(Tool.Status.DEACTIVATED);
         } else if (tool.getStatus() == Tool.Status.DEACTIVATED || tool.getStatus() == Tool.Status.PENDING) {
@@ -315,7 +197,17 @@ public class ToolListService {
         }
 
         tool.setUpdatedAt(LocalDateTime.now());
-        return toolListRepository.save(tool);
+        Tool saved = toolListRepository.save(tool);
+        dashboardRollupService.onToolStatusChanged(saved, before);
+
+        if (saved.getStatus() == Tool.Status.PUBLISHED) {
+            catalogSnapshotService.invalidate();
+            typeaheadService.onToolPublished(saved);
+        } else {
+            catalogSnapshotService.evict(saved.getToolId());
+            typeaheadService.onToolRemoved(saved.getToolId());
+        }
+        return saved;
     }
 
     public Tool updateTool(Tool updatedTool, Long sellerId) {
@@ -332,9 +224,15 @@ public class ToolListService {
         existing.setQuantity(updatedTool.getQuantity());
         existing.setAvailableQuantity(updatedTool.getAvailableQuantity());
 
+        Tool.Status before = existing.getStatus();
         existing.setStatus(Tool.Status.PENDING);
         existing.setUpdatedAt(LocalDateTime.now());
 
-        return toolListRepository.save(existing);
+        Tool saved = toolListRepository.save(existing);
+        dashboardRollupService.onToolStatusChanged(saved, before);
+        catalogSnapshotService.evict(saved.getToolId());
+        typeaheadService.onToolRemoved(saved.getToolId());
+        searchIndexService.indexTool(saved);
+        return saved;
     }
 }
@@ -23,6 +23,9 @@ public class ToolReportService {
     @Autowired
     private AccountRepository accountRepo;
 
+    @Autowired
+    private DashboardRollupService dashboardRollupService;
+
 
     //User
     // User gửi report
@@ -39,6 +42,7 @@ public class ToolReportService {
 
         ToolReport report = new ToolReport(reporter, tool, reason, description);
         reportRepo.save(report);
+        dashboardRollupService.onReportCreated();
     }
 
     // User xem danh sách report của mình
@@ -54,8 +58,10 @@ public class ToolReportService {
             throw new RuntimeException("No permission");
         }
 
+        ToolReport.Status before = report.getStatus();
         report.setStatus(ToolReport.Status.AGREED);
         reportRepo.save(report);
+        dashboardRollupService.onReportStatusChanged(before, report.getStatus());
     }
 
     // User không đồng ý kết quả
@@ -66,8 +72,10 @@ public class ToolReportService {
             throw new RuntimeException("No permission");
         }
 
+        ToolReport.Status before = report.getStatus();
         report.setStatus(ToolReport.Status.DISAGREED);
         reportRepo.save(report);
+        dashboardRollupService.onReportStatusChanged(before, report.getStatus());
     }
 
     //Manager/Mod
@@ -79,15 +87,19 @@ public class ToolReportService {
     // Manager duyệt report
     public void approveReport(Long reportId) {
         ToolReport report = getReportDetail(reportId);
+        ToolReport.Status before = report.getStatus();
         report.setStatus(ToolReport.Status.APPROVED);
         reportRepo.save(report);
+        dashboardRollupService.onReportStatusChanged(before, report.getStatus());
     }
 
     // Manager từ chối report
     public void rejectReport(Long reportId) {
         ToolReport report = getReportDetail(reportId);
+        ToolReport.Status before = report.getStatus();
         report.setStatus(ToolReport.Status.REJECTED);
         reportRepo.save(report);
+        dashboardRollupService.onReportStatusChanged(before, report.getStatus());
     }
 
 
@@ -105,8 +117,10 @@ public class ToolReportService {
             throw new RuntimeException("No permission");
         }
 
+        ToolReport.Status before = report.getStatus();
         report.setStatus(ToolReport.Status.PROCESSING);
         reportRepo.save(report);
+        dashboardRollupService.onReportStatusChanged(before, report.getStatus());
     }
 
     //Common
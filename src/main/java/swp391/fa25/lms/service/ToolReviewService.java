@@ -20,6 +20,9 @@ public class ToolReviewService {
 
     private final FileStorageService fileStorageService;
     private final ToolRepository toolRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final TypeaheadService typeaheadService;
+    private final DashboardRollupService dashboardRollupService;
 
     // ========================= LIST =========================
     public Page<Tool> getModeratorPendingTools(Long sellerId, Long categoryId, String keyword,
@@ -47,22 +50,26 @@ public class ToolReviewService {
     public void moderatorApprove(Long toolId, Account moderatorAccount) {
         Tool tool = toolRepository.findByToolIdAndStatus(toolId, Tool.Status.PENDING)
                 .orElseThrow(() -> new RuntimeException("Tool not found or not PENDING"));
+        Tool.Status before = tool.getStatus();
         tool.setStatus(Tool.Status.APPROVED);
         tool.setReviewedBy(moderatorAccount.getRole().getRoleName().toString());
         tool.setUpdatedAt(LocalDateTime.now());
         tool.setNote(null); // clear old note if you want
         toolRepository.save(tool);
+        dashboardRollupService.onToolStatusChanged(tool, before);
     }
 
     @Transactional
     public void moderatorReject(Long toolId, String reason, Account moderatorAccount) {
         Tool tool = toolRepository.findByToolIdAndStatus(toolId, Tool.Status.PENDING)
                 .orElseThrow(() -> new RuntimeException("Tool not found or not PENDING"));
+        Tool.Status before = tool.getStatus();
         tool.setStatus(Tool.Status.REJECTED);
         tool.setReviewedBy(moderatorAccount.getRole().getRoleName().toString());
         tool.setNote(reason);
         tool.setUpdatedAt(LocalDateTime.now());
         toolRepository.save(tool);
+        dashboardRollupService.onToolStatusChanged(tool, before);
     }
 
     @Transactional
@@ -72,11 +79,15 @@ public class ToolReviewService {
         if (tool.getAvailableQuantity() == null) {
             tool.setAvailableQuantity(tool.getQuantity());
         }
+        Tool.Status before = tool.getStatus();
         tool.setStatus(Tool.Status.PUBLISHED);
         tool.setAvailableQuantity(tool.getQuantity());
         tool.setReviewedBy(managerAccount.getRole().getRoleName().toString());
         tool.setUpdatedAt(LocalDateTime.now());
         toolRepository.save(tool);
+        dashboardRollupService.onToolStatusChanged(tool, before);
+        catalogSnapshotService.invalidate();
+        typeaheadService.onToolPublished(tool);
     }
 
     // Manager set pending again (nếu muốn trả về mod)
@@ -84,22 +95,26 @@ public class ToolReviewService {
     public void managerSetPending(Long toolId, String note, Account managerAccount) {
         Tool tool = toolRepository.findByToolIdAndStatus(toolId, Tool.Status.APPROVED)
                 .orElseThrow(() -> new RuntimeException("Tool not found or not APPROVED"));
+        Tool.Status before = tool.getStatus();
         tool.setStatus(Tool.Status.PENDING);
         tool.setReviewedBy(managerAccount.getRole().getRoleName().toString());
         tool.setNote(note);
         tool.setUpdatedAt(LocalDateTime.now());
         toolRepository.save(tool);
+        dashboardRollupService.onToolStatusChanged(tool, before);
     }
 
     @Transactional
     public void managerReject(Long toolId, String note, Account managerAccount) {
         Tool tool = toolRepository.findByToolIdAndStatus(toolId, Tool.Status.APPROVED)
                 .orElseThrow(() -> new RuntimeException("Tool not found or not APPROVED"));
+        Tool.Status before = tool.getStatus();
         tool.setStatus(Tool.Status.REJECTED);
         tool.setReviewedBy(managerAccount.getRole().getRoleName().toString());
         tool.setNote(note);
         tool.setUpdatedAt(LocalDateTime.now());
         toolRepository.save(tool);
+        dashboardRollupService.onToolStatusChanged(tool, before);
     }
 
     public void modUploadWrappedFile(
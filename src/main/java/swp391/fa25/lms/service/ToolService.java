@@ -1,9 +1,11 @@
 package swp391.fa25.lms.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import swp391.fa25.lms.model.*;
@@ -12,6 +14,7 @@ import swp391.fa25.lms.repository.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -23,7 +26,14 @@ public class ToolService {
     @Autowired private ToolRepository toolRepo;
     @Autowired private CategoryRepository categoryRepo;
     @Autowired private LicenseToolRepository licenseRepo;
-    @Autowired private FeedbackRepository feedbackRepo;
+    @Autowired private ToolSummaryService toolSummaryService;
+    @Autowired private CatalogSnapshotService catalogSnapshotService;
+    @Autowired private SearchIndexService searchIndexService;
+    @Autowired private TypeaheadService typeaheadService;
+    @Autowired private DashboardRollupService dashboardRollupService;
+
+    @Value("${app.catalog.snapshot.enabled:true}")
+    private boolean catalogSnapshotEnabled;
     @Autowired private FavoriteService favoriteService;
     @Autowired private LicenseAccountRepository licenseAccountRepository;
 
@@ -53,7 +63,10 @@ public class ToolService {
         tool.setStatus(Tool.Status.PENDING);
         tool.setCreatedAt(LocalDateTime.now());
         tool.setUpdatedAt(LocalDateTime.now());
-        return toolRepo.save(tool);
+        Tool saved = toolRepo.save(tool);
+        dashboardRollupService.onToolCreated(saved);
+        searchIndexService.indexTool(saved);
+        return saved;
     }
 
     public void createLicensesForTool(Tool tool, List<License> list) {
@@ -62,6 +75,9 @@ public class ToolService {
             l.setCreatedAt(LocalDateTime.now());
             licenseRepo.save(l);
         }
+
+        toolSummaryService.applyPriceSummary(tool, list);
+        toolRepo.save(tool);
     }
 
     // ========== Update Tool (USER_PASSWORD Mode) ==========
@@ -80,6 +96,7 @@ public class ToolService {
         tool.setDescription(newData.getDescription());
         tool.setNote(newData.getNote());
         tool.setUpdatedAt(LocalDateTime.now());
+        Tool.Status before = tool.getStatus();
         tool.setStatus(Tool.Status.PENDING);
         tool.setQuantity(newData.getQuantity());
         if (tool.getLoginMethod() == Tool.LoginMethod.USER_PASSWORD) {
@@ -135,13 +152,20 @@ public class ToolService {
                     licenseRepo.delete(old.get(i));
                 }
             }
+
+            toolSummaryService.applyPriceSummary(tool, old.subList(0, licenseDays.size()));
         }
 
         toolRepo.save(tool);
+        dashboardRollupService.onToolStatusChanged(tool, before);
+        catalogSnapshotService.evict(id);
+        typeaheadService.onToolRemoved(id);
+        searchIndexService.indexTool(tool);
     }
 
     public void updateQuantityAndLicenses(Long toolId, int qty, List<License> newLic) {
         Tool tool = getToolById(toolId);
+        Tool.Status before = tool.getStatus();
 
         // ✅ TOKEN EDIT KHÔNG ĐƯỢC ĐỤNG LICENSE
         if (newLic == null || newLic.isEmpty()) {
@@ -150,6 +174,9 @@ public class ToolService {
             tool.setStatus(Tool.Status.PENDING);
             tool.setUpdatedAt(LocalDateTime.now());
             toolRepo.save(tool);
+            dashboardRollupService.onToolStatusChanged(tool, before);
+            catalogSnapshotService.evict(toolId);
+            typeaheadService.onToolRemoved(toolId);
             return;
         }
 
@@ -178,105 +205,100 @@ public class ToolService {
             }
         }
 
+        toolSummaryService.applyPriceSummary(tool, newLic);
+
         tool.setQuantity(qty);
         tool.setAvailableQuantity(0);
         tool.setStatus(Tool.Status.PENDING);
         tool.setUpdatedAt(LocalDateTime.now());
         toolRepo.save(tool);
+        dashboardRollupService.onToolStatusChanged(tool, before);
+        catalogSnapshotService.evict(toolId);
+        typeaheadService.onToolRemoved(toolId);
     }
-    // ================== SEARCH + FILTER (giữ nguyên, chỉ đổi cách tính avg/count) ==================
+    // ================== SEARCH + FILTER ==================
+    // Mặc định đọc từ catalog snapshot trong bộ nhớ; tắt app.catalog.snapshot.enabled để query thẳng DB
     public Page<Tool> searchAndFilterTools(String keyword, Long categoryId, String dateFilter,
                                            String priceFilter, Integer ratingFilter,
                                            Account account, int page, int size) {
 
-        List<Tool> tools = toolRepo.findAllPublishedAndSellerActive();
+        Page<Tool> result = catalogSnapshotEnabled
+                ? catalogSnapshotService.search(keyword, categoryId, dateFilter, priceFilter, ratingFilter, page, size)
+                : searchCatalogFromDb(keyword, categoryId, dateFilter, priceFilter, ratingFilter, page, size);
 
-//        List<Tool> tools = toolRepo.findAll();
-        // Search keyword (tool name hoặc seller name)
-        if (keyword != null && !keyword.isEmpty()) {
-            String kwLower = keyword.toLowerCase();
-            tools = tools.stream()
-                    .filter(t -> t.getToolName().toLowerCase().contains(kwLower)
-                            || t.getSeller().getFullName().toLowerCase().contains(kwLower))
-                    .toList();
+        // isFavorite
+        if (account != null) {
+            Set<Long> favIds = favoriteService.getFavoriteToolIds(account);
+            result.forEach(t -> t.setIsFavorite(favIds.contains(t.getToolId())));
+        } else {
+            result.forEach(t -> t.setIsFavorite(false));
         }
 
-        // Filter theo category
-        if (categoryId != null && categoryId > 0) {
-            tools = tools.stream()
-                    .filter(t -> t.getCategory() != null && t.getCategory().getCategoryId().equals(categoryId))
-                    .toList();
-        }
+        return result;
+    }
+
+    // Lọc giá/rating bằng cột summary trong DB
+    private Page<Tool> searchCatalogFromDb(String keyword, Long categoryId, String dateFilter,
+                                           String priceFilter, Integer ratingFilter,
+                                           int page, int size) {
 
-        // Filter theo ngày đăng
-        if (dateFilter != null && !dateFilter.isEmpty()) {
+        // Filter theo ngày đăng: "1" = mới nhất (chỉ sắp xếp), "2" = 30 ngày, "3" = 3 tháng
+        LocalDateTime createdAfter = null;
+        Sort sort = Sort.by("toolId").ascending();
+        if (dateFilter != null) {
             LocalDateTime now = LocalDateTime.now();
             switch (dateFilter) {
-                case "1" -> tools = tools.stream().sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt())).toList(); // mới nhất
-                case "2" -> tools = tools.stream().filter(t -> t.getCreatedAt().isAfter(now.minusDays(30))).toList();
-                case "3" -> tools = tools.stream().filter(t -> t.getCreatedAt().isAfter(now.minusMonths(3))).toList();
+                case "1" -> sort = Sort.by("createdAt").descending();
+                case "2" -> createdAfter = now.minusDays(30);
+                case "3" -> createdAfter = now.minusMonths(3);
             }
         }
 
-        // Tính min/max price + avg rating + total reviews (CHỈ tính feedback PUBLISHED hoặc NULL cho tương thích cũ)
-        tools.forEach(tool -> {
-            // Giá
-            if (tool.getLicenses() != null && !tool.getLicenses().isEmpty()) {
-                BigDecimal min = tool.getLicenses().stream()
-                        .map(l -> BigDecimal.valueOf(l.getPrice()))
-                        .min(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-                BigDecimal max = tool.getLicenses().stream()
-                        .map(l -> BigDecimal.valueOf(l.getPrice()))
-                        .max(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-                tool.setMinPrice(min);
-                tool.setMaxPrice(max);
-            } else {
-                tool.setMinPrice(BigDecimal.ZERO);
-                tool.setMaxPrice(BigDecimal.ZERO);
+        // Filter theo price (so với giá license thấp nhất)
+        BigDecimal priceFrom = null, priceAbove = null, priceBelow = null, priceUpTo = null;
+        if (priceFilter != null) {
+            switch (priceFilter) {
+                case "under100k" -> priceBelow = BigDecimal.valueOf(100_000);
+                case "100k-500k" -> {
+                    priceFrom = BigDecimal.valueOf(100_000);
+                    priceUpTo = BigDecimal.valueOf(500_000);
+                }
+                case "500k-1m" -> {
+                    priceAbove = BigDecimal.valueOf(500_000);
+                    priceUpTo = BigDecimal.valueOf(1_000_000);
+                }
+                case "above1m" -> priceAbove = BigDecimal.valueOf(1_000_000);
             }
-
-            // Rating & total CHỈ tính PUBLISHED (hoặc status NULL)
-            Double avg = feedbackRepo.avgRatingByToolAndStatus(tool, Feedback.Status.PUBLISHED);
-            Long total = feedbackRepo.countByToolAndStatus(tool, Feedback.Status.PUBLISHED);
-            tool.setAverageRating(avg != null ? avg : 0.0);
-            tool.setTotalReviews(total != null ? total : 0L);
-        });
-
-        // Filter theo price
-        if (priceFilter != null && !priceFilter.equals("all")) {
-            tools = tools.stream().filter(t -> {
-                BigDecimal min = t.getMinPrice() != null ? t.getMinPrice() : BigDecimal.ZERO;
-                return switch (priceFilter) {
-                    case "under100k" -> min.compareTo(BigDecimal.valueOf(100_000)) < 0;
-                    case "100k-500k" -> min.compareTo(BigDecimal.valueOf(100_000)) >= 0
-                            && min.compareTo(BigDecimal.valueOf(500_000)) <= 0;
-                    case "500k-1m" -> min.compareTo(BigDecimal.valueOf(500_000)) > 0
-                            && min.compareTo(BigDecimal.valueOf(1_000_000)) <= 0;
-                    case "above1m" -> min.compareTo(BigDecimal.valueOf(1_000_000)) > 0;
-                    default -> true;
-                };
-            }).toList();
         }
 
-        // Filter theo rating
-        if (ratingFilter != null && ratingFilter > 0) {
-            tools = tools.stream().filter(t -> t.getAverageRating() >= ratingFilter).toList();
-        }
-
-        // isFavorite
-        if (account != null) {
-            Set<Long> favIds = favoriteService.getFavoriteToolIds(account);
-            tools.forEach(t -> t.setIsFavorite(favIds.contains(t.getToolId())));
-        } else {
-            tools.forEach(t -> t.setIsFavorite(false));
+        Long minRating = (ratingFilter != null && ratingFilter > 0) ? ratingFilter.longValue() : null;
+        Long category = (categoryId != null && categoryId > 0) ? categoryId : null;
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        // Keyword -> tra chỉ mục full-text, DB chỉ lọc theo danh sách id trúng
+        boolean filterByIds = keyword != null && !keyword.isBlank();
+        List<Long> toolIds = List.of(-1L);
+        if (filterByIds) {
+            toolIds = searchIndexService.searchToolIds(keyword);
+            if (toolIds.isEmpty()) return Page.empty(pageable);
+
+            // Quá nhiều hit cho IN -> lấy id đã lọc + sắp xếp từ DB rồi giao với tập hit
+            if (toolIds.size() > SearchIndexService.ID_FILTER_LIMIT) {
+                List<Long> ordered = toolRepo.searchPublishedCatalogIds(
+                        category, createdAfter,
+                        priceFrom, priceAbove, priceBelow, priceUpTo,
+                        minRating, sort);
+                return SearchIndexService.pageOf(ordered, new HashSet<>(toolIds), pageable,
+                        toolRepo::findAllById, Tool::getToolId);
+            }
         }
 
-        // Pagination
-        int start = page * size;
-        int end = Math.min(start + size, tools.size());
-        List<Tool> pagedList = tools.subList(Math.min(start, tools.size()), end);
-
-        return new PageImpl<>(pagedList, PageRequest.of(page, size), tools.size());
+        return toolRepo.searchPublishedCatalog(
+                filterByIds, toolIds, category, createdAfter,
+                priceFrom, priceAbove, priceBelow, priceUpTo,
+                minRating,
+                pageable
+        );
     }
 // ================== TOOL ==================
     /** Lấy tool theo id, status = PUBLISHED */
@@ -0,0 +1,152 @@
+package swp391.fa25.lms.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import swp391.fa25.lms.model.Feedback;
+import swp391.fa25.lms.model.License;
+import swp391.fa25.lms.model.Tool;
+import swp391.fa25.lms.repository.FeedbackRepository;
+import swp391.fa25.lms.repository.LicenseToolRepository;
+import swp391.fa25.lms.repository.ToolRepository;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Duy trì các cột tổng hợp trên Tool (min/max price, review_count, rating_sum, unreplied_feedback_count)
+ * để filter/sort giá và rating chạy được bằng predicate SQL.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ToolSummaryService {
+
+    private final ToolRepository toolRepo;
+    private final LicenseToolRepository licenseRepo;
+    private final FeedbackRepository feedbackRepo;
+    private final CatalogSnapshotService catalogSnapshotService;
+
+    // ================== PRICE ==================
+
+    /** Tính lại min/max price của tool từ danh sách license hiện tại (chưa save tool). */
+    public void applyPriceSummary(Tool tool, List<License> licenses) {
+        if (tool == null) return;
+
+        BigDecimal min = null;
+        BigDecimal max = null;
+        if (licenses != null) {
+            for (License l : licenses) {
+                if (l == null || l.getPrice() == null) continue;
+                BigDecimal p = BigDecimal.valueOf(l.getPrice());
+                if (min == null || p.compareTo(min) < 0) min = p;
+                if (max == null || p.compareTo(max) > 0) max = p;
+            }
+        }
+        tool.setMinPrice(min);
+        tool.setMaxPrice(max);
+    }
+
+    // ================== RATING ==================
+
+    /**
+     * Cập nhật review_count / rating_sum khi một feedback đổi rating hoặc status.
+     * Chỉ feedback PUBLISHED được tính; update atomic trên DB nên không mất cập nhật khi ghi đồng thời.
+     */
+    @Transactional
+    public void onFeedbackChanged(Long toolId,
+                                  Feedback.Status oldStatus, Integer oldRating,
+                                  Feedback.Status newStatus, Integer newRating) {
+        if (toolId == null) return;
+
+        long countDelta = 0;
+        long sumDelta = 0;
+        if (oldStatus == Feedback.Status.PUBLISHED && oldRating != null) {
+            countDelta--;
+            sumDelta -= oldRating;
+        }
+        if (newStatus == Feedback.Status.PUBLISHED && newRating != null) {
+            countDelta++;
+            sumDelta += newRating;
+        }
+        if (countDelta == 0 && sumDelta == 0) return;
+
+        toolRepo.adjustRatingSummary(toolId, countDelta, sumDelta);
+        catalogSnapshotService.invalidate();
+    }
+
+    // ================== UNREPLIED FEEDBACK ==================
+
+    /**
+     * +1 khi có feedback mới, -1 khi seller reply, +1 khi seller xóa reply.
+     * Update atomic trên DB, cùng transaction với thao tác feedback / reply.
+     */
+    @Transactional
+    public void adjustUnrepliedFeedback(Long toolId, long delta) {
+        if (toolId == null || delta == 0) return;
+        toolRepo.adjustUnrepliedFeedbackCount(toolId, delta);
+    }
+
+    // ================== REBUILD ==================
+
+    /**
+     * Đối soát lại toàn bộ cột tổng hợp với bảng License / Feedback.
+     * @return số tool bị lệch và đã được sửa
+     */
+    @Transactional
+    public int rebuildAll() {
+        long start = System.currentTimeMillis();
+
+        Map<Long, Object[]> prices = new HashMap<>();
+        for (Object[] row : licenseRepo.aggregatePricesByTool()) {
+            prices.put((Long) row[0], row);
+        }
+        Map<Long, Object[]> ratings = new HashMap<>();
+        for (Object[] row : feedbackRepo.sumRatingsByStatus(Feedback.Status.PUBLISHED)) {
+            ratings.put((Long) row[0], row);
+        }
+        Map<Long, Long> unreplied = new HashMap<>();
+        for (Object[] row : feedbackRepo.countUnrepliedByTool()) {
+            unreplied.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        int fixed = 0;
+        for (Tool tool : toolRepo.findAll()) {
+            Object[] p = prices.get(tool.getToolId());
+            Object[] r = ratings.get(tool.getToolId());
+
+            BigDecimal min = (p == null || p[1] == null) ? null : BigDecimal.valueOf(((Number) p[1]).doubleValue());
+            BigDecimal max = (p == null || p[2] == null) ? null : BigDecimal.valueOf(((Number) p[2]).doubleValue());
+            long sum = (r == null || r[1] == null) ? 0L : ((Number) r[1]).longValue();
+            long count = (r == null || r[2] == null) ? 0L : ((Number) r[2]).longValue();
+            long open = unreplied.getOrDefault(tool.getToolId(), 0L);
+
+            boolean changed = !samePrice(tool.getMinPrice(), min)
+                    || !samePrice(tool.getMaxPrice(), max)
+                    || !Objects.equals(tool.getRatingSum(), sum)
+                    || !Objects.equals(tool.getReviewCount(), count)
+                    || !Objects.equals(tool.getUnrepliedFeedbackCount(), open);
+            if (!changed) continue;
+
+            tool.setMinPrice(min);
+            tool.setMaxPrice(max);
+            tool.setRatingSum(sum);
+            tool.setReviewCount(count);
+            tool.setUnrepliedFeedbackCount(open);
+            fixed++;
+        }
+
+        if (fixed > 0) catalogSnapshotService.invalidate();
+        log.info("Tool summary rebuild: {} tool(s) corrected in {} ms", fixed, System.currentTimeMillis() - start);
+        return fixed;
+    }
+
+    private boolean samePrice(BigDecimal a, BigDecimal b) {
+        if (a == null || b == null) return a == b;
+        return a.compareTo(b) == 0;
+    }
+}
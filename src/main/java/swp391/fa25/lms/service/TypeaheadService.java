@@ -0,0 +1,404 @@
+package swp391.fa25.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import swp391.fa25.lms.model.Account;
+import swp391.fa25.lms.model.Category;
+import swp391.fa25.lms.model.CustomerOrder;
+import swp391.fa25.lms.model.Tool;
+import swp391.fa25.lms.repository.OrderRepository;
+import swp391.fa25.lms.repository.ToolRepository;
+import swp391.fa25.lms.util.AfterCommit;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Gợi ý tìm kiếm (typeahead) cho ô search ở /home.
+ * Prefix trie trong bộ nhớ gồm tên tool đã PUBLISHED, tên category và tên seller.
+ * Mỗi node giữ sẵn top-K gợi ý theo độ phổ biến (số order thành công + số review),
+ * nên 1 lượt tra chỉ tốn O(độ dài prefix).
+ * Bộ nhớ bị chặn bởi: số entry tối đa, số key / entry, độ dài key.
+ * Publish / ẩn tool cập nhật trie tăng dần; thay đổi lớn (seller hết hạn...) thì đánh dấu
+ * stale và dựng lại khi có request kế tiếp.
+ */
+@Slf4j
+@Service
+public class TypeaheadService {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final int MAX_KEY_LENGTH = 32;
+    private static final int MAX_KEYS_PER_ENTRY = 4;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z0-9]+");
+
+    public enum Type { TOOL, CATEGORY, SELLER }
+
+    private final ToolRepository toolRepo;
+    private final OrderRepository orderRepo;
+    private final int maxEntries;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ===== Trạng thái (chỉ đọc/ghi khi giữ lock) =====
+    private Node root = new Node();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Long, ToolRef> tools = new HashMap<>();
+    private volatile boolean stale = true;
+
+    public TypeaheadService(ToolRepository toolRepo,
+                            OrderRepository orderRepo,
+                            @Value("${app.typeahead.max-entries:20000}") int maxEntries) {
+        this.toolRepo = toolRepo;
+        this.orderRepo = orderRepo;
+        this.maxEntries = maxEntries;
+    }
+
+    // ================== READ ==================
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = fold(prefix);
+        if (key.isEmpty()) return List.of();
+        if (key.length() > MAX_KEY_LENGTH) key = key.substring(0, MAX_KEY_LENGTH);
+        int max = Math.min(Math.max(limit, 1), MAX_SUGGESTIONS);
+
+        if (stale) rebuild();
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) return List.of();
+
+            List<Suggestion> result = new ArrayList<>(Math.min(max, node.top.length));
+            for (int i = 0; i < node.top.length && result.size() < max; i++) {
+                Entry e = node.top[i];
+                result.add(new Suggestion(e.type, e.id, e.label, e.score));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ================== INCREMENTAL UPDATE ==================
+
+    /** Tool vừa được PUBLISHED. */
+    public void onToolPublished(Tool tool) {
+        if (tool == null || tool.getToolId() == null) return;
+        Long toolId = tool.getToolId();
+        String toolName = tool.getToolName();
+        Account seller = tool.getSeller();
+        Category category = tool.getCategory();
+        Long sellerId = seller == null ? null : seller.getAccountId();
+        String sellerName = seller == null ? null : seller.getFullName();
+        Long categoryId = category == null ? null : category.getCategoryId();
+        String categoryName = category == null ? null : category.getCategoryName();
+        long popularity = (tool.getReviewCount() == null ? 0L : tool.getReviewCount())
+                + orderRepo.countByTool_ToolIdAndOrderStatus(toolId, CustomerOrder.OrderStatus.SUCCESS);
+
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                if (stale) return;
+                removeToolLocked(toolId);
+                addToolLocked(toolId, toolName, sellerId, sellerName, categoryId, categoryName, popularity);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /** Tool bị ẩn / chuyển về PENDING / hết hàng. */
+    public void onToolRemoved(Long toolId) {
+        if (toolId == null) return;
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                if (!stale) removeToolLocked(toolId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /** Có order thành công -> tăng độ phổ biến của tool, seller và category. */
+    public void onToolOrdered(Long toolId) {
+        if (toolId == null) return;
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                ToolRef ref = stale ? null : tools.get(toolId);
+                if (ref == null) return;
+                tools.put(toolId, new ToolRef(ref.sellerId, ref.categoryId, ref.popularity + 1));
+                bumpLocked(entryKey(Type.TOOL, toolId), 1);
+                if (ref.sellerId != null) bumpLocked(entryKey(Type.SELLER, ref.sellerId), 1);
+                if (ref.categoryId != null) bumpLocked(entryKey(Type.CATEGORY, ref.categoryId), 1);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /** Thay đổi diện rộng (seller active/hết hạn...) -> dựng lại ở lần tra kế tiếp. */
+    public void invalidate() {
+        AfterCommit.run(() -> stale = true);
+    }
+
+    // ================== REBUILD ==================
+
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            if (!stale) return;
+            // Đặt stale=false trước khi đọc DB: invalidate commit trong lúc dựng sẽ buộc dựng lại lần sau
+            stale = false;
+            long start = System.currentTimeMillis();
+
+            Map<Long, Long> orderCounts = new HashMap<>();
+            List<Tool> candidates;
+            try {
+                for (Object[] row : orderRepo.countOrdersByTool(CustomerOrder.OrderStatus.SUCCESS)) {
+                    orderCounts.put((Long) row[0], ((Number) row[1]).longValue());
+                }
+                // Ưu tiên tool phổ biến để khi chạm giới hạn entry thì bỏ tool ít phổ biến
+                candidates = new ArrayList<>(toolRepo.findPublishedCatalogCandidates());
+            } catch (RuntimeException e) {
+                stale = true;
+                throw e;
+            }
+            Map<Long, Long> popularity = new HashMap<>(candidates.size() * 2);
+            for (Tool t : candidates) {
+                long reviews = t.getReviewCount() == null ? 0L : t.getReviewCount();
+                popularity.put(t.getToolId(), orderCounts.getOrDefault(t.getToolId(), 0L) + reviews);
+            }
+            candidates.sort(Comparator.comparing((Tool t) -> popularity.get(t.getToolId())).reversed());
+
+            root = new Node();
+            entries.clear();
+            tools.clear();
+            for (Tool t : candidates) {
+                Account seller = t.getSeller();
+                Category category = t.getCategory();
+                addToolLocked(t.getToolId(), t.getToolName(),
+                        seller == null ? null : seller.getAccountId(),
+                        seller == null ? null : seller.getFullName(),
+                        category == null ? null : category.getCategoryId(),
+                        category == null ? null : category.getCategoryName(),
+                        popularity.get(t.getToolId()));
+            }
+
+            log.info("Typeahead trie rebuilt: {} entries from {} tool(s) in {} ms",
+                    entries.size(), candidates.size(), System.currentTimeMillis() - start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ================== INTERNAL (gọi khi đang giữ write lock) ==================
+
+    private void addToolLocked(Long toolId, String toolName,
+                               Long sellerId, String sellerName,
+                               Long categoryId, String categoryName,
+                               long popularity) {
+
+        if (entries.size() >= maxEntries) return;
+
+        tools.put(toolId, new ToolRef(sellerId, categoryId, popularity));
+        putEntryLocked(Type.TOOL, toolId, toolName, popularity);
+        if (sellerId != null) attachLocked(Type.SELLER, sellerId, sellerName, popularity);
+        if (categoryId != null) attachLocked(Type.CATEGORY, categoryId, categoryName, popularity);
+    }
+
+    private void removeToolLocked(Long toolId) {
+        ToolRef ref = tools.remove(toolId);
+        if (ref == null) return;
+
+        removeEntryLocked(entryKey(Type.TOOL, toolId));
+        if (ref.sellerId != null) detachLocked(entryKey(Type.SELLER, ref.sellerId), ref.popularity);
+        if (ref.categoryId != null) detachLocked(entryKey(Type.CATEGORY, ref.categoryId), ref.popularity);
+    }
+
+    // Seller / category: điểm = tổng độ phổ biến các tool đang hiển thị, gỡ khi không còn tool nào
+    private void attachLocked(Type type, Long id, String label, long popularity) {
+        Entry e = entries.get(entryKey(type, id));
+        if (e == null) {
+            e = putEntryLocked(type, id, label, 0);
+            if (e == null) return;
+        }
+        e.refCount++;
+        bumpLocked(e.mapKey(), popularity);
+    }
+
+    private void detachLocked(String key, long popularity) {
+        Entry e = entries.get(key);
+        if (e == null) return;
+        if (--e.refCount <= 0) removeEntryLocked(key);
+        else bumpLocked(key, -popularity);
+    }
+
+    private Entry putEntryLocked(Type type, Long id, String label, long score) {
+        List<String> keys = keysOf(label);
+        if (keys.isEmpty()) return null;
+
+        Entry e = new Entry(type, id, label, keys);
+        e.score = score;
+        entries.put(e.mapKey(), e);
+        for (String k : keys) {
+            List<Node> path = pathOf(k, true);
+            path.get(path.size() - 1).terminals.add(e);
+            recompute(path);
+        }
+        return e;
+    }
+
+    private void removeEntryLocked(String mapKey) {
+        Entry e = entries.remove(mapKey);
+        if (e == null) return;
+        for (String k : e.keys) {
+            List<Node> path = pathOf(k, false);
+            if (path.size() != k.length() + 1) continue;
+            path.get(path.size() - 1).terminals.remove(e);
+            recompute(path);
+            prune(path, k);
+        }
+    }
+
+    private void bumpLocked(String mapKey, long delta) {
+        Entry e = entries.get(mapKey);
+        if (e == null || delta == 0) return;
+        e.score = Math.max(0, e.score + delta);
+        for (String k : e.keys) {
+            recompute(pathOf(k, false));
+        }
+    }
+
+    private List<Node> pathOf(String key, boolean create) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            Node next = node.child(key.charAt(i));
+            if (next == null) {
+                if (!create) break;
+                next = node.addChild(key.charAt(i));
+            }
+            node = next;
+            path.add(node);
+        }
+        return path;
+    }
+
+    // top-K của node = top-K(terminals của node ∪ top-K của các con), tính từ lá lên gốc
+    private void recompute(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            Set<Entry> pool = new HashSet<>(node.terminals);
+            if (node.children != null) {
+                for (Node c : node.children.values()) {
+                    Collections.addAll(pool, c.top);
+                }
+            }
+            List<Entry> sorted = new ArrayList<>(pool);
+            sorted.sort(Entry.RANK);
+            node.top = sorted.subList(0, Math.min(MAX_SUGGESTIONS, sorted.size())).toArray(new Entry[0]);
+        }
+    }
+
+    // Gỡ các node rỗng (không còn entry nào bên dưới) để trie không phình theo thời gian
+    private void prune(List<Node> path, String key) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            if (!node.terminals.isEmpty() || (node.children != null && !node.children.isEmpty())) return;
+            path.get(i - 1).children.remove(key.charAt(i - 1));
+        }
+    }
+
+    // Key = tên đầy đủ + các hậu tố bắt đầu từ đầu mỗi từ ("Microsoft Office" -> "microsoft office", "office")
+    private List<String> keysOf(String label) {
+        String folded = fold(label);
+        if (folded.isEmpty()) return List.of();
+
+        List<String> keys = new ArrayList<>(MAX_KEYS_PER_ENTRY);
+        int start = 0;
+        while (start >= 0 && keys.size() < MAX_KEYS_PER_ENTRY) {
+            String k = folded.substring(start);
+            if (k.length() > MAX_KEY_LENGTH) k = k.substring(0, MAX_KEY_LENGTH).trim();
+            if (!k.isEmpty() && !keys.contains(k)) keys.add(k);
+            int sp = folded.indexOf(' ', start);
+            start = sp < 0 ? -1 : sp + 1;
+        }
+        return keys;
+    }
+
+    /** Bỏ dấu + lowercase + gộp ký tự không phải chữ/số thành 1 khoảng trắng. */
+    static String fold(String text) {
+        if (text == null) return "";
+        String s = Normalizer.normalize(text, Normalizer.Form.NFD);
+        s = MARKS.matcher(s).replaceAll("")
+                .replace('đ', 'd').replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+        return NON_WORD.matcher(s).replaceAll(" ").trim();
+    }
+
+    private static String entryKey(Type type, Long id) {
+        return type + ":" + id;
+    }
+
+    // ================== TYPES ==================
+
+    public record Suggestion(Type type, Long id, String label, long score) {
+    }
+
+    private record ToolRef(Long sellerId, Long categoryId, long popularity) {
+    }
+
+    private static final class Entry {
+        static final Comparator<Entry> RANK = Comparator
+                .comparingLong((Entry e) -> e.score).reversed()
+                .thenComparing(e -> e.label, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(e -> e.type)
+                .thenComparing(e -> e.id);
+
+        final Type type;
+        final Long id;
+        final String label;
+        final List<String> keys;
+        long score;
+        int refCount;
+
+        Entry(Type type, Long id, String label, List<String> keys) {
+            this.type = type;
+            this.id = id;
+            this.label = label;
+            this.keys = keys;
+        }
+
+        String mapKey() {
+            return entryKey(type, id);
+        }
+    }
+
+    private static final class Node {
+        private static final Entry[] EMPTY = new Entry[0];
+
+        Map<Character, Node> children;
+        final List<Entry> terminals = new ArrayList<>(1);
+        Entry[] top = EMPTY;
+
+        Node child(char c) {
+            return children == null ? null : children.get(c);
+        }
+
+        Node addChild(char c) {
+            if (children == null) children = new HashMap<>(4);
+            return children.computeIfAbsent(c, k -> new Node());
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package swp391.fa25.lms.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import swp391.fa25.lms.dto.UsageBatchRequestDTO;
+import swp391.fa25.lms.model.UsageBucket;
+import swp391.fa25.lms.model.UsageBucket.EventType;
+import swp391.fa25.lms.model.UsageBucket.Granularity;
+import swp391.fa25.lms.repository.ToolRepository;
+import swp391.fa25.lms.repository.UsageBucketRepository;
+import swp391.fa25.lms.util.UsageEventRing;
+import swp391.fa25.lms.util.UsageRawLog;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thu thập sự kiện sử dụng tool (mở tool, dùng tính năng) theo lô từ máy khách:
+ * - Request chỉ kiểm tra rồi đẩy vào UsageEventRing (không khóa); ring đầy thì bỏ sự kiện và báo lại client
+ * - Flusher định kỳ gom sự kiện thành bucket ngày theo (license account, loại, tính năng)
+ *   và bucket giờ theo (tool, loại, tính năng); ghi trong 1 transaction:
+ *   1 SELECT id bucket đã có mỗi giờ / ngày, bucket đã có cùng delta chung 1 UPDATE ... WHERE id IN (...),
+ *   bucket mới INSERT theo JDBC batch (id lấy từ sequence)
+ * - Flush lỗi thì giữ các bucket đã gom, lần sau ghi lại (sự kiện đã ra khỏi ring không bị mất);
+ *   giữ tối đa max-pending-buckets bucket, DB lỗi kéo dài thì sự kiện rơi vào bucket mới bị bỏ và đếm lại
+ * - Tùy chọn ghi sự kiện thô vào UsageRawLog (app.usage.raw-log.dir), xóa file quá raw-log.retention-days
+ */
+@Slf4j
+@Service
+public class UsageTelemetryService implements OperationalStats {
+
+    private static final int FEATURE_MAX = 64;
+    // SQL Server giới hạn 2100 tham số mỗi câu
+    private static final int IN_CHUNK = 2000;
+    // Đồng hồ máy khách lệch nhẹ vẫn nhận
+    private static final long FUTURE_SKEW_MILLIS = 5 * 60_000L;
+
+    public enum Result { ACCEPTED, LICENSE_INVALID }
+
+    public record IngestResult(Result result, int accepted, int rejected, int dropped) {
+    }
+
+    private record BucketKey(Granularity granularity, LocalDateTime start, Long licenseAccountId, Long toolId,
+                             EventType type, String feature) {
+    }
+
+    private record Slot(Granularity granularity, LocalDateTime start) {
+    }
+
+    private final UsageBucketRepository bucketRepo;
+    private final ToolRepository toolRepo;
+    private final TransactionTemplate tx;
+    private final UsageEventRing<UsageRawLog.Event> ring;
+    // null = không ghi log thô
+    private final UsageRawLog rawLog;
+    private final int maxBatch;
+    private final long maxAgeMillis;
+
+    @Value("${app.usage.hourly-retention-days:35}")
+    private int hourlyRetentionDays;
+
+    @Value("${app.usage.raw-log.retention-days:14}")
+    private int rawLogRetentionDays;
+
+    @Value("${app.usage.max-pending-buckets:200000}")
+    private int maxPendingBuckets;
+
+    // Seller của tool không đổi -> nhớ lại, khỏi hỏi DB mỗi lần flush
+    private final ConcurrentHashMap<Long, Long> sellerByTool = new ConcurrentHashMap<>();
+    // Bucket đã gom nhưng chưa ghi được; guarded by this
+    private final Map<BucketKey, Long> pending = new HashMap<>();
+
+    // ===== Metrics =====
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong pendingDropped = new AtomicLong();
+    private final AtomicLong flushedEvents = new AtomicLong();
+    private final AtomicLong flushedBuckets = new AtomicLong();
+    private final AtomicLong flushRuns = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong rawLogged = new AtomicLong();
+    private final AtomicLong rawLogFailures = new AtomicLong();
+    private volatile long lastFlushMillis;
+    private volatile int lastFlushStatements;
+    private volatile int lastFlushInserts;
+    private volatile int pendingBuckets;
+
+    public UsageTelemetryService(UsageBucketRepository bucketRepo,
+                                 ToolRepository toolRepo,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.usage.ring-capacity:65536}") int ringCapacity,
+                                 @Value("${app.usage.max-batch:500}") int maxBatch,
+                                 @Value("${app.usage.max-age-days:7}") int maxAgeDays,
+                                 @Value("${app.usage.raw-log.dir:}") String rawLogDir) {
+        this.bucketRepo = bucketRepo;
+        this.toolRepo = toolRepo;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.ring = new UsageEventRing<>(ringCapacity);
+        this.maxBatch = maxBatch;
+        this.maxAgeMillis = Duration.ofDays(maxAgeDays).toMillis();
+        this.rawLog = StringUtils.hasText(rawLogDir) ? new UsageRawLog(Paths.get(rawLogDir)) : null;
+    }
+
+    // ================== INGEST ==================
+
+    /** Nhận 1 lô sự kiện của license vừa xác thực; không chờ DB / đĩa. */
+    public IngestResult ingest(LicenseIndexService.Verification license, List<UsageBatchRequestDTO.Event> events) {
+        if (!license.valid()) {
+            return new IngestResult(Result.LICENSE_INVALID, 0, 0, 0);
+        }
+        long now = System.currentTimeMillis();
+        int ok = 0, bad = 0, full = 0;
+        for (UsageBatchRequestDTO.Event e : events) {
+            UsageRawLog.Event event = toEvent(license, e, now);
+            if (event == null) bad++;
+            else if (ring.offer(event)) ok++;
+            else full++;
+        }
+        accepted.addAndGet(ok);
+        rejected.addAndGet(bad);
+        dropped.addAndGet(full);
+        return new IngestResult(Result.ACCEPTED, ok, bad, full);
+    }
+
+    private UsageRawLog.Event toEvent(LicenseIndexService.Verification license, UsageBatchRequestDTO.Event e, long now) {
+        if (e == null || e.getType() == null) return null;
+        EventType type;
+        try {
+            type = EventType.valueOf(e.getType().trim().toUpperCase());
+        } catch (IllegalArgumentException unknown) {
+            return null;
+        }
+        String feature = "";
+        if (type == EventType.FEATURE) {
+            feature = e.getFeature() == null ? "" : e.getFeature().trim();
+            if (feature.isEmpty() || feature.length() > FEATURE_MAX) return null;
+        }
+        long at = e.getAt() == null ? now : e.getAt();
+        if (at > now + FUTURE_SKEW_MILLIS || at < now - maxAgeMillis) return null;
+        return new UsageRawLog.Event(at, license.licenseAccountId(), license.toolId(), type, feature);
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    // ================== FLUSH ==================
+
+    @Scheduled(fixedDelayString = "${app.usage.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        long start = System.currentTimeMillis();
+        List<UsageRawLog.Event> events = new ArrayList<>();
+        // Tối đa 1 vòng ring mỗi lần: client gửi liên tục cũng không giữ flusher mãi
+        ring.drain(events::add, ring.capacity());
+
+        ZoneId zone = ZoneId.systemDefault();
+        Map<LocalDate, List<UsageRawLog.Event>> byDay = new TreeMap<>();
+        int overflow = 0;
+        for (UsageRawLog.Event e : events) {
+            LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(e.at()), zone);
+            LocalDateTime hour = at.truncatedTo(ChronoUnit.HOURS);
+            LocalDateTime day = at.truncatedTo(ChronoUnit.DAYS);
+            if (!addPending(new BucketKey(Granularity.HOUR, hour, null, e.toolId(), e.type(), e.feature()))) overflow++;
+            if (!addPending(new BucketKey(Granularity.DAY, day, e.licenseAccountId(), e.toolId(), e.type(), e.feature()))) overflow++;
+            if (rawLog != null) byDay.computeIfAbsent(day.toLocalDate(), d -> new ArrayList<>()).add(e);
+        }
+        if (overflow > 0) {
+            pendingDropped.addAndGet(overflow);
+            log.warn("Usage pending buckets full ({}), {} bucket increment(s) dropped", maxPendingBuckets, overflow);
+        }
+        appendRawLog(byDay);
+        if (pending.isEmpty()) return;
+
+        resolveSellers();
+        try {
+            int statements = tx.execute(s -> writeBuckets(LocalDateTime.now()));
+            lastFlushStatements = statements;
+            flushedBuckets.addAndGet(pending.size());
+            pending.clear();
+        } catch (RuntimeException e) {
+            // Node khác vừa tạo cùng bucket (unique) hoặc DB lỗi: lần sau đọc lại id rồi ghi lại toàn bộ
+            flushFailures.incrementAndGet();
+            log.warn("Usage flush failed, {} bucket(s) will be retried: {}", pending.size(), e.getMessage());
+        }
+        pendingBuckets = pending.size();
+        flushedEvents.addAndGet(events.size());
+        flushRuns.incrementAndGet();
+        lastFlushMillis = System.currentTimeMillis() - start;
+    }
+
+    // Trả số câu SELECT / UPDATE đã chạy (INSERT đi theo JDBC batch, đếm riêng)
+    private int writeBuckets(LocalDateTime now) {
+        Map<Slot, Set<Long>> toolsBySlot = new HashMap<>();
+        for (BucketKey k : pending.keySet()) {
+            toolsBySlot.computeIfAbsent(new Slot(k.granularity(), k.start()), x -> new HashSet<>()).add(k.toolId());
+        }
+
+        int statements = 0;
+        Map<BucketKey, Long> existing = new HashMap<>();
+        for (Map.Entry<Slot, Set<Long>> e : toolsBySlot.entrySet()) {
+            Slot slot = e.getKey();
+            List<Long> tools = new ArrayList<>(e.getValue());
+            for (int i = 0; i < tools.size(); i += IN_CHUNK) {
+                List<Long> chunk = tools.subList(i, Math.min(i + IN_CHUNK, tools.size()));
+                for (Object[] row : bucketRepo.findKeys(slot.granularity(), slot.start(), chunk)) {
+                    existing.put(new BucketKey(slot.granularity(), slot.start(), (Long) row[1], (Long) row[2],
+                            (EventType) row[3], (String) row[4]), (Long) row[0]);
+                }
+                statements++;
+            }
+        }
+
+        // delta -> các bucket đã có cùng delta
+        Map<Long, List<Long>> byDelta = new HashMap<>();
+        List<UsageBucket> created = new ArrayList<>();
+        pending.forEach((k, n) -> {
+            Long id = existing.get(k);
+            if (id != null) {
+                byDelta.computeIfAbsent(n, d -> new ArrayList<>()).add(id);
+            } else {
+                created.add(new UsageBucket(k.granularity(), k.start(), k.licenseAccountId(), k.toolId(),
+                        sellerByTool.get(k.toolId()), k.type(), k.feature(), n));
+            }
+        });
+        for (Map.Entry<Long, List<Long>> e : byDelta.entrySet()) {
+            List<Long> ids = e.getValue();
+            for (int i = 0; i < ids.size(); i += IN_CHUNK) {
+                bucketRepo.addByIds(ids.subList(i, Math.min(i + IN_CHUNK, ids.size())), e.getKey(), now);
+                statements++;
+            }
+        }
+        bucketRepo.saveAll(created);
+        lastFlushInserts = created.size();
+        return statements;
+    }
+
+    // Bucket đã có thì cộng tiếp; bucket mới chỉ nhận khi pending chưa đầy
+    private boolean addPending(BucketKey key) {
+        Long n = pending.get(key);
+        if (n == null && pending.size() >= maxPendingBuckets) return false;
+        pending.put(key, n == null ? 1L : n + 1);
+        return true;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void appendRawLog(Map<LocalDate, List<UsageRawLog.Event>> byDay) {
+        if (rawLog == null) return;
+        byDay.forEach((day, events) -> {
+            try {
+                rawLog.append(day, events);
+                rawLogged.addAndGet(events.size());
+            } catch (IOException e) {
+                // Log thô chỉ là bản sao phụ, không chặn việc ghi bucket
+                rawLogFailures.incrementAndGet();
+                log.warn("Usage raw log append failed for {}: {}", day, e.getMessage());
+            }
+        });
+    }
+
+    private void resolveSellers() {
+        Set<Long> missing = new HashSet<>();
+        for (BucketKey k : pending.keySet()) {
+            if (!sellerByTool.containsKey(k.toolId())) missing.add(k.toolId());
+        }
+        if (missing.isEmpty()) return;
+        for (Object[] row : toolRepo.findSellerIds(missing)) {
+            sellerByTool.put((Long) row[0], (Long) row[1]);
+        }
+    }
+
+    // ================== RETENTION ==================
+
+    @Scheduled(fixedDelayString = "${app.usage.retention-interval-ms:3600000}", initialDelay = 60_000)
+    public void purgeExpired() {
+        LocalDateTime before = LocalDate.now().minusDays(hourlyRetentionDays).atStartOfDay();
+        Integer purged = tx.execute(s -> bucketRepo.deleteOlderThan(Granularity.HOUR, before));
+        if (purged != null && purged > 0) log.info("Usage hourly buckets purged: {}", purged);
+
+        if (rawLog == null) return;
+        try {
+            int files = rawLog.deleteBefore(LocalDate.now().minusDays(rawLogRetentionDays));
+            if (files > 0) log.info("Usage raw log files purged: {}", files);
+        } catch (IOException e) {
+            log.warn("Usage raw log purge failed: {}", e.getMessage());
+        }
+    }
+
+    public UsageRawLog getRawLog() {
+        return rawLog;
+    }
+
+    // ================== METRICS ==================
+
+    @Override
+    public String statsName() {
+        return "usage";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("dropped", dropped.get());
+        stats.put("ringSize", ring.size());
+        stats.put("ringCapacity", ring.capacity());
+        stats.put("pendingBuckets", pendingBuckets);
+        stats.put("pendingDropped", pendingDropped.get());
+        stats.put("flushedEvents", flushedEvents.get());
+        stats.put("flushedBuckets", flushedBuckets.get());
+        stats.put("flushRuns", flushRuns.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("rawLogEnabled", rawLog != null);
+        stats.put("rawLogged", rawLogged.get());
+        stats.put("rawLogFailures", rawLogFailures.get());
+        stats.put("lastFlushStatements", lastFlushStatements);
+        stats.put("lastFlushInserts", lastFlushInserts);
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,27 @@
+package swp391.fa25.lms.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Chạy action sau khi transaction hiện tại commit; không có transaction -> chạy ngay.
+ * Dùng cho cache / chỉ mục in-memory: chỉ cập nhật khi dữ liệu đã thật sự ghi xuống DB.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package swp391.fa25.lms.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Client secret cho API license: 32 byte ngẫu nhiên (base64url, 43 ký tự), DB chỉ lưu SHA-256 dạng hex.
+ * Không đoán / dò được như token 6 số, nên mới dùng làm credential gửi thẳng lên API công khai.
+ */
+public final class ClientSecret {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ClientSecret() {
+    }
+
+    public static String generate() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static String hash(String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package swp391.fa25.lms.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.Jwts;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Kiểm tra license certificate (JWT RS256 do LicenseCertificateService cấp) hoàn toàn offline.
+ * Chỉ phụ thuộc JDK + jjwt, không dùng Spring -> tool phía khách copy / đóng gói lại được.
+ * Dùng 1 instance cho cả ứng dụng (thread-safe); public key lấy 1 lần từ GET /api/licenses/public-key.
+ */
+public class LicenseCertificateVerifier {
+
+    public static final String ISSUER = "lms";
+    public static final String CLAIM_TOOL = "tool";
+    public static final String CLAIM_LICENSE = "lic";
+    public static final String CLAIM_SEATS = "seats";
+
+    // Cho phép lệch đồng hồ máy khách tối đa 5 phút
+    private static final long CLOCK_SKEW_SECONDS = 300;
+
+    // certificateId (jti): khóa tra trong RevocationBloomFilter / feed thu hồi
+    public record LicenseCertificate(String certificateId, Long licenseAccountId, Long toolId, Long licenseId,
+                                     Instant startsAt, Instant endsAt, int seats, String keyId) {
+    }
+
+    private final JwtParser parser;
+    private final String keyId;
+
+    public LicenseCertificateVerifier(PublicKey publicKey) {
+        this(publicKey, ISSUER);
+    }
+
+    public LicenseCertificateVerifier(PublicKey publicKey, String issuer) {
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(publicKey)
+                .requireIssuer(issuer)
+                .setAllowedClockSkewSeconds(CLOCK_SKEW_SECONDS)
+                .build();
+        this.keyId = keyId(publicKey);
+    }
+
+    /** Public key RSA dạng base64 DER (X.509), như trả về từ /api/licenses/public-key. */
+    public static LicenseCertificateVerifier fromBase64(String publicKeyBase64) {
+        try {
+            byte[] der = Base64.getDecoder().decode(publicKeyBase64.trim());
+            PublicKey key = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(der));
+            return new LicenseCertificateVerifier(key);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Public key không hợp lệ", e);
+        }
+    }
+
+    /**
+     * Kiểm tra chữ ký, issuer, thời hạn (nbf / exp) và tool của certificate.
+     *
+     * @throws IllegalArgumentException certificate sai chữ ký, hết hạn, chưa tới ngày bắt đầu hoặc của tool khác
+     */
+    public LicenseCertificate verify(String certificate, Long expectedToolId) {
+        Jws<Claims> jws;
+        try {
+            jws = parser.parseClaimsJws(certificate);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Certificate không hợp lệ: " + e.getMessage(), e);
+        }
+
+        Claims c = jws.getBody();
+        Long toolId = asLong(c.get(CLAIM_TOOL));
+        if (expectedToolId != null && !expectedToolId.equals(toolId)) {
+            throw new IllegalArgumentException("Certificate không thuộc tool " + expectedToolId);
+        }
+        Number seats = c.get(CLAIM_SEATS, Number.class);
+        return new LicenseCertificate(
+                c.getId(),
+                Long.valueOf(c.getSubject()),
+                toolId,
+                asLong(c.get(CLAIM_LICENSE)),
+                c.getNotBefore() == null ? null : c.getNotBefore().toInstant(),
+                c.getExpiration() == null ? null : c.getExpiration().toInstant(),
+                seats == null ? 1 : seats.intValue(),
+                (String) jws.getHeader().get("kid"));
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    /** kid = 16 ký tự hex đầu của SHA-256(public key DER), để client nhận ra khi server đổi khóa. */
+    public static String keyId(PublicKey publicKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(publicKey.getEncoded());
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Long asLong(Object v) {
+        return v instanceof Number n ? n.longValue() : null;
+    }
+}
@@ -0,0 +1,22 @@
+package swp391.fa25.lms.util;
+
+/**
+ * Pattern LIKE "chứa keyword" an toàn cho ký tự đặc biệt.
+ * Query dùng kèm phải khai báo {@code LIKE :q ESCAPE '!'}.
+ */
+public final class LikePattern {
+
+    private LikePattern() {
+    }
+
+    // "%keyword%" với '!' làm ký tự escape cho %, _, [ ; keyword trống -> null (không lọc)
+    public static String contains(String keyword) {
+        if (keyword == null || keyword.isBlank()) return null;
+        String escaped = keyword.trim()
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_")
+                .replace("[", "![");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,112 @@
+package swp391.fa25.lms.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Bloom filter các certificate id (jti) bị thu hồi, dùng chung giữa server (dựng snapshot) và tool phía khách.
+ * Chỉ phụ thuộc JDK. mightContain = false -> chắc chắn chưa bị thu hồi; true -> có thể bị thu hồi,
+ * client nên hỏi /api/licenses/verify để chắc chắn.
+ * Hash: SHA-256(id), h1 = 8 byte đầu, h2 = 8 byte kế; bit thứ i = (h1 + i * h2) mod m (double hashing).
+ * Định dạng nhị phân (big-endian): "RB", version, k, throughSeq (long), m (int, bội của 64), m/64 long.
+ */
+public class RevocationBloomFilter {
+
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 2 + 1 + 1 + 8 + 4;
+
+    private final long[] words;
+    private final int bits;
+    private final int hashes;
+    private long throughSeq;
+
+    private RevocationBloomFilter(long[] words, int hashes, long throughSeq) {
+        this.words = words;
+        this.bits = words.length * 64;
+        this.hashes = hashes;
+        this.throughSeq = throughSeq;
+    }
+
+    /** Filter đủ chỗ cho expected phần tử với tỉ lệ dương tính giả falsePositiveRate. */
+    public static RevocationBloomFilter create(int expected, double falsePositiveRate) {
+        int n = Math.max(expected, 1);
+        double m = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        int words = Math.max(1, (int) Math.ceil(m / 64));
+        int k = Math.max(1, (int) Math.round((double) words * 64 / n * Math.log(2)));
+        return new RevocationBloomFilter(new long[words], Math.min(k, 16), 0);
+    }
+
+    public void add(String id) {
+        long[] h = hash(id);
+        for (int i = 0; i < hashes; i++) {
+            int bit = (int) Math.floorMod(h[0] + i * h[1], (long) bits);
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String id) {
+        long[] h = hash(id);
+        for (int i = 0; i < hashes; i++) {
+            int bit = (int) Math.floorMod(h[0] + i * h[1], (long) bits);
+            if ((words[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public RevocationBloomFilter copy() {
+        return new RevocationBloomFilter(words.clone(), hashes, throughSeq);
+    }
+
+    /** Seq lớn nhất của feed thu hồi đã có trong filter; client xin delta từ seq này. */
+    public long getThroughSeq() {
+        return throughSeq;
+    }
+
+    public void setThroughSeq(long throughSeq) {
+        this.throughSeq = throughSeq;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public int getHashes() {
+        return hashes;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + words.length * 8);
+        buf.put((byte) 'R').put((byte) 'B').put(VERSION).put((byte) hashes);
+        buf.putLong(throughSeq).putInt(bits);
+        for (long w : words) buf.putLong(w);
+        return buf.array();
+    }
+
+    public static RevocationBloomFilter fromBytes(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (data.length < HEADER_BYTES || buf.get() != 'R' || buf.get() != 'B' || buf.get() != VERSION) {
+            throw new IllegalArgumentException("Snapshot thu hồi không hợp lệ");
+        }
+        int k = buf.get();
+        long seq = buf.getLong();
+        int m = buf.getInt();
+        if (m <= 0 || m % 64 != 0 || data.length != HEADER_BYTES + m / 8) {
+            throw new IllegalArgumentException("Snapshot thu hồi không hợp lệ");
+        }
+        long[] words = new long[m / 64];
+        for (int i = 0; i < words.length; i++) words[i] = buf.getLong();
+        return new RevocationBloomFilter(words, k, seq);
+    }
+
+    private static long[] hash(String id) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer b = ByteBuffer.wrap(d);
+            return new long[]{b.getLong(), b.getLong()};
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package swp391.fa25.lms.util;
+
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Con trỏ đọc bảng feed có seq IDENTITY (đọc lại mọi dòng seq > watermark mỗi lượt poll).
+ * seq được cấp lúc INSERT nhưng dòng chỉ thấy được lúc COMMIT, nên seq nhỏ có thể xuất hiện sau seq lớn:
+ * - watermark = mọi seq <= watermark đã nhận đủ; chỉ tiến liền mạch qua các seq đã thấy
+ * - Gặp khoảng trống thì chờ: khoảng trống tồn tại quá graceMillis (lâu hơn transaction ghi dài nhất)
+ *   coi như seq đó đã rollback / bị bỏ qua (SQL Server nhảy identity khi restart) và bước qua
+ * Không thread-safe: caller tự khóa.
+ */
+public final class SeqFeedCursor {
+
+    private final long graceMillis;
+    private long watermark;
+    // seq > watermark đã thấy nhưng chưa tiến tới được (nằm sau 1 khoảng trống)
+    private final TreeSet<Long> seen = new TreeSet<>();
+    private long gapSeq = -1;
+    private long gapSeenAt;
+
+    public SeqFeedCursor(long watermark, long graceMillis) {
+        this.watermark = watermark;
+        this.graceMillis = graceMillis;
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /** seq này đã được nhận ở lượt trước (watermark đã qua, hoặc đang chờ sau khoảng trống). */
+    public boolean seen(long seq) {
+        return seq <= watermark || seen.contains(seq);
+    }
+
+    /** Số seq đang chờ sau khoảng trống. */
+    public int getHeld() {
+        return seen.size();
+    }
+
+    /** Nhận các seq vừa đọc (> watermark) rồi tiến watermark hết mức có thể; trả watermark mới. */
+    public long advance(Collection<Long> seqs, long nowMillis) {
+        for (Long seq : seqs) {
+            if (seq > watermark) seen.add(seq);
+        }
+        while (!seen.isEmpty()) {
+            long next = seen.first();
+            if (next == watermark + 1) {
+                seen.pollFirst();
+                watermark = next;
+                continue;
+            }
+            // Khoảng trống (watermark, next): đếm giờ từ lần đầu thấy
+            if (gapSeq != watermark + 1) {
+                gapSeq = watermark + 1;
+                gapSeenAt = nowMillis;
+            }
+            if (nowMillis - gapSeenAt < graceMillis) break;
+            watermark = next - 1;
+        }
+        return watermark;
+    }
+}
@@ -0,0 +1,80 @@
+package swp391.fa25.lms.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Ring buffer có giới hạn, nhiều thread ghi / 1 thread đọc, không khóa (kiểu Vyukov: mỗi ô có số thứ tự riêng).
+ * - offer: CAS vị trí ghi rồi đặt phần tử; đầy thì trả false ngay, không bao giờ chờ
+ * - drain: chỉ được gọi từ 1 thread tại 1 thời điểm (caller tự đảm bảo)
+ */
+public class UsageEventRing<E> {
+
+    private final int mask;
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Chỉ thread drain đọc / ghi; volatile để size() đọc được từ thread khác
+    private volatile long head;
+
+    public UsageEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.items = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    public boolean offer(E item) {
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long diff = sequences.get(slot) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items[slot] = item;
+                    // Ghi volatile sau khi đặt phần tử -> thread drain thấy phần tử khi thấy sequence
+                    sequences.set(slot, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // Ô chưa được drain trả lại: ring đầy
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /** Lấy tối đa max phần tử theo thứ tự ghi; trả số phần tử đã lấy. */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<E> consumer, int max) {
+        int n = 0;
+        long h = head;
+        try {
+            while (n < max) {
+                int slot = (int) h & mask;
+                if (sequences.get(slot) != h + 1) break;
+                E item = (E) items[slot];
+                items[slot] = null;
+                sequences.set(slot, h + items.length);
+                h++;
+                n++;
+                consumer.accept(item);
+            }
+        } finally {
+            head = h;
+        }
+        return n;
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+
+    public int size() {
+        return (int) Math.max(0, Math.min(items.length, tail.get() - head));
+    }
+}
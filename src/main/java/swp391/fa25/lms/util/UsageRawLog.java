@@ -0,0 +1,93 @@
+package swp391.fa25.lms.util;
+
+import swp391.fa25.lms.model.UsageBucket.EventType;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log sự kiện sử dụng thô trên đĩa, 1 file / ngày: usage-yyyyMMdd.bin.gz.
+ * Mỗi lần append ghi thêm 1 gzip member (GZIPInputStream đọc nối các member), mỗi bản ghi (big-endian):
+ * at (long, epoch millis), licenseAccountId (long), toolId (long), type (byte, ordinal), feature (UTF).
+ */
+public class UsageRawLog {
+
+    public record Event(long at, Long licenseAccountId, Long toolId, EventType type, String feature) {
+    }
+
+    private static final String PREFIX = "usage-";
+    private static final String SUFFIX = ".bin.gz";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Path dir;
+
+    public UsageRawLog(Path dir) {
+        this.dir = dir;
+    }
+
+    public Path fileFor(LocalDate day) {
+        return dir.resolve(PREFIX + DAY.format(day) + SUFFIX);
+    }
+
+    /** Ghi các sự kiện cùng 1 ngày vào cuối file của ngày đó. */
+    public void append(LocalDate day, List<Event> events) throws IOException {
+        if (events.isEmpty()) return;
+        Files.createDirectories(dir);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(
+                new FileOutputStream(fileFor(day).toFile(), true))))) {
+            for (Event e : events) {
+                out.writeLong(e.at());
+                out.writeLong(e.licenseAccountId());
+                out.writeLong(e.toolId());
+                out.writeByte(e.type().ordinal());
+                out.writeUTF(e.feature());
+            }
+        }
+    }
+
+    public List<Event> read(LocalDate day) throws IOException {
+        List<Event> events = new ArrayList<>();
+        Path file = fileFor(day);
+        if (!Files.exists(file)) return events;
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(
+                Files.newInputStream(file))))) {
+            while (true) {
+                long at;
+                try {
+                    at = in.readLong();
+                } catch (EOFException end) {
+                    break;
+                }
+                events.add(new Event(at, in.readLong(), in.readLong(), EventType.values()[in.readByte()], in.readUTF()));
+            }
+        }
+        return events;
+    }
+
+    /** Xóa file của các ngày trước keepFrom; trả số file đã xóa. */
+    public int deleteBefore(LocalDate keepFrom) throws IOException {
+        if (!Files.isDirectory(dir)) return 0;
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    LocalDate day = LocalDate.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), DAY);
+                    if (day.isBefore(keepFrom) && Files.deleteIfExists(file)) deleted++;
+                } catch (DateTimeParseException | StringIndexOutOfBoundsException ignored) {
+                    // không phải file do UsageRawLog tạo
+                }
+            }
+        }
+        return deleted;
+    }
+}
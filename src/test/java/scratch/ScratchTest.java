@@ -0,0 +1,26 @@
+package scratch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.data.domain.PageRequest;
+import swp391.fa25.lms.G4LicenseManagementSystemApplication;
+import swp391.fa25.lms.repository.*;
+
+@DataJpaTest
+@ContextConfiguration(classes = G4LicenseManagementSystemApplication.class)
+@TestPropertySource(properties = {
+ "spring.datasource.url=jdbc:h2:mem:t;MODE=MSSQLServer",
+ "spring.datasource.driver-class-name=org.h2.Driver",
+ "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+ "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ScratchTest {
+    @Autowired ToolListRepository repo; @Autowired ToolRepository tr; @Autowired BlogRepository br; @Autowired SellerSubscriptionRepository ssr; @Autowired RevenueDailySellerRepository rds; @Autowired RevenueLedgerRepository rl;
+    @Test void run() {
+        System.out.println("RESULT " + br.findAuthorListItems(1L, null, null, swp391.fa25.lms.util.LikePattern.contains("50%_x!["), PageRequest.of(0, 5)).getTotalElements());
+    }
+}
@@ -2,8 +2,11 @@ package swp391.fa25.lms;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
+// Profile test: cho phép khóa ký license certificate tạm (app.license-cert.* để trống)
 @SpringBootTest
+@ActiveProfiles("test")
 class G4LicenseManagementSystemApplicationTests {
 
     @Test
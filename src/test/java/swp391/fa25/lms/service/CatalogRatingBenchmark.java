@@ -0,0 +1,135 @@
+package swp391.fa25.lms.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.FeedbackRepository;
+import swp391.fa25.lms.repository.ToolListRepository;
+import swp391.fa25.lms.repository.ToolRepository;
+import swp391.fa25.lms.support.JpaTestSupport;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Số câu SQL và thời gian dựng rating cho catalog khi số tool tăng:
+ * - Trước: 2 query / tool (avgRatingByToolAndStatus + countByToolAndStatus)
+ * - Sau: rating đọc từ cột tổng hợp review_count / rating_sum của Tool, cùng câu query trang
+ * Chỉ khẳng định số câu SQL; thời gian chỉ ghi log.
+ * Chạy riêng: mvn test -Dgroups=benchmark -DexcludedGroups=none
+ */
+@Slf4j
+@Tag("benchmark")
+@Import(ToolSummaryService.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:catalograting;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class CatalogRatingBenchmark extends JpaTestSupport {
+
+    private static final int[] CATALOG_SIZES = {50, 200, 800};
+    private static final int FEEDBACK_PER_TOOL = 2;
+    private static final int RUNS = 5;
+
+    @Autowired private ToolSummaryService toolSummaryService;
+    @Autowired private ToolRepository toolRepository;
+    @Autowired private ToolListRepository toolListRepository;
+    @Autowired private FeedbackRepository feedbackRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean private CatalogSnapshotService catalogSnapshotService;
+
+    @Test
+    void ratingQueriesStayConstantAsCatalogGrows() {
+        Account buyer = fixtures.account("rating.buyer@test.local", "Rating Buyer");
+        Category category = fixtures.category("Ratings");
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        int seeded = 0;
+        Long afterBaseline = null;
+        for (int size : CATALOG_SIZES) {
+            for (; seeded < size; seeded++) seedTool(buyer, category, seeded);
+            toolSummaryService.rebuildAll();
+
+            // Trước: rating tính riêng cho từng tool
+            Measured before = measure(stats, () -> {
+                double sum = 0;
+                for (Tool tool : toolRepository.findAll()) {
+                    Double avg = feedbackRepository.avgRatingByToolAndStatus(tool, Feedback.Status.PUBLISHED);
+                    long count = feedbackRepository.countByToolAndStatus(tool, Feedback.Status.PUBLISHED);
+                    sum += (avg == null ? 0 : avg) + count;
+                }
+                return sum;
+            });
+
+            // Sau: 1 trang cả catalog, rating có sẵn trên từng dòng
+            Measured after = measure(stats, () -> {
+                double sum = 0;
+                for (Tool tool : toolListRepository.searchToolList(null, Tool.Status.PUBLISHED, null, null, false,
+                        List.of(-1L), null, null, "", PageRequest.of(0, size))) {
+                    sum += tool.getAverageRating() + tool.getTotalReviews();
+                }
+                return sum;
+            });
+
+            log.info("Catalog rating, {} tools: before {} statements / {} ms, after {} statements / {} ms",
+                    size, before.statements, before.millis, after.statements, after.millis);
+
+            assertThat(after.result).isEqualTo(before.result);
+            // Trước: tăng đúng 2 câu cho mỗi tool (phần cố định là findAll + nạp category)
+            assertThat(before.statements - 2L * size).isBetween(1L, 3L);
+            // Sau: trang + đếm tổng (+ nạp category), như nhau với mọi kích thước catalog
+            if (afterBaseline == null) afterBaseline = after.statements;
+            assertThat(after.statements).isEqualTo(afterBaseline).isLessThanOrEqualTo(3);
+        }
+    }
+
+    private void seedTool(Account buyer, Category category, int i) {
+        Tool tool = fixtures.tool(category, "Rated Tool " + i, Tool.LoginMethod.TOKEN, 0);
+        List<Feedback> feedbacks = new ArrayList<>();
+        for (int f = 0; f < FEEDBACK_PER_TOOL; f++) {
+            Feedback feedback = new Feedback();
+            feedback.setAccount(buyer);
+            feedback.setTool(tool);
+            feedback.setOrder(fixtures.order(buyer, tool));
+            feedback.setRating(1 + (i + f) % 5);
+            feedback.setStatus(Feedback.Status.PUBLISHED);
+            feedback.setCreatedAt(LocalDateTime.now());
+            feedbacks.add(feedback);
+        }
+        feedbackRepository.saveAll(feedbacks);
+    }
+
+    private record Measured(long statements, long millis, double result) {
+    }
+
+    // Trung vị thời gian qua RUNS lần; số câu SQL của 1 lần chạy
+    private static Measured measure(Statistics stats, Supplier<Double> work) {
+        long[] millis = new long[RUNS];
+        long statements = 0;
+        double result = 0;
+        for (int i = 0; i < RUNS; i++) {
+            stats.clear();
+            long began = System.nanoTime();
+            result = work.get();
+            millis[i] = (System.nanoTime() - began) / 1_000_000;
+            statements = stats.getPrepareStatementCount();
+        }
+        Arrays.sort(millis);
+        return new Measured(statements, millis[RUNS / 2], result);
+    }
+}
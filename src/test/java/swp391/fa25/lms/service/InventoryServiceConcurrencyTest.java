@@ -0,0 +1,105 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.*;
+import swp391.fa25.lms.support.JpaTestSupport;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Nhiều người mua cùng checkout 1 tool song song: không bán quá số lượng, counters luôn khớp.
+ */
+@Import(InventoryService.class)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:inventory;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1")
+class InventoryServiceConcurrencyTest extends JpaTestSupport {
+
+    private static final int STOCK = 100;
+    private static final int BUYERS = 300;
+    private static final int THREADS = 32;
+
+    @Autowired private InventoryService inventoryService;
+    @Autowired private PaymentTransactionRepository transactionRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @MockitoBean private CatalogSnapshotService catalogSnapshotService;
+    @MockitoBean private TypeaheadService typeaheadService;
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        Account buyer = fixtures.account("buyer@test.local", "Stock Buyer");
+        Tool tool = fixtures.tool(fixtures.category("Stock"), "Stock Tool", Tool.LoginMethod.USER_PASSWORD, STOCK);
+
+        List<PaymentTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            PaymentTransaction tx = new PaymentTransaction();
+            tx.setAccount(buyer);
+            tx.setTransactionType(PaymentTransaction.TransactionType.ORDER_PAYMENT);
+            tx.setStatus(PaymentTransaction.TransactionStatus.PENDING);
+            tx.setAmount(BigDecimal.TEN);
+            tx.setVnpayTxnRef("INV" + i);
+            transactions.add(transactionRepository.save(tx));
+        }
+
+        // Tất cả người mua bấm checkout cùng lúc, mỗi người 1 license
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Long toolId = tool.getToolId();
+
+        List<PaymentTransaction> reserved = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> futures = new ArrayList<>();
+        for (PaymentTransaction tx : transactions) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                if (Boolean.TRUE.equals(template.execute(s -> inventoryService.reserve(tx, Map.of(toolId, 1))))) {
+                    reserved.add(tx);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        // Đúng STOCK người giữ được hàng, phần còn lại bị từ chối
+        assertThat(reserved).hasSize(STOCK);
+        assertCounters(toolId, 0, STOCK, 0);
+
+        // 60 giao dịch thanh toán thành công, 40 thất bại
+        for (int i = 0; i < reserved.size(); i++) {
+            PaymentTransaction tx = reserved.get(i);
+            if (i < 60) template.executeWithoutResult(s -> inventoryService.commit(tx, Map.of(toolId, 1)));
+            else template.executeWithoutResult(s -> inventoryService.release(tx));
+        }
+        assertCounters(toolId, STOCK - 60, 0, 60);
+
+        // Callback lặp lại (VNPay gọi IPN 2 lần) không trả hàng / trừ hàng thêm lần nữa
+        PaymentTransaction released = reserved.get(reserved.size() - 1);
+        template.executeWithoutResult(s -> inventoryService.release(released));
+        assertCounters(toolId, STOCK - 60, 0, 60);
+
+        // Callback thành công lặp lại: giữ chỗ đã COMMITTED -> không trừ thẳng available lần nữa
+        PaymentTransaction paid = reserved.get(0);
+        template.executeWithoutResult(s -> inventoryService.commit(paid, Map.of(toolId, 1)));
+        assertCounters(toolId, STOCK - 60, 0, 60);
+    }
+
+    private void assertCounters(Long toolId, int available, int reserved, int sold) {
+        Map<String, Object> counters = inventoryService.getCounters(toolId);
+        assertThat(((Number) counters.get("available")).intValue()).isEqualTo(available);
+        assertThat(((Number) counters.get("reserved")).intValue()).isEqualTo(reserved);
+        assertThat(((Number) counters.get("sold")).intValue()).isEqualTo(sold);
+    }
+}
@@ -0,0 +1,60 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dò credential trên API license: khóa theo tool + username và theo IP sau đủ số lần sai, giới hạn request / IP.
+ */
+class LicenseApiThrottleTest {
+
+    private final LicenseApiThrottle throttle = new LicenseApiThrottle();
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(throttle, "windowMs", 60_000L);
+        ReflectionTestUtils.setField(throttle, "ipRequests", 50);
+        ReflectionTestUtils.setField(throttle, "ipFailures", 10);
+        ReflectionTestUtils.setField(throttle, "loginFailures", 3);
+        ReflectionTestUtils.setField(throttle, "toolFailures", 1000);
+        ReflectionTestUtils.setField(throttle, "lockoutMs", 900_000L);
+    }
+
+    @Test
+    void locksLoginAfterRepeatedFailures() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(throttle.admit("10.0.0.1", 1L, "alice")).isZero();
+            throttle.recordFailure("10.0.0.1", 1L, "alice");
+        }
+        // Đổi IP vẫn bị khóa theo tool + username; username khác thì không
+        assertThat(throttle.admit("10.0.0.2", 1L, "alice")).isGreaterThan(0);
+        assertThat(throttle.admit("10.0.0.2", 1L, "bob")).isZero();
+    }
+
+    @Test
+    void successResetsLoginFailures() {
+        throttle.recordFailure("10.0.0.1", 1L, "alice");
+        throttle.recordFailure("10.0.0.1", 1L, "alice");
+        throttle.recordSuccess(1L, "alice");
+        throttle.recordFailure("10.0.0.1", 1L, "alice");
+        assertThat(throttle.admit("10.0.0.1", 1L, "alice")).isZero();
+    }
+
+    @Test
+    void locksIpSprayingSecretsAcrossTools() {
+        for (int i = 0; i < 10; i++) throttle.recordFailure("10.0.0.9", (long) i, null);
+        assertThat(throttle.admit("10.0.0.9", 99L, null)).isGreaterThan(0);
+        assertThat(throttle.admit("10.0.0.10", 99L, null)).isZero();
+        assertThat(throttle.getStats().get("lockouts")).isEqualTo(1L);
+    }
+
+    @Test
+    void capsRequestsPerIp() {
+        for (int i = 0; i < 50; i++) assertThat(throttle.admit("10.0.0.3", 1L, null)).isZero();
+        long wait = throttle.admit("10.0.0.3", 1L, null);
+        assertThat(wait).isBetween(1L, 60L);
+    }
+}
@@ -0,0 +1,61 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.*;
+import swp391.fa25.lms.support.JpaTestSupport;
+import swp391.fa25.lms.util.ClientSecret;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 2 node cùng DB: node A thu hồi / gia hạn account, node B thấy qua nhật ký license_account_change.
+ */
+@Import(LicenseIndexService.class)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:licenseindexfeed;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1")
+class LicenseIndexServiceChangeFeedTest extends JpaTestSupport {
+
+    @Autowired private LicenseIndexService nodeA;
+    @Autowired private LicenseAccountRepository licenseAccountRepository;
+    @Autowired private LicenseAccountChangeRepository changeRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void otherNodeFollowsChangesThroughFeed() {
+        Tool tool = fixtures.tool(fixtures.category("Feed"), "Feed Tool", Tool.LoginMethod.TOKEN, 0);
+        LicenseAccount la = fixtures.activeAccount(fixtures.license(tool), LocalDateTime.now().plusDays(30));
+        la.setClientSecretHash(ClientSecret.hash("feed-secret"));
+        la = fixtures.save(la);
+        Long toolId = tool.getToolId();
+
+        LicenseIndexService nodeB = new LicenseIndexService(licenseAccountRepository, changeRepository, transactionManager);
+        ReflectionTestUtils.setField(nodeB, "changeGraceMs", 60_000L);
+        nodeA.buildOnStartup();
+        nodeB.buildOnStartup();
+        assertThat(nodeB.verifySecret(toolId, "feed-secret").valid()).isTrue();
+
+        // Node A thu hồi: node A thấy ngay, node B thấy sau lượt poll
+        la.setStatus(LicenseAccount.Status.REVOKED);
+        licenseAccountRepository.save(la);
+        nodeA.refresh(la.getLicenseAccountId());
+        assertThat(nodeA.verifySecret(toolId, "feed-secret").valid()).isFalse();
+        assertThat(nodeB.verifySecret(toolId, "feed-secret").valid()).isTrue();
+        nodeB.pollChanges();
+        assertThat(nodeB.verifySecret(toolId, "feed-secret").valid()).isFalse();
+
+        // Kích hoạt lại
+        la.setStatus(LicenseAccount.Status.ACTIVE);
+        licenseAccountRepository.save(la);
+        nodeA.refresh(la.getLicenseAccountId());
+        nodeB.pollChanges();
+        assertThat(nodeB.verifySecret(toolId, "feed-secret").valid()).isTrue();
+        assertThat(nodeB.getStats().get("remoteChanges")).isEqualTo(2L);
+    }
+}
@@ -0,0 +1,150 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.*;
+import swp391.fa25.lms.support.JpaTestSupport;
+import swp391.fa25.lms.util.ClientSecret;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Index xác thực license: đúng sau thu hồi / hết hạn / gia hạn, và chịu được hàng chục nghìn lượt verify/giây
+ * trên 1 node (nhiều thread gọi song song, không chạm DB).
+ * Không bật MODE=MSSQLServer: ở mode đó cột token unique chỉ nhận 1 NULL, không tạo được nhiều account USER_PASSWORD.
+ */
+@Import(LicenseIndexService.class)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:licenseindex;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1")
+class LicenseIndexServiceLoadTest extends JpaTestSupport {
+
+    private static final int TOKEN_ACCOUNTS = 2000;
+    private static final int LOGIN_ACCOUNTS = 500;
+    private static final int THREADS = 8;
+    private static final int VERIFY_PER_THREAD = 200_000;
+    private static final double MIN_OPS_PER_SECOND = 20_000;
+
+    @Autowired private LicenseIndexService index;
+    @Autowired private LicenseAccountRepository licenseAccountRepository;
+
+    @Test
+    void indexFollowsWritesAndSustainsHighVerifyRate() throws Exception {
+        Category category = fixtures.category("Licensing");
+        Tool tokenTool = fixtures.tool(category, "Token Tool", Tool.LoginMethod.TOKEN, 0);
+        Tool loginTool = fixtures.tool(category, "Login Tool", Tool.LoginMethod.USER_PASSWORD, 0);
+        License tokenLicense = fixtures.license(tokenTool);
+        License loginLicense = fixtures.license(loginTool);
+
+        LocalDateTime end = LocalDateTime.now().plusDays(30);
+        List<LicenseAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < TOKEN_ACCOUNTS; i++) {
+            LicenseAccount la = fixtures.activeAccount(tokenLicense, end);
+            la.setToken(String.format("%06d", i));
+            la.setClientSecretHash(ClientSecret.hash(secret(i)));
+            accounts.add(la);
+        }
+        for (int i = 0; i < LOGIN_ACCOUNTS; i++) {
+            LicenseAccount la = fixtures.activeAccount(loginLicense, end);
+            la.setUsername("user" + i);
+            la.setPassword("pw" + i);
+            accounts.add(la);
+        }
+        // Token trong pool chưa kích hoạt: không vào index
+        LicenseAccount unused = fixtures.activeAccount(tokenLicense, null);
+        unused.setToken("999999");
+        unused.setClientSecretHash(ClientSecret.hash(secret(999_999)));
+        unused.setUsed(false);
+        accounts.add(unused);
+        licenseAccountRepository.saveAll(accounts);
+
+        index.rebuild();
+        Long tokenToolId = tokenTool.getToolId();
+        Long loginToolId = loginTool.getToolId();
+
+        assertThat(index.getStats().get("accounts")).isEqualTo(TOKEN_ACCOUNTS + LOGIN_ACCOUNTS);
+        assertThat(index.verifySecret(tokenToolId, secret(1)).valid()).isTrue();
+        assertThat(index.verifySecret(loginToolId, secret(1)).valid()).isFalse();
+        assertThat(index.verifySecret(tokenToolId, secret(999_999)).valid()).isFalse();
+        // Token 6 số không còn là credential
+        assertThat(index.verifySecret(tokenToolId, "000001").valid()).isFalse();
+        assertThat(index.verifyLogin(loginToolId, "user1", "pw1").valid()).isTrue();
+        assertThat(index.verifyLogin(loginToolId, "user1", "wrong").valid()).isFalse();
+
+        // Thu hồi -> gỡ khỏi index
+        LicenseAccount revoked = licenseAccountRepository.findByToken("000002");
+        revoked.setStatus(LicenseAccount.Status.REVOKED);
+        licenseAccountRepository.save(revoked);
+        index.refresh(revoked.getLicenseAccountId());
+        assertThat(index.verifySecret(tokenToolId, secret(2)).result())
+                .isEqualTo(LicenseIndexService.Result.INVALID_CREDENTIALS);
+
+        // Quá endDate nhưng job hết hạn chưa quét -> EXPIRED; gia hạn -> VALID lại
+        LicenseAccount lapsed = licenseAccountRepository.findByToken("000003");
+        lapsed.setEndDate(LocalDateTime.now().minusMinutes(1));
+        licenseAccountRepository.save(lapsed);
+        index.refresh(lapsed.getLicenseAccountId());
+        assertThat(index.verifySecret(tokenToolId, secret(3)).result()).isEqualTo(LicenseIndexService.Result.EXPIRED);
+
+        lapsed.setEndDate(LocalDateTime.now().plusDays(7));
+        licenseAccountRepository.save(lapsed);
+        index.refresh(lapsed.getLicenseAccountId());
+        assertThat(index.verifySecret(tokenToolId, secret(3)).valid()).isTrue();
+
+        // Đổi username -> key cũ không còn dùng được
+        LicenseAccount renamed = accounts.get(TOKEN_ACCOUNTS);
+        renamed.setUsername("renamed");
+        licenseAccountRepository.save(renamed);
+        index.refresh(renamed.getLicenseAccountId());
+        assertThat(index.verifyLogin(loginToolId, "user0", "pw0").valid()).isFalse();
+        assertThat(index.verifyLogin(loginToolId, "renamed", "pw0").valid()).isTrue();
+
+        // ===== Load: THREADS thread verify song song, trộn token / login, cả hit lẫn miss =====
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder validCount = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                Random rnd = new Random(seed);
+                for (int i = 0; i < VERIFY_PER_THREAD; i++) {
+                    boolean ok;
+                    if ((i & 3) == 0) {
+                        int u = 1 + rnd.nextInt(LOGIN_ACCOUNTS - 1);
+                        ok = index.verifyLogin(loginToolId, "user" + u, "pw" + u).valid();
+                    } else {
+                        ok = index.verifySecret(tokenToolId, secret(rnd.nextInt(TOKEN_ACCOUNTS * 2))).valid();
+                    }
+                    if (ok) validCount.increment();
+                }
+                return null;
+            }));
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) f.get(120, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - began) / 1e9;
+        pool.shutdown();
+
+        long total = (long) THREADS * VERIFY_PER_THREAD;
+        double opsPerSecond = total / seconds;
+        System.out.printf("License verify load: %d ops in %.2f s = %.0f ops/s (%d threads)%n",
+                total, seconds, opsPerSecond, THREADS);
+
+        assertThat(validCount.sum()).isGreaterThan(total / 3);
+        assertThat(opsPerSecond).isGreaterThan(MIN_OPS_PER_SECOND);
+    }
+
+    private static String secret(int i) {
+        return "secret-" + i;
+    }
+}
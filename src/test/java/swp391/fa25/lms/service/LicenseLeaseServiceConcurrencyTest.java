@@ -0,0 +1,141 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.*;
+import swp391.fa25.lms.support.JpaTestSupport;
+import swp391.fa25.lms.util.ClientSecret;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lease thiết bị: nhiều thiết bị tranh seat cùng lúc không vượt maxDevices, trả seat thì thiết bị khác vào được,
+ * DB chỉ giữ lease đang sống sau flush, license bị thu hồi thì heartbeat bị từ chối, hạ maxDevices thì lease mới nhất bị kết thúc.
+ */
+@Import({LicenseIndexService.class, LicenseLeaseService.class})
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:licenselease;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1")
+class LicenseLeaseServiceConcurrencyTest extends JpaTestSupport {
+
+    private static final int MAX_DEVICES = 3;
+    private static final int THREADS = 8;
+    private static final int DEVICES = 200;
+
+    @Autowired private LicenseIndexService index;
+    @Autowired private LicenseLeaseService leases;
+    @Autowired private LicenseAccountRepository licenseAccountRepository;
+    @Autowired private LicenseLeaseRepository licenseLeaseRepository;
+
+    @Test
+    void concurrentAcquireNeverExceedsMaxDevices() throws Exception {
+        LicenseAccount la = seedAccount();
+        index.rebuild();
+        Long toolId = la.getLicense().getTool().getToolId();
+        LicenseIndexService.Verification license = index.verifySecret(toolId, "LEASE-1");
+        assertThat(license.valid()).isTrue();
+        assertThat(license.maxDevices()).isEqualTo(MAX_DEVICES);
+
+        // ===== DEVICES thiết bị xin lease song song =====
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<LicenseLeaseService.LeaseResult>> futures = new ArrayList<>();
+        for (int d = 0; d < DEVICES; d++) {
+            String deviceId = "device-" + d;
+            futures.add(pool.submit(() -> {
+                start.await();
+                return leases.acquire(index.verifySecret(toolId, "LEASE-1"), deviceId, "PC " + deviceId);
+            }));
+        }
+        start.countDown();
+        List<LicenseLeaseService.LeaseResult> granted = new ArrayList<>();
+        for (Future<LicenseLeaseService.LeaseResult> f : futures) {
+            LicenseLeaseService.LeaseResult r = f.get(30, TimeUnit.SECONDS);
+            if (r.granted()) granted.add(r);
+            else assertThat(r.result()).isEqualTo(LicenseLeaseService.Result.SEATS_EXHAUSTED);
+        }
+        pool.shutdown();
+        assertThat(granted).hasSize(MAX_DEVICES);
+
+        // Heartbeat gia hạn lease đang giữ
+        String holder = granted.get(0).leaseId();
+        assertThat(leases.heartbeat(holder).granted()).isTrue();
+
+        leases.flush();
+        assertThat(licenseLeaseRepository.count()).isEqualTo(MAX_DEVICES);
+        LicenseAccount touched = licenseAccountRepository.findById(la.getLicenseAccountId()).orElseThrow();
+        assertThat(touched.getLastLogin()).isNotNull();
+        assertThat(touched.getDeviceInfo()).startsWith("PC device-");
+
+        // Trả 1 seat -> thiết bị mới vào được, hết seat lại
+        assertThat(leases.release(holder)).isTrue();
+        assertThat(leases.heartbeat(holder).result()).isEqualTo(LicenseLeaseService.Result.LEASE_NOT_FOUND);
+        LicenseLeaseService.LeaseResult late = leases.acquire(license, "late-device", null);
+        assertThat(late.granted()).isTrue();
+        assertThat(leases.acquire(license, "one-more", null).result())
+                .isEqualTo(LicenseLeaseService.Result.SEATS_EXHAUSTED);
+
+        // Trả rồi xin lại cùng thiết bị trước khi flush: không đụng unique (account, device)
+        assertThat(leases.release(late.leaseId())).isTrue();
+        assertThat(leases.acquire(license, "late-device", null).granted()).isTrue();
+
+        leases.flush();
+        assertThat(licenseLeaseRepository.count()).isEqualTo(MAX_DEVICES);
+        assertThat(licenseLeaseRepository.findAll()).noneMatch(l -> l.getLeaseId().equals(holder));
+
+        // Thu hồi license -> heartbeat bị từ chối, lease bị trả
+        la.setStatus(LicenseAccount.Status.REVOKED);
+        licenseAccountRepository.save(la);
+        index.refresh(la.getLicenseAccountId());
+        assertThat(leases.heartbeat(granted.get(1).leaseId()).result())
+                .isEqualTo(LicenseLeaseService.Result.LICENSE_INVALID);
+        leases.flush();
+        assertThat(licenseLeaseRepository.count()).isEqualTo(MAX_DEVICES - 1);
+    }
+
+    @Test
+    void loweringMaxDevicesEndsNewestLeases() {
+        Tool tool = fixtures.tool(fixtures.category("Leasing Limit"), "Lease Limit Tool", Tool.LoginMethod.TOKEN, 0);
+        LicenseAccount la = fixtures.activeAccount(fixtures.license(tool), LocalDateTime.now().plusDays(30));
+        la.setToken("LEASE-LIMIT");
+        la.setClientSecretHash(ClientSecret.hash("LEASE-2"));
+        la.setMaxDevices(MAX_DEVICES);
+        la = fixtures.save(la);
+        index.refresh(la.getLicenseAccountId());
+        LicenseIndexService.Verification license = index.verifySecret(tool.getToolId(), "LEASE-2");
+
+        String first = leases.acquire(license, "first", null).leaseId();
+        String second = leases.acquire(license, "second", null).leaseId();
+        String third = leases.acquire(license, "third", null).leaseId();
+        LicenseLeaseService.LeaseResult renewed = leases.heartbeat(first);
+        assertThat(renewed.maxDevices()).isEqualTo(MAX_DEVICES);
+        assertThat(renewed.activeDevices()).isEqualTo(MAX_DEVICES);
+
+        // Admin hạ còn 1 thiết bị: lease cấp sau cùng bị kết thúc ở heartbeat kế tiếp, lease đầu tiên được giữ
+        la.setMaxDevices(1);
+        licenseAccountRepository.save(la);
+        index.refresh(la.getLicenseAccountId());
+
+        assertThat(leases.heartbeat(third).result()).isEqualTo(LicenseLeaseService.Result.SEATS_EXHAUSTED);
+        LicenseLeaseService.LeaseResult kept = leases.heartbeat(first);
+        assertThat(kept.granted()).isTrue();
+        assertThat(kept.maxDevices()).isEqualTo(1);
+        assertThat(kept.activeDevices()).isEqualTo(1);
+        assertThat(leases.heartbeat(second).result()).isEqualTo(LicenseLeaseService.Result.LEASE_NOT_FOUND);
+        assertThat(leases.acquire(index.verifySecret(tool.getToolId(), "LEASE-2"), "fourth", null).result())
+                .isEqualTo(LicenseLeaseService.Result.SEATS_EXHAUSTED);
+    }
+
+    private LicenseAccount seedAccount() {
+        Tool tool = fixtures.tool(fixtures.category("Leasing"), "Lease Tool", Tool.LoginMethod.TOKEN, 0);
+        LicenseAccount la = fixtures.activeAccount(fixtures.license(tool), LocalDateTime.now().plusDays(30));
+        la.setClientSecretHash(ClientSecret.hash("LEASE-1"));
+        la.setMaxDevices(MAX_DEVICES);
+        return fixtures.save(la);
+    }
+}
@@ -0,0 +1,71 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.model.LicenseRevocation;
+import swp391.fa25.lms.repository.LicenseRevocationRepository;
+import swp391.fa25.lms.support.JpaTestSupport;
+import swp391.fa25.lms.util.RevocationBloomFilter;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * seq IDENTITY commit muộn: thu hồi giữ seq nhỏ commit sau thu hồi seq lớn vẫn vào feed, không bị bỏ qua.
+ */
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:revocationlate;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1")
+class LicenseRevocationFeedLateCommitTest extends JpaTestSupport {
+
+    @Autowired private LicenseRevocationRepository revocationRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void lateCommitIsNotSkipped() throws Exception {
+        LicenseRevocationFeedService feed = new LicenseRevocationFeedService(revocationRepository, transactionManager);
+        ReflectionTestUtils.setField(feed, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(feed, "maxDeltas", 5000);
+        ReflectionTestUtils.setField(feed, "gapGraceMs", 60_000L);
+        feed.rebuild();
+
+        LocalDateTime validUntil = LocalDateTime.now().plusDays(30);
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Node khác: INSERT lấy seq trước nhưng commit sau
+        Thread slow = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(st -> {
+            revocationRepository.saveAndFlush(new LicenseRevocation("slow", 1L, LicenseAccount.Status.REVOKED,
+                    validUntil, LocalDateTime.now()));
+            inserted.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        slow.start();
+        assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // seq lớn hơn commit trước: chưa được nhận vì còn khoảng trống phía trước
+        feed.record("fast", 2L, LicenseAccount.Status.REVOKED, validUntil);
+        assertThat(feed.deltasSince(0).revoked()).isEmpty();
+        assertThat(feed.getStats().get("heldSeqs")).isEqualTo(1);
+
+        release.countDown();
+        slow.join();
+        feed.poll();
+
+        LicenseRevocationFeedService.DeltaPage page = feed.deltasSince(0);
+        assertThat(page.revoked()).containsExactly("slow", "fast");
+        RevocationBloomFilter filter = RevocationBloomFilter.fromBytes(feed.snapshot(null).bytes());
+        assertThat(filter.mightContain("slow")).isTrue();
+        assertThat(filter.mightContain("fast")).isTrue();
+        assertThat(feed.getStats().get("heldSeqs")).isEqualTo(0);
+    }
+}
@@ -0,0 +1,77 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.util.RevocationBloomFilter;
+import swp391.fa25.lms.support.JpaTestSupport;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Feed thu hồi: snapshot Bloom filter nhỏ, cập nhật dần khi có thu hồi mới, delta theo seq, ETag ổn định.
+ */
+@Import(LicenseRevocationFeedService.class)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:revocationfeed;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1")
+class LicenseRevocationFeedServiceTest extends JpaTestSupport {
+
+    private static final int REVOKED = 2000;
+    private static final int PROBES = 100_000;
+
+    @Autowired private LicenseRevocationFeedService feed;
+
+    @Test
+    void snapshotStaysSmallAndFollowsNewRevocations() {
+        LocalDateTime validUntil = LocalDateTime.now().plusDays(30);
+        List<String> revoked = new ArrayList<>();
+        for (int i = 0; i < REVOKED; i++) {
+            String id = UUID.randomUUID().toString();
+            feed.record(id, (long) i, LicenseAccount.Status.REVOKED, validUntil);
+            revoked.add(id);
+        }
+        // Certificate đã tự hết hạn: không cần có trong snapshot
+        String lapsed = UUID.randomUUID().toString();
+        feed.record(lapsed, 99_999L, LicenseAccount.Status.EXPIRED, LocalDateTime.now().minusMinutes(1));
+
+        feed.rebuild();
+        LicenseRevocationFeedService.Snapshot snap = feed.snapshot(null);
+        RevocationBloomFilter filter = RevocationBloomFilter.fromBytes(snap.bytes());
+
+        assertThat(snap.bytes().length).isLessThan(5 * 1024);
+        assertThat(revoked).allMatch(filter::mightContain);
+        assertThat(filter.getThroughSeq()).isEqualTo(REVOKED + 1);
+
+        int falsePositives = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) falsePositives++;
+        }
+        assertThat((double) falsePositives / PROBES).isLessThan(0.02);
+
+        // Cùng phiên bản -> 304
+        assertThat(feed.snapshot(snap.etag())).isNull();
+
+        // Thu hồi mới: có trong delta sau seq của snapshot và trong snapshot mới (ETag đổi)
+        String fresh = UUID.randomUUID().toString();
+        feed.record(fresh, 123L, LicenseAccount.Status.REVOKED, validUntil);
+
+        LicenseRevocationFeedService.DeltaPage page = feed.deltasSince(snap.throughSeq());
+        assertThat(page.snapshotRequired()).isFalse();
+        assertThat(page.revoked()).containsExactly(fresh);
+        assertThat(page.throughSeq()).isEqualTo(snap.throughSeq() + 1);
+
+        LicenseRevocationFeedService.Snapshot next = feed.snapshot(snap.etag());
+        assertThat(next).isNotNull();
+        assertThat(next.etag()).isNotEqualTo(snap.etag());
+        assertThat(RevocationBloomFilter.fromBytes(next.bytes()).mightContain(fresh)).isTrue();
+
+        // Client chưa từng có snapshot -> phải tải snapshot
+        assertThat(feed.deltasSince(0).snapshotRequired()).isTrue();
+    }
+}
@@ -0,0 +1,149 @@
+package swp391.fa25.lms.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.mail.MailSenderAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.MailOutbox;
+import swp391.fa25.lms.repository.MailOutboxRepository;
+import swp391.fa25.lms.support.JpaTestSupport;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Mail outbox gửi qua SMTP giả (GreenMail): chỉ gửi khi transaction commit, lỗi SMTP thì retry.
+ */
+@Import({MailOutboxService.class, MailTemplateService.class})
+@ImportAutoConfiguration(MailSenderAutoConfiguration.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:mailoutbox;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=",
+        "spring.mail.password=",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "app.mail.retry-base-seconds=0"
+})
+class MailOutboxServiceTest extends JpaTestSupport {
+
+    @RegisterExtension
+    static GreenMailExtension smtp = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired private MailOutboxService mailOutbox;
+    @Autowired private MailOutboxRepository outboxRepo;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void clearOutbox() {
+        outboxRepo.deleteAll();
+    }
+
+    @Test
+    void mailsAreSentAfterCommitOnly() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // Transaction rollback -> không có mail nào
+        tx.executeWithoutResult(s -> {
+            mailOutbox.enqueue(MailTemplateService.VERIFICATION_CODE, "rollback@test.local", null,
+                    "Rollback", Map.of("fullName", "Rollback", "code", "111111", "expiryMinutes", 2));
+            s.setRollbackOnly();
+        });
+
+        tx.executeWithoutResult(s -> {
+            for (int i = 0; i < 10; i++) {
+                mailOutbox.enqueue(MailTemplateService.VERIFICATION_CODE, "user" + i + "@test.local", null,
+                        "[LMS] Xác minh tài khoản của bạn",
+                        Map.of("fullName", "User " + i, "code", String.format("%06d", i), "expiryMinutes", 2));
+            }
+        });
+
+        await().atMost(Duration.ofSeconds(20)).until(() -> outboxRepo.countByStatus(MailOutbox.Status.SENT) == 10);
+
+        // Worker gửi song song nên thứ tự nhận không cố định
+        MimeMessage[] received = smtp.getReceivedMessages();
+        assertThat(received).hasSize(10);
+        for (MimeMessage m : received) {
+            String to = m.getAllRecipients()[0].toString();
+            assertThat(to).startsWith("user");
+            String i = to.substring(4, to.indexOf('@'));
+            assertThat(textOf(m)).contains("User " + i).contains(String.format("%06d", Integer.parseInt(i)));
+        }
+        assertThat(outboxRepo.findAll()).allSatisfy(m -> assertThat(m.getModel()).isNull());
+    }
+
+    @Test
+    void smtpOutageIsRetried() throws Exception {
+        smtp.stop();
+        mailOutbox.enqueue(MailTemplateService.SUPPORT_REQUEST, "support@test.local", "admin@test.local",
+                "[ToolMarket Support] Help", Map.of("subject", "Help", "name", "A", "email", "a@test.local",
+                        "message", "Không đăng nhập được"));
+
+        await().atMost(Duration.ofSeconds(20)).until(() -> outboxRepo.findAll().stream()
+                .anyMatch(m -> m.getStatus() == MailOutbox.Status.PENDING && m.getAttempts() == 1));
+
+        smtp.start();
+        await().atMost(Duration.ofSeconds(20)).until(() -> {
+            mailOutbox.wakeUp();
+            List<MailOutbox> all = outboxRepo.findAll();
+            return all.stream().allMatch(m -> m.getStatus() == MailOutbox.Status.SENT);
+        });
+
+        // To + Cc -> GreenMail nhận 2 bản
+        assertThat(smtp.getReceivedMessages()).hasSize(2);
+        assertThat(textOf(smtp.getReceivedMessages()[0])).contains("Không đăng nhập được");
+    }
+
+    @Test
+    void givingUpClearsModel() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long retryId = sendingMail("retry@test.local").getMailId();
+        Long failedId = sendingMail("failed@test.local").getMailId();
+
+        tx.executeWithoutResult(s -> {
+            outboxRepo.markAttemptFailed(retryId, MailOutbox.Status.PENDING, LocalDateTime.now().plusHours(1), "timeout");
+            outboxRepo.markAttemptFailed(failedId, MailOutbox.Status.FAILED, LocalDateTime.now(), "mailbox unavailable");
+        });
+
+        // Còn retry thì cần model để render lại; FAILED thì không gửi nữa -> không giữ OTP trong DB
+        assertThat(outboxRepo.findById(retryId).orElseThrow().getModel()).isNotNull();
+        assertThat(outboxRepo.findById(failedId).orElseThrow().getModel()).isNull();
+    }
+
+    private MailOutbox sendingMail(String recipient) {
+        MailOutbox m = new MailOutbox();
+        m.setTemplate(MailTemplateService.VERIFICATION_CODE);
+        m.setRecipient(recipient);
+        m.setSubject("Code");
+        m.setModel("{\"code\":\"123456\"}");
+        m.setStatus(MailOutbox.Status.SENDING);
+        m.setClaimedAt(LocalDateTime.now());
+        m.setNextAttemptAt(LocalDateTime.now());
+        m.setCreatedAt(LocalDateTime.now());
+        return outboxRepo.save(m);
+    }
+
+    // Nội dung part đầu tiên (MimeMessageHelper multipart bọc text trong mixed/related)
+    private static String textOf(Part part) throws Exception {
+        Object content = part.getContent();
+        if (content instanceof Multipart multipart) return textOf(multipart.getBodyPart(0));
+        return content.toString();
+    }
+}
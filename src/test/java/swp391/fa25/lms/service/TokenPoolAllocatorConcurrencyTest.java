@@ -0,0 +1,103 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.*;
+import swp391.fa25.lms.support.JpaTestSupport;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Nhiều order cùng claim token của 1 tool song song: không token nào được cấp cho 2 order.
+ */
+@Import(TokenPoolAllocator.class)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:tokenpool;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1")
+class TokenPoolAllocatorConcurrencyTest extends JpaTestSupport {
+
+    private static final int POOL_SIZE = 30;
+    private static final int ORDERS = 20;
+    private static final int TOKENS_PER_ORDER = 2;
+
+    @Autowired private TokenPoolAllocator allocator;
+    @Autowired private LicenseAccountRepository licenseAccountRepository;
+    @Autowired private OrderRepository orderRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentClaimsNeverShareAToken() throws Exception {
+        Account buyer = fixtures.account("buyer@test.local", "Token Buyer");
+        Tool tool = fixtures.tool(fixtures.category("Tokens"), "Token Tool", Tool.LoginMethod.TOKEN, POOL_SIZE);
+        License license = fixtures.license(tool);
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            LicenseAccount token = new LicenseAccount();
+            token.setLicense(license);
+            token.setToken(String.format("%06d", i));
+            token.setUsed(false);
+            token.setStatus(LicenseAccount.Status.ACTIVE);
+            licenseAccountRepository.save(token);
+        }
+
+        List<CustomerOrder> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            CustomerOrder order = new CustomerOrder();
+            order.setAccount(buyer);
+            order.setTool(tool);
+            order.setPrice(0d);
+            order.setOrderStatus(CustomerOrder.OrderStatus.PENDING);
+            order.setCreatedAt(LocalDateTime.now());
+            orders.add(orderRepository.save(order));
+        }
+
+        // Tất cả thread bắt đầu claim cùng lúc
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        ExecutorService pool = Executors.newFixedThreadPool(ORDERS);
+        CountDownLatch start = new CountDownLatch(1);
+        Long toolId = tool.getToolId();
+
+        Map<Long, List<Long>> claimedByOrder = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (CustomerOrder order : orders) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    List<Long> ids = tx.execute(s -> allocator.claim(toolId, license, order, TOKENS_PER_ORDER));
+                    claimedByOrder.put(order.getOrderId(), ids);
+                } catch (IllegalStateException outOfStock) {
+                    // hết token -> transaction rollback, order không giữ token nào
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        // Đúng POOL_SIZE / TOKENS_PER_ORDER order được cấp đủ, không id nào bị cấp 2 lần
+        assertThat(claimedByOrder).hasSize(POOL_SIZE / TOKENS_PER_ORDER);
+        Set<Long> distinct = new HashSet<>();
+        claimedByOrder.values().forEach(ids -> {
+            assertThat(ids).hasSize(TOKENS_PER_ORDER);
+            distinct.addAll(ids);
+        });
+        assertThat(distinct).hasSize(POOL_SIZE);
+
+        // DB khớp với kết quả từng thread nhận được
+        for (CustomerOrder order : orders) {
+            List<Long> inDb = licenseAccountRepository.findByOrder_OrderId(order.getOrderId())
+                    .stream().map(LicenseAccount::getLicenseAccountId).sorted().toList();
+            List<Long> claimed = claimedByOrder.getOrDefault(order.getOrderId(), List.of())
+                    .stream().sorted().toList();
+            assertThat(inDb).isEqualTo(claimed);
+        }
+    }
+}
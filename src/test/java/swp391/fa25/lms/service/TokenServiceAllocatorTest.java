@@ -0,0 +1,71 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Bitmap gần đầy: randomList đi nhánh free list, trả đúng qty token trống khác nhau, tránh existed;
+ * xin quá số trống thì báo hết token ngay ở biên.
+ */
+class TokenServiceAllocatorTest {
+
+    private static final int TOKEN_SPACE = 1_000_000;
+    // Chỉ còn 1.000 giá trị trống: xxx007
+    private static final int STEP = 1_000;
+    private static final int FREE = TOKEN_SPACE / STEP;
+
+    private TokenService tokens;
+    private BitSet allocated;
+
+    @BeforeEach
+    void fillBitmap() {
+        tokens = new TokenService();
+        allocated = (BitSet) ReflectionTestUtils.getField(tokens, "allocated");
+        allocated.set(0, TOKEN_SPACE);
+        for (int v = 7; v < TOKEN_SPACE; v += STEP) allocated.clear(v);
+        // Bitmap đã dựng sẵn, không nạp từ DB
+        ReflectionTestUtils.setField(tokens, "loaded", true);
+    }
+
+    @Test
+    void freeListReturnsDistinctUnallocatedTokensAvoidingExisted() {
+        Set<String> existed = new HashSet<>(Set.of("000007", "500007"));
+        int qty = FREE - existed.size();
+
+        List<String> result = tokens.randomList(qty, existed);
+
+        assertThat(result).hasSize(qty).doesNotHaveDuplicates()
+                .doesNotContain("000007", "500007")
+                .allMatch(t -> !allocated.get(Integer.parseInt(t)));
+        // Lấy hết chỗ trống còn lại: mọi giá trị trống ngoài existed đều có mặt
+        Set<String> expected = new HashSet<>();
+        for (int v = 7; v < TOKEN_SPACE; v += STEP) expected.add(String.format("%06d", v));
+        expected.removeAll(Set.of("000007", "500007"));
+        assertThat(result).containsExactlyInAnyOrderElementsOf(expected);
+        // existed được cập nhật để lần gọi sau trong cùng phiên không trùng
+        assertThat(existed).hasSize(FREE);
+    }
+
+    @Test
+    void outOfTokensAtBoundary() {
+        Set<String> existed = new HashSet<>(Set.of("000007", "500007"));
+
+        assertThatThrownBy(() -> tokens.randomList(FREE - existed.size() + 1, existed))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(existed).hasSize(2);
+
+        // Hết sạch chỗ trống
+        allocated.set(0, TOKEN_SPACE);
+        assertThatThrownBy(() -> tokens.randomUnique(new HashSet<>()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,243 @@
+package swp391.fa25.lms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import swp391.fa25.lms.dto.UsageBatchRequestDTO;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.*;
+import swp391.fa25.lms.util.UsageEventRing;
+import swp391.fa25.lms.support.JpaTestSupport;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Telemetry sử dụng: nhiều thread gửi lô song song trong lúc flusher chạy, bucket giờ / ngày khớp đúng số sự kiện đã nhận,
+ * log thô đọc lại đủ, sự kiện sai bị loại, dashboard seller đọc được từ bucket.
+ */
+@Import(UsageTelemetryService.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:usagetelemetry;MODE=MSSQLServer;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        // Lớn hơn tổng số sự kiện gửi: không bỏ sự kiện nào dù flusher chậm (trường hợp ring đầy test riêng)
+        "app.usage.ring-capacity=131072"
+})
+class UsageTelemetryServiceTest extends JpaTestSupport {
+
+    private static final int THREADS = 8;
+    private static final int BATCHES_PER_THREAD = 200;
+    private static final int BATCH = 50;
+    private static final int LICENSES = 20;
+
+    private static final Path RAW_LOG_DIR = createTempDir();
+
+    @DynamicPropertySource
+    static void rawLog(DynamicPropertyRegistry registry) {
+        registry.add("app.usage.raw-log.dir", RAW_LOG_DIR::toString);
+    }
+
+    @Autowired private UsageTelemetryService telemetry;
+    @Autowired private UsageBucketRepository bucketRepository;
+    @Autowired private ToolRepository toolRepository;
+
+    @Test
+    void concurrentIngestAggregatesEveryAcceptedEvent() throws Exception {
+        Account seller = fixtures.account("usage.seller@test.local", "Usage Seller");
+        Long sellerId = seller.getAccountId();
+        Tool tool = fixtures.tool(fixtures.category("Usage"), "Usage Tool", Tool.LoginMethod.TOKEN, 0, seller);
+        Long toolId = tool.getToolId();
+
+        // ===== THREADS thread gửi lô song song, flusher chạy liên tục =====
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder launches = new LongAdder();
+        LongAdder features = new LongAdder();
+        LongAdder dropped = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                Random rnd = new Random(seed);
+                for (int b = 0; b < BATCHES_PER_THREAD; b++) {
+                    long license = 1 + rnd.nextInt(LICENSES);
+                    List<UsageBatchRequestDTO.Event> batch = new ArrayList<>();
+                    for (int i = 0; i < BATCH; i++) {
+                        batch.add(i % 5 == 0 ? event("LAUNCH", null) : event("feature", "export-" + (i % 3)));
+                    }
+                    UsageTelemetryService.IngestResult r = telemetry.ingest(valid(license, toolId), batch);
+                    assertThat(r.rejected()).isZero();
+                    dropped.add(r.dropped());
+                    launches.add(BATCH / 5);
+                    features.add(BATCH - BATCH / 5);
+                }
+                return null;
+            }));
+        }
+
+        AtomicBoolean producing = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (producing.get()) telemetry.flush();
+        });
+        flusher.start();
+        start.countDown();
+        for (Future<?> f : futures) f.get(120, TimeUnit.SECONDS);
+        producing.set(false);
+        flusher.join();
+        pool.shutdown();
+        telemetry.flush();
+
+        long sent = (long) THREADS * BATCHES_PER_THREAD * BATCH;
+        long accepted = sent - dropped.sum();
+        Map<String, Object> stats = telemetry.getStats();
+        System.out.printf("Usage ingest: %d sent, %d dropped, stats=%s%n", sent, dropped.sum(), stats);
+
+        assertThat(stats.get("accepted")).isEqualTo(accepted);
+        assertThat(stats.get("ringSize")).isEqualTo(0);
+        assertThat(stats.get("pendingBuckets")).isEqualTo(0);
+        assertThat(sumCounts(UsageBucket.Granularity.HOUR)).isEqualTo(accepted);
+        assertThat(sumCounts(UsageBucket.Granularity.DAY)).isEqualTo(accepted);
+        assertThat(dropped.sum()).isZero();
+        assertThat(sumCounts(UsageBucket.Granularity.DAY, UsageBucket.EventType.LAUNCH)).isEqualTo(launches.sum());
+        assertThat(sumCounts(UsageBucket.Granularity.DAY, UsageBucket.EventType.FEATURE)).isEqualTo(features.sum());
+        assertThat(bucketRepository.findAll()).allMatch(b -> sellerId.equals(b.getSellerId()));
+        // Bucket giờ gộp theo tool: LAUNCH + 3 tính năng (qua đầu giờ thì gấp đôi)
+        List<UsageBucket> hourly = bucketRepository.findAll().stream()
+                .filter(b -> b.getGranularity() == UsageBucket.Granularity.HOUR).toList();
+        assertThat(hourly).allMatch(b -> b.getLicenseAccountId() == null);
+        assertThat(hourly.size()).isBetween(4, 8);
+
+        // Bucket đã có: 1 SELECT mỗi giờ / ngày + 1 UPDATE mỗi delta, không 1 câu / bucket
+        for (long license = 1; license <= LICENSES; license++) {
+            telemetry.ingest(valid(license, toolId), List.of(event("LAUNCH", null)));
+        }
+        telemetry.flush();
+        assertThat((int) telemetry.getStats().get("lastFlushStatements")).isLessThanOrEqualTo(4);
+        accepted += LICENSES;
+        launches.add(LICENSES);
+        assertThat(sumCounts(UsageBucket.Granularity.DAY)).isEqualTo(accepted);
+
+        // Log thô đọc lại đủ (qua nửa đêm thì nằm ở 2 file)
+        LocalDate today = LocalDate.now();
+        int raw = telemetry.getRawLog().read(today).size() + telemetry.getRawLog().read(today.minusDays(1)).size();
+        assertThat((long) raw).isEqualTo(accepted);
+
+        // Dashboard seller chỉ đọc bucket
+        List<Object[]> topTools = bucketRepository.topToolsBySeller(sellerId,
+                UsageBucket.EventType.LAUNCH, today.minusDays(6).atStartOfDay(), PageRequest.of(0, 5));
+        assertThat(topTools).hasSize(1);
+        assertThat(topTools.get(0)[0]).isEqualTo("Usage Tool");
+        assertThat(((Number) topTools.get(0)[2]).longValue()).isEqualTo(LICENSES);
+        assertThat(bucketRepository.topFeaturesBySeller(sellerId, today.minusDays(6).atStartOfDay(),
+                PageRequest.of(0, 5))).hasSize(3);
+
+        // Sự kiện sai bị loại, license không hợp lệ không nhận gì
+        UsageBatchRequestDTO.Event stale = event("LAUNCH", null);
+        stale.setAt(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30));
+        UsageTelemetryService.IngestResult bad =
+                telemetry.ingest(valid(1L, toolId), List.of(event("CRASH", null), event("FEATURE", " "), stale));
+        assertThat(bad.accepted()).isZero();
+        assertThat(bad.rejected()).isEqualTo(3);
+
+        LicenseIndexService.Verification expired = new LicenseIndexService.Verification(
+                LicenseIndexService.Result.EXPIRED, 1L, toolId, LocalDateTime.now().minusDays(1), null, 1);
+        assertThat(telemetry.ingest(expired, List.of(event("LAUNCH", null))).result())
+                .isEqualTo(UsageTelemetryService.Result.LICENSE_INVALID);
+    }
+
+    @Test
+    void pendingBucketsAreCappedWhileDatabaseIsDown() {
+        // DB lỗi mọi lần flush: bucket giữ lại không vượt max-pending-buckets, phần vượt bị bỏ và đếm
+        PlatformTransactionManager down = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                throw new CannotCreateTransactionException("database down");
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+        UsageTelemetryService node = new UsageTelemetryService(bucketRepository, toolRepository, down, 1024, 500, 7, "");
+        ReflectionTestUtils.setField(node, "maxPendingBuckets", 4);
+
+        for (long license = 1; license <= 10; license++) {
+            node.ingest(valid(license, 999L), List.of(event("LAUNCH", null)));
+        }
+        node.flush();
+        node.flush();
+
+        Map<String, Object> stats = node.getStats();
+        assertThat(stats.get("pendingBuckets")).isEqualTo(4);
+        // 1 bucket giờ của tool + 3 bucket ngày; 7 license còn lại bị bỏ
+        assertThat(stats.get("pendingDropped")).isEqualTo(7L);
+        assertThat(stats.get("flushFailures")).isEqualTo(2L);
+    }
+
+    @Test
+    void ringRejectsWhenFullInsteadOfBlocking() {
+        UsageEventRing<Integer> ring = new UsageEventRing<>(4);
+        for (int i = 0; i < 4; i++) assertThat(ring.offer(i)).isTrue();
+        assertThat(ring.offer(4)).isFalse();
+
+        List<Integer> out = new ArrayList<>();
+        assertThat(ring.drain(out::add, 2)).isEqualTo(2);
+        assertThat(ring.offer(5)).isTrue();
+        ring.drain(out::add, 10);
+        assertThat(out).containsExactly(0, 1, 2, 3, 5);
+        assertThat(ring.size()).isZero();
+    }
+
+    private long sumCounts(UsageBucket.Granularity granularity) {
+        return bucketRepository.findAll().stream()
+                .filter(b -> b.getGranularity() == granularity)
+                .mapToLong(UsageBucket::getEventCount).sum();
+    }
+
+    private long sumCounts(UsageBucket.Granularity granularity, UsageBucket.EventType type) {
+        return bucketRepository.findAll().stream()
+                .filter(b -> b.getGranularity() == granularity && b.getEventType() == type)
+                .mapToLong(UsageBucket::getEventCount).sum();
+    }
+
+    private static LicenseIndexService.Verification valid(Long licenseAccountId, Long toolId) {
+        return new LicenseIndexService.Verification(LicenseIndexService.Result.VALID, licenseAccountId, toolId,
+                LocalDateTime.now().plusDays(30), null, 1);
+    }
+
+    private static UsageBatchRequestDTO.Event event(String type, String feature) {
+        UsageBatchRequestDTO.Event e = new UsageBatchRequestDTO.Event();
+        e.setType(type);
+        e.setFeature(feature);
+        return e;
+    }
+
+    private static Path createTempDir() {
+        try {
+            return Files.createTempDirectory("usage-raw-log");
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
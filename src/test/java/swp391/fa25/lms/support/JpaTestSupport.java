@@ -0,0 +1,33 @@
+package swp391.fa25.lms.support;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Khung chung cho test service chạy trên H2:
+ * - Không bọc test trong transaction (NOT_SUPPORTED): dữ liệu commit thật, nhiều thread thấy nhau
+ * - Lớp con tự khai báo spring.datasource.url (tên DB riêng, MODE nếu cần) bằng @TestPropertySource
+ *   và @Import service cần test
+ */
+@DataJpaTest
+@Import(TestFixtures.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none"
+})
+public abstract class JpaTestSupport {
+
+    @Autowired
+    protected TestFixtures fixtures;
+}
@@ -0,0 +1,88 @@
+package swp391.fa25.lms.support;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import swp391.fa25.lms.model.*;
+import swp391.fa25.lms.repository.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tạo dữ liệu mẫu dùng chung cho các test JPA (account, category, tool, license, license account).
+ */
+public class TestFixtures {
+
+    @Autowired private AccountRepository accountRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ToolRepository toolRepository;
+    @Autowired private LicenseRepository licenseRepository;
+    @Autowired private LicenseAccountRepository licenseAccountRepository;
+    @Autowired private OrderRepository orderRepository;
+
+    public Account account(String email, String fullName) {
+        Account account = new Account();
+        account.setEmail(email);
+        account.setPassword("secret");
+        account.setFullName(fullName);
+        return accountRepository.save(account);
+    }
+
+    public Category category(String name) {
+        Category category = new Category();
+        category.setCategoryName(name);
+        return categoryRepository.save(category);
+    }
+
+    /** Tool PUBLISHED, còn đủ quantity trong kho. */
+    public Tool tool(Category category, String name, Tool.LoginMethod loginMethod, int quantity) {
+        return tool(category, name, loginMethod, quantity, null);
+    }
+
+    public Tool tool(Category category, String name, Tool.LoginMethod loginMethod, int quantity, Account seller) {
+        Tool tool = new Tool();
+        tool.setToolName(name);
+        tool.setDescription(name);
+        tool.setImage("tool.png");
+        tool.setLoginMethod(loginMethod);
+        tool.setStatus(Tool.Status.PUBLISHED);
+        tool.setCategory(category);
+        tool.setSeller(seller);
+        tool.setQuantity(quantity);
+        tool.setAvailableQuantity(quantity);
+        return toolRepository.save(tool);
+    }
+
+    /** Gói 30 ngày của tool. */
+    public License license(Tool tool) {
+        License license = new License();
+        license.setName("30 days");
+        license.setDurationDays(30);
+        license.setTool(tool);
+        return licenseRepository.save(license);
+    }
+
+    /** License account đã kích hoạt, còn hạn tới end (chưa lưu); end = null -> chưa có ngày kích hoạt. */
+    public LicenseAccount activeAccount(License license, LocalDateTime end) {
+        LicenseAccount la = new LicenseAccount();
+        la.setLicense(license);
+        la.setStatus(LicenseAccount.Status.ACTIVE);
+        la.setUsed(true);
+        la.setStartDate(end == null ? null : LocalDateTime.now());
+        la.setEndDate(end);
+        return la;
+    }
+
+    /** Order PENDING giá 0 của buyer cho tool. */
+    public CustomerOrder order(Account buyer, Tool tool) {
+        CustomerOrder order = new CustomerOrder();
+        order.setAccount(buyer);
+        order.setTool(tool);
+        order.setPrice(0d);
+        order.setOrderStatus(CustomerOrder.OrderStatus.PENDING);
+        order.setCreatedAt(LocalDateTime.now());
+        return orderRepository.save(order);
+    }
+
+    public LicenseAccount save(LicenseAccount la) {
+        return licenseAccountRepository.save(la);
+    }
+}
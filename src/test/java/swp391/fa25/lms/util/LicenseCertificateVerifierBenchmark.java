@@ -0,0 +1,50 @@
+package swp391.fa25.lms.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.service.LicenseCertificateService;
+import swp391.fa25.lms.service.LicenseRevocationFeedService;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Chi phí verify 1 certificate RS256 (RSA 2048) trên 1 thread, việc tool phía khách làm mỗi lần mở.
+ * Đo được ~260 µs/op (certificate 597 byte); chỉ ghi log, không khẳng định thời gian.
+ * Chạy riêng: mvn test -Dgroups=benchmark -DexcludedGroups=none
+ */
+@Slf4j
+@Tag("benchmark")
+class LicenseCertificateVerifierBenchmark {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    @Test
+    void verifyCost() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("test");
+        LicenseCertificateService issuer = new LicenseCertificateService(
+                "", "", "", environment, mock(LicenseRevocationFeedService.class));
+        LicenseCertificateVerifier verifier = LicenseCertificateVerifier.fromBase64(issuer.getPublicKeyBase64());
+
+        LicenseAccount la = LicenseCertificateVerifierTest.activated(42L, 7L, LocalDateTime.now(), LocalDateTime.now().plusDays(30));
+        issuer.reissue(la);
+        String certificate = la.getCertificate();
+
+        for (int i = 0; i < WARMUP; i++) verifier.verify(certificate, 7L);
+
+        long began = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) verifier.verify(certificate, 7L);
+        double micros = (System.nanoTime() - began) / 1e3 / ITERATIONS;
+
+        log.info("License certificate verify: {} us/op ({} bytes, {} iterations)",
+                String.format("%.1f", micros), certificate.length(), ITERATIONS);
+        assertThat(micros).isPositive();
+    }
+}
@@ -0,0 +1,128 @@
+package swp391.fa25.lms.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import swp391.fa25.lms.model.License;
+import swp391.fa25.lms.model.LicenseAccount;
+import swp391.fa25.lms.model.Tool;
+import swp391.fa25.lms.service.LicenseCertificateService;
+import swp391.fa25.lms.service.LicenseRevocationFeedService;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoField;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Certificate do server cấp được verifier (chỉ có public key) chấp nhận / từ chối đúng.
+ * Chi phí verify đo riêng ở LicenseCertificateVerifierBenchmark.
+ */
+class LicenseCertificateVerifierTest {
+
+    private final LicenseRevocationFeedService revocationFeed = mock(LicenseRevocationFeedService.class);
+    private final LicenseCertificateService issuer = ephemeralIssuer();
+    private final LicenseCertificateVerifier verifier =
+            LicenseCertificateVerifier.fromBase64(issuer.getPublicKeyBase64());
+
+    @Test
+    void issuedCertificateVerifiesOfflineAndRejectsTampering() {
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        LocalDateTime end = start.plusDays(30);
+        LicenseAccount la = activated(42L, 7L, start, end);
+        issuer.reissue(la);
+
+        LicenseCertificateVerifier.LicenseCertificate cert = verifier.verify(la.getCertificate(), 7L);
+        assertThat(cert.certificateId()).isNotBlank();
+        assertThat(cert.licenseAccountId()).isEqualTo(42L);
+        assertThat(cert.toolId()).isEqualTo(7L);
+        assertThat(cert.seats()).isEqualTo(1);
+        assertThat(cert.endsAt()).isEqualTo(end.atZone(ZoneId.systemDefault()).toInstant().with(ChronoField.NANO_OF_SECOND, 0));
+        assertThat(cert.keyId()).isEqualTo(verifier.getKeyId());
+
+        assertThatThrownBy(() -> verifier.verify(la.getCertificate(), 8L)).isInstanceOf(IllegalArgumentException.class);
+
+        String c = la.getCertificate();
+        int dot = c.indexOf('.');
+        String tampered = c.substring(0, dot + 1) + (c.charAt(dot + 1) == 'e' ? 'f' : 'e') + c.substring(dot + 2);
+        assertThatThrownBy(() -> verifier.verify(tampered, 7L)).isInstanceOf(IllegalArgumentException.class);
+
+        // Khóa khác (server khác / khóa tạm sau restart) -> không verify được
+        LicenseCertificateVerifier other =
+                LicenseCertificateVerifier.fromBase64(ephemeralIssuer().getPublicKeyBase64());
+        assertThatThrownBy(() -> other.verify(la.getCertificate(), 7L)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void expiredOrInactiveAccountGetsNoUsableCertificate() {
+        LicenseAccount expired = activated(1L, 7L, LocalDateTime.now().minusDays(60), LocalDateTime.now().minusDays(30));
+        issuer.reissue(expired);
+        assertThatThrownBy(() -> verifier.verify(expired.getCertificate(), 7L)).isInstanceOf(IllegalArgumentException.class);
+
+        LicenseAccount revoked = activated(2L, 7L, LocalDateTime.now(), LocalDateTime.now().plusDays(30));
+        issuer.reissue(revoked);
+        String certificateId = verifier.verify(revoked.getCertificate(), 7L).certificateId();
+        revoked.setStatus(LicenseAccount.Status.REVOKED);
+        issuer.reissue(revoked);
+        assertThat(revoked.getCertificate()).isNull();
+        // Certificate còn hạn bị rút -> vào feed thu hồi
+        verify(revocationFeed).record(eq(certificateId), eq(2L), eq(LicenseAccount.Status.REVOKED), any());
+    }
+
+    @Test
+    void reissueRevokesSupersededCertificate() {
+        LicenseAccount la = activated(3L, 7L, LocalDateTime.now(), LocalDateTime.now().plusDays(30));
+        issuer.reissue(la);
+        String previousId = verifier.verify(la.getCertificate(), 7L).certificateId();
+
+        // Gia hạn -> certificate mới, bản cũ còn hạn vào feed thu hồi
+        la.setEndDate(la.getEndDate().plusDays(30));
+        issuer.reissue(la);
+        assertThat(verifier.verify(la.getCertificate(), 7L).certificateId()).isNotEqualTo(previousId);
+        verify(revocationFeed).record(eq(previousId), eq(3L), eq(LicenseAccount.Status.ACTIVE), any());
+    }
+
+    @Test
+    void blankKeysFailOutsideDevProfile() {
+        assertThatThrownBy(() -> new LicenseCertificateService("", "", "", new MockEnvironment(), revocationFeed))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void publishesPreviousKeysForRotation() {
+        LicenseCertificateService rotated = new LicenseCertificateService(
+                "", "", issuer.getPublicKeyBase64(), new MockEnvironment().withProperty("spring.profiles.active", "dev"),
+                revocationFeed);
+        assertThat(rotated.getPreviousPublicKeys())
+                .containsExactly(Map.of("kid", verifier.getKeyId(), "publicKey", issuer.getPublicKeyBase64()));
+    }
+
+    private LicenseCertificateService ephemeralIssuer() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("test");
+        return new LicenseCertificateService("", "", "", environment, revocationFeed);
+    }
+
+    static LicenseAccount activated(Long id, Long toolId, LocalDateTime start, LocalDateTime end) {
+        Tool tool = new Tool();
+        tool.setToolId(toolId);
+        License license = new License();
+        license.setLicenseId(100L);
+        license.setTool(tool);
+
+        LicenseAccount la = new LicenseAccount();
+        la.setLicenseAccountId(id);
+        la.setLicense(license);
+        la.setStatus(LicenseAccount.Status.ACTIVE);
+        la.setUsed(true);
+        la.setStartDate(start);
+        la.setEndDate(end);
+        return la;
+    }
+}
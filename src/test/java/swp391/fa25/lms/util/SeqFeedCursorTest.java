@@ -0,0 +1,37 @@
+package swp391.fa25.lms.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Seq commit muộn (nhỏ hơn seq đã thấy) không bị bỏ qua; khoảng trống quá grace thì được bước qua.
+ */
+class SeqFeedCursorTest {
+
+    @Test
+    void waitsForLateSeqInsideGrace() {
+        SeqFeedCursor cursor = new SeqFeedCursor(0, 1_000);
+        assertThat(cursor.advance(List.of(1L, 3L, 4L), 0)).isEqualTo(1);
+        assertThat(cursor.seen(3)).isTrue();
+        assertThat(cursor.seen(2)).isFalse();
+        assertThat(cursor.getHeld()).isEqualTo(2);
+
+        // 2 commit muộn, đọc lại từ watermark thấy đủ
+        assertThat(cursor.advance(List.of(2L, 3L, 4L), 500)).isEqualTo(4);
+        assertThat(cursor.getHeld()).isZero();
+    }
+
+    @Test
+    void skipsGapOlderThanGrace() {
+        SeqFeedCursor cursor = new SeqFeedCursor(10, 1_000);
+        assertThat(cursor.advance(List.of(13L), 0)).isEqualTo(10);
+        assertThat(cursor.advance(List.of(13L), 999)).isEqualTo(10);
+        assertThat(cursor.advance(List.of(13L, 14L), 1_000)).isEqualTo(14);
+        // Khoảng trống mới đếm giờ lại từ đầu
+        assertThat(cursor.advance(List.of(16L), 1_500)).isEqualTo(14);
+        assertThat(cursor.advance(List.of(16L), 2_500)).isEqualTo(16);
+    }
+}